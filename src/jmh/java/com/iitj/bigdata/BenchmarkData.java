@@ -0,0 +1,211 @@
+package com.iitj.bigdata;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+/**
+ * Synthetic TPC-H style scripts and a no-op JDBC connection for the benchmarks. The data
+ * is generated from a fixed seed, so every run and every commit measures the same input.
+ * Scale 1 has 150 customers, 1500 orders and about 6000 line items.
+ */
+final class BenchmarkData {
+    /**
+     * Subset of tpch_create.sql with the columns query1-3 use.
+     */
+    static final String DDL =
+            "CREATE TABLE region (r_regionkey INTEGER NOT NULL, r_name CHAR(25) NOT NULL, r_comment VARCHAR(152));\n"
+            + "CREATE TABLE nation (n_nationkey INTEGER NOT NULL, n_name CHAR(25) NOT NULL,"
+            + " n_regionkey INTEGER NOT NULL, n_comment VARCHAR(152));\n"
+            + "CREATE TABLE customer (c_custkey INTEGER NOT NULL, c_name VARCHAR(25) NOT NULL,"
+            + " c_nationkey INTEGER NOT NULL, c_acctbal DECIMAL(15,2) NOT NULL, c_mktsegment CHAR(10) NOT NULL);\n"
+            + "CREATE TABLE orders (o_orderkey INTEGER NOT NULL, o_custkey INTEGER NOT NULL,"
+            + " o_orderstatus CHAR(1) NOT NULL, o_totalprice DECIMAL(15,2) NOT NULL, o_orderdate DATE NOT NULL,"
+            + " o_orderpriority CHAR(15) NOT NULL, o_comment VARCHAR(79) NOT NULL);\n"
+            + "CREATE TABLE lineitem (l_orderkey INTEGER NOT NULL, l_linenumber INTEGER NOT NULL,"
+            + " l_quantity DECIMAL(15,2) NOT NULL, l_extendedprice DECIMAL(15,2) NOT NULL,"
+            + " l_discount DECIMAL(15,2) NOT NULL, l_shipdate DATE NOT NULL, l_comment VARCHAR(44) NOT NULL);\n";
+
+    /**
+     * Data files in load order.
+     */
+    static final List<String> FILES = Arrays.asList(
+            "region.sql", "nation.sql", "customer.sql", "orders.sql", "lineitem.sql");
+
+    private static final String[] REGIONS = {"AFRICA", "AMERICA", "ASIA", "EUROPE", "MIDDLE EAST"};
+    private static final String[] SEGMENTS = {"AUTOMOBILE", "BUILDING", "FURNITURE", "HOUSEHOLD", "MACHINERY"};
+    private static final String[] PRIORITIES = {"1-URGENT", "2-HIGH", "3-MEDIUM", "4-NOT SPECIFIED", "5-LOW"};
+    private static final String[] STATUSES = {"F", "O", "P"};
+    private static final long FIRST_DATE = LocalDate.of(1992, 1, 1).toEpochDay();
+    private static final int DATE_RANGE = (int) (LocalDate.of(1998, 8, 2).toEpochDay() - FIRST_DATE);
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Generates the data scripts for a scale factor.
+     *
+     * @param scale multiplier of the row counts
+     * @param rowsPerInsert tuples per INSERT statement
+     * @return script text keyed by "data/&lt;file&gt;"
+     */
+    static Map<String, byte[]> scripts(int scale, int rowsPerInsert) {
+        SplittableRandom random = new SplittableRandom(42);
+        Map<String, byte[]> files = new LinkedHashMap<>();
+
+        Script region = new Script("region", rowsPerInsert);
+        for (int i = 0; i < REGIONS.length; i++) {
+            region.row(i + ", '" + REGIONS[i] + "', 'region " + i + "'");
+        }
+        files.put("data/region.sql", region.bytes());
+
+        Script nation = new Script("nation", rowsPerInsert);
+        for (int i = 0; i < 25; i++) {
+            nation.row(i + ", 'NATION " + i + "', " + (i % REGIONS.length) + ", 'nation " + i + "'");
+        }
+        files.put("data/nation.sql", nation.bytes());
+
+        int customers = 150 * scale;
+        Script customer = new Script("customer", rowsPerInsert);
+        for (int i = 1; i <= customers; i++) {
+            customer.row(i + ", 'Customer#" + i + "', " + random.nextInt(25) + ", "
+                    + money(random.nextInt(1_100_000) - 100_000) + ", '"
+                    + SEGMENTS[random.nextInt(SEGMENTS.length)] + "'");
+        }
+        files.put("data/customer.sql", customer.bytes());
+
+        Script orders = new Script("orders", rowsPerInsert);
+        Script lineitem = new Script("lineitem", rowsPerInsert);
+        for (int order = 1; order <= 1500 * scale; order++) {
+            long date = FIRST_DATE + random.nextInt(DATE_RANGE);
+            int lines = 1 + random.nextInt(7);
+            long total = 0;
+            for (int line = 1; line <= lines; line++) {
+                int quantity = 1 + random.nextInt(50);
+                long price = quantity * (90_000L + random.nextInt(20_000));
+                total += price;
+                lineitem.row(order + ", " + line + ", " + quantity + ".00, " + money(price) + ", "
+                        + money(random.nextInt(11)) + ", DATE '" + LocalDate.ofEpochDay(date + 1 + random.nextInt(120))
+                        + "', 'it''s line " + line + "'");
+            }
+            orders.row(order + ", " + (1 + random.nextInt(customers)) + ", '"
+                    + STATUSES[random.nextInt(STATUSES.length)] + "', " + money(total) + ", DATE '"
+                    + LocalDate.ofEpochDay(date) + "', '" + PRIORITIES[random.nextInt(PRIORITIES.length)]
+                    + "', 'order " + order + "'");
+        }
+        files.put("data/orders.sql", orders.bytes());
+        files.put("data/lineitem.sql", lineitem.bytes());
+        return files;
+    }
+
+    /**
+     * Returns an opener over generated scripts.
+     *
+     * @param files scripts keyed by "data/&lt;file&gt;"
+     * @return resource opener
+     */
+    static ParallelLoader.ResourceOpener opener(Map<String, byte[]> files) {
+        return path -> {
+            byte[] script = files.get(path);
+            if (script == null) {
+                throw new FileNotFoundException(path);
+            }
+            return new ByteArrayInputStream(script);
+        };
+    }
+
+    private static String money(long cents) {
+        return (cents < 0 ? "-" : "") + Math.abs(cents) / 100 + "." + String.format("%02d", Math.abs(cents) % 100);
+    }
+
+    /**
+     * Builds an INSERT script with a fixed number of tuples per statement.
+     */
+    private static class Script {
+        private final StringBuilder sb = new StringBuilder();
+        private final String table;
+        private final int rowsPerInsert;
+        private int rows;
+
+        Script(String table, int rowsPerInsert) {
+            this.table = table;
+            this.rowsPerInsert = rowsPerInsert;
+        }
+
+        void row(String values) {
+            if (rows % rowsPerInsert == 0) {
+                if (rows > 0) {
+                    sb.append(";\n");
+                }
+                sb.append("INSERT INTO ").append(table).append(" VALUES\n");
+            } else {
+                sb.append(",\n");
+            }
+            sb.append('(').append(values).append(')');
+            rows++;
+        }
+
+        byte[] bytes() {
+            if (rows > 0) {
+                sb.append(";\n");
+            }
+            return sb.toString().getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Creates a connection whose statements accept everything and do nothing, so a
+     * benchmark measures only the client-side work of building statements and batches.
+     *
+     * @return no-op connection
+     */
+    static Connection noopConnection() {
+        return (Connection) Proxy.newProxyInstance(BenchmarkData.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "createStatement":
+                            return noop(Statement.class);
+                        case "prepareStatement":
+                            return noop(PreparedStatement.class);
+                        case "getAutoCommit":
+                        case "isClosed":
+                            return false;
+                        case "getSchema":
+                            return "public";
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static Object noop(Class<?> type) {
+        return Proxy.newProxyInstance(BenchmarkData.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    if (method.getName().equals("executeBatch")) {
+                        return new int[0];
+                    }
+                    return defaultValue(method.getReturnType());
+                });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,62 @@
+package com.iitj.bigdata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Client-side cost of building load batches: the multi-row INSERT text assembled for
+ * executeMultiRowInsert() and the typed PreparedStatement batches, sent to a connection
+ * that discards them.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InsertBuildBenchmark {
+    @Param({"1", "10"})
+    public int scale;
+
+    /**
+     * Rows per batch.
+     */
+    @Param({"1000", "5000", "20000"})
+    public int batchSize;
+
+    @Param({"MULTIROW", "BATCH"})
+    public LoadMode mode;
+
+    private byte[] lineitem;
+    private Map<String, TableSchema> schema;
+
+    @Setup
+    public void setUp() {
+        lineitem = BenchmarkData.scripts(scale, 5000).get("data/lineitem.sql");
+        schema = TableSchema.parse(BenchmarkData.DDL);
+    }
+
+    @Benchmark
+    public long buildBatches() throws IOException, SQLException {
+        try (TableLoader loader = TableLoader.create(mode, BenchmarkData.noopConnection(),
+                AdaptiveBatchSizer.fixed(batchSize), false, schema);
+             SqlScriptReader reader = new SqlScriptReader(new ByteArrayInputStream(lineitem))) {
+            return loader.load(reader, Long.MAX_VALUE);
+        }
+    }
+}
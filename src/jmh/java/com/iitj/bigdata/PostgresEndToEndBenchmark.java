@@ -0,0 +1,174 @@
+package com.iitj.bigdata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load and query timings against a local PostgreSQL stand-in for Redshift.
+ *
+ * Requires -Dpg.url, -Dpg.user and -Dpg.password (forwarded by the jmh Gradle task).
+ * The benchmark creates and drops its own tables in the connected schema.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+public class PostgresEndToEndBenchmark {
+    private static final String[] TABLES = {"lineitem", "orders", "customer", "nation", "region"};
+
+    /**
+     * Connection and generated data shared by the load and query benchmarks.
+     */
+    @State(Scope.Benchmark)
+    public static class Database {
+        @Param({"1", "10"})
+        public int scale;
+
+        Connection con;
+        Map<String, byte[]> scripts;
+        Map<String, TableSchema> schema;
+
+        @Setup(Level.Trial)
+        public void open() throws SQLException {
+            String url = System.getProperty("pg.url");
+            if (url == null) {
+                throw new IllegalStateException("Set -Dpg.url, -Dpg.user and -Dpg.password to run this benchmark");
+            }
+            con = DriverManager.getConnection(url, System.getProperty("pg.user"), System.getProperty("pg.password"));
+            scripts = BenchmarkData.scripts(scale, 5000);
+            schema = TableSchema.parse(BenchmarkData.DDL);
+            try (Statement stmt = con.createStatement()) {
+                for (String table : TABLES) {
+                    stmt.execute("DROP TABLE IF EXISTS " + table);
+                }
+                for (String ddl : BenchmarkData.DDL.split(";")) {
+                    if (!ddl.trim().isEmpty()) {
+                        stmt.execute(ddl);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Loads the generated scripts with a fixed batch size.
+         */
+        long load(LoadMode mode, int batchSize) throws SQLException, IOException {
+            try (Statement stmt = con.createStatement()) {
+                stmt.execute("TRUNCATE " + String.join(", ", TABLES));
+            }
+            con.setAutoCommit(false);
+            long rows = 0;
+            try (TableLoader loader = TableLoader.create(mode, con, AdaptiveBatchSizer.fixed(batchSize), false, schema)) {
+                for (String file : BenchmarkData.FILES) {
+                    try (SqlScriptReader reader = new SqlScriptReader(
+                            BenchmarkData.opener(scripts).open("data/" + file))) {
+                        rows += loader.load(reader, Long.MAX_VALUE);
+                    }
+                }
+            } finally {
+                con.setAutoCommit(true);
+            }
+            try (Statement stmt = con.createStatement()) {
+                stmt.execute("ANALYZE");
+            }
+            return rows;
+        }
+
+        @TearDown(Level.Trial)
+        public void close() throws SQLException {
+            if (con != null) {
+                try (Statement stmt = con.createStatement()) {
+                    for (String table : TABLES) {
+                        stmt.execute("DROP TABLE IF EXISTS " + table);
+                    }
+                }
+                con.close();
+            }
+        }
+    }
+
+    /**
+     * Batch size and mode of the load benchmark.
+     */
+    @State(Scope.Benchmark)
+    public static class LoadSettings {
+        @Param({"1000", "5000"})
+        public int batchSize;
+
+        @Param({"MULTIROW", "BATCH"})
+        public LoadMode mode;
+    }
+
+    /**
+     * Data loaded once for the query benchmarks.
+     */
+    @State(Scope.Benchmark)
+    public static class Loaded {
+        @Setup(Level.Trial)
+        public void load(Database db) throws SQLException, IOException {
+            db.load(LoadMode.MULTIROW, 5000);
+        }
+    }
+
+    @Benchmark
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 5)
+    public long load(Database db, LoadSettings settings) throws SQLException, IOException {
+        return db.load(settings.mode, settings.batchSize);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public void query1(Database db, Loaded loaded, Blackhole bh) throws SQLException {
+        run(db.con, AmazonRedshift.QUERY1_SQL, bh);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public void query2(Database db, Loaded loaded, Blackhole bh) throws SQLException {
+        run(db.con, AmazonRedshift.QUERY2_SQL, bh);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    public void query3(Database db, Loaded loaded, Blackhole bh) throws SQLException {
+        run(db.con, AmazonRedshift.QUERY3_SQL, bh);
+    }
+
+    private static void run(Connection con, String sql, Blackhole bh) throws SQLException {
+        try (Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= columns; i++) {
+                    bh.consume(rs.getObject(i));
+                }
+            }
+        }
+    }
+}
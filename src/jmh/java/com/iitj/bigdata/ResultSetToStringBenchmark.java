@@ -0,0 +1,64 @@
+package com.iitj.bigdata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link AmazonRedshift#resultSetToString} over a large in-memory result shaped like
+ * query1's, printing the first maxRows rows and counting the rest.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ResultSetToStringBenchmark {
+    /**
+     * Rows in the result set.
+     */
+    @Param({"10000", "1000000"})
+    public int rows;
+
+    /**
+     * Rows printed.
+     */
+    @Param({"10", "10000"})
+    public int maxRows;
+
+    private CachedResult result;
+
+    @Setup
+    public void setUp() throws SQLException {
+        List<Object[]> data = new ArrayList<>(rows);
+        LocalDate first = LocalDate.of(1992, 1, 1);
+        for (int i = 0; i < rows; i++) {
+            data.add(new Object[]{i, Date.valueOf(first.plusDays(i % 2400)), BigDecimal.valueOf(i * 37L, 4)});
+        }
+        result = CachedResult.of(new String[]{"o_orderkey", "o_orderdate", "total_sale"},
+                new int[]{Types.INTEGER, Types.DATE, Types.NUMERIC}, data);
+    }
+
+    @Benchmark
+    public String resultSetToString() throws SQLException {
+        return AmazonRedshift.resultSetToString(result.open(), maxRows);
+    }
+}
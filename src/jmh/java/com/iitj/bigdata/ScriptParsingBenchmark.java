@@ -0,0 +1,70 @@
+package com.iitj.bigdata;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statement parsing done by insert(): tokenizing the lineitem script with
+ * {@link SqlScriptReader}, with and without decoding the fields.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScriptParsingBenchmark {
+    @Param({"1", "10"})
+    public int scale;
+
+    /**
+     * Tuples per INSERT statement in the generated script.
+     */
+    @Param({"1", "5000"})
+    public int batchSize;
+
+    private byte[] lineitem;
+
+    @Setup
+    public void setUp() {
+        lineitem = BenchmarkData.scripts(scale, batchSize).get("data/lineitem.sql");
+    }
+
+    @Benchmark
+    public long tokenize() throws IOException {
+        try (SqlScriptReader reader = new SqlScriptReader(new ByteArrayInputStream(lineitem))) {
+            while (reader.next()) {
+                // Tuple boundaries only
+            }
+            return reader.records();
+        }
+    }
+
+    @Benchmark
+    public void decodeFields(Blackhole bh) throws IOException {
+        StringBuilder text = new StringBuilder();
+        try (SqlScriptReader reader = new SqlScriptReader(new ByteArrayInputStream(lineitem))) {
+            while (reader.next()) {
+                bh.consume(reader.getLong(0));
+                bh.consume(reader.getDecimal(3, 2));
+                text.setLength(0);
+                reader.appendField(6, text);
+                bh.consume(text.length());
+            }
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.iitj.bigdata;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Chooses the number of rows per batch separately for each table.
+ *
+ * A batch is closed when it reaches the table's current row limit, the byte budget, or
+ * would come close to the server's maximum statement size. After every commit the row
+ * limit is adjusted from the measured latency: it grows while commits are well under the
+ * target latency and is halved when they are slower than the target or fail. A failed
+ * batch is still rolled back and its error rethrown; the halved limit applies to later
+ * loads that share the sizer, such as a second insert() that resumes from the
+ * checkpoint. Every change is printed and kept in a per-table history for the
+ * end-of-load report.
+ */
+public class AdaptiveBatchSizer {
+    /**
+     * Fraction of the maximum statement size a batch may use; leaves room for the
+     * INSERT prefix and separators.
+     */
+    private static final double STATEMENT_HEADROOM = 0.9;
+    private static final double GROWTH = 1.5;
+    private static final int MAX_HISTORY = 64;
+
+    private final int initialRows;
+    private final int minRows;
+    private final int maxRows;
+    private final long byteBudget;
+    private final long maxStatementBytes;
+    private final long targetLatencyNanos;
+    private final boolean verbose;
+
+    private final Map<String, Table> tables = new LinkedHashMap<>();
+
+    /**
+     * Creates a sizer.
+     *
+     * @param initialRows starting row limit for every table
+     * @param minRows smallest row limit
+     * @param maxRows largest row limit
+     * @param byteBudget target payload bytes per batch
+     * @param maxStatementBytes server limit on statement length
+     * @param targetLatencyMillis commit latency the feedback loop aims for
+     * @param verbose whether to print every size change
+     */
+    public AdaptiveBatchSizer(int initialRows, int minRows, int maxRows, long byteBudget,
+                              long maxStatementBytes, long targetLatencyMillis, boolean verbose) {
+        this.initialRows = initialRows;
+        this.minRows = Math.max(1, minRows);
+        this.maxRows = Math.max(this.minRows, maxRows);
+        this.byteBudget = byteBudget;
+        this.maxStatementBytes = maxStatementBytes;
+        this.targetLatencyNanos = targetLatencyMillis * 1_000_000L;
+        this.verbose = verbose;
+    }
+
+    /**
+     * Creates a sizer that always uses the same number of rows, with no byte limits.
+     *
+     * @param rows rows per batch
+     * @return fixed sizer
+     */
+    public static AdaptiveBatchSizer fixed(int rows) {
+        return new AdaptiveBatchSizer(rows, rows, rows, Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE / 1_000_000L, false);
+    }
+
+    /**
+     * Returns the sizing state of a table, creating it on first use.
+     *
+     * @param table table name
+     * @return table state, shared by all loaders of the table
+     */
+    public synchronized Table forTable(String table) {
+        return tables.computeIfAbsent(table, Table::new);
+    }
+
+    /**
+     * Prints the row limit each table settled at and how it got there.
+     */
+    public synchronized void report() {
+        if (tables.isEmpty()) {
+            return;
+        }
+        System.out.println("Batch sizes:");
+        for (Table t : tables.values()) {
+            System.out.println("  " + t.summary());
+        }
+    }
+
+    /**
+     * Sizing state of one table. Methods are synchronized because chunks of one table
+     * may be loaded by several workers.
+     */
+    public class Table {
+        private final String name;
+        private int rowLimit = initialRows;
+        private int batches;
+        private long avgRowBytes;
+        private final List<String> history = new ArrayList<>();
+
+        Table(String name) {
+            this.name = name;
+            history.add(Integer.toString(rowLimit));
+        }
+
+        /**
+         * Returns whether a batch of the given size should be executed now.
+         *
+         * @param rows rows in the batch
+         * @param bytes payload bytes in the batch
+         * @return true if the batch is full
+         */
+        public synchronized boolean isFull(int rows, long bytes) {
+            return rows >= rowLimit || bytes >= byteBudget;
+        }
+
+        /**
+         * Returns whether another tuple still fits under the statement size limit.
+         *
+         * @param bytes payload bytes already in the batch
+         * @param tupleBytes size of the next tuple
+         * @return false if the batch should be executed before adding the tuple
+         */
+        public boolean fits(long bytes, int tupleBytes) {
+            return bytes + tupleBytes + 2 <= maxStatementBytes * STATEMENT_HEADROOM;
+        }
+
+        /**
+         * Feeds back the latency of a committed batch.
+         *
+         * @param rows rows in the batch
+         * @param bytes payload bytes in the batch
+         * @param nanos time spent executing and committing
+         */
+        public synchronized void recordSuccess(int rows, long bytes, long nanos) {
+            batches++;
+            if (rows > 0) {
+                long rowBytes = Math.max(1, bytes / rows);
+                avgRowBytes = avgRowBytes == 0 ? rowBytes : (avgRowBytes * 3 + rowBytes) / 4;
+            }
+            // Only react to batches that were limited by the row count
+            if (rows < rowLimit && bytes < byteBudget) {
+                return;
+            }
+            long millis = nanos / 1_000_000L;
+            if (nanos > targetLatencyNanos) {
+                adjust(rowLimit / 2, "commit " + millis + " ms over target");
+            } else if (nanos < targetLatencyNanos / 2) {
+                adjust((int) Math.min(Integer.MAX_VALUE, (long) (rowLimit * GROWTH)), "commit " + millis + " ms");
+            }
+        }
+
+        /**
+         * Feeds back a failed batch; the row limit is halved.
+         *
+         * @param rows rows in the batch
+         * @param bytes payload bytes in the batch
+         */
+        public synchronized void recordFailure(int rows, long bytes) {
+            batches++;
+            adjust(Math.min(rowLimit, rows) / 2, "failed at " + rows + " rows / " + bytes + " bytes");
+        }
+
+        private void adjust(int proposed, String reason) {
+            int limit = Math.max(minRows, Math.min(maxRows, proposed));
+            if (avgRowBytes > 0) {
+                // Keep the expected payload under both byte limits
+                long byteCap = Math.min(byteBudget, (long) (maxStatementBytes * STATEMENT_HEADROOM)) / avgRowBytes;
+                limit = (int) Math.max(minRows, Math.min(limit, byteCap));
+            }
+            if (limit == rowLimit) {
+                return;
+            }
+            if (verbose) {
+                System.out.println("  [" + name + "] batch size " + rowLimit + " -> " + limit + " (" + reason + ")");
+            }
+            rowLimit = limit;
+            if (history.size() < MAX_HISTORY) {
+                history.add(Integer.toString(limit));
+            }
+        }
+
+        public synchronized int getRowLimit() {
+            return rowLimit;
+        }
+
+        synchronized String summary() {
+            return name + ": settled at " + rowLimit + " rows (~" + (rowLimit * avgRowBytes / 1024)
+                    + " KB) after " + batches + " batches; history " + String.join(" -> ", history);
+        }
+    }
+}
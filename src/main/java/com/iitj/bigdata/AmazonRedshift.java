@@ -3,8 +3,11 @@ package com.iitj.bigdata;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
 import java.math.BigDecimal;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
@@ -13,10 +16,20 @@ import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.ToLongFunction;
+import java.util.function.UnaryOperator;
 
 /**
  * Performs SQL DDL and SELECT queries on an Amazon Redshift database hosted on AWS.
@@ -24,10 +37,128 @@ import java.util.Properties;
 public class AmazonRedshift {
     /**
      * Number of INSERT statements after which a commit is performed during data load.
+     * With adaptive batching this is the starting size for every table.
      */
     private static final int INSERT_BATCH_SIZE = 5000;
     /**
-     * Connection to database
+     * TPC-H data files in load order.
+     */
+    private static final List<String> DATA_FILES = Arrays.asList(
+        "region.sql", "nation.sql", "customer.sql", "supplier.sql",
+        "part.sql", "partsupp.sql", "orders.sql", "lineitem.sql"
+    );
+    /**
+     * Top 10 most recent orders of customers in America with their total sale.
+     */
+    static final String QUERY1_SQL =
+        "SELECT o.o_orderkey, " +
+        "       o.o_orderdate, " +
+        "       SUM(l.l_extendedprice * (1 - l.l_discount)) AS total_sale " +
+        "FROM orders o " +
+        "JOIN lineitem l ON o.o_orderkey = l.l_orderkey " +
+        "JOIN customer c ON o.o_custkey = c.c_custkey " +
+        "JOIN nation n ON c.c_nationkey = n.n_nationkey " +
+        "JOIN region r ON n.n_regionkey = r.r_regionkey " +
+        "WHERE r.r_name = 'AMERICA' " +
+        "GROUP BY o.o_orderkey, o.o_orderdate " +
+        "ORDER BY o.o_orderdate DESC " +
+        "LIMIT 10";
+
+    /**
+     * Total spent per customer of the largest market segment outside Europe on urgent, unfailed orders.
+     */
+    static final String QUERY2_SQL =
+        "WITH largest_segment AS ( " +
+        "    SELECT c_mktsegment " +
+        "    FROM customer " +
+        "    GROUP BY c_mktsegment " +
+        "    ORDER BY COUNT(*) DESC " +
+        "    LIMIT 1 " +
+        ") " +
+        "SELECT c.c_custkey, " +
+        "       SUM(o.o_totalprice) AS total_spent " +
+        "FROM customer c " +
+        "JOIN orders o ON c.c_custkey = o.o_custkey " +
+        "JOIN nation n ON c.c_nationkey = n.n_nationkey " +
+        "JOIN region r ON n.n_regionkey = r.r_regionkey " +
+        "WHERE o.o_orderpriority = '1-URGENT' " +
+        "  AND o.o_orderstatus != 'F' " +
+        "  AND r.r_name != 'EUROPE' " +
+        "  AND c.c_mktsegment = (SELECT c_mktsegment FROM largest_segment) " +
+        "GROUP BY c.c_custkey " +
+        "ORDER BY total_spent DESC";
+
+    /**
+     * Line item counts per order priority for orders placed from April 1997 to April 2003.
+     */
+    static final String QUERY3_SQL =
+        "SELECT o.o_orderpriority, " +
+        "       COUNT(l.l_orderkey) AS lineitem_count " +
+        "FROM orders o " +
+        "JOIN lineitem l ON o.o_orderkey = l.l_orderkey " +
+        "WHERE o.o_orderdate >= DATE '1997-04-01' " +
+        "  AND o.o_orderdate < DATE '2003-04-01' " +
+        "GROUP BY o.o_orderpriority " +
+        "ORDER BY o.o_orderpriority ASC";
+
+    /**
+     * Query #1 answered from the order_revenue summary maintained by {@link SummaryMaintainer}.
+     */
+    static final String SUMMARY_QUERY1_SQL =
+        "SELECT o_orderkey, " +
+        "       o_orderdate, " +
+        "       revenue AS total_sale " +
+        "FROM order_revenue " +
+        "WHERE r_name = 'AMERICA' " +
+        "ORDER BY o_orderdate DESC " +
+        "LIMIT 10";
+
+    /**
+     * Query #3 answered from the priority_counts summary maintained by {@link SummaryMaintainer}.
+     */
+    static final String SUMMARY_QUERY3_SQL =
+        "SELECT o_orderpriority, " +
+        "       SUM(lineitem_count) AS lineitem_count " +
+        "FROM priority_counts " +
+        "WHERE o_orderdate >= DATE '1997-04-01' " +
+        "  AND o_orderdate < DATE '2003-04-01' " +
+        "GROUP BY o_orderpriority " +
+        "ORDER BY o_orderpriority ASC";
+
+    /**
+     * Parameters of query1-3 as written in the SQL above, used by the overloads without
+     * arguments.
+     */
+    static final String QUERY1_REGION = "AMERICA";
+    static final String QUERY2_EXCLUDED_REGION = "EUROPE";
+    static final String QUERY2_PRIORITY = "1-URGENT";
+    static final LocalDate QUERY3_FROM = LocalDate.of(1997, 4, 1);
+    static final LocalDate QUERY3_TO = LocalDate.of(2003, 4, 1);
+
+    /**
+     * query1-3 and their summary variants with their constants as ? placeholders, in
+     * the order the parameterized overloads bind them.
+     */
+    static final String QUERY1_PREPARED_SQL = QUERY1_SQL.replace("'AMERICA'", "?");
+    static final String QUERY2_PREPARED_SQL = QUERY2_SQL.replace("'1-URGENT'", "?").replace("'EUROPE'", "?");
+    static final String QUERY3_PREPARED_SQL = QUERY3_SQL.replace("DATE '1997-04-01'", "?")
+            .replace("DATE '2003-04-01'", "?");
+    static final String SUMMARY_QUERY1_PREPARED_SQL = SUMMARY_QUERY1_SQL.replace("'AMERICA'", "?");
+    static final String SUMMARY_QUERY3_PREPARED_SQL = SUMMARY_QUERY3_SQL.replace("DATE '1997-04-01'", "?")
+            .replace("DATE '2003-04-01'", "?");
+
+    /**
+     * Connection pools shared by all instances, keyed by URL and user, so repeated
+     * connect() calls reuse already authenticated connections.
+     */
+    private static final Map<String, ConnectionPool> POOLS = new HashMap<>();
+    /**
+     * Query result caches shared by all instances, keyed like the pools, so a load by one
+     * instance invalidates the results another instance would serve.
+     */
+    private static final Map<String, ResultCache> CACHES = new HashMap<>();
+    /**
+     * Connection to database, borrowed from the pool
      */
     private Connection con;
 
@@ -38,6 +169,175 @@ public class AmazonRedshift {
     private String uid;
     private String pw;
 
+    /**
+     * Number of connections used by insert(); 1 keeps the sequential single-connection load.
+     */
+    private int loadWorkers;
+    /**
+     * Target size in bytes of the chunks a data file is split into for parallel loading.
+     */
+    private long loadChunkBytes;
+    /**
+     * How rows are sent to the database: literal multi-row INSERTs or PreparedStatement batches.
+     */
+    private LoadMode loadMode;
+    /**
+     * Batch sizing: whether to adapt the rows per batch to commit latency, and the limits
+     * the feedback loop works within.
+     */
+    private boolean adaptiveBatching;
+    private long batchBytes;
+    private long maxStatementBytes;
+    private long targetLatencyMillis;
+    private int minBatchRows;
+    private int maxBatchRows;
+    /**
+     * Batch sizer shared by every load of this instance, so a limit lowered after a slow
+     * or failed batch still applies when insert() is called again to resume.
+     */
+    private AdaptiveBatchSizer batchSizer;
+    /**
+     * Pipelined multi-row load: number of executor connections (0 parses, builds and
+     * executes on one thread) and the batches each stage queue holds.
+     */
+    private int pipelineExecutors;
+    private int pipelineQueueBatches;
+    /**
+     * COPY settings: local staging directory, gzip flag, and for Redshift the S3 prefix
+     * the staging files are uploaded to and the IAM role used to read them.
+     */
+    private Path copyStagingDir;
+    private boolean copyGzip;
+    private String copyS3Prefix;
+    private String copyIamRole;
+    /**
+     * Load checkpoint: whether insert() records its progress, and the file it is kept in.
+     */
+    private boolean checkpointEnabled;
+    private Path checkpointPath;
+    /**
+     * Smallest fraction of a live table's rows its staging copy must hold before reload()
+     * puts it live; 0 accepts any non-empty copy.
+     */
+    private double reloadMinRowRatio;
+    /**
+     * Pool settings: minimum (opened at warm-up) and maximum size, how long to wait for a
+     * free connection, idle time before a connection is validated on borrow, and how long
+     * a connection may be held before it is reported as a leak.
+     */
+    private int poolMinSize;
+    private int poolMaxSize;
+    private long poolMaxWaitMillis;
+    private long poolValidateIdleMillis;
+    private long poolLeakThresholdMillis;
+    /**
+     * Rows fetched per round trip by the streaming query methods.
+     */
+    private int fetchSize;
+    /**
+     * Result cache for query1-3: whether it is used, its size limit and the optional
+     * time-to-live of an entry (0 keeps results until the next load).
+     */
+    private boolean cacheEnabled;
+    private long cacheMaxBytes;
+    private long cacheTtlMillis;
+    /**
+     * Prepared statements of query1-3 kept per connection, and the number of executions
+     * after which the driver switches a PreparedStatement to a named server-side one.
+     */
+    private int statementCacheSize;
+    private int prepareThreshold;
+    /**
+     * Prepared statements of the current connection, created on first use.
+     */
+    private StatementCache statementCache;
+    /**
+     * Asynchronous queries: how many run at once, each on its own pooled connection, and
+     * the Statement query timeout in seconds (0 for none).
+     */
+    private int queryParallelism;
+    private int queryTimeoutSeconds;
+    /**
+     * Runs the asynchronous queries, created on first use.
+     */
+    private QueryExecutor queryExecutor;
+    /**
+     * Where query1-3 run, and for the columnar backend its thread count and the column size
+     * above which values are kept off the Java heap.
+     */
+    private QueryBackend queryBackend;
+    private int columnarThreads;
+    private long columnarOffHeapBytes;
+    /**
+     * Embedded engine used by the columnar backend, created and loaded on first use.
+     */
+    private ColumnarEngine columnar;
+    /**
+     * Latency, throughput, commit and error metrics of this instance, and how main() dumps
+     * them: prometheus, json or none, to a file or to standard output when no file is set.
+     */
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private String metricsFormat;
+    private String metricsOutput;
+    /**
+     * Result export: file format, gzip flag and the directory exportQueries() writes to.
+     */
+    private ResultExporter.Format exportFormat;
+    private boolean exportGzip;
+    private Path exportDir;
+    /**
+     * Physical design applied by create(): the target database (NONE keeps the plain
+     * tables), the size up to which a table counts as small, and how many times
+     * tuneDesign() runs each query before and after applying it.
+     */
+    private DesignTarget designTarget;
+    private long designSmallTableBytes;
+    private int designTimingRuns;
+    /**
+     * Plan regression harness: the checked-in baseline file, timed runs per query, and
+     * how much slower than the baseline a query may get, as a factor and in milliseconds,
+     * before checkPlans() reports it.
+     */
+    private Path plansBaseline;
+    private int plansRuns;
+    private double plansMaxSlowdown;
+    private long plansMinRegressionMillis;
+    /**
+     * Whether create() adds the summary tables, insert() maintains them with every batch
+     * and query1 and query3 read them instead of the base tables.
+     */
+    private boolean summariesEnabled;
+    /**
+     * Binary row cache of the bundled data files: whether it is used, its directory, and
+     * whether sources are hashed on every run instead of when they look changed.
+     */
+    private boolean rowCacheEnabled;
+    private Path rowCacheDir;
+    private boolean rowCacheVerify;
+    /**
+     * Row cache, created on first use.
+     */
+    private RowCache rowCache;
+    /**
+     * Parts of a split, compressed data file decompressed at once.
+     */
+    private int decompressThreads;
+    /**
+     * Generated data: the TPC-H scale factor (0 loads the bundled data files instead), the
+     * seed, and the tuples per generated INSERT statement.
+     */
+    private double generateScale;
+    private long generateSeed;
+    private int generateRowsPerInsert;
+    /**
+     * Generator for the configured scale factor, created on first use.
+     */
+    private TpchGenerator generator;
+    /**
+     * Rows loaded by the last insert().
+     */
+    private long lastLoadedRows;
+
     /**
      * Constructor - loads database configuration from config.properties
      */
@@ -45,6 +345,18 @@ public class AmazonRedshift {
         loadConfig();
     }
 
+    /**
+     * Creates an instance from the given configuration that queries through an already
+     * open connection, for tests.
+     *
+     * @param props configuration with the keys of config.properties
+     * @param con connection to use instead of one from the pool
+     */
+    AmazonRedshift(Properties props, Connection con) {
+        configure(props);
+        this.con = con;
+    }
+
     /**
      * Loads database configuration from config.properties file.
      */
@@ -56,85 +368,463 @@ public class AmazonRedshift {
                 throw new RuntimeException("config.properties not found in resources");
             }
             props.load(input);
-            
-            url = props.getProperty("redshift.url");
-            uid = props.getProperty("redshift.username");
-            pw = props.getProperty("redshift.password");
-            
-            System.out.println("Configuration loaded successfully.");
         } catch (IOException e) {
             System.err.println("Error loading config.properties: " + e.getMessage());
             e.printStackTrace();
             throw new RuntimeException("Failed to load configuration", e);
         }
+        configure(props);
+        System.out.println("Configuration loaded successfully.");
+    }
+
+    /**
+     * Reads the settings from the configuration.
+     */
+    private void configure(Properties props) {
+
+        url = props.getProperty("redshift.url");
+        uid = props.getProperty("redshift.username");
+        pw = props.getProperty("redshift.password");
+        loadWorkers = Integer.parseInt(props.getProperty("redshift.load.workers", "1"));
+        loadChunkBytes = Long.parseLong(props.getProperty("redshift.load.chunk.bytes", "2097152"));
+        loadMode = LoadMode.fromConfig(props.getProperty("redshift.load.mode"));
+        adaptiveBatching = Boolean.parseBoolean(props.getProperty("redshift.load.adaptive", "true"));
+        batchBytes = Long.parseLong(props.getProperty("redshift.load.batch.bytes", "4194304"));
+        maxStatementBytes = Long.parseLong(props.getProperty("redshift.load.max.statement.bytes", "16777216"));
+        targetLatencyMillis = Long.parseLong(props.getProperty("redshift.load.target.latency.ms", "2000"));
+        minBatchRows = Integer.parseInt(props.getProperty("redshift.load.batch.min.rows", "100"));
+        maxBatchRows = Integer.parseInt(props.getProperty("redshift.load.batch.max.rows", "50000"));
+        pipelineExecutors = Integer.parseInt(props.getProperty("redshift.load.pipeline.executors", "0"));
+        pipelineQueueBatches = Integer.parseInt(props.getProperty("redshift.load.pipeline.queue.batches", "4"));
+        copyStagingDir = Paths.get(props.getProperty("redshift.copy.staging.dir",
+                Paths.get(System.getProperty("java.io.tmpdir"), "tpch-staging").toString()));
+        copyGzip = Boolean.parseBoolean(props.getProperty("redshift.copy.gzip", "false"));
+        copyS3Prefix = props.getProperty("redshift.copy.s3.prefix");
+        copyIamRole = props.getProperty("redshift.copy.iam.role");
+        checkpointEnabled = Boolean.parseBoolean(props.getProperty("redshift.load.checkpoint.enabled", "true"));
+        checkpointPath = Paths.get(props.getProperty("redshift.load.checkpoint",
+                Paths.get(System.getProperty("java.io.tmpdir"), "tpch-load.checkpoint").toString()));
+        reloadMinRowRatio = Double.parseDouble(props.getProperty("redshift.reload.min.row.ratio", "0.5"));
+        poolMinSize = Integer.parseInt(props.getProperty("redshift.min.connections", "1"));
+        poolMaxSize = Integer.parseInt(props.getProperty("redshift.max.connections", "10"));
+        poolMaxWaitMillis = Long.parseLong(props.getProperty("redshift.timeout", "30")) * 1000L;
+        poolValidateIdleMillis = Long.parseLong(props.getProperty("redshift.pool.validate.idle.ms", "30000"));
+        poolLeakThresholdMillis = Long.parseLong(props.getProperty("redshift.pool.leak.threshold.ms", "600000"));
+        fetchSize = Integer.parseInt(props.getProperty("redshift.fetch.size", "1000"));
+        cacheEnabled = Boolean.parseBoolean(props.getProperty("redshift.cache.enabled", "true"));
+        statementCacheSize = Integer.parseInt(props.getProperty("redshift.statement.cache.size", "32"));
+        prepareThreshold = Integer.parseInt(props.getProperty("redshift.prepare.threshold", "1"));
+        cacheMaxBytes = Long.parseLong(props.getProperty("redshift.cache.max.bytes", "67108864"));
+        cacheTtlMillis = Long.parseLong(props.getProperty("redshift.cache.ttl.ms", "0"));
+        queryParallelism = Integer.parseInt(props.getProperty("redshift.query.parallelism", "3"));
+        queryTimeoutSeconds = Integer.parseInt(props.getProperty("redshift.query.timeout.seconds", "0"));
+        queryBackend = QueryBackend.fromConfig(props.getProperty("redshift.query.backend"));
+        columnarThreads = Integer.parseInt(props.getProperty("redshift.columnar.threads",
+                Integer.toString(Runtime.getRuntime().availableProcessors())));
+        columnarOffHeapBytes = Long.parseLong(props.getProperty("redshift.columnar.offheap.bytes", "16777216"));
+        metricsFormat = props.getProperty("redshift.metrics.format", "prometheus").trim().toLowerCase();
+        metricsOutput = props.getProperty("redshift.metrics.output", "").trim();
+        exportFormat = ResultExporter.Format.fromConfig(props.getProperty("redshift.export.format"));
+        exportGzip = Boolean.parseBoolean(props.getProperty("redshift.export.gzip", "false"));
+        exportDir = Paths.get(props.getProperty("redshift.export.dir", "export"));
+        designTarget = DesignTarget.fromConfig(props.getProperty("redshift.design.mode"), url);
+        designSmallTableBytes = Long.parseLong(props.getProperty("redshift.design.small.table.bytes", "1048576"));
+        designTimingRuns = Integer.parseInt(props.getProperty("redshift.design.timing.runs", "3"));
+        plansBaseline = Paths.get(props.getProperty("redshift.plans.baseline",
+                "src/test/resources/plans/" + planTarget() + ".baseline"));
+        plansRuns = Integer.parseInt(props.getProperty("redshift.plans.runs", "5"));
+        plansMaxSlowdown = Double.parseDouble(props.getProperty("redshift.plans.max.slowdown", "1.5"));
+        plansMinRegressionMillis = Long.parseLong(props.getProperty("redshift.plans.min.regression.ms", "5"));
+        summariesEnabled = Boolean.parseBoolean(props.getProperty("redshift.summary.enabled", "false"));
+        rowCacheEnabled = Boolean.parseBoolean(props.getProperty("redshift.rowcache.enabled", "true"));
+        rowCacheDir = Paths.get(props.getProperty("redshift.rowcache.dir",
+                Paths.get(System.getProperty("java.io.tmpdir"), "tpch-rowcache").toString()));
+        rowCacheVerify = Boolean.parseBoolean(props.getProperty("redshift.rowcache.verify", "false"));
+        decompressThreads = Integer.parseInt(props.getProperty("redshift.data.decompress.threads",
+                String.valueOf(Math.min(4, Runtime.getRuntime().availableProcessors()))));
+        generateScale = Double.parseDouble(props.getProperty("redshift.generate.scale", "0"));
+        generateSeed = Long.parseLong(props.getProperty("redshift.generate.seed", "42"));
+        generateRowsPerInsert = Integer.parseInt(props.getProperty("redshift.generate.rows.per.insert", "100"));
     }
 
     /**
      * Main method is only used for convenience. Use JUnit test file to verify your answer.
      *
-     * @param args none expected
+     * @param args none expected; "compare-load" reloads the data with every load mode
+     *             and prints the timings, "export" writes the results of the queries
+     *             on the loaded data to the export directory, "resume" continues an
+     *             interrupted insert() from its checkpoint, "compare-design" loads the
+     *             plain tables and times the queries before and after applying the
+     *             physical design, "scale" followed by scale factors loads generated
+     *             data at each scale and prints load throughput and query latency,
+     *             "plans" compares the plans and latency of query1-3 with the checked-in
+     *             baseline and exits with status 1 on a regression, "plans record"
+     *             rewrites that baseline, "reload" replaces the data through staging
+     *             tables while the tables stay queryable
      * @throws SQLException if a database error occurs
      */
     public static void main(String[] args) throws SQLException {
         AmazonRedshift q = new AmazonRedshift();
         q.connect();
-        q.drop();
-        q.create();
-        q.insert();
         
-        System.out.println("\n=== Running Query 1 ===");
-        ResultSet rs1 = q.query1();
-        System.out.println(resultSetToString(rs1, 10));
+        if (args.length > 0 && args[0].equals("compare-load")) {
+            q.compareLoadModes(LoadMode.values());
+            q.close();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("resume")) {
+            q.insert();
+            q.close();
+            q.dumpMetrics();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("compare-design")) {
+            q.compareDesign();
+            q.close();
+            q.dumpMetrics();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("scale")) {
+            double[] scales = args.length > 1 ? new double[args.length - 1] : new double[]{0.01, 0.1, 1};
+            for (int i = 1; i < args.length; i++) {
+                scales[i - 1] = Double.parseDouble(args[i]);
+            }
+            q.benchmarkScale(scales);
+            q.close();
+            q.dumpMetrics();
+            return;
+        }
+        if (args.length > 0 && args[0].equals("plans")) {
+            boolean passed = true;
+            if (args.length > 1 && args[1].equals("record")) {
+                q.recordPlans();
+            } else {
+                passed = q.checkPlans().isEmpty();
+            }
+            q.close();
+            if (!passed) {
+                System.exit(1);
+            }
+            return;
+        }
+        if (args.length > 0 && args[0].equals("export")) {
+            q.exportQueries();
+            q.close();
+            q.dumpMetrics();
+            return;
+        }
         
-        System.out.println("\n=== Running Query 2 ===");
-        ResultSet rs2 = q.query2();
-        System.out.println(resultSetToString(rs2, 10));
+        CompletableFuture<Void> oldTablesDropped = CompletableFuture.completedFuture(null);
+        if (args.length > 0 && args[0].equals("reload")) {
+            oldTablesDropped = q.reload();
+        } else {
+            q.drop();
+            q.create();
+            q.insert();
+        }
         
-        System.out.println("\n=== Running Query 3 ===");
-        ResultSet rs3 = q.query3();
-        System.out.println(resultSetToString(rs3, 10));
+        // The three reports are independent, so they run concurrently
+        Map<String, ResultSet> report = q.runReport();
+        for (Map.Entry<String, ResultSet> result : report.entrySet()) {
+            System.out.println("\n=== Running Query " + result.getKey().substring("query".length()) + " ===");
+            System.out.println(resultSetToString(result.getValue(), 10));
+        }
         
+        if (q.summariesEnabled) {
+            q.checkSummaries();
+        }
+        if (q.resultCache() != null) {
+            System.out.println(q.resultCache().stats());
+        }
+        if (q.queryBackend != QueryBackend.COLUMNAR) {
+            System.out.println(q.statementCache().stats());
+        }
+        // A failed drop was reported; the next reload drops the old copies first
+        oldTablesDropped.exceptionally(e -> null).join();
         q.close();
+        q.dumpMetrics();
+    }
+
+    /**
+     * Returns the metrics recorded by this instance: redshift_phase_seconds and
+     * redshift_phase_errors_total per phase, and per table the batch latency, rows, bytes,
+     * commits and failed batches of the load.
+     *
+     * @return metrics registry
+     */
+    public MetricsRegistry metrics() {
+        return metrics;
+    }
+
+    /**
+     * Writes the metrics in the configured format to the configured file or to standard
+     * output.
+     */
+    public void dumpMetrics() {
+        String text;
+        switch (metricsFormat) {
+            case "none":
+                return;
+            case "json":
+                text = metrics.toJson() + "\n";
+                break;
+            case "prometheus":
+                text = metrics.toPrometheus();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown metrics format: " + metricsFormat
+                        + " (expected prometheus, json or none)");
+        }
+        if (metricsOutput.isEmpty()) {
+            System.out.println("\n=== Metrics ===");
+            System.out.print(text);
+            return;
+        }
+        try (PrintStream out = new PrintStream(metricsOutput, "UTF-8")) {
+            out.print(text);
+            System.out.println("Metrics written to " + metricsOutput);
+        } catch (IOException e) {
+            System.err.println("Error writing metrics: " + e.getMessage());
+        }
     }
 
     /**
      * Makes a connection to the database and returns connection to caller.
+     * The connection is borrowed from a shared pool that is created and warmed up on
+     * first use; calling connect() again while connected returns the same connection.
      *
      * @return connection
      * @throws SQLException if an error occurs
      */
     public Connection connect() throws SQLException {
+        if (queryBackend == QueryBackend.COLUMNAR) {
+            System.out.println("Using the embedded columnar engine; no database connection is opened.");
+            return null;
+        }
         System.out.println("Connecting to database.");
         
+        if (con != null && !con.isClosed()) {
+            return con;
+        }
+        try (MetricsRegistry.Timing timing = metrics.time("redshift_phase", "connect")) {
+            con = pool().borrow();
+            timing.success();
+        }
+        
+        if (con != null) {
+            System.out.println("Successfully connected to Redshift database!");
+        }
+        
+        return con;
+    }
+
+    /**
+     * Returns the pool for the configured URL and user, creating and warming it up on
+     * first use. The pool is closed by a shutdown hook, which also prints its statistics.
+     *
+     * @return connection pool
+     * @throws SQLException if the pool cannot be warmed up
+     */
+    private ConnectionPool pool() throws SQLException {
+        synchronized (POOLS) {
+            String key = url + "|" + uid;
+            ConnectionPool pool = POOLS.get(key);
+            if (pool == null) {
+                // The main connection stays borrowed while parallel load workers run
+                int maxSize = Math.max(poolMaxSize, Math.max(loadWorkers, queryParallelism) + 1);
+                pool = new ConnectionPool(this::openConnection, poolMinSize, maxSize, poolMaxWaitMillis,
+                        poolValidateIdleMillis, poolLeakThresholdMillis);
+                pool.warmUp();
+                POOLS.put(key, pool);
+                Runtime.getRuntime().addShutdownHook(new Thread(pool::close, "pool-shutdown"));
+            }
+            ConnectionPool registered = pool;
+            // A failed validation makes borrow() retry with another connection
+            metrics.gauge("redshift_pool_borrow_retries", registered::getValidationFailureCount);
+            metrics.gauge("redshift_pool_timeouts", registered::getTimeoutCount);
+            metrics.gauge("redshift_pool_active_connections", registered::getActiveCount);
+            return pool;
+        }
+    }
+
+    /**
+     * Returns the result cache for the configured URL and user, or null when caching is
+     * disabled.
+     *
+     * @return result cache or null
+     */
+    public ResultCache resultCache() {
+        if (!cacheEnabled) {
+            return null;
+        }
+        synchronized (CACHES) {
+            ResultCache cache = CACHES.computeIfAbsent(url + "|" + uid,
+                    k -> new ResultCache(cacheMaxBytes, cacheTtlMillis));
+            metrics.gauge("redshift_cache_hits", cache::getHitCount);
+            metrics.gauge("redshift_cache_misses", cache::getMissCount);
+            metrics.gauge("redshift_cache_evictions", cache::getEvictionCount);
+            metrics.gauge("redshift_cache_bytes", cache::getBytes);
+            return cache;
+        }
+    }
+
+    /**
+     * Starts a new data epoch after tables were dropped, created or loaded, so cached
+     * query results are not served any more.
+     */
+    private void dataChanged() {
+        ResultCache cache = resultCache();
+        if (cache != null) {
+            cache.bumpEpoch();
+        }
+        // Recreated tables invalidate prepared statements, and new data may call for new plans
+        if (statementCache != null) {
+            statementCache.clear();
+        }
+    }
+
+    /**
+     * Returns the prepared statement cache of the current connection, creating it on
+     * first use.
+     *
+     * @return statement cache
+     */
+    public synchronized StatementCache statementCache() {
+        if (statementCache == null) {
+            // close() replaces the cache, so the gauges read whichever one is current
+            metrics.gauge("redshift_statement_cache_hits", () -> statementCacheCount(StatementCache::getHitCount));
+            metrics.gauge("redshift_statement_cache_misses", () -> statementCacheCount(StatementCache::getMissCount));
+            metrics.gauge("redshift_statement_cache_evictions",
+                    () -> statementCacheCount(StatementCache::getEvictionCount));
+            statementCache = new StatementCache(con, statementCacheSize);
+        }
+        return statementCache;
+    }
+
+    /**
+     * Reads a counter of the current statement cache for the metrics, 0 when there is none.
+     */
+    private synchronized long statementCacheCount(ToLongFunction<StatementCache> counter) {
+        return statementCache == null ? 0 : counter.applyAsLong(statementCache);
+    }
+
+    /**
+     * Runs a parameterized query with a cached prepared statement, answering it from the
+     * result cache when enabled.
+     *
+     * @param sql query with ? placeholders
+     * @param params values for the placeholders
+     * @return in-memory copy of the result
+     * @throws SQLException if an error occurs
+     */
+    private ResultSet runQuery(String sql, Object... params) throws SQLException {
+        ResultCache.Query query = () -> statementCache().executeQuery(sql, params);
+        ResultCache cache = resultCache();
+        if (cache != null) {
+            return cache.get(sql + " -- " + Arrays.toString(params), query);
+        }
+        // Copy the rows, which closes the statement's result and returns it to the cache
+        // now instead of whenever the caller closes the result, if ever
+        return CachedResult.materialize(query.execute()).open();
+    }
+
+    /**
+     * Returns the embedded engine, creating it on first use.
+     *
+     * @return columnar engine
+     */
+    private synchronized ColumnarEngine columnar() {
+        if (columnar == null) {
+            columnar = new ColumnarEngine(columnarThreads, columnarOffHeapBytes);
+        }
+        return columnar;
+    }
+
+    /**
+     * Loads the data scripts into the embedded engine.
+     *
+     * @return rows loaded
+     * @throws SQLException if a script cannot be read
+     */
+    private long loadColumnar() throws SQLException {
+        try {
+            return columnar().load(dataOpener(), dataFiles(1), loadSchema());
+        } catch (IOException e) {
+            System.err.println("Error reading data file: " + e.getMessage());
+            throw new SQLException("Failed to load data into the columnar engine", e);
+        }
+    }
+
+    /**
+     * Returns the embedded engine for a query, loading it first if needed.
+     *
+     * @return loaded columnar engine
+     * @throws SQLException if the data cannot be loaded
+     */
+    private synchronized ColumnarEngine loadedColumnar() throws SQLException {
+        if (!columnar().isLoaded()) {
+            loadColumnar();
+        }
+        return columnar;
+    }
+
+    /**
+     * Opens a new physical connection with the configured URL and credentials.
+     * Used by the pool; everything else borrows from {@link #pool()}.
+     *
+     * @return new connection
+     * @throws SQLException if the driver is missing or the connection fails
+     */
+    private Connection openConnection() throws SQLException {
         try {
             // Load the Redshift JDBC driver
             Class.forName("com.amazon.redshift.jdbc42.Driver");
-            
-            // Establish connection
-            con = DriverManager.getConnection(url, uid, pw);
-            
-            if (con != null) {
-                System.out.println("Successfully connected to Redshift database!");
-            }
         } catch (ClassNotFoundException e) {
             System.err.println("Redshift JDBC Driver not found.");
             e.printStackTrace();
             throw new SQLException("Driver not found", e);
         }
         
-        return con;
+        Properties info = new Properties();
+        info.setProperty("user", uid);
+        info.setProperty("password", pw);
+        // Let the driver collapse PreparedStatement batches into multi-row INSERTs. Set on
+        // every pooled connection since the load mode can change between loads.
+        info.setProperty("reWriteBatchedInserts", "true");
+        // Prepare cached query statements on the server from their first execution
+        info.setProperty("prepareThreshold", String.valueOf(prepareThreshold));
+        
+        // Establish connection
+        return DriverManager.getConnection(url, info);
     }
 
     /**
-     * Closes connection to database.
+     * Closes connection to database, returning it to the pool.
      */
     public void close() {
+        if (queryExecutor != null) {
+            queryExecutor.close();
+            queryExecutor = null;
+        }
+        if (columnar != null) {
+            columnar.close();
+            columnar = null;
+        }
+        if (queryBackend == QueryBackend.COLUMNAR) {
+            return;
+        }
         System.out.println("Closing database connection.");
         
+        synchronized (this) {
+            if (statementCache != null) {
+                statementCache.close();
+                statementCache = null;
+            }
+        }
         try {
             if (con != null && !con.isClosed()) {
                 con.close();
-                System.out.println("Database connection closed successfully.");
+                System.out.println("Database connection returned to pool successfully.");
             }
         } catch (SQLException e) {
             System.err.println("Error closing connection: " + e.getMessage());
@@ -148,9 +838,19 @@ public class AmazonRedshift {
     public void drop() {
         System.out.println("Dropping all the tables");
         
-        String[] tables = {"lineitem", "orders", "partsupp", "part", "customer", "supplier", "nation", "region"};
+        if (queryBackend == QueryBackend.COLUMNAR) {
+            if (columnar != null) {
+                columnar.clear();
+            }
+            System.out.println("Columnar engine data dropped.");
+            return;
+        }
+        
+        String[] tables = {"order_revenue", "priority_counts",
+                "lineitem", "orders", "partsupp", "part", "customer", "supplier", "nation", "region"};
         
-        try (Statement stmt = con.createStatement()) {
+        try (MetricsRegistry.Timing timing = metrics.time("redshift_phase", "drop");
+             Statement stmt = con.createStatement()) {
             for (String table : tables) {
                 try {
                     String dropSQL = "DROP TABLE IF EXISTS " + table + " CASCADE";
@@ -161,21 +861,38 @@ public class AmazonRedshift {
                 }
             }
             System.out.println("All tables dropped successfully.");
+            timing.success();
         } catch (SQLException e) {
             System.err.println("Error dropping tables: " + e.getMessage());
             e.printStackTrace();
+        } finally {
+            dataChanged();
+            // Progress of an earlier load is meaningless once its tables are gone
+            try {
+                Files.deleteIfExists(checkpointPath);
+            } catch (IOException e) {
+                System.err.println("Warning: Could not delete load checkpoint " + checkpointPath + ": "
+                        + e.getMessage());
+            }
         }
     }
 
     /**
-     * Creates the database dev schema and all TPC-H tables.
+     * Creates the database dev schema and all TPC-H tables, then applies the physical
+     * design for the configured target (see {@link #physicalDesign()}).
      *
      * @throws SQLException if an error occurs
      */
     public void create() throws SQLException {
         System.out.println("Creating Tables");
         
-        try (Statement stmt = con.createStatement()) {
+        if (queryBackend == QueryBackend.COLUMNAR) {
+            // The engine reads tpch_create.sql when it loads the data
+            return;
+        }
+        
+        try (MetricsRegistry.Timing timing = metrics.time("redshift_phase", "create");
+             Statement stmt = con.createStatement()) {
             // Print current schema
             ResultSet rs = stmt.executeQuery("SELECT current_schema()");
             if (rs.next()) {
@@ -183,6 +900,23 @@ public class AmazonRedshift {
             }
             rs.close();
             
+            createTables(stmt, UnaryOperator.identity());
+            timing.success();
+        } finally {
+            dataChanged();
+        }
+    }
+
+    /**
+     * Runs the TPC-H create script, the summary tables if enabled and the physical
+     * design, with every statement mapped onto the tables to create.
+     *
+     * @param stmt statement to execute with
+     * @param tables rewrites the table names of a statement, e.g. to staging copies
+     * @throws SQLException if a statement fails or the create script cannot be read
+     */
+    private void createTables(Statement stmt, UnaryOperator<String> tables) throws SQLException {
+        try {
             // Read and execute the TPC-H create script from classpath resources
             String createScript = readResource("data/tpch_create.sql");
             
@@ -191,87 +925,303 @@ public class AmazonRedshift {
             for (String sql : statements) {
                 sql = sql.trim();
                 if (!sql.isEmpty()) {
-                    stmt.execute(sql);
+                    stmt.execute(tables.apply(sql));
                 }
             }
-            
-            System.out.println("All tables created successfully.");
         } catch (IOException e) {
             System.err.println("Error reading create script: " + e.getMessage());
             e.printStackTrace();
             throw new SQLException("Failed to read create script", e);
         }
+        
+        if (summariesEnabled) {
+            for (String sql : SummaryMaintainer.createStatements()) {
+                stmt.execute(tables.apply(sql));
+            }
+        }
+        
+        System.out.println("All tables created successfully.");
+        if (designTarget != DesignTarget.NONE) {
+            applyDesign(stmt, physicalDesign(), tables);
+        }
     }
 
     /**
-     * Loads TPC-H data into the database using multi-row INSERT statements.
+     * Loads TPC-H data into the database using the configured load mode: multi-row INSERT
+     * statements, PreparedStatement batches or COPY. Data files are streamed through
+     * {@link SqlScriptReader}, or mapped from the {@link RowCache} once converted, so memory
+     * use does not depend on file size. When more than
+     * one load worker is configured the INSERT modes load over several connections with
+     * {@link ParallelLoader}.
      *
      * @throws SQLException if an error occurs
      */
     public void insert() throws SQLException {
         System.out.println("Loading TPC-H Data");
+        long start = System.nanoTime();
+        long rows;
         
-        String[] dataFiles = {
-            "region.sql", "nation.sql", "customer.sql", "supplier.sql",
-            "part.sql", "partsupp.sql", "orders.sql", "lineitem.sql"
-        };
-        
-        // Disable autoCommit for batch processing
-        con.setAutoCommit(false);
-        
-        try (Statement stmt = con.createStatement()) {
-            for (String file : dataFiles) {
-                System.out.println("Loading data from: " + file);
-                String insertScript = readResource("data/" + file);
-                
-                // Parse individual INSERT statements and batch them into multi-row inserts
-                String[] inserts = insertScript.split(";");
-                List<String> valueClauses = new ArrayList<>();
-                String tableName = null;
-                int totalCount = 0;
-                
-                for (String sql : inserts) {
-                    sql = sql.trim();
-                    if (!sql.isEmpty() && sql.toLowerCase().startsWith("insert")) {
-                        // Extract table name and VALUES clause
-                        // Format: INSERT INTO tablename VALUES(...)
-                        int valuesIdx = sql.toLowerCase().indexOf("values");
-                        if (valuesIdx > 0) {
-                            if (tableName == null) {
-                                // Extract table name from first insert
-                                String insertPart = sql.substring(0, valuesIdx).trim();
-                                tableName = insertPart.replaceAll("(?i)insert\\s+into\\s+", "").trim();
-                            }
-                            
-                            // Extract the VALUES(...) part
-                            String valuesClause = sql.substring(valuesIdx + 6).trim(); // skip "values"
-                            valueClauses.add(valuesClause);
-                            
-                            // Execute multi-row insert when we reach batch size
-                            if (valueClauses.size() >= INSERT_BATCH_SIZE) {
-                                executeMultiRowInsert(stmt, tableName, valueClauses);
-                                totalCount += valueClauses.size();
-                                valueClauses.clear();
-                                con.commit();
-                                System.out.println("  Inserted " + totalCount + " records...");
-                            }
-                        }
-                    }
-                }
-                
-                // Insert any remaining rows
-                if (!valueClauses.isEmpty()) {
-                    executeMultiRowInsert(stmt, tableName, valueClauses);
-                    totalCount += valueClauses.size();
-                    valueClauses.clear();
+        // Results cached before or during the load are stale once rows arrive
+        dataChanged();
+        try (MetricsRegistry.Timing timing = metrics.time("redshift_phase", "insert")) {
+            if (queryBackend == QueryBackend.COLUMNAR) {
+                columnar().clear();
+                rows = loadColumnar();
+            } else {
+                LoadCheckpoint checkpoint = openCheckpoint();
+                rows = loadTables(checkpoint, "");
+                if (checkpoint != null) {
+                    checkpoint.delete();
                 }
-                
-                con.commit();
-                System.out.println("  Completed loading " + file + " (" + totalCount + " records)");
             }
-            
-            System.out.println("All data loaded successfully.");
-        } catch (IOException e) {
+            timing.success();
+        } finally {
+            dataChanged();
+        }
+        
+        double seconds = (System.nanoTime() - start) / 1e9;
+        lastLoadedRows = rows;
+        System.out.println(String.format("Loaded %d records in %.2f s (%.0f records/sec, mode %s)",
+                rows, seconds, rows / Math.max(seconds, 1e-9), loadMode));
+    }
+
+    /**
+     * Replaces the data without taking the tables offline. Each table is created and
+     * loaded as a staging copy next to the live one while queries keep reading the live
+     * tables; the copies' row counts are validated, and then all tables are swapped in one
+     * transaction with ALTER TABLE ... RENAME (see {@link StagingTables}), so query1-3
+     * never see an empty or half-loaded table. If loading or validation fails the live
+     * tables are left as they were. Summary tables are rebuilt on the staging copies
+     * before the swap. The reload does not keep a load checkpoint.
+     *
+     * @return completes when the previous copies of the tables have been dropped, which
+     *         happens in the background once the queries reading them have finished
+     * @throws SQLException if loading, validation or the swap fails
+     */
+    public CompletableFuture<Void> reload() throws SQLException {
+        System.out.println("Reloading TPC-H Data through staging tables");
+        if (queryBackend == QueryBackend.COLUMNAR) {
+            throw new SQLException("reload() swaps database tables; use insert() with the columnar backend");
+        }
+        long start = System.nanoTime();
+        List<String> baseTables = new ArrayList<>();
+        for (String file : DATA_FILES) {
+            baseTables.add(tableOf(file));
+        }
+        List<String> tables = new ArrayList<>(baseTables);
+        if (summariesEnabled) {
+            tables.addAll(SummaryMaintainer.TABLES);
+        }
+        StagingTables staging = new StagingTables(tables);
+        long rows;
+        
+        try (MetricsRegistry.Timing timing = metrics.time("redshift_phase", "reload")) {
+            // Copies left behind by an interrupted reload
+            staging.drop(con, StagingTables.STAGE_SUFFIX);
+            staging.drop(con, StagingTables.OLD_SUFFIX);
+            Set<String> existing = StagingTables.existing(con);
+            
+            try {
+                try (Statement stmt = con.createStatement()) {
+                    createTables(stmt, staging::stage);
+                }
+                rows = loadTables(null, StagingTables.STAGE_SUFFIX);
+                if (summariesEnabled) {
+                    con.setAutoCommit(false);
+                    try {
+                        SummaryMaintainer.rebuild(con, staging::stage);
+                        con.commit();
+                    } catch (SQLException e) {
+                        con.rollback();
+                        throw e;
+                    } finally {
+                        con.setAutoCommit(true);
+                    }
+                }
+                
+                List<String> live = new ArrayList<>(baseTables);
+                live.retainAll(existing);
+                List<String> problems = StagingTables.validate(
+                        StagingTables.countRows(con, baseTables, StagingTables.STAGE_SUFFIX),
+                        StagingTables.countRows(con, live, ""), rows, reloadMinRowRatio);
+                if (!problems.isEmpty()) {
+                    throw new SQLException("Staging tables failed validation: " + String.join("; ", problems));
+                }
+                // Fresh statistics, so the first queries on the new tables are planned well
+                try (Statement stmt = con.createStatement()) {
+                    for (String table : tables) {
+                        stmt.execute("ANALYZE " + table + StagingTables.STAGE_SUFFIX);
+                    }
+                }
+            } catch (SQLException e) {
+                try {
+                    staging.drop(con, StagingTables.STAGE_SUFFIX);
+                } catch (SQLException dropError) {
+                    e.addSuppressed(dropError);
+                }
+                throw e;
+            }
+            
+            staging.swap(con, existing);
+            timing.success();
+        }
+        // Cached results and prepared statements refer to the replaced tables
+        dataChanged();
+        
+        double seconds = (System.nanoTime() - start) / 1e9;
+        lastLoadedRows = rows;
+        System.out.println(String.format("Reloaded %d records in %.2f s and swapped %d tables (mode %s)",
+                rows, seconds, tables.size(), loadMode));
+        
+        ConnectionPool connections = pool();
+        return CompletableFuture.runAsync(() -> {
+            try (Connection c = connections.open()) {
+                staging.dropOld(c);
+                System.out.println("Dropped the previous copies of the reloaded tables.");
+            } catch (SQLException e) {
+                System.err.println("Warning: Could not drop the previous copies of the tables: " + e.getMessage());
+                throw new CompletionException(e);
+            }
+        });
+    }
+
+    /**
+     * Loads the data files with the configured load mode and worker count.
+     *
+     * @param checkpoint load progress, or null
+     * @param tableSuffix appended to every table name, e.g. to load staging copies;
+     *                    summary tables are only maintained during the load without one
+     * @return number of rows loaded
+     * @throws SQLException if an error occurs
+     */
+    private long loadTables(LoadCheckpoint checkpoint, String tableSuffix) throws SQLException {
+        if (loadMode == LoadMode.COPY) {
+            return insertCopy(checkpoint, tableSuffix);
+        } else if (loadWorkers > 1) {
+            return insertParallel(checkpoint, tableSuffix);
+        }
+        return insertSequential(checkpoint, tableSuffix);
+    }
+
+    /**
+     * Opens the load checkpoint, which identifies the database and the way the files are
+     * split so that progress is never applied to a different load.
+     *
+     * @return checkpoint, or null when checkpointing is disabled
+     * @throws SQLException if an existing checkpoint cannot be read or does not match
+     */
+    private LoadCheckpoint openCheckpoint() throws SQLException {
+        if (!checkpointEnabled) {
+            return null;
+        }
+        String layout = loadMode == LoadMode.COPY ? "copy"
+                : loadWorkers > 1 ? "chunks of " + loadChunkBytes + " bytes" : "whole files";
+        if (generateScale > 0) {
+            layout += ", generated at scale " + generateScale + " with seed " + generateSeed;
+        } else if (rowCacheEnabled) {
+            // Offsets point into the row files rather than the scripts
+            layout += ", row cache";
+        }
+        LoadCheckpoint checkpoint = LoadCheckpoint.open(checkpointPath, url + "|" + uid + "|" + layout);
+        if (checkpoint.isResuming()) {
+            System.out.println("Resuming load from checkpoint " + checkpointPath);
+        }
+        return checkpoint;
+    }
+
+    /**
+     * Counts the rows of a table, used to reconcile a checkpoint with the rows that were
+     * committed after its last write.
+     *
+     * @param table table name
+     * @return row count
+     * @throws SQLException if the query fails
+     */
+    private long countRows(String table) throws SQLException {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Returns the table a data file holds: its name up to the first dot, so generated
+     * parts such as orders.3.8.sql map to their table.
+     */
+    private static String tableOf(String file) {
+        return file.substring(0, file.indexOf('.'));
+    }
+
+    /**
+     * Loads the data files one after another over the single connection. With a
+     * checkpoint, files loaded by an earlier run are skipped and a partly loaded file
+     * continues after its last committed row; the table's row count decides where, so a
+     * batch committed just before a crash is not loaded twice.
+     *
+     * @param checkpoint load progress, or null
+     * @param tableSuffix appended to every table name
+     * @return number of rows loaded
+     * @throws SQLException if an error occurs
+     */
+    private long insertSequential(LoadCheckpoint checkpoint, String tableSuffix) throws SQLException {
+        Map<String, TableSchema> schema = loadSchema();
+        System.out.println("Load mode: " + loadMode);
+        long rows = 0;
+        
+        // Disable autoCommit for batch processing
+        con.setAutoCommit(false);
+        
+        AdaptiveBatchSizer sizer = batchSizer();
+        boolean maintainSummaries = summariesEnabled && tableSuffix.isEmpty();
+        
+        try (TableLoader loader = TableLoader.create(loadMode, con, sizer, true, schema, metrics)
+                .withBatchHook(maintainSummaries ? new SummaryMaintainer(schema) : null)
+                .withTableSuffix(tableSuffix);
+             PipelinedLoader pipeline = newPipeline(sizer, checkpoint, tableSuffix)) {
+            for (String file : dataFiles(1)) {
+                String table = tableOf(file);
+                LoadCheckpoint.Entry entry = checkpoint == null ? null : checkpoint.get(file, 0);
+                if (entry != null && entry.isDone()) {
+                    System.out.println("Skipping " + file + " (" + entry.getRows()
+                            + " records loaded by an earlier run)");
+                    continue;
+                }
+                System.out.println("Loading data from: " + file);
+                try (TupleReader reader = openReader("data/" + file)) {
+                    long loaded = 0;
+                    if (checkpoint != null && checkpoint.isResuming()) {
+                        long committed = countRows(table);
+                        long recorded = entry == null ? 0 : entry.getRows();
+                        if (committed < recorded) {
+                            throw new SQLException("Table " + table + " has " + committed + " rows but the checkpoint "
+                                    + "recorded " + recorded + "; drop() the tables to start over");
+                        }
+                        // Rows committed after the last checkpoint write are skipped as well
+                        reader.resume(entry == null ? 0 : entry.getOffset(),
+                                (entry == null ? 0 : entry.getTuples()) + committed - recorded);
+                        loaded = committed;
+                        if (loaded > 0) {
+                            System.out.println("  Resuming after " + loaded + " committed records");
+                        }
+                    }
+                    long before = loaded;
+                    TableLoader.CommitListener listener = checkpoint == null ? null
+                            : (t, offset, tuples, count) ->
+                                    checkpoint.committed(file, 0, table, offset, tuples, before + count);
+                    long totalCount = pipeline != null ? pipeline.load(reader, Long.MAX_VALUE, listener)
+                            : loader.load(reader, Long.MAX_VALUE, listener);
+                    if (checkpoint != null) {
+                        checkpoint.done(file, 0, table, loaded + totalCount);
+                    }
+                    rows += totalCount;
+                    System.out.println("  Completed loading " + file + " (" + totalCount + " records)");
+                }
+            }
+            
+            sizer.report();
+            System.out.println("All data loaded successfully.");
+        } catch (IOException e) {
             con.rollback();
             System.err.println("Error reading data file: " + e.getMessage());
             e.printStackTrace();
@@ -283,34 +1233,461 @@ public class AmazonRedshift {
             // Re-enable autoCommit
             con.setAutoCommit(true);
         }
+        return rows;
     }
 
     /**
-     * Executes a multi-row INSERT statement.
+     * Creates the pipelined loader used by insertSequential() when it is configured. It
+     * only builds literal multi-row INSERTs, and summary tables are maintained inside
+     * each batch transaction, so the other cases keep the single-threaded loader. With a
+     * checkpoint a single executor is used: resuming relies on the rows of a file being
+     * committed in script order.
      *
-     * @param stmt Statement object
-     * @param tableName target table name
-     * @param valueClauses list of VALUES(...) clauses
-     * @throws SQLException if execution fails
+     * @param sizer batch sizer shared with the single-threaded loader
+     * @param checkpoint load progress, or null
+     * @param tableSuffix appended to every table name; summary tables are only
+     *                    maintained without one
+     * @return pipelined loader, or null to load on the calling thread
+     * @throws SQLException if an executor connection cannot be opened
      */
-    private void executeMultiRowInsert(Statement stmt, String tableName, List<String> valueClauses) 
-            throws SQLException {
-        if (valueClauses.isEmpty()) {
-            return;
+    private PipelinedLoader newPipeline(AdaptiveBatchSizer sizer, LoadCheckpoint checkpoint,
+                                        String tableSuffix) throws SQLException {
+        if (pipelineExecutors <= 0) {
+            return null;
         }
+        if (loadMode != LoadMode.MULTIROW || summariesEnabled && tableSuffix.isEmpty()) {
+            System.out.println("Pipelined load needs redshift.load.mode=multirow without summary tables; "
+                    + "loading on one thread");
+            return null;
+        }
+        int executors = checkpoint == null ? pipelineExecutors : 1;
+        System.out.println("Pipelined load: " + executors + " executor(s), " + pipelineQueueBatches
+                + " batches per queue");
+        return new PipelinedLoader(con, pool(), executors, sizer, pipelineQueueBatches, true, metrics)
+                .withTableSuffix(tableSuffix);
+    }
+
+    /**
+     * Loads the data files over several connections, ordered by the foreign keys
+     * declared in tpch_create.sql.
+     *
+     * @param checkpoint load progress per chunk, or null
+     * @param tableSuffix appended to every table name
+     * @return number of rows loaded
+     * @throws SQLException if an error occurs
+     */
+    private long insertParallel(LoadCheckpoint checkpoint, String tableSuffix) throws SQLException {
+        Map<String, TableSchema> schema = loadSchema();
+        System.out.println("Load mode: " + loadMode + ", workers: " + loadWorkers);
         
-        // Build multi-row insert: INSERT INTO table VALUES (...), (...), (...)
-        StringBuilder multiRowInsert = new StringBuilder();
-        multiRowInsert.append("INSERT INTO ").append(tableName).append(" VALUES ");
+        AdaptiveBatchSizer sizer = batchSizer();
+        // Generated tables are split into parts by key range, one chunk each, so no
+        // worker has to generate and skip the rows before its chunk
+        List<String> files = dataFiles(loadWorkers * 2);
+        ParallelLoader loader = new ParallelLoader(pool(), dataOpener(),
+                loadWorkers, generator == null ? loadChunkBytes : Long.MAX_VALUE,
+                c -> TableLoader.create(loadMode, c, sizer, false, schema, metrics)
+                        .withBatchHook(summariesEnabled && tableSuffix.isEmpty() ? new SummaryMaintainer(schema) : null)
+                        .withTableSuffix(tableSuffix), checkpoint);
+        long rows = loader.load(files, schema);
+        sizer.report();
+        System.out.println("All data loaded successfully.");
+        return rows;
+    }
+
+    /**
+     * Converts every data file into a CSV staging file and ingests it with COPY. Each
+     * file is copied in one transaction, so with a checkpoint a file is either skipped
+     * or loaded again as a whole.
+     *
+     * @param checkpoint load progress per file, or null
+     * @param tableSuffix appended to every table name
+     * @return number of rows loaded
+     * @throws SQLException if an error occurs
+     */
+    private long insertCopy(LoadCheckpoint checkpoint, String tableSuffix) throws SQLException {
+        System.out.println("Load mode: COPY, staging in " + copyStagingDir);
+        CsvStager stager = new CsvStager(copyStagingDir, copyGzip);
+        CopyLoader copier = new CopyLoader(con, copyS3Prefix, copyIamRole);
+        long rows = 0;
+        long stageNanos = 0;
+        long copyNanos = 0;
         
-        for (int i = 0; i < valueClauses.size(); i++) {
-            if (i > 0) {
-                multiRowInsert.append(", ");
+        con.setAutoCommit(false);
+        try {
+            for (String file : dataFiles(1)) {
+                String table = tableOf(file);
+                LoadCheckpoint.Entry entry = checkpoint == null ? null : checkpoint.get(file, 0);
+                // A COPY that committed just before its checkpoint write shows up as rows
+                long committed = entry == null && checkpoint != null && checkpoint.isResuming() ? countRows(table) : 0;
+                if (entry != null || committed > 0) {
+                    System.out.println("  Skipped " + file + " (loaded by an earlier run)");
+                    if (entry == null) {
+                        checkpoint.done(file, 0, table, committed);
+                    }
+                    continue;
+                }
+                long t0 = System.nanoTime();
+                CsvStager.StagedFile staged = stager.stage(openReader("data/" + file));
+                long t1 = System.nanoTime();
+                stageNanos += t1 - t0;
+                if (staged == null) {
+                    System.out.println("  Skipped " + file + " (no records)");
+                    continue;
+                }
+                long copied;
+                try {
+                    copied = copier.copy(staged, staged.getTable() + tableSuffix);
+                } catch (SQLException e) {
+                    metrics.counter("redshift_batch_errors_total", "table", table).increment();
+                    throw e;
+                }
+                long elapsed = System.nanoTime() - t1;
+                copyNanos += elapsed;
+                rows += copied;
+                // One COPY is one batch and one commit
+                metrics.histogram("redshift_batch_seconds", "table", table).record(elapsed);
+                metrics.counter("redshift_rows_total", "table", table).add(copied);
+                metrics.counter("redshift_bytes_total", "table", table).add(Files.size(staged.getPath()));
+                metrics.counter("redshift_commits_total", "table", table).increment();
+                if (checkpoint != null) {
+                    checkpoint.done(file, 0, table, copied);
+                }
+                System.out.println("  Completed loading " + file + " (" + copied + " records, staged "
+                        + Files.size(staged.getPath()) + " bytes)");
             }
-            multiRowInsert.append(valueClauses.get(i));
+            if (summariesEnabled && tableSuffix.isEmpty()) {
+                // COPY bypasses the batch hook, so the summaries are computed once at the end
+                SummaryMaintainer.rebuild(con);
+                con.commit();
+                System.out.println("  Rebuilt summary tables");
+            }
+            System.out.println(String.format("All data loaded successfully (staging %.2f s, COPY %.2f s).",
+                    stageNanos / 1e9, copyNanos / 1e9));
+        } catch (IOException e) {
+            con.rollback();
+            System.err.println("Error staging data file: " + e.getMessage());
+            e.printStackTrace();
+            throw new SQLException("Failed to load data", e);
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+        }
+        return rows;
+    }
+
+    /**
+     * Reloads the data once per load mode and prints the throughput of each, so the
+     * COPY path can be compared with the INSERT paths on the same data. Drops and
+     * recreates the tables before every run.
+     *
+     * @param modes load modes to compare
+     * @throws SQLException if an error occurs
+     */
+    public void compareLoadModes(LoadMode... modes) throws SQLException {
+        LoadMode configured = loadMode;
+        StringBuilder summary = new StringBuilder("Load mode comparison:\n");
+        try {
+            for (LoadMode mode : modes) {
+                loadMode = mode;
+                drop();
+                create();
+                long start = System.nanoTime();
+                insert();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                summary.append(String.format("  %-8s %8.2f s%n", mode, seconds));
+            }
+        } finally {
+            loadMode = configured;
+        }
+        System.out.print(summary);
+    }
+
+    /**
+     * Derives the physical design for the configured target from query1-3, with table
+     * sizes estimated from the sizes of their data files.
+     *
+     * @return design, empty when the target is NONE
+     * @throws SQLException if the create script cannot be read
+     */
+    public PhysicalDesigner.Design physicalDesign() throws SQLException {
+        Map<String, Long> tableBytes = new HashMap<>();
+        TpchGenerator generated = generator();
+        for (String file : DATA_FILES) {
+            String table = tableOf(file);
+            tableBytes.put(table, generated != null ? generated.estimatedBytes(table) : resourceSize("data/" + file));
+        }
+        PhysicalDesigner designer = new PhysicalDesigner(loadSchema(), tableBytes, designSmallTableBytes);
+        designer.addQuery("query1", QUERY1_SQL);
+        designer.addQuery("query2", QUERY2_SQL);
+        designer.addQuery("query3", QUERY3_SQL);
+        return designer.design(designTarget);
+    }
+
+    /**
+     * Runs the statements of a design. A statement the database rejects, for instance an
+     * encoding an older Redshift release does not know, is reported and skipped, since
+     * the tables are usable without it.
+     *
+     * @param stmt statement to execute with
+     * @param design design to apply
+     * @param tables rewrites the table names of a statement, e.g. to staging copies
+     */
+    private void applyDesign(Statement stmt, PhysicalDesigner.Design design, UnaryOperator<String> tables) {
+        System.out.print(design.describe());
+        int applied = 0;
+        for (String sql : design.getStatements()) {
+            sql = tables.apply(sql);
+            try {
+                stmt.execute(sql);
+                applied++;
+            } catch (SQLException e) {
+                System.err.println("Warning: Could not apply " + sql + ": " + e.getMessage());
+            }
+        }
+        System.out.println("Applied " + applied + " of " + design.getStatements().size()
+                + " physical design statements.");
+    }
+
+    /**
+     * Times query1-3 on the loaded tables, applies the physical design, refreshes the
+     * planner statistics and times them again. The queries bypass the result cache.
+     *
+     * @return latency of each query before and after
+     * @throws SQLException if a query fails
+     */
+    public PhysicalDesigner.Report tuneDesign() throws SQLException {
+        PhysicalDesigner.Design design = physicalDesign();
+        Map<String, Long> before = timeQueries();
+        try (MetricsRegistry.Timing timing = metrics.time("redshift_phase", "design");
+             Statement stmt = con.createStatement()) {
+            applyDesign(stmt, design, UnaryOperator.identity());
+            for (String file : DATA_FILES) {
+                stmt.execute("ANALYZE " + tableOf(file));
+            }
+            timing.success();
+        } finally {
+            dataChanged();
+        }
+        Map<String, Long> after = timeQueries();
+        PhysicalDesigner.Report report = new PhysicalDesigner.Report();
+        for (String query : before.keySet()) {
+            report.add(query, before.get(query), after.get(query));
+        }
+        return report;
+    }
+
+    /**
+     * Loads the tables without a physical design, then measures what the design gains
+     * with {@link #tuneDesign()} and prints the comparison.
+     *
+     * @throws SQLException if an error occurs
+     */
+    public void compareDesign() throws SQLException {
+        DesignTarget configured = designTarget;
+        if (configured == DesignTarget.NONE) {
+            System.out.println("No physical design target for " + url + "; set redshift.design.mode");
+            return;
+        }
+        try {
+            designTarget = DesignTarget.NONE;
+            drop();
+            create();
+            insert();
+        } finally {
+            designTarget = configured;
+        }
+        System.out.print(tuneDesign());
+    }
+
+    /**
+     * Runs each of query1-3 designTimingRuns times, reading every row.
+     *
+     * @return median latency in nanoseconds by query name
+     * @throws SQLException if a query fails
+     */
+    private Map<String, Long> timeQueries() throws SQLException {
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("query1", QUERY1_SQL);
+        queries.put("query2", QUERY2_SQL);
+        queries.put("query3", QUERY3_SQL);
+        Map<String, Long> medians = new LinkedHashMap<>();
+        try (Statement stmt = con.createStatement()) {
+            for (Map.Entry<String, String> query : queries.entrySet()) {
+                medians.put(query.getKey(), QueryBaseline.medianNanos(stmt, query.getValue(), designTimingRuns));
+            }
+        }
+        return medians;
+    }
+
+    /**
+     * Returns the name plan baselines are kept under for the configured database, so
+     * that Redshift and the PostgreSQL stand-in each compare against their own plans.
+     */
+    private String planTarget() {
+        return DesignTarget.fromConfig("auto", url).name().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Captures the plan of query1-3 as they run on the database, with the rows their
+     * scans read, and their median latency over plansRuns runs. PostgreSQL plans come
+     * from EXPLAIN ANALYZE; Redshift has no EXPLAIN ANALYZE, so its plans are estimates.
+     *
+     * @return captured plans and timings
+     * @throws SQLException if a query fails
+     */
+    public QueryBaseline capturePlans() throws SQLException {
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("query1", query1Sql());
+        queries.put("query2", QUERY2_SQL);
+        queries.put("query3", query3Sql());
+        try (MetricsRegistry.Timing timing = metrics.time("redshift_phase", "plans")) {
+            QueryBaseline plans = QueryBaseline.capture(con, planTarget(), queries, plansRuns,
+                    DesignTarget.fromConfig("auto", url) == DesignTarget.POSTGRES);
+            timing.success();
+            return plans;
+        }
+    }
+
+    /**
+     * Captures the plans of query1-3 and writes them as the new baseline.
+     *
+     * @throws SQLException if a query fails or the baseline cannot be written
+     */
+    public void recordPlans() throws SQLException {
+        QueryBaseline plans = capturePlans();
+        try {
+            plans.write(plansBaseline);
+        } catch (IOException e) {
+            throw new SQLException("Cannot write plan baseline " + plansBaseline, e);
+        }
+        System.out.print(plans);
+        System.out.println("Wrote plan baseline " + plansBaseline);
+    }
+
+    /**
+     * Captures the plans of query1-3 and compares them with the checked-in baseline.
+     *
+     * @return one message per query whose plan changed or whose latency regressed
+     * @throws SQLException if a query fails or the baseline cannot be read
+     */
+    public List<String> checkPlans() throws SQLException {
+        QueryBaseline baseline;
+        try {
+            baseline = QueryBaseline.read(plansBaseline);
+        } catch (IOException e) {
+            throw new SQLException("Cannot read plan baseline " + plansBaseline
+                    + "; record one with \"plans record\"", e);
+        }
+        QueryBaseline current = capturePlans();
+        System.out.print(current);
+        List<String> regressions = current.regressions(baseline, plansMaxSlowdown,
+                plansMinRegressionMillis * 1_000_000L);
+        if (regressions.isEmpty()) {
+            System.out.println("Plans and latency match " + plansBaseline);
+        }
+        for (String regression : regressions) {
+            System.out.println("REGRESSION " + regression);
+        }
+        return regressions;
+    }
+
+    /**
+     * Returns the text of query #1 for the database backend.
+     *
+     * @return summary query when summaries are enabled, base query otherwise
+     */
+    private String query1Sql() {
+        return summariesEnabled ? SUMMARY_QUERY1_SQL : QUERY1_SQL;
+    }
+
+    /**
+     * Returns the text of query #3 for the database backend.
+     *
+     * @return summary query when summaries are enabled, base query otherwise
+     */
+    private String query3Sql() {
+        return summariesEnabled ? SUMMARY_QUERY3_SQL : QUERY3_SQL;
+    }
+
+    /**
+     * Checks the summary tables against the base tables: every row of both summaries is
+     * compared with the aggregate recomputed from orders and lineitem, and query #3 is
+     * run on both paths. query #1 is covered by the row comparison, since its LIMIT does
+     * not break ties between orders of the same date.
+     *
+     * @return true if the summaries and both query paths agree
+     * @throws SQLException if a query fails
+     */
+    public boolean checkSummaries() throws SQLException {
+        SummaryMaintainer.Consistency consistency = SummaryMaintainer.check(con);
+        System.out.println(consistency);
+        String base;
+        String summary;
+        try (Statement stmt = con.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery(QUERY3_SQL)) {
+                base = resultSetToString(rs, Integer.MAX_VALUE);
+            }
+            try (ResultSet rs = stmt.executeQuery(SUMMARY_QUERY3_SQL)) {
+                summary = resultSetToString(rs, Integer.MAX_VALUE);
+            }
+        }
+        boolean queriesMatch = base.equals(summary);
+        System.out.println(queriesMatch ? "query3: base and summary results match"
+                : "query3: base and summary results differ\n--- base\n" + base + "\n--- summary\n" + summary);
+        return consistency.isConsistent() && queriesMatch;
+    }
+
+    /**
+     * Recomputes the summary tables from the base tables, e.g. after checkSummaries()
+     * found a difference.
+     *
+     * @throws SQLException if an error occurs
+     */
+    public void rebuildSummaries() throws SQLException {
+        con.setAutoCommit(false);
+        try {
+            SummaryMaintainer.rebuild(con);
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(true);
+            dataChanged();
+        }
+    }
+
+    /**
+     * Returns the batch sizer from the configuration, creating it on first use. The row
+     * limits it learned carry over to later loads of this instance.
+     *
+     * @return adaptive sizer, or a fixed one when adaptive batching is disabled
+     */
+    private synchronized AdaptiveBatchSizer batchSizer() {
+        if (batchSizer == null) {
+            batchSizer = adaptiveBatching ? new AdaptiveBatchSizer(INSERT_BATCH_SIZE, minBatchRows, maxBatchRows,
+                    batchBytes, maxStatementBytes, targetLatencyMillis, true)
+                    : AdaptiveBatchSizer.fixed(INSERT_BATCH_SIZE);
+        }
+        return batchSizer;
+    }
+
+    /**
+     * Parses the table definitions in tpch_create.sql.
+     *
+     * @return tables keyed by lower-case name
+     * @throws SQLException if the script cannot be read
+     */
+    private Map<String, TableSchema> loadSchema() throws SQLException {
+        try {
+            return TableSchema.parse(readResource("data/tpch_create.sql"));
+        } catch (IOException e) {
+            System.err.println("Error reading create script: " + e.getMessage());
+            throw new SQLException("Failed to read create script", e);
         }
-        
-        stmt.execute(multiRowInsert.toString());
     }
 
     /**
@@ -321,14 +1698,190 @@ public class AmazonRedshift {
      * @throws IOException if the resource is not found or cannot be read
      */
     private String readResource(String resourcePath) throws IOException {
-        try (InputStream in = getClass().getClassLoader().getResourceAsStream(resourcePath)) {
-            if (in == null) {
-                throw new IOException("Resource not found on classpath: " + resourcePath);
-            }
+        try (InputStream in = openResource(resourcePath)) {
             return new String(in.readAllBytes());
         }
     }
 
+    /**
+     * Returns the generator for the configured scale factor.
+     *
+     * @return generator, or null when the bundled data files are loaded
+     * @throws SQLException if the create script cannot be read
+     */
+    private TpchGenerator generator() throws SQLException {
+        if (generateScale <= 0) {
+            return null;
+        }
+        if (generator == null) {
+            generator = new TpchGenerator(loadSchema(), generateScale, generateSeed, generateRowsPerInsert);
+            System.out.println("Generating TPC-H data at scale factor " + generateScale + " (seed " + generateSeed + ")");
+        }
+        return generator;
+    }
+
+    /**
+     * Returns the data files to load: the bundled files, or the generated tables split
+     * into parts.
+     *
+     * @param parts parts per generated table
+     * @return file names under data/, in load order
+     * @throws SQLException if the create script cannot be read
+     */
+    private List<String> dataFiles(int parts) throws SQLException {
+        TpchGenerator generated = generator();
+        return generated == null ? DATA_FILES : generated.files(parts);
+    }
+
+    /**
+     * Opens a data file returned by {@link #dataFiles(int)}, generating it when a scale
+     * factor is configured.
+     *
+     * @param resourcePath path such as "data/lineitem.sql"
+     * @return open stream; the caller closes it
+     * @throws IOException if the file is not found
+     */
+    private InputStream openData(String resourcePath) throws IOException {
+        return generator != null ? generator.open(resourcePath) : openResource(resourcePath);
+    }
+
+    /**
+     * Opens the tuples of a data file returned by {@link #dataFiles(int)}. Bundled files
+     * are read from the row cache when it is enabled, converting them on first use.
+     *
+     * @param resourcePath path such as "data/lineitem.sql"
+     * @return reader; the caller closes it
+     * @throws IOException if the file is not found or cannot be cached
+     */
+    private TupleReader openReader(String resourcePath) throws IOException {
+        if (generator != null || !rowCacheEnabled) {
+            return new SqlScriptReader(openData(resourcePath));
+        }
+        return rowCache().open(findResource(resourcePath));
+    }
+
+    /**
+     * Returns the data files as streams and readers, for the loaders that open them.
+     *
+     * @return opener backed by {@link #openData} and {@link #openReader}
+     */
+    private ParallelLoader.ResourceOpener dataOpener() {
+        return new ParallelLoader.ResourceOpener() {
+            @Override
+            public InputStream open(String path) throws IOException {
+                return openData(path);
+            }
+
+            @Override
+            public TupleReader openReader(String path) throws IOException {
+                return AmazonRedshift.this.openReader(path);
+            }
+        };
+    }
+
+    /**
+     * Returns the row cache, creating it on first use.
+     *
+     * @return row cache
+     * @throws IOException if the create script cannot be read
+     */
+    private synchronized RowCache rowCache() throws IOException {
+        if (rowCache == null) {
+            try {
+                rowCache = new RowCache(rowCacheDir, loadSchema(), rowCacheVerify);
+            } catch (SQLException e) {
+                throw new IOException("Cannot read the schema for the row cache", e);
+            }
+        }
+        return rowCache;
+    }
+
+    /**
+     * Loads generated data at each scale factor in turn and prints the load throughput and
+     * the latency of the three queries, read to the last row, at each. Drops and recreates
+     * the tables before every run.
+     *
+     * @param scales TPC-H scale factors
+     * @throws SQLException if an error occurs
+     */
+    public void benchmarkScale(double... scales) throws SQLException {
+        double configured = generateScale;
+        StringBuilder summary = new StringBuilder("Scale factor comparison:\n");
+        summary.append(String.format("  %8s %12s %10s %12s %10s %10s %10s%n",
+                "scale", "rows", "load s", "rows/s", "query1 ms", "query2 ms", "query3 ms"));
+        try {
+            for (double scale : scales) {
+                generateScale = scale;
+                generator = null;
+                drop();
+                create();
+                long start = System.nanoTime();
+                insert();
+                double seconds = (System.nanoTime() - start) / 1e9;
+                double[] millis = new double[3];
+                for (int q = 0; q < millis.length; q++) {
+                    long t0 = System.nanoTime();
+                    try (ResultSet rs = q == 0 ? query1() : q == 1 ? query2() : query3()) {
+                        ResultExporter.count(rs);
+                    }
+                    millis[q] = (System.nanoTime() - t0) / 1e6;
+                }
+                summary.append(String.format("  %8s %12d %10.2f %12.0f %10.1f %10.1f %10.1f%n", scale,
+                        lastLoadedRows, seconds, lastLoadedRows / Math.max(seconds, 1e-9),
+                        millis[0], millis[1], millis[2]));
+            }
+        } finally {
+            generateScale = configured;
+            generator = null;
+        }
+        System.out.print(summary);
+    }
+
+    /**
+     * Returns the size of a classpath resource after decompression.
+     *
+     * @param resourcePath path within classpath (e.g., "data/lineitem.sql")
+     * @return size in bytes, 0 if the resource is missing or its size is unknown
+     */
+    private long resourceSize(String resourcePath) {
+        DataResource resource = DataResource.find(getClass().getClassLoader(), resourcePath, decompressThreads);
+        if (resource == null) {
+            return 0;
+        }
+        try {
+            return Math.max(0, resource.contentLength());
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Finds a classpath resource, which may be stored as a gzip or zstd file or split into
+     * parts (see {@link DataResource}).
+     *
+     * @param resourcePath path within classpath (e.g., "data/lineitem.sql")
+     * @return the resource
+     * @throws IOException if no variant of the resource is found
+     */
+    private DataResource findResource(String resourcePath) throws IOException {
+        DataResource resource = DataResource.find(getClass().getClassLoader(), resourcePath, decompressThreads);
+        if (resource == null) {
+            throw new IOException("Resource not found on classpath: " + resourcePath);
+        }
+        return resource;
+    }
+
+    /**
+     * Opens a classpath resource for streaming, decompressing it if it is stored compressed.
+     *
+     * @param resourcePath path within classpath (e.g., "data/lineitem.sql")
+     * @return open stream; the caller closes it
+     * @throws IOException if the resource is not found
+     */
+    private InputStream openResource(String resourcePath) throws IOException {
+        return findResource(resourcePath).open();
+    }
+
     /**
      * Query returns the most recent top 10 orders with the total sale and the date of the order
      * for customers in America.
@@ -337,24 +1890,26 @@ public class AmazonRedshift {
      * @throws SQLException if an error occurs
      */
     public ResultSet query1() throws SQLException {
+        return query1(QUERY1_REGION);
+    }
+
+    /**
+     * Query #1 for the customers of any region, run with a cached prepared statement so
+     * that calls for other regions reuse the server-side plan.
+     *
+     * @param region r_name of the customers' region, e.g. "ASIA"
+     * @return ResultSet
+     * @throws SQLException if an error occurs
+     */
+    public ResultSet query1(String region) throws SQLException {
         System.out.println("Executing query #1.");
         
-        String sql = 
-            "SELECT o.o_orderkey, " +
-            "       o.o_orderdate, " +
-            "       SUM(l.l_extendedprice * (1 - l.l_discount)) AS total_sale " +
-            "FROM orders o " +
-            "JOIN lineitem l ON o.o_orderkey = l.l_orderkey " +
-            "JOIN customer c ON o.o_custkey = c.c_custkey " +
-            "JOIN nation n ON c.c_nationkey = n.n_nationkey " +
-            "JOIN region r ON n.n_regionkey = r.r_regionkey " +
-            "WHERE r.r_name = 'AMERICA' " +
-            "GROUP BY o.o_orderkey, o.o_orderdate " +
-            "ORDER BY o.o_orderdate DESC " +
-            "LIMIT 10";
-        
-        Statement stmt = con.createStatement();
-        return stmt.executeQuery(sql);
+        try (MetricsRegistry.Timing timing = metrics.time("redshift_phase", "query1")) {
+            ResultSet rs = queryBackend == QueryBackend.COLUMNAR ? loadedColumnar().query1(region)
+                    : runQuery(summariesEnabled ? SUMMARY_QUERY1_PREPARED_SQL : QUERY1_PREPARED_SQL, region);
+            timing.success();
+            return rs;
+        }
     }
 
     /**
@@ -366,31 +1921,27 @@ public class AmazonRedshift {
      * @throws SQLException if an error occurs
      */
     public ResultSet query2() throws SQLException {
+        return query2(QUERY2_EXCLUDED_REGION, QUERY2_PRIORITY);
+    }
+
+    /**
+     * Query #2 excluding any region and for any order priority, run with a cached
+     * prepared statement.
+     *
+     * @param excludedRegion r_name of the region whose customers are left out
+     * @param priority o_orderpriority of the orders to add up, e.g. "2-HIGH"
+     * @return ResultSet
+     * @throws SQLException if an error occurs
+     */
+    public ResultSet query2(String excludedRegion, String priority) throws SQLException {
         System.out.println("Executing query #2.");
         
-        String sql = 
-            "WITH largest_segment AS ( " +
-            "    SELECT c_mktsegment " +
-            "    FROM customer " +
-            "    GROUP BY c_mktsegment " +
-            "    ORDER BY COUNT(*) DESC " +
-            "    LIMIT 1 " +
-            ") " +
-            "SELECT c.c_custkey, " +
-            "       SUM(o.o_totalprice) AS total_spent " +
-            "FROM customer c " +
-            "JOIN orders o ON c.c_custkey = o.o_custkey " +
-            "JOIN nation n ON c.c_nationkey = n.n_nationkey " +
-            "JOIN region r ON n.n_regionkey = r.r_regionkey " +
-            "WHERE o.o_orderpriority = '1-URGENT' " +
-            "  AND o.o_orderstatus != 'F' " +
-            "  AND r.r_name != 'EUROPE' " +
-            "  AND c.c_mktsegment = (SELECT c_mktsegment FROM largest_segment) " +
-            "GROUP BY c.c_custkey " +
-            "ORDER BY total_spent DESC";
-        
-        Statement stmt = con.createStatement();
-        return stmt.executeQuery(sql);
+        try (MetricsRegistry.Timing timing = metrics.time("redshift_phase", "query2")) {
+            ResultSet rs = queryBackend == QueryBackend.COLUMNAR ? loadedColumnar().query2(excludedRegion, priority)
+                    : runQuery(QUERY2_PREPARED_SQL, priority, excludedRegion);
+            timing.success();
+            return rs;
+        }
     }
 
     /**
@@ -401,20 +1952,206 @@ public class AmazonRedshift {
      * @throws SQLException if an error occurs
      */
     public ResultSet query3() throws SQLException {
+        return query3(QUERY3_FROM, QUERY3_TO);
+    }
+
+    /**
+     * Query #3 for orders placed in any date range, e.g. a rolling window, run with a
+     * cached prepared statement.
+     *
+     * @param from first order date included
+     * @param to first order date excluded
+     * @return ResultSet
+     * @throws SQLException if an error occurs
+     */
+    public ResultSet query3(LocalDate from, LocalDate to) throws SQLException {
         System.out.println("Executing query #3.");
         
-        String sql = 
-            "SELECT o.o_orderpriority, " +
-            "       COUNT(l.l_orderkey) AS lineitem_count " +
-            "FROM orders o " +
-            "JOIN lineitem l ON o.o_orderkey = l.l_orderkey " +
-            "WHERE o.o_orderdate >= DATE '1997-04-01' " +
-            "  AND o.o_orderdate < DATE '2003-04-01' " +
-            "GROUP BY o.o_orderpriority " +
-            "ORDER BY o.o_orderpriority ASC";
-        
-        Statement stmt = con.createStatement();
-        return stmt.executeQuery(sql);
+        try (MetricsRegistry.Timing timing = metrics.time("redshift_phase", "query3")) {
+            ResultSet rs = queryBackend == QueryBackend.COLUMNAR ? loadedColumnar().query3(from, to)
+                    : runQuery(summariesEnabled ? SUMMARY_QUERY3_PREPARED_SQL : QUERY3_PREPARED_SQL, from, to);
+            timing.success();
+            return rs;
+        }
+    }
+
+    /**
+     * Runs query #1 through a cursor and passes each row to the consumer instead of
+     * returning a ResultSet.
+     *
+     * @param consumer receives each row
+     * @return number of rows
+     * @throws SQLException if an error occurs
+     */
+    public long query1(RowConsumer consumer) throws SQLException {
+        System.out.println("Streaming query #1.");
+        try (MetricsRegistry.Timing timing = metrics.time("redshift_phase", "query1")) {
+            long rows = queryBackend == QueryBackend.COLUMNAR
+                    ? QueryStreamer.forEach(loadedColumnar().query1(), consumer)
+                    : new QueryStreamer(fetchSize).stream(con, query1Sql(), consumer);
+            timing.success();
+            return rows;
+        }
+    }
+
+    /**
+     * Runs query #2 through a cursor and passes each row to the consumer instead of
+     * returning a ResultSet.
+     *
+     * @param consumer receives each row
+     * @return number of rows
+     * @throws SQLException if an error occurs
+     */
+    public long query2(RowConsumer consumer) throws SQLException {
+        System.out.println("Streaming query #2.");
+        try (MetricsRegistry.Timing timing = metrics.time("redshift_phase", "query2")) {
+            long rows = queryBackend == QueryBackend.COLUMNAR
+                    ? QueryStreamer.forEach(loadedColumnar().query2(), consumer)
+                    : new QueryStreamer(fetchSize).stream(con, QUERY2_SQL, consumer);
+            timing.success();
+            return rows;
+        }
+    }
+
+    /**
+     * Runs query #3 through a cursor and passes each row to the consumer instead of
+     * returning a ResultSet.
+     *
+     * @param consumer receives each row
+     * @return number of rows
+     * @throws SQLException if an error occurs
+     */
+    public long query3(RowConsumer consumer) throws SQLException {
+        System.out.println("Streaming query #3.");
+        try (MetricsRegistry.Timing timing = metrics.time("redshift_phase", "query3")) {
+            long rows = queryBackend == QueryBackend.COLUMNAR
+                    ? QueryStreamer.forEach(loadedColumnar().query3(), consumer)
+                    : new QueryStreamer(fetchSize).stream(con, query3Sql(), consumer);
+            timing.success();
+            return rows;
+        }
+    }
+
+    /**
+     * Returns the executor of the asynchronous queries, creating it on first use.
+     *
+     * @return query executor
+     * @throws SQLException if the connection pool cannot be created
+     */
+    private synchronized QueryExecutor queryExecutor() throws SQLException {
+        if (queryExecutor == null) {
+            ConnectionPool connections = queryBackend == QueryBackend.COLUMNAR ? null : pool();
+            queryExecutor = new QueryExecutor(connections, resultCache(), queryParallelism, queryTimeoutSeconds);
+        }
+        return queryExecutor;
+    }
+
+    /**
+     * Submits a query to run on its own pooled connection and records its latency under
+     * the given phase.
+     */
+    private CompletableFuture<ResultSet> submit(String phase, String sql, QueryExecutor.Task columnarTask)
+            throws SQLException {
+        MetricsRegistry.Timing timing = metrics.time("redshift_phase", phase);
+        CompletableFuture<ResultSet> future = queryBackend == QueryBackend.COLUMNAR
+                ? queryExecutor().submit(columnarTask) : queryExecutor().submit(sql);
+        future.whenComplete((rs, e) -> {
+            if (e == null) {
+                timing.success();
+            }
+            timing.close();
+        });
+        return future;
+    }
+
+    /**
+     * Runs query #1 asynchronously on a separate connection; see {@link #query1()}.
+     * Cancelling the future cancels the query.
+     *
+     * @return future result, fully read into memory
+     * @throws SQLException if the executor cannot be created
+     */
+    public CompletableFuture<ResultSet> query1Async() throws SQLException {
+        return submit("query1", query1Sql(), () -> loadedColumnar().query1());
+    }
+
+    /**
+     * Runs query #2 asynchronously on a separate connection; see {@link #query2()}.
+     * Cancelling the future cancels the query.
+     *
+     * @return future result, fully read into memory
+     * @throws SQLException if the executor cannot be created
+     */
+    public CompletableFuture<ResultSet> query2Async() throws SQLException {
+        return submit("query2", QUERY2_SQL, () -> loadedColumnar().query2());
+    }
+
+    /**
+     * Runs query #3 asynchronously on a separate connection; see {@link #query3()}.
+     * Cancelling the future cancels the query.
+     *
+     * @return future result, fully read into memory
+     * @throws SQLException if the executor cannot be created
+     */
+    public CompletableFuture<ResultSet> query3Async() throws SQLException {
+        return submit("query3", query3Sql(), () -> loadedColumnar().query3());
+    }
+
+    /**
+     * Runs query1-3 concurrently and waits for all of them, so the report takes about as
+     * long as the slowest query.
+     *
+     * @return results keyed query1, query2 and query3
+     * @throws SQLException if a query fails; the others are cancelled
+     */
+    public Map<String, ResultSet> runReport() throws SQLException {
+        System.out.println("Executing queries #1-#3 concurrently.");
+        Map<String, CompletableFuture<ResultSet>> futures = new LinkedHashMap<>();
+        futures.put("query1", query1Async());
+        futures.put("query2", query2Async());
+        futures.put("query3", query3Async());
+        return QueryExecutor.gather(futures);
+    }
+
+    /**
+     * Writes the results of query1-3 to query1..query3 files in the export directory, in
+     * the configured format. Database results are streamed through a cursor and bypass the
+     * result cache, so memory use does not depend on the result size.
+     *
+     * @return number of rows written
+     * @throws SQLException if a query fails or a file cannot be written
+     */
+    public long exportQueries() throws SQLException {
+        ResultExporter exporter = new ResultExporter(exportFormat, exportGzip);
+        String[] queries = {query1Sql(), QUERY2_SQL, query3Sql()};
+        long total = 0;
+        try {
+            Files.createDirectories(exportDir);
+        } catch (IOException e) {
+            throw new SQLException("Failed to create export directory " + exportDir, e);
+        }
+        for (int i = 0; i < queries.length; i++) {
+            Path file = exportDir.resolve("query" + (i + 1) + exporter.getExtension());
+            long rows;
+            try (MetricsRegistry.Timing timing = metrics.time("redshift_phase", "export");
+                 OutputStream out = Files.newOutputStream(file)) {
+                if (queryBackend == QueryBackend.COLUMNAR) {
+                    ResultSet rs = i == 0 ? loadedColumnar().query1()
+                            : i == 1 ? loadedColumnar().query2() : loadedColumnar().query3();
+                    try (ResultSet result = rs) {
+                        rows = exporter.export(result, out);
+                    }
+                } else {
+                    rows = new QueryStreamer(fetchSize).execute(con, queries[i], rs -> exporter.export(rs, out));
+                }
+                timing.success();
+            } catch (IOException e) {
+                throw new SQLException("Failed to write " + file, e);
+            }
+            total += rows;
+            System.out.println("Exported " + rows + " rows to " + file);
+        }
+        return total;
     }
 
     /*
@@ -442,31 +2179,32 @@ public class AmazonRedshift {
      * @throws SQLException if a database error occurs
      */
     public static String resultSetToString(ResultSet rst, int maxrows) throws SQLException {
-        StringBuffer buf = new StringBuffer(5000);
-        int rowCount = 0;
+        StringBuilder buf = new StringBuilder(5000);
+        long rowCount = 0;
         ResultSetMetaData meta = rst.getMetaData();
+        int columnCount = meta.getColumnCount();
 
-        buf.append("Total columns: " + meta.getColumnCount());
+        buf.append("Total columns: ").append(columnCount);
         buf.append('\n');
-        if (meta.getColumnCount() > 0)
+        if (columnCount > 0)
             buf.append(meta.getColumnName(1));
-        for (int j = 2; j <= meta.getColumnCount(); j++)
-            buf.append(", " + meta.getColumnName(j));
+        for (int j = 2; j <= columnCount; j++)
+            buf.append(", ").append(meta.getColumnName(j));
         buf.append('\n');
 
-        while (rst.next()) {
-            if (rowCount < maxrows) {
-                for (int j = 0; j < meta.getColumnCount(); j++) {
-                    Object obj = rst.getObject(j + 1);
-                    buf.append(obj);
-                    if (j != meta.getColumnCount() - 1)
-                        buf.append(", ");
-                }
-                buf.append('\n');
+        while (rowCount < maxrows && rst.next()) {
+            for (int j = 0; j < columnCount; j++) {
+                buf.append(rst.getObject(j + 1));
+                if (j != columnCount - 1)
+                    buf.append(", ");
             }
+            buf.append('\n');
             rowCount++;
         }
-        buf.append("Total results: " + rowCount);
+        // The remaining rows are only counted, without reading their values
+        if (rowCount >= maxrows)
+            rowCount += ResultExporter.count(rst);
+        buf.append("Total results: ").append(rowCount);
         return buf.toString();
     }
 
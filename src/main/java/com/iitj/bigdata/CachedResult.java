@@ -0,0 +1,515 @@
+package com.iitj.bigdata;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Date;
+import java.sql.JDBCType;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * A query result copied into memory column by column.
+ *
+ * Integer columns are kept in long arrays and floating point columns in double arrays,
+ * with a bit set marking NULLs; other values are stored as the objects the driver
+ * returned, with equal strings of a column sharing one instance. {@link #open()} returns
+ * a read-only, forward-only ResultSet over the copy, so any number of callers can read
+ * the same result without going back to the database.
+ */
+public class CachedResult {
+    /**
+     * Per-column overhead and per-object sizes used for the memory estimate.
+     */
+    private static final int COLUMN_OVERHEAD = 64;
+    private static final int OBJECT_BYTES = 24;
+    private static final int REFERENCE_BYTES = 8;
+
+    private final String[] names;
+    private final String[] labels;
+    private final int[] types;
+    private final String[] typeNames;
+    private final String[] classNames;
+    private final int[] precisions;
+    private final int[] scales;
+    private final int[] displaySizes;
+    private final long[][] longs;
+    private final double[][] doubles;
+    private final Object[][] objects;
+    private final BitSet[] nulls;
+    private final int rowCount;
+    private final long bytes;
+
+    private CachedResult(ResultSetMetaData meta, long[][] longs, double[][] doubles, Object[][] objects,
+                         BitSet[] nulls, int rowCount, long bytes) throws SQLException {
+        int columns = meta.getColumnCount();
+        names = new String[columns];
+        labels = new String[columns];
+        types = new int[columns];
+        typeNames = new String[columns];
+        classNames = new String[columns];
+        precisions = new int[columns];
+        scales = new int[columns];
+        displaySizes = new int[columns];
+        for (int i = 0; i < columns; i++) {
+            names[i] = meta.getColumnName(i + 1);
+            labels[i] = meta.getColumnLabel(i + 1);
+            types[i] = meta.getColumnType(i + 1);
+            typeNames[i] = meta.getColumnTypeName(i + 1);
+            classNames[i] = meta.getColumnClassName(i + 1);
+            precisions[i] = meta.getPrecision(i + 1);
+            scales[i] = meta.getScale(i + 1);
+            displaySizes[i] = meta.getColumnDisplaySize(i + 1);
+        }
+        this.longs = longs;
+        this.doubles = doubles;
+        this.objects = objects;
+        this.nulls = nulls;
+        this.rowCount = rowCount;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Reads all remaining rows of a result set and closes it.
+     *
+     * @param rs result set positioned before its first row
+     * @return in-memory copy
+     * @throws SQLException if reading fails
+     */
+    public static CachedResult materialize(ResultSet rs) throws SQLException {
+        try (ResultSet source = rs) {
+            ResultSetMetaData meta = source.getMetaData();
+            int columns = meta.getColumnCount();
+            long[][] longs = new long[columns][];
+            double[][] doubles = new double[columns][];
+            Object[][] objects = new Object[columns][];
+            BitSet[] nulls = new BitSet[columns];
+            @SuppressWarnings("unchecked")
+            Map<Object, Object>[] dictionaries = (Map<Object, Object>[]) new Map<?, ?>[columns];
+            long bytes = 0;
+
+            int capacity = 16;
+            for (int i = 0; i < columns; i++) {
+                nulls[i] = new BitSet();
+                switch (storage(meta.getColumnType(i + 1))) {
+                    case LONG:
+                        longs[i] = new long[capacity];
+                        break;
+                    case DOUBLE:
+                        doubles[i] = new double[capacity];
+                        break;
+                    default:
+                        objects[i] = new Object[capacity];
+                        dictionaries[i] = new HashMap<>();
+                }
+            }
+
+            int rows = 0;
+            while (source.next()) {
+                if (rows == capacity) {
+                    capacity *= 2;
+                    for (int i = 0; i < columns; i++) {
+                        if (longs[i] != null) {
+                            longs[i] = Arrays.copyOf(longs[i], capacity);
+                        } else if (doubles[i] != null) {
+                            doubles[i] = Arrays.copyOf(doubles[i], capacity);
+                        } else {
+                            objects[i] = Arrays.copyOf(objects[i], capacity);
+                        }
+                    }
+                }
+                for (int i = 0; i < columns; i++) {
+                    if (longs[i] != null) {
+                        longs[i][rows] = source.getLong(i + 1);
+                    } else if (doubles[i] != null) {
+                        doubles[i][rows] = source.getDouble(i + 1);
+                    } else {
+                        Object value = source.getObject(i + 1);
+                        if (value != null) {
+                            Object shared = dictionaries[i].putIfAbsent(value, value);
+                            if (shared == null) {
+                                bytes += sizeOf(value);
+                            } else {
+                                value = shared;
+                            }
+                        }
+                        objects[i][rows] = value;
+                    }
+                    if (source.wasNull()) {
+                        nulls[i].set(rows);
+                    }
+                }
+                rows++;
+            }
+
+            for (int i = 0; i < columns; i++) {
+                if (longs[i] != null) {
+                    longs[i] = Arrays.copyOf(longs[i], rows);
+                } else if (doubles[i] != null) {
+                    doubles[i] = Arrays.copyOf(doubles[i], rows);
+                } else {
+                    objects[i] = Arrays.copyOf(objects[i], rows);
+                }
+                bytes += COLUMN_OVERHEAD + (long) rows * (objects[i] != null ? REFERENCE_BYTES : Long.BYTES)
+                        + nulls[i].size() / 8;
+            }
+            return new CachedResult(meta, longs, doubles, objects, nulls, rows, bytes);
+        }
+    }
+
+    /**
+     * Creates a result from rows computed in memory.
+     *
+     * @param columns column names
+     * @param sqlTypes {@link Types} of the columns
+     * @param rows row values; Integer/Long for integer columns, BigDecimal, Date or String otherwise
+     * @return result
+     * @throws SQLException never in practice; declared by the shared materialization path
+     */
+    public static CachedResult of(String[] columns, int[] sqlTypes, List<Object[]> rows) throws SQLException {
+        ResultSetMetaData meta = (ResultSetMetaData) Proxy.newProxyInstance(CachedResult.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return columns.length;
+                        case "getColumnName":
+                        case "getColumnLabel":
+                            return columns[(Integer) args[0] - 1];
+                        case "getColumnType":
+                            return sqlTypes[(Integer) args[0] - 1];
+                        case "getColumnTypeName":
+                            return JDBCType.valueOf(sqlTypes[(Integer) args[0] - 1]).getName().toLowerCase(Locale.ROOT);
+                        case "getColumnClassName":
+                            return className(sqlTypes[(Integer) args[0] - 1]);
+                        default:
+                            return 0;
+                    }
+                });
+        int[] cursor = {-1};
+        Object[] current = {null};
+        ResultSet source = (ResultSet) Proxy.newProxyInstance(CachedResult.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++cursor[0] < rows.size();
+                        case "getMetaData":
+                            return meta;
+                        case "wasNull":
+                            return current[0] == null;
+                        case "close":
+                            return null;
+                        default:
+                            current[0] = rows.get(cursor[0])[(Integer) args[0] - 1];
+                            if (method.getReturnType() == long.class) {
+                                return current[0] == null ? 0L : ((Number) current[0]).longValue();
+                            } else if (method.getReturnType() == double.class) {
+                                return current[0] == null ? 0.0 : ((Number) current[0]).doubleValue();
+                            }
+                            return current[0];
+                    }
+                });
+        return materialize(source);
+    }
+
+    private static String className(int sqlType) {
+        switch (sqlType) {
+            case Types.INTEGER:
+            case Types.SMALLINT:
+                return Integer.class.getName();
+            case Types.BIGINT:
+                return Long.class.getName();
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                return BigDecimal.class.getName();
+            case Types.DATE:
+                return Date.class.getName();
+            default:
+                return String.class.getName();
+        }
+    }
+
+    private enum Storage { LONG, DOUBLE, OBJECT }
+
+    private static Storage storage(int sqlType) {
+        switch (sqlType) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return Storage.LONG;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                return Storage.DOUBLE;
+            default:
+                return Storage.OBJECT;
+        }
+    }
+
+    private static long sizeOf(Object value) {
+        if (value instanceof String) {
+            return OBJECT_BYTES + 16 + ((String) value).length();
+        } else if (value instanceof BigDecimal) {
+            return OBJECT_BYTES * 2 + ((BigDecimal) value).precision() / 2;
+        }
+        return OBJECT_BYTES;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns the estimated heap size of the copy.
+     *
+     * @return bytes
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns a new cursor over the rows. Cursors are independent of each other.
+     *
+     * @return read-only, forward-only result set
+     */
+    public ResultSet open() {
+        return (ResultSet) Proxy.newProxyInstance(CachedResult.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, new Cursor());
+    }
+
+    /**
+     * Returns the value of a cell as the object type the driver reported.
+     */
+    private Object value(int column, int row) {
+        if (nulls[column].get(row)) {
+            return null;
+        }
+        if (longs[column] != null) {
+            long v = longs[column][row];
+            return types[column] == Types.BIGINT ? (Object) v : (Object) (int) v;
+        }
+        if (doubles[column] != null) {
+            double v = doubles[column][row];
+            return types[column] == Types.REAL ? (Object) (float) v : (Object) v;
+        }
+        return objects[column][row];
+    }
+
+    private int findColumn(String label) throws SQLException {
+        for (int i = 0; i < labels.length; i++) {
+            if (labels[i].equalsIgnoreCase(label)) {
+                return i + 1;
+            }
+        }
+        throw new SQLException("The column name " + label + " was not found in this ResultSet.");
+    }
+
+    private ResultSetMetaData metaData() {
+        return (ResultSetMetaData) Proxy.newProxyInstance(CachedResult.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return names.length;
+                        case "getColumnName":
+                            return names[(Integer) args[0] - 1];
+                        case "getColumnLabel":
+                            return labels[(Integer) args[0] - 1];
+                        case "getColumnType":
+                            return types[(Integer) args[0] - 1];
+                        case "getColumnTypeName":
+                            return typeNames[(Integer) args[0] - 1];
+                        case "getColumnClassName":
+                            return classNames[(Integer) args[0] - 1];
+                        case "getPrecision":
+                            return precisions[(Integer) args[0] - 1];
+                        case "getScale":
+                            return scales[(Integer) args[0] - 1];
+                        case "getColumnDisplaySize":
+                            return displaySizes[(Integer) args[0] - 1];
+                        case "isNullable":
+                            return ResultSetMetaData.columnNullableUnknown;
+                        case "isReadOnly":
+                            return true;
+                        case "getTableName":
+                        case "getSchemaName":
+                        case "getCatalogName":
+                            return "";
+                        case "isWrapperFor":
+                            return false;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "CachedResultMetaData";
+                        default:
+                            if (method.getReturnType() == boolean.class) {
+                                return false;
+                            }
+                            throw new SQLFeatureNotSupportedException(method.getName());
+                    }
+                });
+    }
+
+    /**
+     * Forward-only cursor backing one {@link #open()} call.
+     */
+    private class Cursor implements InvocationHandler {
+        private int row = -1;
+        private boolean wasNull;
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close":
+                    closed = true;
+                    return null;
+                case "isClosed":
+                    return closed;
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "equals":
+                    return proxy == args[0];
+                case "toString":
+                    return "CachedResultSet[" + rowCount + " rows]";
+                default:
+                    break;
+            }
+            if (closed) {
+                throw new SQLException("ResultSet is closed");
+            }
+            switch (name) {
+                case "next":
+                    if (row < rowCount) {
+                        row++;
+                    }
+                    return row < rowCount;
+                case "getMetaData":
+                    return metaData();
+                case "findColumn":
+                    return findColumn((String) args[0]);
+                case "wasNull":
+                    return wasNull;
+                case "getRow":
+                    return row >= 0 && row < rowCount ? row + 1 : 0;
+                case "isBeforeFirst":
+                    return row < 0 && rowCount > 0;
+                case "isAfterLast":
+                    return row >= rowCount && rowCount > 0;
+                case "isFirst":
+                    return row == 0 && rowCount > 0;
+                case "isLast":
+                    return row == rowCount - 1;
+                case "getType":
+                    return ResultSet.TYPE_FORWARD_ONLY;
+                case "getConcurrency":
+                    return ResultSet.CONCUR_READ_ONLY;
+                case "getFetchSize":
+                    return rowCount;
+                case "setFetchSize":
+                    return null;
+                case "getStatement":
+                case "getWarnings":
+                    return null;
+                case "clearWarnings":
+                    return null;
+                case "isWrapperFor":
+                    return false;
+                default:
+                    break;
+            }
+            if (name.startsWith("get") && args != null && (args.length == 1 || args.length == 2)) {
+                int column = args[0] instanceof String ? findColumn((String) args[0]) : (Integer) args[0];
+                if (row < 0 || row >= rowCount) {
+                    throw new SQLException("ResultSet not positioned properly, perhaps you need to call next.");
+                }
+                if (column < 1 || column > names.length) {
+                    throw new SQLException("The column index is out of range: " + column);
+                }
+                Object value = value(column - 1, row);
+                wasNull = value == null;
+                return convert(value, method.getReturnType(), args.length == 2 ? args[1] : null);
+            }
+            throw new SQLFeatureNotSupportedException(name + " is not supported on a cached result");
+        }
+    }
+
+    /**
+     * Converts a cell to the return type of a getter, following the driver's usual rules.
+     */
+    private static Object convert(Object value, Class<?> type, Object argument) throws SQLException {
+        if (type == Object.class) {
+            return value;
+        }
+        if (value == null) {
+            if (type == boolean.class) {
+                return false;
+            } else if (type.isPrimitive()) {
+                return type == double.class ? 0.0 : type == float.class ? 0.0f
+                        : type == long.class ? 0L : type == short.class ? (short) 0
+                        : type == byte.class ? (byte) 0 : (Object) 0;
+            }
+            return null;
+        }
+        if (type == String.class) {
+            return value.toString();
+        }
+        if (type == BigDecimal.class) {
+            BigDecimal decimal = value instanceof BigDecimal ? (BigDecimal) value : new BigDecimal(value.toString());
+            return argument instanceof Integer ? decimal.setScale((Integer) argument, RoundingMode.HALF_UP) : decimal;
+        }
+        if (type == Date.class && value instanceof Date) {
+            return value;
+        }
+        if (type == Timestamp.class && value instanceof Date) {
+            return new Timestamp(((Date) value).getTime());
+        }
+        if (type.isInstance(value)) {
+            return value;
+        }
+        Number number;
+        if (value instanceof Number) {
+            number = (Number) value;
+        } else {
+            try {
+                number = new BigDecimal(value.toString().trim());
+            } catch (NumberFormatException e) {
+                if (type == boolean.class) {
+                    return value.toString().equalsIgnoreCase("true") || value.toString().equalsIgnoreCase("t");
+                }
+                throw new SQLException("Cannot convert " + value + " to " + type.getSimpleName());
+            }
+        }
+        if (type == long.class) {
+            return number.longValue();
+        } else if (type == int.class) {
+            return number.intValue();
+        } else if (type == short.class) {
+            return number.shortValue();
+        } else if (type == byte.class) {
+            return number.byteValue();
+        } else if (type == double.class) {
+            return number.doubleValue();
+        } else if (type == float.class) {
+            return number.floatValue();
+        } else if (type == boolean.class) {
+            return number.intValue() != 0;
+        }
+        throw new SQLException("Cannot convert " + value + " to " + type.getSimpleName());
+    }
+}
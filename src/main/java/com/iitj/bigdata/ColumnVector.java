@@ -0,0 +1,321 @@
+package com.iitj.bigdata;
+
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.sql.Date;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * One column of a {@link ColumnarTable}, stored as primitive values.
+ *
+ * Every SQL type is reduced to a long: integers as themselves, DECIMAL as the unscaled
+ * value, DATE as days since 1970-01-01 and strings as codes into a per-column dictionary.
+ * NULL is {@link #NULL}. Values are appended to a heap array while loading; {@link #seal()}
+ * then narrows the column to 32 bits when every value fits and moves it to a direct buffer
+ * outside the Java heap when it is larger than the off-heap threshold.
+ */
+public class ColumnVector {
+    /**
+     * Value returned by {@link #get(int)} for NULL.
+     */
+    public static final long NULL = Long.MIN_VALUE;
+    private static final int INT_NULL = Integer.MIN_VALUE;
+    private static final Pattern LENGTH = Pattern.compile("\\(\\s*(\\d+)\\s*(?:,\\s*(\\d+)\\s*)?\\)");
+
+    /**
+     * How the long values of a column are interpreted.
+     */
+    public enum Kind { INTEGER, DECIMAL, DATE, STRING }
+
+    private final String name;
+    private final Kind kind;
+    private final int sqlType;
+    private final int scale;
+    /**
+     * Declared length of a CHAR(n) column; its values are blank-padded on output, as the
+     * database returns them, and compared without the padding. 0 for other columns.
+     */
+    private final int charLength;
+
+    private final List<String> dictionary;
+    private final Map<String, Integer> codes;
+
+    private long[] building = new long[1024];
+    private int size;
+
+    private long[] longs;
+    private int[] ints;
+    private LongBuffer directLongs;
+    private IntBuffer directInts;
+
+    /**
+     * Creates an empty column for a declared SQL type.
+     *
+     * @param name column name
+     * @param declaredType declared type, e.g. DECIMAL(15,2)
+     */
+    public ColumnVector(String name, String declaredType) {
+        this.name = name;
+        this.sqlType = TableSchema.sqlType(declaredType);
+        Matcher m = LENGTH.matcher(declaredType);
+        boolean hasLength = m.find();
+        switch (sqlType) {
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.SMALLINT:
+                kind = Kind.INTEGER;
+                scale = 0;
+                break;
+            case Types.DECIMAL:
+                kind = Kind.DECIMAL;
+                scale = hasLength && m.group(2) != null ? Integer.parseInt(m.group(2)) : 0;
+                break;
+            case Types.DATE:
+                kind = Kind.DATE;
+                scale = 0;
+                break;
+            default:
+                kind = Kind.STRING;
+                scale = 0;
+        }
+        charLength = sqlType == Types.CHAR ? (hasLength ? Integer.parseInt(m.group(1)) : 1) : 0;
+        dictionary = kind == Kind.STRING ? new ArrayList<>() : null;
+        codes = kind == Kind.STRING ? new HashMap<>() : null;
+    }
+
+    /**
+     * Appends the value of a script field.
+     *
+     * @param reader reader positioned on a tuple
+     * @param field zero-based field index
+     * @param text scratch buffer for dates and strings
+     */
+    void append(TupleReader reader, int field, StringBuilder text) {
+        long value;
+        if (reader.isNull(field)) {
+            value = NULL;
+        } else {
+            switch (kind) {
+                case INTEGER:
+                    value = reader.getLong(field);
+                    break;
+                case DECIMAL:
+                    value = reader.getDecimal(field, scale);
+                    break;
+                case DATE:
+                    text.setLength(0);
+                    reader.appendField(field, text);
+                    value = parseDate(text);
+                    break;
+                default:
+                    text.setLength(0);
+                    reader.appendField(field, text);
+                    value = encode(text);
+            }
+        }
+        if (size == building.length) {
+            building = Arrays.copyOf(building, size * 2);
+        }
+        building[size++] = value;
+    }
+
+    private static long parseDate(CharSequence text) {
+        String s = text.toString().trim();
+        try {
+            return LocalDate.of(Integer.parseInt(s.substring(0, 4)), Integer.parseInt(s.substring(5, 7)),
+                    Integer.parseInt(s.substring(8, 10))).toEpochDay();
+        } catch (RuntimeException e) {
+            throw new NumberFormatException("Invalid date " + s);
+        }
+    }
+
+    private long encode(StringBuilder text) {
+        if (charLength > 0) {
+            // CHAR comparison ignores trailing blanks
+            int len = text.length();
+            while (len > 0 && text.charAt(len - 1) == ' ') {
+                len--;
+            }
+            text.setLength(len);
+        }
+        String key = text.toString();
+        Integer code = codes.get(key);
+        if (code == null) {
+            code = dictionary.size();
+            dictionary.add(key);
+            codes.put(key, code);
+        }
+        return code;
+    }
+
+    /**
+     * Finishes loading: narrows the column to 32 bits if possible and moves it off the
+     * heap if it is larger than the threshold.
+     *
+     * @param offHeapThresholdBytes size above which the column is stored in a direct buffer
+     */
+    void seal(long offHeapThresholdBytes) {
+        boolean narrow = true;
+        for (int i = 0; i < size && narrow; i++) {
+            long v = building[i];
+            narrow = v == NULL || (v > INT_NULL && v <= Integer.MAX_VALUE);
+        }
+        long bytes = (long) size * (narrow ? Integer.BYTES : Long.BYTES);
+        boolean offHeap = bytes > offHeapThresholdBytes;
+        if (narrow) {
+            int[] values = new int[size];
+            for (int i = 0; i < size; i++) {
+                values[i] = building[i] == NULL ? INT_NULL : (int) building[i];
+            }
+            if (offHeap) {
+                directInts = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder()).asIntBuffer();
+                directInts.put(values).flip();
+            } else {
+                ints = values;
+            }
+        } else if (offHeap) {
+            directLongs = ByteBuffer.allocateDirect((int) bytes).order(ByteOrder.nativeOrder()).asLongBuffer();
+            directLongs.put(building, 0, size).flip();
+        } else {
+            longs = Arrays.copyOf(building, size);
+        }
+        building = null;
+    }
+
+    /**
+     * Returns a value.
+     *
+     * @param row zero-based row
+     * @return value, or {@link #NULL}
+     */
+    public long get(int row) {
+        if (ints != null) {
+            int v = ints[row];
+            return v == INT_NULL ? NULL : v;
+        } else if (longs != null) {
+            return longs[row];
+        } else if (directInts != null) {
+            int v = directInts.get(row);
+            return v == INT_NULL ? NULL : v;
+        }
+        return directLongs.get(row);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public int getSqlType() {
+        return sqlType;
+    }
+
+    public int getScale() {
+        return scale;
+    }
+
+    /**
+     * Returns whether the values are stored in a direct buffer.
+     *
+     * @return true if off-heap
+     */
+    public boolean isOffHeap() {
+        return directInts != null || directLongs != null;
+    }
+
+    /**
+     * Returns the bytes used by the values, excluding the dictionary.
+     *
+     * @return bytes
+     */
+    public long getBytes() {
+        return (long) size * (ints != null || directInts != null ? Integer.BYTES : Long.BYTES);
+    }
+
+    /**
+     * Returns the dictionary code of a string, for comparisons on the codes.
+     *
+     * @param value string as written in SQL
+     * @return code, or -1 if no row holds the value
+     */
+    public int code(String value) {
+        if (charLength > 0) {
+            value = value.replaceAll(" +$", "");
+        }
+        Integer code = codes.get(value);
+        return code == null ? -1 : code;
+    }
+
+    /**
+     * Returns the dictionary string for a code, blank-padded for CHAR(n) columns.
+     *
+     * @param code dictionary code
+     * @return string
+     */
+    public String decode(long code) {
+        String value = dictionary.get((int) code);
+        if (value.length() >= charLength) {
+            return value;
+        }
+        StringBuilder sb = new StringBuilder(charLength).append(value);
+        while (sb.length() < charLength) {
+            sb.append(' ');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns the number of distinct strings of a dictionary-encoded column.
+     *
+     * @return dictionary size
+     */
+    public int dictionarySize() {
+        return dictionary.size();
+    }
+
+    /**
+     * Converts a stored value to the object JDBC would return for the column.
+     *
+     * @param value stored value
+     * @return Integer/Long, BigDecimal, java.sql.Date or String; null for NULL
+     */
+    public Object toObject(long value) {
+        if (value == NULL) {
+            return null;
+        }
+        switch (kind) {
+            case INTEGER:
+                return sqlType == Types.BIGINT ? (Object) value : (Object) (int) value;
+            case DECIMAL:
+                return BigDecimal.valueOf(value, scale);
+            case DATE:
+                return Date.valueOf(LocalDate.ofEpochDay(value));
+            default:
+                return decode(value);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + kind.name().toLowerCase(Locale.ROOT) + "[" + size + (isOffHeap() ? ", off-heap" : "") + "]";
+    }
+}
@@ -0,0 +1,530 @@
+package com.iitj.bigdata;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Runs query1, query2 and query3 inside the JVM on a columnar copy of the TPC-H data, so
+ * the reports can be produced without a database.
+ *
+ * The data scripts are parsed into {@link ColumnVector}s, one file per fork/join task,
+ * keeping only the columns the three queries read. Joins are hash joins that build on the
+ * smaller, filtered side and probe the fact table; the probe and the aggregation run over
+ * row ranges in parallel, each range summing into its own primitive arrays indexed by
+ * group, which are added up when the ranges join. DECIMAL arithmetic is done on unscaled
+ * longs, so sums are exact and have the scale the database would return.
+ *
+ * The engine assumes the key columns used for joins are unique on the build side, as the
+ * TPC-H primary keys guarantee, and reports an error otherwise instead of returning
+ * different rows than the database. Where SQL leaves the order of ties open (ORDER BY
+ * without a unique key, LIMIT 1 in the largest-segment CTE) the engine breaks ties by key
+ * or name, so its output is deterministic.
+ */
+public class ColumnarEngine implements AutoCloseable {
+    /**
+     * Columns each table contributes to query1-3.
+     */
+    static final Map<String, List<String>> COLUMNS = new LinkedHashMap<>();
+
+    static {
+        COLUMNS.put("region", Arrays.asList("r_regionkey", "r_name"));
+        COLUMNS.put("nation", Arrays.asList("n_nationkey", "n_regionkey"));
+        COLUMNS.put("customer", Arrays.asList("c_custkey", "c_nationkey", "c_mktsegment"));
+        COLUMNS.put("orders", Arrays.asList("o_orderkey", "o_custkey", "o_orderdate", "o_orderpriority",
+                "o_orderstatus", "o_totalprice"));
+        COLUMNS.put("lineitem", Arrays.asList("l_orderkey", "l_extendedprice", "l_discount"));
+    }
+
+    /**
+     * Smallest row range a fork/join task processes on its own.
+     */
+    private static final int MIN_RANGE = 8192;
+
+    private final ForkJoinPool pool;
+    private final long offHeapThresholdBytes;
+    private final Map<String, ColumnarTable> tables = new ConcurrentHashMap<>();
+
+    /**
+     * Creates an engine with no data.
+     *
+     * @param parallelism number of worker threads
+     * @param offHeapThresholdBytes column size above which values are kept outside the heap
+     */
+    public ColumnarEngine(int parallelism, long offHeapThresholdBytes) {
+        this.pool = new ForkJoinPool(Math.max(1, parallelism));
+        this.offHeapThresholdBytes = offHeapThresholdBytes;
+    }
+
+    /**
+     * Loads the data files of the tables used by the queries, in parallel. Each file must
+     * hold the rows of the table it is named after, e.g. orders.sql; other files are
+     * skipped without being read.
+     *
+     * @param resources opens data files
+     * @param dataFiles file names under data/
+     * @param schema tables parsed from tpch_create.sql, giving column positions and types
+     * @return total number of rows loaded
+     * @throws IOException if a file cannot be read or parsed
+     */
+    public long load(ParallelLoader.ResourceOpener resources, List<String> dataFiles,
+                     Map<String, TableSchema> schema) throws IOException {
+        long start = System.nanoTime();
+        List<Future<ColumnarTable>> loads = new ArrayList<>();
+        for (String file : dataFiles) {
+            String table = TableSchema.normalize(file.replaceFirst("\\.sql$", ""));
+            List<String> columns = COLUMNS.get(table);
+            if (columns == null) {
+                continue;
+            }
+            TableSchema def = schema.get(table);
+            if (def == null) {
+                throw new IOException("Table " + table + " is not defined in the schema");
+            }
+            Callable<ColumnarTable> load = () -> {
+                try (TupleReader reader = resources.openReader("data/" + file)) {
+                    return ColumnarTable.load(reader, def, columns, offHeapThresholdBytes);
+                }
+            };
+            loads.add(pool.submit(load));
+        }
+
+        long rows = 0;
+        for (Future<ColumnarTable> load : loads) {
+            ColumnarTable table;
+            try {
+                table = load.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while loading", e);
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw new IOException("Failed to load data", e.getCause());
+            }
+            tables.put(TableSchema.normalize(table.getName()), table);
+            rows += table.getRowCount();
+            System.out.println("  Loaded " + table);
+        }
+        System.out.println(String.format("Columnar engine loaded %d rows in %.2f s (%d KB of column data)",
+                rows, (System.nanoTime() - start) / 1e9, getBytes() / 1024));
+        return rows;
+    }
+
+    /**
+     * Returns whether every table used by the queries has been loaded.
+     *
+     * @return true if loaded
+     */
+    public boolean isLoaded() {
+        return tables.keySet().containsAll(COLUMNS.keySet());
+    }
+
+    /**
+     * Drops all loaded data.
+     */
+    public void clear() {
+        tables.clear();
+    }
+
+    /**
+     * Returns the bytes used by the column values of all tables.
+     *
+     * @return bytes
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for (ColumnarTable table : tables.values()) {
+            bytes += table.getBytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Query #1: the 10 most recent orders of customers in America with their total sale.
+     * See {@link AmazonRedshift#QUERY1_SQL}.
+     *
+     * @return o_orderkey, o_orderdate, total_sale
+     * @throws SQLException if the data is not loaded or violates a key assumption
+     */
+    public ResultSet query1() throws SQLException {
+        return query1(AmazonRedshift.QUERY1_REGION);
+    }
+
+    /**
+     * Query #1 for the customers of any region.
+     *
+     * @param regionName r_name of the customers' region
+     * @return o_orderkey, o_orderdate, total_sale
+     * @throws SQLException if the data is not loaded or violates a key assumption
+     */
+    public ResultSet query1(String regionName) throws SQLException {
+        ColumnarTable region = table("region");
+        ColumnarTable nation = table("nation");
+        ColumnarTable customer = table("customer");
+        ColumnarTable orders = table("orders");
+        ColumnarTable lineitem = table("lineitem");
+
+        ColumnVector rName = region.column("r_name");
+        // -1 for a name that does not occur, which matches no row
+        int selected = rName.code(regionName);
+        LongIntHashMap regions = build(region, "r_regionkey", row -> rName.get(row) == selected);
+        ColumnVector nRegion = nation.column("n_regionkey");
+        LongIntHashMap nations = build(nation, "n_nationkey", row -> regions.get(nRegion.get(row)) >= 0);
+        ColumnVector cNation = customer.column("c_nationkey");
+        LongIntHashMap customers = build(customer, "c_custkey", row -> nations.get(cNation.get(row)) >= 0);
+
+        // Group by o_orderkey: one group per qualifying order
+        ColumnVector oCust = orders.column("o_custkey");
+        ColumnVector oKey = orders.column("o_orderkey");
+        ColumnVector oDate = orders.column("o_orderdate");
+        LongIntHashMap groups = new LongIntHashMap(1024);
+        List<Integer> groupRows = new ArrayList<>();
+        for (int row = 0; row < orders.getRowCount(); row++) {
+            if (customers.get(oCust.get(row)) >= 0 && oKey.get(row) != ColumnVector.NULL) {
+                if (!groups.putIfAbsent(oKey.get(row), groupRows.size())) {
+                    throw duplicateKey(orders, "o_orderkey", oKey.get(row));
+                }
+                groupRows.add(row);
+            }
+        }
+
+        // SUM(l_extendedprice * (1 - l_discount)): per group the sum, non-NULL terms and rows
+        ColumnVector lKey = lineitem.column("l_orderkey");
+        ColumnVector lPrice = lineitem.column("l_extendedprice");
+        ColumnVector lDiscount = lineitem.column("l_discount");
+        long one = pow10(lDiscount.getScale());
+        long[] acc = aggregate(lineitem.getRowCount(), groupRows.size() * 3, (from, to, sums) -> {
+            for (int row = from; row < to; row++) {
+                int g = groups.get(lKey.get(row));
+                if (g < 0) {
+                    continue;
+                }
+                long price = lPrice.get(row);
+                long discount = lDiscount.get(row);
+                if (price != ColumnVector.NULL && discount != ColumnVector.NULL) {
+                    sums[g * 3] += price * (one - discount);
+                    sums[g * 3 + 1]++;
+                }
+                sums[g * 3 + 2]++;
+            }
+        });
+
+        int scale = lPrice.getScale() + lDiscount.getScale();
+        List<Object[]> rows = new ArrayList<>();
+        List<Integer> joined = new ArrayList<>();
+        for (int g = 0; g < groupRows.size(); g++) {
+            if (acc[g * 3 + 2] > 0) {
+                joined.add(g);
+            }
+        }
+        // ORDER BY o_orderdate DESC puts NULLs first; ties by order key
+        joined.sort(Comparator.<Integer>comparingLong(g -> descNullsFirst(oDate.get(groupRows.get(g))))
+                .thenComparingLong(g -> oKey.get(groupRows.get(g))));
+        for (int g : joined.subList(0, Math.min(10, joined.size()))) {
+            int row = groupRows.get(g);
+            rows.add(new Object[]{oKey.toObject(oKey.get(row)), oDate.toObject(oDate.get(row)),
+                    acc[g * 3 + 1] == 0 ? null : BigDecimal.valueOf(acc[g * 3], scale)});
+        }
+        return CachedResult.of(new String[]{"o_orderkey", "o_orderdate", "total_sale"},
+                new int[]{oKey.getSqlType(), Types.DATE, Types.NUMERIC}, rows).open();
+    }
+
+    /**
+     * Query #2: total spent per customer of the largest market segment outside Europe on
+     * urgent orders that are not failed. See {@link AmazonRedshift#QUERY2_SQL}.
+     *
+     * @return c_custkey, total_spent
+     * @throws SQLException if the data is not loaded or violates a key assumption
+     */
+    public ResultSet query2() throws SQLException {
+        return query2(AmazonRedshift.QUERY2_EXCLUDED_REGION, AmazonRedshift.QUERY2_PRIORITY);
+    }
+
+    /**
+     * Query #2 excluding any region and for any order priority.
+     *
+     * @param excludedRegion r_name of the region whose customers are left out
+     * @param priority o_orderpriority of the orders to add up
+     * @return c_custkey, total_spent
+     * @throws SQLException if the data is not loaded or violates a key assumption
+     */
+    public ResultSet query2(String excludedRegion, String priority) throws SQLException {
+        ColumnarTable region = table("region");
+        ColumnarTable nation = table("nation");
+        ColumnarTable customer = table("customer");
+        ColumnarTable orders = table("orders");
+
+        // largest_segment: GROUP BY c_mktsegment (NULL is a group of its own) ORDER BY COUNT(*) DESC LIMIT 1
+        ColumnVector segment = customer.column("c_mktsegment");
+        int segments = segment.dictionarySize();
+        long[] counts = aggregate(customer.getRowCount(), segments + 1, (from, to, sums) -> {
+            for (int row = from; row < to; row++) {
+                long code = segment.get(row);
+                sums[code == ColumnVector.NULL ? segments : (int) code]++;
+            }
+        });
+        long largest = ColumnVector.NULL;
+        long largestCount = 0;
+        for (int code = 0; code < segments; code++) {
+            if (counts[code] > largestCount || (counts[code] == largestCount && counts[code] > 0
+                    && segment.decode(code).compareTo(segment.decode(largest)) < 0)) {
+                largest = code;
+                largestCount = counts[code];
+            }
+        }
+        if (counts[segments] > largestCount) {
+            // c_mktsegment = NULL matches no customer
+            largest = ColumnVector.NULL;
+        }
+        long largestSegment = largest;
+
+        ColumnVector rName = region.column("r_name");
+        int excluded = rName.code(excludedRegion);
+        LongIntHashMap regions = build(region, "r_regionkey",
+                row -> rName.get(row) != ColumnVector.NULL && rName.get(row) != excluded);
+        ColumnVector nRegion = nation.column("n_regionkey");
+        LongIntHashMap nations = build(nation, "n_nationkey", row -> regions.get(nRegion.get(row)) >= 0);
+        ColumnVector cNation = customer.column("c_nationkey");
+        LongIntHashMap customers = build(customer, "c_custkey", row -> largestSegment != ColumnVector.NULL
+                && segment.get(row) == largestSegment && nations.get(cNation.get(row)) >= 0);
+
+        // Dense group numbers for the qualifying customers
+        ColumnVector cKey = customer.column("c_custkey");
+        int[] groupOfRow = new int[customer.getRowCount()];
+        List<Integer> groupRows = new ArrayList<>();
+        for (int row = 0; row < customer.getRowCount(); row++) {
+            groupOfRow[row] = -1;
+            if (customers.get(cKey.get(row)) == row) {
+                groupOfRow[row] = groupRows.size();
+                groupRows.add(row);
+            }
+        }
+
+        ColumnVector oPriority = orders.column("o_orderpriority");
+        ColumnVector oStatus = orders.column("o_orderstatus");
+        ColumnVector oCust = orders.column("o_custkey");
+        ColumnVector oPrice = orders.column("o_totalprice");
+        int selected = oPriority.code(priority);
+        int failed = oStatus.code("F");
+        long[] acc = aggregate(orders.getRowCount(), groupRows.size() * 3, (from, to, sums) -> {
+            for (int row = from; row < to; row++) {
+                long status = oStatus.get(row);
+                if (oPriority.get(row) != selected || status == ColumnVector.NULL || status == failed) {
+                    continue;
+                }
+                int c = customers.get(oCust.get(row));
+                if (c < 0) {
+                    continue;
+                }
+                int g = groupOfRow[c];
+                long price = oPrice.get(row);
+                if (price != ColumnVector.NULL) {
+                    sums[g * 3] += price;
+                    sums[g * 3 + 1]++;
+                }
+                sums[g * 3 + 2]++;
+            }
+        });
+
+        List<Integer> joined = new ArrayList<>();
+        for (int g = 0; g < groupRows.size(); g++) {
+            if (acc[g * 3 + 2] > 0) {
+                joined.add(g);
+            }
+        }
+        // ORDER BY total_spent DESC puts NULL sums first; ties by customer key
+        joined.sort(Comparator.<Integer>comparingLong(g -> acc[g * 3 + 1] == 0 ? Long.MIN_VALUE : -acc[g * 3])
+                .thenComparingLong(g -> cKey.get(groupRows.get(g))));
+        List<Object[]> rows = new ArrayList<>(joined.size());
+        for (int g : joined) {
+            rows.add(new Object[]{cKey.toObject(cKey.get(groupRows.get(g))),
+                    acc[g * 3 + 1] == 0 ? null : BigDecimal.valueOf(acc[g * 3], oPrice.getScale())});
+        }
+        return CachedResult.of(new String[]{"c_custkey", "total_spent"},
+                new int[]{cKey.getSqlType(), Types.NUMERIC}, rows).open();
+    }
+
+    /**
+     * Query #3: line items per order priority for orders placed from April 1997 to April
+     * 2003. See {@link AmazonRedshift#QUERY3_SQL}.
+     *
+     * @return o_orderpriority, lineitem_count
+     * @throws SQLException if the data is not loaded or violates a key assumption
+     */
+    public ResultSet query3() throws SQLException {
+        return query3(AmazonRedshift.QUERY3_FROM, AmazonRedshift.QUERY3_TO);
+    }
+
+    /**
+     * Query #3 for orders placed in any date range.
+     *
+     * @param fromDate first order date included
+     * @param toDate first order date excluded
+     * @return o_orderpriority, lineitem_count
+     * @throws SQLException if the data is not loaded or violates a key assumption
+     */
+    public ResultSet query3(LocalDate fromDate, LocalDate toDate) throws SQLException {
+        long fromDay = fromDate.toEpochDay();
+        long toDay = toDate.toEpochDay();
+        ColumnarTable orders = table("orders");
+        ColumnarTable lineitem = table("lineitem");
+
+        ColumnVector oDate = orders.column("o_orderdate");
+        ColumnVector oPriority = orders.column("o_orderpriority");
+        LongIntHashMap inRange = build(orders, "o_orderkey", row -> {
+            long date = oDate.get(row);
+            return date != ColumnVector.NULL && date >= fromDay && date < toDay;
+        });
+
+        // Group 0 is a NULL priority, group code + 1 every other priority
+        ColumnVector lKey = lineitem.column("l_orderkey");
+        long[] counts = aggregate(lineitem.getRowCount(), oPriority.dictionarySize() + 1, (from, to, sums) -> {
+            for (int row = from; row < to; row++) {
+                int order = inRange.get(lKey.get(row));
+                if (order >= 0) {
+                    long priority = oPriority.get(order);
+                    sums[priority == ColumnVector.NULL ? 0 : (int) priority + 1]++;
+                }
+            }
+        });
+
+        List<Integer> groups = new ArrayList<>();
+        for (int g = 1; g < counts.length; g++) {
+            if (counts[g] > 0) {
+                groups.add(g);
+            }
+        }
+        groups.sort(Comparator.comparing(g -> oPriority.decode(g - 1)));
+        if (counts[0] > 0) {
+            // ORDER BY ... ASC puts NULLs last
+            groups.add(0);
+        }
+        List<Object[]> rows = new ArrayList<>(groups.size());
+        for (int g : groups) {
+            rows.add(new Object[]{g == 0 ? null : oPriority.decode(g - 1), counts[g]});
+        }
+        return CachedResult.of(new String[]{"o_orderpriority", "lineitem_count"},
+                new int[]{oPriority.getSqlType(), Types.BIGINT}, rows).open();
+    }
+
+    private ColumnarTable table(String name) throws SQLException {
+        ColumnarTable table = tables.get(name);
+        if (table == null) {
+            throw new SQLException("Table " + name + " is not loaded in the columnar engine");
+        }
+        return table;
+    }
+
+    /**
+     * Selects the rows of a table that pass a filter.
+     */
+    private interface RowFilter {
+        boolean test(int row);
+    }
+
+    /**
+     * Builds the hash side of a join: key to row for the rows that pass the filter.
+     */
+    private static LongIntHashMap build(ColumnarTable table, String keyColumn, RowFilter filter) throws SQLException {
+        ColumnVector keys = table.column(keyColumn);
+        LongIntHashMap map = new LongIntHashMap(Math.min(table.getRowCount(), 1 << 20));
+        for (int row = 0; row < table.getRowCount(); row++) {
+            long key = keys.get(row);
+            if (key != ColumnVector.NULL && filter.test(row) && !map.putIfAbsent(key, row)) {
+                throw duplicateKey(table, keyColumn, key);
+            }
+        }
+        return map;
+    }
+
+    private static SQLException duplicateKey(ColumnarTable table, String column, long key) {
+        return new SQLException("Duplicate " + column + " " + key + " in " + table.getName()
+                + "; the columnar engine requires unique join keys");
+    }
+
+    /**
+     * Adds up the values of a row range into an array of sums.
+     */
+    private interface RangeAggregator {
+        void aggregate(int from, int to, long[] sums);
+    }
+
+    /**
+     * Runs an aggregation over all rows in parallel; every task sums into its own array.
+     */
+    private long[] aggregate(int rows, int width, RangeAggregator aggregator) {
+        // One range per worker keeps the number of partial arrays small for wide groupings
+        int range = Math.max(MIN_RANGE, (rows + pool.getParallelism() - 1) / pool.getParallelism());
+        return pool.invoke(new Aggregation(aggregator, 0, rows, width, range));
+    }
+
+    private static class Aggregation extends RecursiveTask<long[]> {
+        private static final long serialVersionUID = 1L;
+
+        private final RangeAggregator aggregator;
+        private final int from;
+        private final int to;
+        private final int width;
+        private final int range;
+
+        Aggregation(RangeAggregator aggregator, int from, int to, int width, int range) {
+            this.aggregator = aggregator;
+            this.from = from;
+            this.to = to;
+            this.width = width;
+            this.range = range;
+        }
+
+        @Override
+        protected long[] compute() {
+            if (to - from <= range) {
+                long[] sums = new long[width];
+                aggregator.aggregate(from, to, sums);
+                return sums;
+            }
+            int mid = (from + to) >>> 1;
+            Aggregation left = new Aggregation(aggregator, from, mid, width, range);
+            left.fork();
+            long[] sums = new Aggregation(aggregator, mid, to, width, range).compute();
+            long[] other = left.join();
+            for (int i = 0; i < width; i++) {
+                sums[i] += other[i];
+            }
+            return sums;
+        }
+    }
+
+    private static long descNullsFirst(long value) {
+        return value == ColumnVector.NULL ? Long.MIN_VALUE : -value;
+    }
+
+    private static long pow10(int exponent) {
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
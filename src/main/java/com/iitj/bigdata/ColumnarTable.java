@@ -0,0 +1,117 @@
+package com.iitj.bigdata;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The rows of one TPC-H table held as {@link ColumnVector}s. Only the columns a query
+ * needs are loaded; the others are skipped while parsing.
+ */
+public class ColumnarTable {
+    private final String name;
+    private final Map<String, ColumnVector> columns = new LinkedHashMap<>();
+    private int rowCount;
+
+    private ColumnarTable(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Reads the rows of a data script into column vectors.
+     *
+     * @param reader data script; every tuple must belong to the table
+     * @param schema table definition, giving column positions and types
+     * @param wanted lower-case names of the columns to keep
+     * @param offHeapThresholdBytes size above which a column is stored off-heap
+     * @return loaded table
+     * @throws IOException if the script cannot be read or a value cannot be parsed
+     */
+    static ColumnarTable load(TupleReader reader, TableSchema schema, Collection<String> wanted,
+                              long offHeapThresholdBytes) throws IOException {
+        ColumnarTable table = new ColumnarTable(schema.getName());
+        List<TableSchema.Column> defs = schema.getColumns();
+        int[] fields = new int[wanted.size()];
+        ColumnVector[] vectors = new ColumnVector[wanted.size()];
+        int n = 0;
+        for (String column : wanted) {
+            int field = -1;
+            for (int i = 0; i < defs.size(); i++) {
+                if (defs.get(i).getName().equals(column)) {
+                    field = i;
+                }
+            }
+            if (field < 0) {
+                throw new IOException("Column " + column + " is not defined for table " + schema.getName());
+            }
+            fields[n] = field;
+            vectors[n] = new ColumnVector(column, defs.get(field).getType());
+            table.columns.put(column, vectors[n]);
+            n++;
+        }
+
+        StringBuilder text = new StringBuilder(64);
+        while (reader.next()) {
+            if (reader.fieldCount() != defs.size()) {
+                throw new IOException("Expected " + defs.size() + " values for " + schema.getName()
+                        + " but found " + reader.fieldCount() + ": " + reader.tupleString());
+            }
+            try {
+                for (int i = 0; i < n; i++) {
+                    vectors[i].append(reader, fields[i], text);
+                }
+            } catch (NumberFormatException e) {
+                throw new IOException("Cannot parse " + schema.getName() + " row " + reader.records()
+                        + ": " + e.getMessage(), e);
+            }
+            table.rowCount++;
+        }
+        for (ColumnVector vector : vectors) {
+            vector.seal(offHeapThresholdBytes);
+        }
+        return table;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getRowCount() {
+        return rowCount;
+    }
+
+    /**
+     * Returns a loaded column.
+     *
+     * @param name lower-case column name
+     * @return column
+     * @throws IllegalArgumentException if the column was not loaded
+     */
+    public ColumnVector column(String name) {
+        ColumnVector column = columns.get(name);
+        if (column == null) {
+            throw new IllegalArgumentException("Column " + name + " of " + this.name + " is not loaded");
+        }
+        return column;
+    }
+
+    /**
+     * Returns the bytes used by all loaded columns.
+     *
+     * @return bytes
+     */
+    public long getBytes() {
+        long bytes = 0;
+        for (ColumnVector column : columns.values()) {
+            bytes += column.getBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public String toString() {
+        return name + " (" + rowCount + " rows, " + columns.values() + ")";
+    }
+}
@@ -0,0 +1,12 @@
+package com.iitj.bigdata;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Supplies database connections, either newly opened or borrowed from a pool.
+ * Callers close the connection when done.
+ */
+public interface ConnectionFactory {
+    Connection open() throws SQLException;
+}
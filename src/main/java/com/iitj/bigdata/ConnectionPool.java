@@ -0,0 +1,477 @@
+package com.iitj.bigdata;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Fixed-bounds pool of database connections.
+ *
+ * The pool opens its minimum number of connections up front and grows on demand up to
+ * the maximum; callers beyond that wait for a connection to be returned. Borrowed
+ * connections are handles whose close() returns the physical connection to the pool.
+ * A connection is only validated with isValid() when it has been idle for a while, so a
+ * busy pool pays nothing per borrow. Connections held longer than the leak threshold are
+ * reported together with the stack trace of the code that borrowed them.
+ */
+public class ConnectionPool implements ConnectionFactory, AutoCloseable {
+    /**
+     * Seconds passed to Connection.isValid when validating an idle connection.
+     */
+    private static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+    /**
+     * A physical connection and its borrowing state.
+     */
+    private static class Entry {
+        final Connection physical;
+        long lastReturned = System.nanoTime();
+        long borrowedAt;
+        Throwable borrowTrace;
+        boolean leakReported;
+
+        Entry(Connection physical) {
+            this.physical = physical;
+        }
+    }
+
+    private final ConnectionFactory factory;
+    private final int minSize;
+    private final int maxSize;
+    private final long maxWaitNanos;
+    private final long validateIdleNanos;
+    private final long leakThresholdNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<Entry> idle = new ArrayDeque<>();
+    private final Set<Entry> active = new HashSet<>();
+    private int total;
+    private boolean closed;
+    private ScheduledExecutorService leakDetector;
+
+    // Statistics, guarded by lock
+    private long borrows;
+    private long created;
+    private long waitNanos;
+    private long maxWaitObservedNanos;
+    private long timeouts;
+    private long validationFailures;
+    private long leaks;
+
+    /**
+     * Creates a pool. Call {@link #warmUp()} to open the minimum number of connections.
+     *
+     * @param factory opens physical connections
+     * @param minSize connections opened at warm-up
+     * @param maxSize most connections open at once
+     * @param maxWaitMillis how long a borrower waits when the pool is exhausted
+     * @param validateIdleMillis idle time after which a connection is validated on borrow
+     * @param leakThresholdMillis borrow duration after which a leak is reported; 0 disables
+     */
+    public ConnectionPool(ConnectionFactory factory, int minSize, int maxSize, long maxWaitMillis,
+                          long validateIdleMillis, long leakThresholdMillis) {
+        this.factory = factory;
+        this.maxSize = Math.max(1, maxSize);
+        this.minSize = Math.min(Math.max(0, minSize), this.maxSize);
+        this.maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+        this.validateIdleNanos = TimeUnit.MILLISECONDS.toNanos(validateIdleMillis);
+        this.leakThresholdNanos = TimeUnit.MILLISECONDS.toNanos(leakThresholdMillis);
+    }
+
+    /**
+     * Opens the minimum number of connections concurrently and starts leak detection.
+     *
+     * @throws SQLException if a connection cannot be opened; nothing is kept open then
+     */
+    public void warmUp() throws SQLException {
+        int needed;
+        lock.lock();
+        try {
+            needed = Math.max(0, minSize - total);
+            total += needed;
+        } finally {
+            lock.unlock();
+        }
+        List<Connection> opened = new ArrayList<>();
+        SQLException error = null;
+        if (needed > 0) {
+            ExecutorService opener = Executors.newFixedThreadPool(needed, r -> {
+                Thread t = new Thread(r, "pool-warmup");
+                t.setDaemon(true);
+                return t;
+            });
+            try {
+                List<Future<Connection>> futures = new ArrayList<>();
+                for (int i = 0; i < needed; i++) {
+                    futures.add(opener.submit(factory::open));
+                }
+                for (Future<Connection> f : futures) {
+                    try {
+                        opened.add(f.get());
+                    } catch (ExecutionException e) {
+                        error = e.getCause() instanceof SQLException ? (SQLException) e.getCause()
+                                : new SQLException("Failed to open pooled connection", e.getCause());
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        error = new SQLException("Interrupted while warming up the pool", e);
+                    }
+                }
+            } finally {
+                opener.shutdown();
+            }
+        }
+
+        lock.lock();
+        try {
+            total -= needed;
+            if (error != null) {
+                for (Connection c : opened) {
+                    closeQuietly(c);
+                }
+                throw error;
+            }
+            for (Connection c : opened) {
+                idle.addLast(new Entry(c));
+                total++;
+                created++;
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        startLeakDetection();
+        System.out.println("Connection pool warmed up with " + opened.size() + " connections (max " + maxSize + ").");
+    }
+
+    /**
+     * Borrows a connection, waiting up to the configured time if the pool is exhausted.
+     * Close the returned connection to give it back.
+     *
+     * @return pooled connection handle
+     * @throws SQLException if no connection becomes available or opening one fails
+     */
+    public Connection borrow() throws SQLException {
+        long start = System.nanoTime();
+        long deadline = start + maxWaitNanos;
+        lock.lock();
+        try {
+            while (true) {
+                if (closed) {
+                    throw new SQLException("Connection pool is closed");
+                }
+                Entry entry = idle.pollFirst();
+                if (entry != null) {
+                    if (needsValidation(entry) && !isValid(entry)) {
+                        total--;
+                        validationFailures++;
+                        closeQuietly(entry.physical);
+                        continue;
+                    }
+                    return activate(entry, start);
+                }
+                if (total < maxSize) {
+                    total++;
+                    Connection physical;
+                    lock.unlock();
+                    try {
+                        physical = factory.open();
+                    } catch (SQLException | RuntimeException e) {
+                        lock.lock();
+                        total--;
+                        available.signal();
+                        throw e;
+                    }
+                    lock.lock();
+                    created++;
+                    return activate(new Entry(physical), start);
+                }
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    timeouts++;
+                    throw new SQLTimeoutException("Timed out after " + TimeUnit.NANOSECONDS.toMillis(maxWaitNanos)
+                            + " ms waiting for a connection (" + active.size() + " in use, max " + maxSize + ")");
+                }
+                try {
+                    available.awaitNanos(remaining);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new SQLException("Interrupted while waiting for a connection", e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Same as {@link #borrow()}, so the pool can be used wherever a factory is expected.
+     */
+    @Override
+    public Connection open() throws SQLException {
+        return borrow();
+    }
+
+    private boolean needsValidation(Entry entry) {
+        return System.nanoTime() - entry.lastReturned >= validateIdleNanos;
+    }
+
+    private static boolean isValid(Entry entry) {
+        try {
+            return entry.physical.isValid(VALIDATION_TIMEOUT_SECONDS);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Marks an entry as borrowed and wraps it in a fresh handle. Called with the lock held.
+     */
+    private Connection activate(Entry entry, long waitStart) {
+        long now = System.nanoTime();
+        long waited = now - waitStart;
+        borrows++;
+        waitNanos += waited;
+        maxWaitObservedNanos = Math.max(maxWaitObservedNanos, waited);
+        entry.borrowedAt = now;
+        entry.leakReported = false;
+        entry.borrowTrace = leakThresholdNanos > 0
+                ? new Throwable("Connection borrowed by thread " + Thread.currentThread().getName()) : null;
+        active.add(entry);
+        return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Handle(entry));
+    }
+
+    /**
+     * Takes a connection back, resetting its transaction state first.
+     */
+    private void release(Entry entry) {
+        boolean healthy = true;
+        try {
+            if (!entry.physical.getAutoCommit()) {
+                entry.physical.rollback();
+                entry.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            healthy = false;
+        }
+        lock.lock();
+        try {
+            active.remove(entry);
+            entry.borrowTrace = null;
+            if (closed || !healthy) {
+                total--;
+                closeQuietly(entry.physical);
+            } else {
+                entry.lastReturned = System.nanoTime();
+                idle.addFirst(entry);
+            }
+            available.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void startLeakDetection() {
+        if (leakThresholdNanos <= 0 || leakDetector != null) {
+            return;
+        }
+        leakDetector = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "pool-leak-detector");
+            t.setDaemon(true);
+            return t;
+        });
+        long period = Math.max(TimeUnit.MILLISECONDS.toNanos(10), leakThresholdNanos / 2);
+        leakDetector.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Reports connections borrowed for longer than the leak threshold, once each.
+     */
+    void detectLeaks() {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            for (Entry entry : active) {
+                if (!entry.leakReported && now - entry.borrowedAt > leakThresholdNanos) {
+                    entry.leakReported = true;
+                    leaks++;
+                    System.err.println("Possible connection leak: connection held for "
+                            + TimeUnit.NANOSECONDS.toMillis(now - entry.borrowedAt) + " ms");
+                    if (entry.borrowTrace != null) {
+                        entry.borrowTrace.printStackTrace();
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes idle connections and stops handing out new ones. Connections still borrowed
+     * are closed when they are returned.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            for (Entry entry : idle) {
+                closeQuietly(entry.physical);
+                total--;
+            }
+            idle.clear();
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (leakDetector != null) {
+            leakDetector.shutdownNow();
+        }
+        System.out.println("Connection pool closed. " + stats());
+    }
+
+    public int getActiveCount() {
+        lock.lock();
+        try {
+            return active.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getIdleCount() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getBorrowCount() {
+        lock.lock();
+        try {
+            return borrows;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getLeakCount() {
+        lock.lock();
+        try {
+            return leaks;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getTimeoutCount() {
+        lock.lock();
+        try {
+            return timeouts;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getValidationFailureCount() {
+        lock.lock();
+        try {
+            return validationFailures;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a one-line summary of the pool statistics.
+     *
+     * @return statistics
+     */
+    public String stats() {
+        lock.lock();
+        try {
+            return String.format("Pool stats: active=%d, idle=%d, created=%d, borrows=%d, "
+                            + "avg wait=%.3f ms, max wait=%.3f ms, timeouts=%d, validation failures=%d, leaks=%d",
+                    active.size(), idle.size(), created, borrows,
+                    borrows == 0 ? 0.0 : waitNanos / 1e6 / borrows, maxWaitObservedNanos / 1e6,
+                    timeouts, validationFailures, leaks);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void closeQuietly(Connection c) {
+        try {
+            c.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing pooled connection: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Borrowed connection handle: delegates to the physical connection until closed, then
+     * returns it to the pool and rejects further use.
+     */
+    private class Handle implements InvocationHandler {
+        private final Entry entry;
+        private boolean returned;
+
+        Handle(Entry entry) {
+            this.entry = entry;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (!returned) {
+                        returned = true;
+                        release(entry);
+                    }
+                    return null;
+                case "isClosed":
+                    return returned || entry.physical.isClosed();
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "toString":
+                    return "Pooled" + entry.physical;
+                default:
+                    if (returned) {
+                        throw new SQLException("Connection has been returned to the pool");
+                    }
+                    try {
+                        return method.invoke(entry.physical, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.iitj.bigdata;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Ingests CSV staging files with COPY.
+ *
+ * On a PostgreSQL connection the file is streamed with the driver's CopyManager using
+ * COPY ... FROM STDIN. On Redshift, which cannot read from the client, a COPY from S3 is
+ * issued instead; this requires the staging files to have been uploaded under the
+ * configured S3 prefix with their local file names.
+ */
+public class CopyLoader {
+    private final Connection con;
+    private final String s3Prefix;
+    private final String iamRole;
+
+    /**
+     * Creates a loader.
+     *
+     * @param con connection with autoCommit disabled
+     * @param s3Prefix S3 location of the uploaded staging files, e.g. s3://bucket/tpch/; may be null
+     * @param iamRole IAM role ARN Redshift assumes to read the files; may be null
+     */
+    public CopyLoader(Connection con, String s3Prefix, String iamRole) {
+        this.con = con;
+        this.s3Prefix = s3Prefix;
+        this.iamRole = iamRole;
+    }
+
+    /**
+     * Returns whether the connection can stream COPY data from the client.
+     *
+     * @return true for PostgreSQL connections
+     * @throws SQLException if the connection cannot be inspected
+     */
+    public boolean supportsCopyFromStdin() throws SQLException {
+        return con.isWrapperFor(PGConnection.class);
+    }
+
+    /**
+     * Copies one staged file into its table and commits.
+     *
+     * @param staged staged file
+     * @return number of rows copied
+     * @throws SQLException if COPY fails or no COPY path is available
+     * @throws IOException if the staging file cannot be read
+     */
+    public long copy(CsvStager.StagedFile staged) throws SQLException, IOException {
+        return copy(staged, staged.getTable());
+    }
+
+    /**
+     * Copies one staged file into the given table, e.g. the staging copy of its table,
+     * and commits.
+     *
+     * @param staged staged file
+     * @param table table to copy into
+     * @return number of rows copied
+     * @throws SQLException if COPY fails or no COPY path is available
+     * @throws IOException if the staging file cannot be read
+     */
+    public long copy(CsvStager.StagedFile staged, String table) throws SQLException, IOException {
+        long rows;
+        if (supportsCopyFromStdin()) {
+            CopyManager copyManager = con.unwrap(PGConnection.class).getCopyAPI();
+            try (InputStream in = openStaged(staged)) {
+                rows = copyManager.copyIn("COPY " + table + " FROM STDIN WITH (FORMAT csv)", in);
+            }
+        } else if (s3Prefix != null && !s3Prefix.isEmpty()) {
+            String location = s3Prefix + (s3Prefix.endsWith("/") ? "" : "/") + staged.getPath().getFileName();
+            StringBuilder sql = new StringBuilder("COPY ").append(table)
+                    .append(" FROM '").append(location).append("'");
+            if (iamRole != null && !iamRole.isEmpty()) {
+                sql.append(" IAM_ROLE '").append(iamRole).append("'");
+            }
+            sql.append(" CSV");
+            if (staged.isGzip()) {
+                sql.append(" GZIP");
+            }
+            try (Statement stmt = con.createStatement()) {
+                stmt.execute(sql.toString());
+            }
+            rows = staged.getRows();
+        } else {
+            throw new SQLException("COPY needs a PostgreSQL connection or redshift.copy.s3.prefix "
+                    + "pointing at the uploaded staging files");
+        }
+        con.commit();
+        return rows;
+    }
+
+    private static InputStream openStaged(CsvStager.StagedFile staged) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(staged.getPath()), 1 << 16);
+        return staged.isGzip() ? new GZIPInputStream(in, 1 << 16) : in;
+    }
+}
@@ -0,0 +1,23 @@
+package com.iitj.bigdata;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Monotonic count registered in a {@link MetricsRegistry}. Increments do not allocate and
+ * scale across threads.
+ */
+public class Counter {
+    private final LongAdder value = new LongAdder();
+
+    public void increment() {
+        value.increment();
+    }
+
+    public void add(long amount) {
+        value.add(amount);
+    }
+
+    public long get() {
+        return value.sum();
+    }
+}
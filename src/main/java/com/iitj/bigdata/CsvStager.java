@@ -0,0 +1,161 @@
+package com.iitj.bigdata;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Converts an INSERT script into a CSV staging file in one streaming pass, for bulk
+ * ingest with COPY. NULL becomes an empty unquoted field and strings are always quoted,
+ * so empty strings stay distinct from NULL under COPY ... CSV.
+ */
+public class CsvStager {
+    /**
+     * A staged file and what was written to it.
+     */
+    public static class StagedFile {
+        private final String table;
+        private final Path path;
+        private final long rows;
+        private final boolean gzip;
+
+        StagedFile(String table, Path path, long rows, boolean gzip) {
+            this.table = table;
+            this.path = path;
+            this.rows = rows;
+            this.gzip = gzip;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public Path getPath() {
+            return path;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public boolean isGzip() {
+            return gzip;
+        }
+    }
+
+    private final Path directory;
+    private final boolean gzip;
+
+    /**
+     * Reused per row so no String is created for ASCII rows.
+     */
+    private final StringBuilder line = new StringBuilder(1024);
+    private char[] chars = new char[1024];
+
+    /**
+     * Creates a stager.
+     *
+     * @param directory directory for the staging files; created if missing
+     * @param gzip whether to gzip the staging files
+     */
+    public CsvStager(Path directory, boolean gzip) {
+        this.directory = directory;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Streams an INSERT script into a staging file named after its table.
+     *
+     * @param script INSERT script; closed when done
+     * @return the staged file, or null if the script holds no rows
+     * @throws IOException if reading or writing fails
+     */
+    public StagedFile stage(InputStream script) throws IOException {
+        return stage(new SqlScriptReader(script));
+    }
+
+    /**
+     * Streams the tuples of a reader into a staging file named after their table.
+     *
+     * @param reader tuples of one table; closed when done
+     * @return the staged file, or null if the reader holds no rows
+     * @throws IOException if reading or writing fails
+     */
+    public StagedFile stage(TupleReader reader) throws IOException {
+        Files.createDirectories(directory);
+        Path tmp = Files.createTempFile(directory, "staging", gzip ? ".csv.gz" : ".csv");
+        String table = null;
+        long rows = 0;
+        try (reader;
+             Writer out = new OutputStreamWriter(open(tmp), StandardCharsets.UTF_8)) {
+            while (reader.next()) {
+                if (table == null) {
+                    table = reader.table();
+                } else if (!table.equals(reader.table())) {
+                    throw new IOException("Staging expects one table per script, found " + table
+                            + " and " + reader.table());
+                }
+                writeRow(reader, out);
+                rows++;
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        }
+        if (table == null) {
+            Files.deleteIfExists(tmp);
+            return null;
+        }
+        Path target = directory.resolve(TableSchema.normalize(table) + (gzip ? ".csv.gz" : ".csv"));
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+        return new StagedFile(table, target, rows, gzip);
+    }
+
+    /**
+     * Formats the reader's current tuple as one CSV line.
+     */
+    void writeRow(TupleReader reader, Writer out) throws IOException {
+        line.setLength(0);
+        for (int i = 0; i < reader.fieldCount(); i++) {
+            if (i > 0) {
+                line.append(',');
+            }
+            if (reader.isNull(i)) {
+                continue;
+            }
+            if (reader.isQuoted(i)) {
+                int start = line.length();
+                line.append('"');
+                reader.appendField(i, line);
+                // Double any embedded quote characters
+                for (int j = line.length() - 1; j > start; j--) {
+                    if (line.charAt(j) == '"') {
+                        line.insert(j, '"');
+                    }
+                }
+                line.append('"');
+            } else {
+                reader.appendField(i, line);
+            }
+        }
+        line.append('\n');
+        if (chars.length < line.length()) {
+            chars = new char[Math.max(line.length(), chars.length * 2)];
+        }
+        line.getChars(0, line.length(), chars, 0);
+        out.write(chars, 0, line.length());
+    }
+
+    private OutputStream open(Path path) throws IOException {
+        OutputStream out = new BufferedOutputStream(Files.newOutputStream(path), 1 << 16);
+        return gzip ? new GZIPOutputStream(out, 1 << 16) : out;
+    }
+}
@@ -0,0 +1,369 @@
+package com.iitj.bigdata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * A classpath data file that may be stored compressed and split into parts.
+ *
+ * A logical path such as "data/lineitem.sql" is found as the file itself, as
+ * lineitem.sql.gz or lineitem.sql.zst, or as numbered parts lineitem.sql.001,
+ * lineitem.sql.002, ... each optionally compressed the same way. The parts are cut at
+ * arbitrary bytes, as split(1) does, and their content is concatenated in order.
+ *
+ * Compressed content is decompressed on dedicated threads, each filling a bounded queue
+ * of buffers that the reading thread drains, so the parser never waits for inflation of
+ * data it has not reached. Up to the configured number of parts are decompressed at once,
+ * ahead of the part being read, which bounds memory to threads x {@link #QUEUE_CHUNKS}
+ * buffers.
+ */
+public class DataResource {
+    /**
+     * Size of the buffers handed from a decompressing thread to the reader.
+     */
+    static final int CHUNK_SIZE = 64 * 1024;
+    /**
+     * Buffers a decompressing thread may fill ahead of the reader.
+     */
+    static final int QUEUE_CHUNKS = 16;
+    private static final byte[] END = new byte[0];
+    private static final AtomicInteger threadId = new AtomicInteger();
+
+    /**
+     * How a file or its parts are compressed, from the file name suffix.
+     */
+    public enum Compression {
+        NONE(""), GZIP(".gz"), ZSTD(".zst");
+
+        private final String suffix;
+
+        Compression(String suffix) {
+            this.suffix = suffix;
+        }
+
+        public String getSuffix() {
+            return suffix;
+        }
+
+        /**
+         * Wraps a stream of compressed bytes.
+         *
+         * @param in compressed stream
+         * @param name file name for messages
+         * @return decompressed stream
+         * @throws IOException if the stream header is invalid or zstd-jni is missing
+         */
+        InputStream decompress(InputStream in, String name) throws IOException {
+            switch (this) {
+                case GZIP:
+                    try {
+                        return new GZIPInputStream(in, CHUNK_SIZE);
+                    } catch (IOException | RuntimeException e) {
+                        // The constructor reads the header; close the part if it is invalid
+                        in.close();
+                        throw e;
+                    }
+                case ZSTD:
+                    try {
+                        // zstd-jni is a runtime-only dependency
+                        return (InputStream) Class.forName("com.github.luben.zstd.ZstdInputStream")
+                                .getConstructor(InputStream.class).newInstance(in);
+                    } catch (ReflectiveOperationException | LinkageError e) {
+                        in.close();
+                        throw new IOException("Reading " + name + " needs zstd-jni on the classpath", e);
+                    }
+                default:
+                    return in;
+            }
+        }
+    }
+
+    private final String path;
+    private final List<URL> parts;
+    private final Compression compression;
+    private final int threads;
+
+    /**
+     * Creates a resource from its located parts.
+     *
+     * @param path logical path, e.g. "data/lineitem.sql"
+     * @param parts URLs of the file or of its parts, in order
+     * @param compression compression of every part
+     * @param threads parts decompressed at once
+     */
+    public DataResource(String path, List<URL> parts, Compression compression, int threads) {
+        this.path = path;
+        this.parts = new ArrayList<>(parts);
+        this.compression = compression;
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Finds a data file on the classpath, preferring the plain file, then compressed
+     * variants, then parts.
+     *
+     * @param loader class loader to search
+     * @param path logical path, e.g. "data/lineitem.sql"
+     * @param threads parts decompressed at once
+     * @return the resource, or null if no variant exists
+     */
+    public static DataResource find(ClassLoader loader, String path, int threads) {
+        for (Compression compression : Compression.values()) {
+            URL whole = loader.getResource(path + compression.getSuffix());
+            if (whole != null) {
+                return new DataResource(path, Collections.singletonList(whole), compression, threads);
+            }
+        }
+        for (Compression compression : Compression.values()) {
+            List<URL> parts = new ArrayList<>();
+            URL part;
+            while ((part = loader.getResource(partName(path, parts.size() + 1) + compression.getSuffix())) != null) {
+                parts.add(part);
+            }
+            if (!parts.isEmpty()) {
+                return new DataResource(path, parts, compression, threads);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name of a part, e.g. "data/lineitem.sql.002".
+     *
+     * @param path logical path
+     * @param number part number, starting at 1
+     * @return part path without compression suffix
+     */
+    static String partName(String path, int number) {
+        return String.format(Locale.ROOT, "%s.%03d", path, number);
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public List<URL> getParts() {
+        return parts;
+    }
+
+    public Compression getCompression() {
+        return compression;
+    }
+
+    /**
+     * Returns the stored size of all parts.
+     *
+     * @return bytes, or -1 if the size of a part is unknown
+     * @throws IOException if a part cannot be opened
+     */
+    public long storedLength() throws IOException {
+        long total = 0;
+        for (URL part : parts) {
+            long length = attribute(part, true);
+            if (length < 0) {
+                return -1;
+            }
+            total += length;
+        }
+        return total;
+    }
+
+    /**
+     * Returns the latest modification time of the parts.
+     *
+     * @return milliseconds since the epoch, or 0 if unknown
+     * @throws IOException if a part cannot be opened
+     */
+    public long lastModified() throws IOException {
+        long latest = 0;
+        for (URL part : parts) {
+            latest = Math.max(latest, attribute(part, false));
+        }
+        return latest;
+    }
+
+    private static long attribute(URL url, boolean length) throws IOException {
+        URLConnection connection = url.openConnection();
+        // Connecting opens the file, which is closed with the stream
+        InputStream in = connection.getInputStream();
+        try {
+            return length ? connection.getContentLengthLong() : connection.getLastModified();
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Returns the size of the content after decompression, reading it if the file is
+     * compressed.
+     *
+     * @return bytes
+     * @throws IOException if the content cannot be read
+     */
+    public long contentLength() throws IOException {
+        if (compression == Compression.NONE) {
+            long stored = storedLength();
+            if (stored >= 0) {
+                return stored;
+            }
+        }
+        long total = 0;
+        try (InputStream in = open()) {
+            byte[] buf = new byte[CHUNK_SIZE];
+            int n;
+            while ((n = in.read(buf)) >= 0) {
+                total += n;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Opens the content: the file itself when it is a single plain file, otherwise the
+     * decompressed parts in order.
+     *
+     * @return open stream; the caller closes it
+     * @throws IOException if a part cannot be opened
+     */
+    public InputStream open() throws IOException {
+        if (compression == Compression.NONE && parts.size() == 1) {
+            return parts.get(0).openStream();
+        }
+        return new ParallelStream();
+    }
+
+    @Override
+    public String toString() {
+        return path + (parts.size() > 1 ? " (" + parts.size() + " parts" : " (1 file")
+                + (compression == Compression.NONE ? ")" : ", " + compression.name().toLowerCase(Locale.ROOT) + ")");
+    }
+
+    /**
+     * Concatenation of the parts, each decompressed on a pool thread into its own queue.
+     */
+    private class ParallelStream extends InputStream {
+        private final ExecutorService pool;
+        private final List<BlockingQueue<byte[]>> queues = new ArrayList<>();
+        private final Exception[] failures = new Exception[parts.size()];
+        private int part;
+        private byte[] chunk = END;
+        private int pos;
+        private boolean closed;
+
+        ParallelStream() {
+            pool = Executors.newFixedThreadPool(Math.min(threads, parts.size()), r -> {
+                Thread t = new Thread(r, "decompress-" + threadId.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            });
+            for (int i = 0; i < parts.size(); i++) {
+                BlockingQueue<byte[]> queue = new ArrayBlockingQueue<>(QUEUE_CHUNKS);
+                queues.add(queue);
+                int index = i;
+                // Submitted in order, so the pool works on the parts nearest the reader
+                pool.execute(() -> decompress(index, queue));
+            }
+            pool.shutdown();
+        }
+
+        private void decompress(int index, BlockingQueue<byte[]> queue) {
+            URL url = parts.get(index);
+            try {
+                try (InputStream in = compression.decompress(url.openStream(), url.toString())) {
+                    while (true) {
+                        byte[] buf = new byte[CHUNK_SIZE];
+                        int n = in.readNBytes(buf, 0, buf.length);
+                        if (n > 0) {
+                            queue.put(n == buf.length ? buf : Arrays.copyOf(buf, n));
+                        }
+                        if (n < buf.length) {
+                            break;
+                        }
+                    }
+                } catch (IOException | RuntimeException e) {
+                    failures[index] = e;
+                }
+                queue.put(END);
+            } catch (InterruptedException e) {
+                // The reader closed the stream
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        /**
+         * Moves to the next buffer, returning false at the end of the last part.
+         */
+        private boolean fill() throws IOException {
+            if (closed) {
+                throw new IOException("Stream closed");
+            }
+            while (pos == chunk.length) {
+                if (part == parts.size()) {
+                    return false;
+                }
+                try {
+                    chunk = queues.get(part).take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while decompressing " + path);
+                }
+                pos = 0;
+                if (chunk == END) {
+                    // Written before END was queued
+                    if (failures[part] != null) {
+                        throw new IOException("Cannot decompress " + parts.get(part), failures[part]);
+                    }
+                    queues.set(part, null);
+                    part++;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public int read() throws IOException {
+            return fill() ? chunk[pos++] & 0xff : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, chunk.length - pos);
+            System.arraycopy(chunk, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return chunk.length - pos;
+        }
+
+        @Override
+        public void close() {
+            if (!closed) {
+                closed = true;
+                pool.shutdownNow();
+            }
+        }
+    }
+}
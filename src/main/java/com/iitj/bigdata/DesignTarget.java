@@ -0,0 +1,46 @@
+package com.iitj.bigdata;
+
+import java.util.Locale;
+
+/**
+ * Database the {@link PhysicalDesigner} emits its design for, selected with the
+ * redshift.design.mode property.
+ */
+public enum DesignTarget {
+    /**
+     * Amazon Redshift: distribution style and key, compound sort key and column encodings.
+     */
+    REDSHIFT,
+    /**
+     * PostgreSQL: B-tree indexes on join and filter columns.
+     */
+    POSTGRES,
+    /**
+     * Keep the tables exactly as tpch_create.sql declares them.
+     */
+    NONE;
+
+    /**
+     * Parses a configuration value, case-insensitively. "auto" (the default) picks the
+     * target from the JDBC URL.
+     *
+     * @param value property value, or null for auto
+     * @param url JDBC URL of the database
+     * @return target
+     */
+    public static DesignTarget fromConfig(String value, String url) {
+        String mode = value == null ? "" : value.trim().toUpperCase(Locale.ROOT);
+        if (mode.isEmpty() || mode.equals("AUTO")) {
+            String u = url == null ? "" : url.toLowerCase(Locale.ROOT);
+            if (u.startsWith("jdbc:redshift:") || u.contains(".redshift.amazonaws.com")) {
+                return REDSHIFT;
+            }
+            return u.startsWith("jdbc:postgresql:") ? POSTGRES : NONE;
+        }
+        try {
+            return valueOf(mode);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown redshift.design.mode: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package com.iitj.bigdata;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latency distribution with fixed power-of-two buckets from 1 microsecond to about two
+ * hours. Recording finds the bucket with a bit count and updates a few atomics, so it does
+ * not allocate and can stay enabled in the batch loop.
+ */
+public class LatencyHistogram {
+    /**
+     * Upper bound of the first bucket in nanoseconds; bucket i ends at FIRST_BOUND << i.
+     */
+    static final long FIRST_BOUND = 1000;
+    /**
+     * Number of bounded buckets; one more bucket collects everything larger.
+     */
+    static final int BUCKETS = 34;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS + 1);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records one observation.
+     *
+     * @param nanos latency in nanoseconds
+     */
+    public void record(long nanos) {
+        if (nanos < 0) {
+            nanos = 0;
+        }
+        counts.incrementAndGet(bucket(nanos));
+        count.increment();
+        sum.add(nanos);
+        long current;
+        while (nanos > (current = max.get()) && !max.compareAndSet(current, nanos)) {
+            // Retry until the larger value is stored
+        }
+    }
+
+    static int bucket(long nanos) {
+        if (nanos <= FIRST_BOUND) {
+            return 0;
+        }
+        return Math.min(BUCKETS, 64 - Long.numberOfLeadingZeros((nanos - 1) / FIRST_BOUND));
+    }
+
+    /**
+     * Returns the upper bound of a bucket.
+     *
+     * @param bucket bucket index
+     * @return bound in nanoseconds, Long.MAX_VALUE for the last bucket
+     */
+    static long bound(int bucket) {
+        return bucket >= BUCKETS ? Long.MAX_VALUE : FIRST_BOUND << bucket;
+    }
+
+    long bucketCount(int bucket) {
+        return counts.get(bucket);
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getSumNanos() {
+        return sum.sum();
+    }
+
+    public long getMaxNanos() {
+        return max.get();
+    }
+
+    /**
+     * Estimates a percentile as the upper bound of the bucket that contains it, capped at
+     * the largest observation.
+     *
+     * @param percentile between 0 and 100
+     * @return latency in nanoseconds, 0 if nothing was recorded
+     */
+    public long percentile(double percentile) {
+        long total = 0;
+        long[] snapshot = new long[BUCKETS + 1];
+        for (int i = 0; i <= BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i <= BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return Math.min(bound(i), getMaxNanos());
+            }
+        }
+        return getMaxNanos();
+    }
+}
@@ -0,0 +1,241 @@
+package com.iitj.bigdata;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Durable record of how far a load has got, so a failed insert() can continue where it
+ * stopped instead of reloading every table.
+ *
+ * Progress is kept per loaded range: a whole data file for the sequential load, or one
+ * chunk of it for {@link ParallelLoader}, identified by the file and the range's start
+ * offset. For each range the checkpoint stores the table, the statement boundary and
+ * tuple count to resume from (see {@link SqlScriptReader#resume(long, long)}), the rows
+ * committed so far, and whether the range is complete.
+ *
+ * The file is rewritten after every committed batch: the new content is written to a
+ * temporary file, forced to disk and atomically renamed over the old one, so a crash
+ * leaves either the previous or the new checkpoint. The checkpoint is written after the
+ * database commit, so a crash in between leaves the last batch committed but unrecorded;
+ * callers count the rows in the table and reconcile against it. The sequential and COPY
+ * loads skip the extra rows; {@link ParallelLoader}, whose chunks commit concurrently,
+ * refuses to resume a table that does not match.
+ */
+public class LoadCheckpoint {
+    private static final String HEADER = "# TPC-H load checkpoint v1";
+
+    /**
+     * Progress of one loaded range.
+     */
+    public static class Entry {
+        private final String file;
+        private final long start;
+        private final String table;
+        private final long offset;
+        private final long tuples;
+        private final long rows;
+        private final boolean done;
+
+        Entry(String file, long start, String table, long offset, long tuples, long rows, boolean done) {
+            this.file = file;
+            this.start = start;
+            this.table = table;
+            this.offset = offset;
+            this.tuples = tuples;
+            this.rows = rows;
+            this.done = done;
+        }
+
+        public String getFile() {
+            return file;
+        }
+
+        public long getStart() {
+            return start;
+        }
+
+        public String getTable() {
+            return table;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public long getTuples() {
+            return tuples;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        public boolean isDone() {
+            return done;
+        }
+    }
+
+    private final Path path;
+    private final String target;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private final boolean resuming;
+
+    private LoadCheckpoint(Path path, String target, boolean resuming) {
+        this.path = path;
+        this.target = target;
+        this.resuming = resuming;
+    }
+
+    /**
+     * Opens the checkpoint at a path, reading it if it exists.
+     *
+     * @param path checkpoint file
+     * @param target identifies the database and load configuration; a checkpoint written
+     *               for a different target is rejected
+     * @return checkpoint
+     * @throws SQLException if the file cannot be read, is malformed or belongs to another target
+     */
+    public static LoadCheckpoint open(Path path, String target) throws SQLException {
+        if (!Files.exists(path)) {
+            return new LoadCheckpoint(path, target, false);
+        }
+        LoadCheckpoint checkpoint = new LoadCheckpoint(path, target, true);
+        try {
+            List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+            if (lines.size() < 2 || !lines.get(0).equals(HEADER)) {
+                throw new SQLException("Not a load checkpoint: " + path);
+            }
+            if (!lines.get(1).equals("target\t" + target)) {
+                throw new SQLException("Load checkpoint " + path + " was written for "
+                        + lines.get(1).substring(lines.get(1).indexOf('\t') + 1)
+                        + "; drop() the tables or delete it to start a new load");
+            }
+            for (String line : lines.subList(2, lines.size())) {
+                String[] f = line.split("\t");
+                if (f.length != 7) {
+                    throw new SQLException("Malformed load checkpoint line in " + path + ": " + line);
+                }
+                Entry e = new Entry(f[0], Long.parseLong(f[1]), f[2], Long.parseLong(f[3]),
+                        Long.parseLong(f[4]), Long.parseLong(f[5]), Boolean.parseBoolean(f[6]));
+                checkpoint.entries.put(key(e.file, e.start), e);
+            }
+        } catch (IOException | NumberFormatException e) {
+            throw new SQLException("Failed to read load checkpoint " + path, e);
+        }
+        return checkpoint;
+    }
+
+    private static String key(String file, long start) {
+        return file + "@" + start;
+    }
+
+    /**
+     * Returns whether the checkpoint was read from an earlier, unfinished load.
+     *
+     * @return true when resuming
+     */
+    public boolean isResuming() {
+        return resuming;
+    }
+
+    /**
+     * Returns the progress of a range.
+     *
+     * @param file data file name
+     * @param start start offset of the range, 0 for a whole file
+     * @return entry, or null if nothing of the range was committed
+     */
+    public synchronized Entry get(String file, long start) {
+        return entries.get(key(file, start));
+    }
+
+    /**
+     * Records a committed batch of a range and writes the checkpoint.
+     *
+     * @param file data file name
+     * @param start start offset of the range
+     * @param table table being loaded
+     * @param offset statement boundary to resume from
+     * @param tuples tuples after the boundary that are committed
+     * @param rows rows of the range committed so far
+     * @throws SQLException if the checkpoint cannot be written
+     */
+    public synchronized void committed(String file, long start, String table, long offset, long tuples, long rows)
+            throws SQLException {
+        entries.put(key(file, start), new Entry(file, start, table, offset, tuples, rows, false));
+        save();
+    }
+
+    /**
+     * Marks a range as completely loaded and writes the checkpoint.
+     *
+     * @param file data file name
+     * @param start start offset of the range
+     * @param table table loaded
+     * @param rows rows of the range
+     * @throws SQLException if the checkpoint cannot be written
+     */
+    public synchronized void done(String file, long start, String table, long rows) throws SQLException {
+        entries.put(key(file, start), new Entry(file, start, table, 0, 0, rows, true));
+        save();
+    }
+
+    /**
+     * Deletes the checkpoint file once the load has finished or the tables were dropped.
+     *
+     * @throws SQLException if the file cannot be deleted
+     */
+    public synchronized void delete() throws SQLException {
+        entries.clear();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new SQLException("Failed to delete load checkpoint " + path, e);
+        }
+    }
+
+    private void save() throws SQLException {
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Path dir = path.toAbsolutePath().getParent();
+            if (dir != null) {
+                Files.createDirectories(dir);
+            }
+            try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                        Channels.newOutputStream(channel), StandardCharsets.UTF_8));
+                out.write(HEADER);
+                out.write("\ntarget\t");
+                out.write(target);
+                out.write('\n');
+                for (Entry e : entries.values()) {
+                    out.write(e.file + "\t" + e.start + "\t" + e.table + "\t" + e.offset + "\t" + e.tuples
+                            + "\t" + e.rows + "\t" + e.done + "\n");
+                }
+                out.flush();
+                channel.force(true);
+            }
+            try {
+                Files.move(tmp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            throw new SQLException("Failed to write load checkpoint " + path, e);
+        }
+    }
+}
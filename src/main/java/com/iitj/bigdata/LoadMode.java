@@ -0,0 +1,39 @@
+package com.iitj.bigdata;
+
+import java.util.Locale;
+
+/**
+ * Strategy used by insert() to send rows to the database, selected with the
+ * redshift.load.mode property.
+ */
+public enum LoadMode {
+    /**
+     * Literal multi-row INSERT statements built from the script text.
+     */
+    MULTIROW,
+    /**
+     * Typed values bound to a reused PreparedStatement and sent with executeBatch.
+     */
+    BATCH,
+    /**
+     * Scripts converted to CSV staging files and ingested with COPY.
+     */
+    COPY;
+
+    /**
+     * Parses a configuration value, case-insensitively.
+     *
+     * @param value property value, or null for the default
+     * @return load mode
+     */
+    public static LoadMode fromConfig(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return MULTIROW;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown redshift.load.mode: " + value, e);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.iitj.bigdata;
+
+import java.util.Arrays;
+
+/**
+ * Open-addressing hash map from long keys to int values, used as the build side of the
+ * hash joins in {@link ColumnarEngine}. Avoids boxing every key of a multi-million row
+ * probe. {@link ColumnVector#NULL} cannot be used as a key. Safe for concurrent reads once
+ * building has finished.
+ */
+class LongIntHashMap {
+    private static final long EMPTY = ColumnVector.NULL;
+
+    private long[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+
+    /**
+     * Creates a map sized for the expected number of keys.
+     *
+     * @param expected expected number of keys
+     */
+    LongIntHashMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(4, expected * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        Arrays.fill(keys, EMPTY);
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    /**
+     * Returns the value of a key.
+     *
+     * @param key key
+     * @return value, or -1 if absent
+     */
+    int get(long key) {
+        if (key == EMPTY) {
+            return -1;
+        }
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                return values[i];
+            } else if (k == EMPTY) {
+                return -1;
+            }
+        }
+    }
+
+    /**
+     * Adds a key that is not yet present.
+     *
+     * @param key key, not {@link ColumnVector#NULL}
+     * @param value value, at least 0
+     * @return false if the key was already present; the map is left unchanged
+     */
+    boolean putIfAbsent(long key, int value) {
+        if ((size + 1) * 2 > keys.length) {
+            rehash();
+        }
+        for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+            long k = keys[i];
+            if (k == key) {
+                return false;
+            } else if (k == EMPTY) {
+                keys[i] = key;
+                values[i] = value;
+                size++;
+                return true;
+            }
+        }
+    }
+
+    private void rehash() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        allocate(keys.length * 2);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                putIfAbsent(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+
+    int size() {
+        return size;
+    }
+}
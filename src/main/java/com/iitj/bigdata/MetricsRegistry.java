@@ -0,0 +1,255 @@
+package com.iitj.bigdata;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.function.DoubleSupplier;
+
+/**
+ * In-process registry of counters, gauges and latency histograms, exportable in the
+ * Prometheus text format or as JSON.
+ *
+ * A metric is identified by its name and label values, e.g. redshift_batch_seconds with
+ * table="lineitem". Looking a metric up builds its key, so hot loops should look up their
+ * {@link Counter} or {@link LatencyHistogram} once and keep it; recording into it does not
+ * allocate.
+ */
+public class MetricsRegistry {
+    private enum Type { COUNTER, GAUGE, HISTOGRAM }
+
+    private static class Series {
+        final String name;
+        final String[] labels;
+        final Type type;
+        final Object metric;
+
+        Series(String name, String[] labels, Type type, Object metric) {
+            this.name = name;
+            this.labels = labels;
+            this.type = type;
+            this.metric = metric;
+        }
+    }
+
+    /**
+     * Sorted by key so exports list the series of one metric together.
+     */
+    private final Map<String, Series> series = new ConcurrentSkipListMap<>();
+
+    /**
+     * Returns a counter, creating it on first use.
+     *
+     * @param name metric name, ending in _total by convention
+     * @param labels alternating label names and values
+     * @return counter
+     */
+    public Counter counter(String name, String... labels) {
+        return (Counter) get(name, labels, Type.COUNTER);
+    }
+
+    /**
+     * Returns a latency histogram, creating it on first use.
+     *
+     * @param name metric name, ending in _seconds by convention
+     * @param labels alternating label names and values
+     * @return histogram
+     */
+    public LatencyHistogram histogram(String name, String... labels) {
+        return (LatencyHistogram) get(name, labels, Type.HISTOGRAM);
+    }
+
+    /**
+     * Registers a value that is read when the metrics are exported. An existing gauge of
+     * the same name and labels is kept.
+     *
+     * @param name metric name
+     * @param value supplies the current value
+     * @param labels alternating label names and values
+     */
+    public void gauge(String name, DoubleSupplier value, String... labels) {
+        series.putIfAbsent(key(name, labels), new Series(name, labels.clone(), Type.GAUGE, value));
+    }
+
+    private Object get(String name, String[] labels, Type type) {
+        Series s = series.computeIfAbsent(key(name, labels), k -> new Series(name, labels.clone(), type,
+                type == Type.COUNTER ? new Counter() : new LatencyHistogram()));
+        if (s.type != type) {
+            throw new IllegalArgumentException(name + " is already registered as a " + s.type);
+        }
+        return s.metric;
+    }
+
+    private static String key(String name, String[] labels) {
+        if (labels.length % 2 != 0) {
+            throw new IllegalArgumentException("Labels must be name/value pairs: " + String.join(",", labels));
+        }
+        StringBuilder sb = new StringBuilder(name);
+        for (String label : labels) {
+            sb.append('\u0000').append(label);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Times a phase; the latency is recorded into phase_seconds and a failure into
+     * phase_errors_total when the timing is closed without {@link Timing#success()}.
+     *
+     * @param prefix metric name prefix, e.g. redshift_phase
+     * @param phase value of the phase label
+     * @return running timing
+     */
+    public Timing time(String prefix, String phase) {
+        return new Timing(histogram(prefix + "_seconds", "phase", phase),
+                counter(prefix + "_errors_total", "phase", phase));
+    }
+
+    /**
+     * A running phase measurement, for use in try-with-resources.
+     */
+    public static class Timing implements AutoCloseable {
+        private final LatencyHistogram latency;
+        private final Counter errors;
+        private final long start = System.nanoTime();
+        private boolean succeeded;
+
+        Timing(LatencyHistogram latency, Counter errors) {
+            this.latency = latency;
+            this.errors = errors;
+        }
+
+        /**
+         * Marks the phase as completed successfully.
+         */
+        public void success() {
+            succeeded = true;
+        }
+
+        @Override
+        public void close() {
+            latency.record(System.nanoTime() - start);
+            if (!succeeded) {
+                errors.increment();
+            }
+        }
+    }
+
+    /**
+     * Writes all metrics in the Prometheus text exposition format. Latencies are exported
+     * in seconds.
+     *
+     * @return exposition text
+     */
+    public String toPrometheus() {
+        StringBuilder sb = new StringBuilder(4096);
+        String lastName = null;
+        for (Series s : series.values()) {
+            if (!s.name.equals(lastName)) {
+                sb.append("# TYPE ").append(s.name).append(' ')
+                        .append(s.type.name().toLowerCase(Locale.ROOT)).append('\n');
+                lastName = s.name;
+            }
+            switch (s.type) {
+                case COUNTER:
+                    sample(sb, s.name, s.labels, null, ((Counter) s.metric).get());
+                    break;
+                case GAUGE:
+                    sample(sb, s.name, s.labels, null, ((DoubleSupplier) s.metric).getAsDouble());
+                    break;
+                default:
+                    LatencyHistogram h = (LatencyHistogram) s.metric;
+                    long cumulative = 0;
+                    for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+                        cumulative += h.bucketCount(i);
+                        sample(sb, s.name + "_bucket", s.labels, seconds(LatencyHistogram.bound(i)), cumulative);
+                    }
+                    sample(sb, s.name + "_bucket", s.labels, "+Inf", h.getCount());
+                    sample(sb, s.name + "_sum", s.labels, null, h.getSumNanos() / 1e9);
+                    sample(sb, s.name + "_count", s.labels, null, h.getCount());
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void sample(StringBuilder sb, String name, String[] labels, String le, double value) {
+        sb.append(name);
+        if (labels.length > 0 || le != null) {
+            sb.append('{');
+            for (int i = 0; i < labels.length; i += 2) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append(labels[i]).append("=\"").append(escape(labels[i + 1])).append('"');
+            }
+            if (le != null) {
+                sb.append(labels.length > 0 ? "," : "").append("le=\"").append(le).append('"');
+            }
+            sb.append('}');
+        }
+        sb.append(' ').append(format(value)).append('\n');
+    }
+
+    /**
+     * Writes all metrics as a JSON object with counters, gauges and histograms arrays.
+     * Histograms carry count, sum, mean, max and p50/p90/p99 in seconds.
+     *
+     * @return JSON text
+     */
+    public String toJson() {
+        List<String> counters = new ArrayList<>();
+        List<String> gauges = new ArrayList<>();
+        List<String> histograms = new ArrayList<>();
+        for (Series s : series.values()) {
+            StringBuilder sb = new StringBuilder("{\"name\":\"").append(s.name).append("\",\"labels\":{");
+            for (int i = 0; i < s.labels.length; i += 2) {
+                if (i > 0) {
+                    sb.append(',');
+                }
+                sb.append('"').append(escape(s.labels[i])).append("\":\"").append(escape(s.labels[i + 1])).append('"');
+            }
+            sb.append('}');
+            switch (s.type) {
+                case COUNTER:
+                    counters.add(sb.append(",\"value\":").append(((Counter) s.metric).get()).append('}').toString());
+                    break;
+                case GAUGE:
+                    gauges.add(sb.append(",\"value\":").append(format(((DoubleSupplier) s.metric).getAsDouble()))
+                            .append('}').toString());
+                    break;
+                default:
+                    LatencyHistogram h = (LatencyHistogram) s.metric;
+                    long count = h.getCount();
+                    sb.append(",\"count\":").append(count)
+                            .append(",\"sum_seconds\":").append(seconds(h.getSumNanos()))
+                            .append(",\"mean_seconds\":").append(seconds(count == 0 ? 0 : h.getSumNanos() / count))
+                            .append(",\"max_seconds\":").append(seconds(h.getMaxNanos()))
+                            .append(",\"p50_seconds\":").append(seconds(h.percentile(50)))
+                            .append(",\"p90_seconds\":").append(seconds(h.percentile(90)))
+                            .append(",\"p99_seconds\":").append(seconds(h.percentile(99)))
+                            .append('}');
+                    histograms.add(sb.toString());
+            }
+        }
+        return "{\"counters\":[" + String.join(",", counters) + "],\"gauges\":[" + String.join(",", gauges)
+                + "],\"histograms\":[" + String.join(",", histograms) + "]}";
+    }
+
+    private static String seconds(long nanos) {
+        return format(nanos / 1e9);
+    }
+
+    private static String format(double value) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return Double.isNaN(value) ? "NaN" : value > 0 ? "+Inf" : "-Inf";
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return Long.toString((long) value);
+        }
+        return BigDecimal.valueOf(value).stripTrailingZeros().toPlainString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
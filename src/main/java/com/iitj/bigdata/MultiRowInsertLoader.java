@@ -0,0 +1,68 @@
+package com.iitj.bigdata;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Sends each batch as one literal INSERT INTO table VALUES (...), (...) statement built
+ * from the script text.
+ */
+public class MultiRowInsertLoader extends TableLoader {
+    /**
+     * Reused across batches so the multi-row statement is built without per-row Strings.
+     */
+    private final StringBuilder multiRowInsert = new StringBuilder(1 << 20);
+    private Statement stmt;
+
+    /**
+     * Creates a loader.
+     *
+     * @param con connection with autoCommit disabled
+     * @param sizer decides when a batch is full
+     * @param verbose whether to print progress after every batch
+     */
+    public MultiRowInsertLoader(Connection con, AdaptiveBatchSizer sizer, boolean verbose) {
+        super(con, sizer, verbose);
+    }
+
+    @Override
+    protected void startBatch(String tableName) {
+        multiRowInsert.setLength(0);
+        multiRowInsert.append("INSERT INTO ").append(target(tableName)).append(" VALUES ");
+    }
+
+    @Override
+    protected void addRow(TupleReader reader, int batchRows) {
+        if (batchRows > 0) {
+            multiRowInsert.append(", ");
+        }
+        reader.appendTuple(multiRowInsert);
+    }
+
+    @Override
+    protected void executeBatch() throws SQLException {
+        executeMultiRowInsert(multiRowInsert);
+    }
+
+    /**
+     * Executes a multi-row INSERT statement.
+     *
+     * @param multiRowInsert INSERT INTO table VALUES (...), (...) built by the caller
+     * @throws SQLException if execution fails
+     */
+    private void executeMultiRowInsert(StringBuilder multiRowInsert) throws SQLException {
+        if (stmt == null) {
+            stmt = con.createStatement();
+        }
+        stmt.execute(multiRowInsert.toString());
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (stmt != null) {
+            stmt.close();
+            stmt = null;
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package com.iitj.bigdata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads the TPC-H data files over several connections at once.
+ *
+ * Each file is first split into chunks of roughly equal size, aligned to statement
+ * boundaries found by {@link TupleReader#nextBoundary(long)}, which skips over the tuples
+ * without decoding them, so a file is only parsed once, by the worker loading it. Chunks
+ * of independent tables are loaded concurrently, and chunks of one table are committed
+ * by several workers in parallel. A table only starts loading after the tables it
+ * references through foreign keys in tpch_create.sql have finished; tables without such
+ * constraints are not ordered at all. Each data file is expected to hold the rows of a
+ * single table; a table may be spread over several files.
+ */
+public class ParallelLoader {
+    /**
+     * Opens a data resource such as "data/lineitem.sql".
+     */
+    public interface ResourceOpener {
+        InputStream open(String path) throws IOException;
+
+        /**
+         * Opens the tuples of a data resource; by default by tokenizing {@link #open(String)}.
+         *
+         * @param path resource path
+         * @return reader positioned before the first tuple
+         * @throws IOException if the resource cannot be opened
+         */
+        default TupleReader openReader(String path) throws IOException {
+            return new SqlScriptReader(open(path));
+        }
+    }
+
+    /**
+     * Creates the table loader a worker uses on its connection.
+     */
+    public interface LoaderFactory {
+        TableLoader create(Connection con);
+    }
+
+    /**
+     * Byte range of a data file, aligned to statement boundaries.
+     */
+    static class Chunk {
+        final String file;
+        final String table;
+        final int index;
+        final long start;
+        final long end;
+
+        Chunk(String file, String table, int index, long start, long end) {
+            this.file = file;
+            this.table = table;
+            this.index = index;
+            this.start = start;
+            this.end = end;
+        }
+    }
+
+    /**
+     * A loader connection and its statistics. Only one task uses a worker at a time.
+     */
+    private static class Worker {
+        final int id;
+        final Connection con;
+        final TableLoader loader;
+        long rows;
+        long nanos;
+        int chunks;
+
+        Worker(int id, Connection con, TableLoader loader) {
+            this.id = id;
+            this.con = con;
+            this.loader = loader;
+        }
+    }
+
+    private final ConnectionFactory connections;
+    private final ResourceOpener resources;
+    private final int workerCount;
+    private final long chunkBytes;
+    private final LoaderFactory loaders;
+    private final LoadCheckpoint checkpoint;
+
+    private volatile Throwable failure;
+
+    /**
+     * Creates a parallel loader.
+     *
+     * @param connections supplies one connection per worker; each is closed after the load
+     * @param resources opens data files
+     * @param workerCount number of connections and threads
+     * @param chunkBytes target chunk size in bytes
+     * @param loaders creates the table loader for each worker connection
+     */
+    public ParallelLoader(ConnectionFactory connections, ResourceOpener resources,
+                          int workerCount, long chunkBytes, LoaderFactory loaders) {
+        this(connections, resources, workerCount, chunkBytes, loaders, null);
+    }
+
+    /**
+     * Creates a parallel loader that records its progress per chunk and skips or resumes
+     * the chunks an earlier run already committed. The chunk size must be the one the
+     * checkpoint was written with, so that the chunks line up. A partly loaded table is
+     * only resumed if it holds exactly the rows the checkpoint recorded; see
+     * {@link #load(List, Map)}.
+     *
+     * @param connections supplies one connection per worker; each is closed after the load
+     * @param resources opens data files
+     * @param workerCount number of connections and threads
+     * @param chunkBytes target chunk size in bytes
+     * @param loaders creates the table loader for each worker connection
+     * @param checkpoint progress of earlier runs, updated after every commit; null to disable
+     */
+    public ParallelLoader(ConnectionFactory connections, ResourceOpener resources,
+                          int workerCount, long chunkBytes, LoaderFactory loaders, LoadCheckpoint checkpoint) {
+        this.connections = connections;
+        this.resources = resources;
+        this.workerCount = workerCount;
+        this.chunkBytes = chunkBytes;
+        this.loaders = loaders;
+        this.checkpoint = checkpoint;
+    }
+
+    /**
+     * Loads the given data files and prints per-worker and total throughput.
+     *
+     * When resuming from a checkpoint, the rows of every partly loaded table are counted
+     * first. Chunks of a table commit concurrently, so a batch that committed after the
+     * last checkpoint write cannot be attributed to its chunk, and resuming would insert
+     * it again; such a table is rejected before anything is loaded.
+     *
+     * @param dataFiles file names under data/
+     * @param schema tables parsed from tpch_create.sql, used for load ordering
+     * @return total number of rows loaded
+     * @throws SQLException if any chunk fails, in which case remaining chunks are not
+     *                      started, or if a table does not match the checkpoint
+     */
+    public long load(List<String> dataFiles, Map<String, TableSchema> schema) throws SQLException {
+        AtomicInteger threadId = new AtomicInteger();
+        ExecutorService pool = Executors.newFixedThreadPool(workerCount, r -> {
+            Thread t = new Thread(r, "loader-" + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        BlockingQueue<Worker> idle = new ArrayBlockingQueue<>(workerCount);
+        List<Worker> workers = new ArrayList<>();
+        long started = System.nanoTime();
+        int chunkCount = 0;
+
+        try {
+            for (int i = 1; i <= workerCount; i++) {
+                Connection con = connections.open();
+                con.setAutoCommit(false);
+                Worker w = new Worker(i, con, loaders.create(con));
+                workers.add(w);
+                idle.add(w);
+            }
+
+            // Split all files concurrently before anything is loaded
+            List<CompletableFuture<List<Chunk>>> plans = new ArrayList<>();
+            for (String file : dataFiles) {
+                plans.add(CompletableFuture.supplyAsync(() -> plan(file), pool));
+            }
+            Map<String, List<Chunk>> chunksByTable = new LinkedHashMap<>();
+            for (CompletableFuture<List<Chunk>> plan : plans) {
+                List<Chunk> chunks = plan.join();
+                if (!chunks.isEmpty()) {
+                    // A table may be split over several files; number its chunks across them
+                    List<Chunk> tableChunks = chunksByTable.computeIfAbsent(
+                            TableSchema.normalize(chunks.get(0).table), t -> new ArrayList<>());
+                    for (Chunk c : chunks) {
+                        tableChunks.add(new Chunk(c.file, c.table, tableChunks.size(), c.start, c.end));
+                    }
+                    chunkCount += chunks.size();
+                }
+            }
+            if (checkpoint != null && checkpoint.isResuming()) {
+                reconcile(chunksByTable, workers.get(0));
+            }
+
+            Map<String, CompletableFuture<Void>> done = new LinkedHashMap<>();
+            for (String table : loadOrder(chunksByTable.keySet(), schema)) {
+                List<CompletableFuture<Void>> parents = new ArrayList<>();
+                TableSchema def = schema.get(table);
+                if (def != null) {
+                    for (String parent : def.getReferences()) {
+                        if (done.containsKey(parent)) {
+                            parents.add(done.get(parent));
+                        }
+                    }
+                }
+                List<Chunk> chunks = chunksByTable.get(table);
+                AtomicLong tableRows = new AtomicLong();
+                CompletableFuture<Void> ready = CompletableFuture.allOf(parents.toArray(new CompletableFuture<?>[0]));
+                done.put(table, ready.thenCompose(v -> {
+                    List<CompletableFuture<Void>> parts = new ArrayList<>();
+                    for (Chunk chunk : chunks) {
+                        parts.add(CompletableFuture.runAsync(
+                                () -> tableRows.addAndGet(loadChunk(chunk, chunks.size(), idle)), pool));
+                    }
+                    return CompletableFuture.allOf(parts.toArray(new CompletableFuture<?>[0]));
+                }).thenRun(() -> System.out.println("  Completed loading " + table + " ("
+                        + tableRows.get() + " records)")));
+            }
+            CompletableFuture.allOf(done.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = failure != null ? failure : e.getCause();
+            if (cause instanceof SQLException) {
+                throw (SQLException) cause;
+            }
+            throw new SQLException("Failed to load data", cause);
+        } finally {
+            pool.shutdownNow();
+            for (Worker w : workers) {
+                try {
+                    w.loader.close();
+                } catch (SQLException e) {
+                    System.err.println("Error closing loader: " + e.getMessage());
+                }
+                try (Connection con = w.con) {
+                    con.setAutoCommit(true);
+                } catch (SQLException e) {
+                    System.err.println("Error closing loader connection: " + e.getMessage());
+                }
+            }
+        }
+        return report(workers, chunkCount, System.nanoTime() - started);
+    }
+
+    /**
+     * Splits a data file into chunks of about chunkBytes, cut at statement ends. Only the
+     * first tuple is decoded, for the table name; the rest is scanned for boundaries.
+     */
+    private List<Chunk> plan(String file) {
+        List<Chunk> chunks = new ArrayList<>();
+        try (TupleReader reader = resources.openReader("data/" + file)) {
+            if (!reader.next()) {
+                return chunks;
+            }
+            String table = reader.table();
+            long chunkStart = 0;
+            long end;
+            // A chunk size of Long.MAX_VALUE keeps the file whole without scanning it
+            while (chunkBytes < Long.MAX_VALUE - chunkStart
+                    && (end = reader.nextBoundary(chunkStart + chunkBytes)) >= 0) {
+                chunks.add(new Chunk(file, table, chunks.size(), chunkStart, end));
+                chunkStart = end;
+            }
+            chunks.add(new Chunk(file, table, chunks.size(), chunkStart, Long.MAX_VALUE));
+        } catch (IOException e) {
+            failure = e;
+            throw new CompletionException(e);
+        }
+        return chunks;
+    }
+
+    /**
+     * Checks that every partly loaded table holds exactly the rows its chunks recorded.
+     */
+    private void reconcile(Map<String, List<Chunk>> chunksByTable, Worker w) throws SQLException {
+        for (List<Chunk> chunks : chunksByTable.values()) {
+            long recorded = 0;
+            boolean complete = true;
+            for (Chunk chunk : chunks) {
+                LoadCheckpoint.Entry entry = checkpoint.get(chunk.file, chunk.start);
+                recorded += entry == null ? 0 : entry.getRows();
+                complete &= entry != null && entry.isDone();
+            }
+            if (complete) {
+                continue;
+            }
+            String table = chunks.get(0).table;
+            long committed = w.loader.countRows(table);
+            if (committed != recorded) {
+                throw new SQLException("Table " + table + " has " + committed + " rows but the load checkpoint "
+                        + "recorded " + recorded + "; rows committed after the last checkpoint write cannot be "
+                        + "matched to their chunks, so drop() the tables to start over");
+            }
+        }
+    }
+
+    /**
+     * Loads one chunk on whichever worker is idle.
+     *
+     * @return rows of the chunk, including those loaded by an earlier run
+     */
+    private long loadChunk(Chunk chunk, int chunkTotal, BlockingQueue<Worker> idle) {
+        if (failure != null) {
+            throw new CompletionException(failure);
+        }
+        LoadCheckpoint.Entry entry = checkpoint == null ? null : checkpoint.get(chunk.file, chunk.start);
+        if (entry != null && entry.isDone()) {
+            System.out.println("  Skipped " + chunk.table + " chunk " + (chunk.index + 1) + "/" + chunkTotal
+                    + " (loaded by an earlier run)");
+            return entry.getRows();
+        }
+        Worker w;
+        try {
+            w = idle.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+        long start = System.nanoTime();
+        try (TupleReader reader = resources.openReader("data/" + chunk.file)) {
+            long done = 0;
+            if (entry != null) {
+                reader.resume(entry.getOffset(), entry.getTuples());
+                done = entry.getRows();
+            } else {
+                reader.skipTo(chunk.start);
+            }
+            long rows;
+            if (checkpoint == null) {
+                rows = w.loader.load(reader, chunk.end);
+            } else {
+                long before = done;
+                rows = w.loader.load(reader, chunk.end, (table, offset, tuples, committed) ->
+                        checkpoint.committed(chunk.file, chunk.start, chunk.table, offset, tuples, before + committed));
+                checkpoint.done(chunk.file, chunk.start, chunk.table, done + rows);
+            }
+            w.rows += rows;
+            w.chunks++;
+            System.out.println("  Loaded " + chunk.table + " chunk " + (chunk.index + 1) + "/" + chunkTotal
+                    + " (" + rows + " records) on worker " + w.id);
+            return done + rows;
+        } catch (SQLException | IOException | RuntimeException e) {
+            // Malformed tuples surface as runtime exceptions, e.g. NumberFormatException
+            try {
+                w.con.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            if (failure == null) {
+                failure = e;
+            }
+            throw new CompletionException(e);
+        } finally {
+            w.nanos += System.nanoTime() - start;
+            idle.add(w);
+        }
+    }
+
+    /**
+     * Orders tables so that every table follows the tables it references. Tables keep
+     * their file order where constraints allow it.
+     *
+     * @param tables tables to load
+     * @param schema parsed schema
+     * @return load order
+     * @throws SQLException if the constraints form a cycle
+     */
+    static List<String> loadOrder(Collection<String> tables, Map<String, TableSchema> schema)
+            throws SQLException {
+        Map<String, Integer> pending = new LinkedHashMap<>();
+        Map<String, List<String>> dependents = new LinkedHashMap<>();
+        for (String table : tables) {
+            pending.put(table, 0);
+            dependents.put(table, new ArrayList<>());
+        }
+        for (String table : tables) {
+            TableSchema def = schema.get(table);
+            for (String parent : def == null ? Collections.<String>emptySet() : def.getReferences()) {
+                if (dependents.containsKey(parent)) {
+                    dependents.get(parent).add(table);
+                    pending.merge(table, 1, Integer::sum);
+                }
+            }
+        }
+        Deque<String> ready = new ArrayDeque<>();
+        pending.forEach((table, count) -> {
+            if (count == 0) {
+                ready.add(table);
+            }
+        });
+        List<String> order = new ArrayList<>();
+        while (!ready.isEmpty()) {
+            String table = ready.poll();
+            order.add(table);
+            for (String child : dependents.get(table)) {
+                if (pending.merge(child, -1, Integer::sum) == 0) {
+                    ready.add(child);
+                }
+            }
+        }
+        if (order.size() != tables.size()) {
+            throw new SQLException("Foreign key constraints form a cycle among " + tables);
+        }
+        return order;
+    }
+
+    private long report(List<Worker> workers, int chunkCount, long wallNanos) {
+        System.out.println("Load summary (" + workers.size() + " workers, " + chunkCount + " chunks):");
+        long total = 0;
+        for (Worker w : workers) {
+            total += w.rows;
+            System.out.println("  worker " + w.id + ": " + w.rows + " rows in " + w.chunks + " chunks, "
+                    + seconds(w.nanos) + " s busy (" + rate(w.rows, w.nanos) + " rows/sec)");
+        }
+        System.out.println("  total: " + total + " rows in " + seconds(wallNanos) + " s ("
+                + rate(total, wallNanos) + " rows/sec)");
+        return total;
+    }
+
+    private static String seconds(long nanos) {
+        return String.format("%.2f", nanos / 1e9);
+    }
+
+    private static long rate(long rows, long nanos) {
+        return nanos == 0 ? 0 : Math.round(rows / (nanos / 1e9));
+    }
+}
@@ -0,0 +1,479 @@
+package com.iitj.bigdata;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Derives a physical design for the TPC-H tables from the queries that run against them,
+ * instead of relying on the defaults of the bare CREATE TABLE statements.
+ *
+ * Each query added with {@link #addQuery(String, String)} is scanned for the tables it
+ * reads, the column pairs it joins on and the columns it filters on with a constant,
+ * either by equality or by range. From that workload and the size of each table the
+ * designer produces, for Redshift, a distribution style and key per table (co-locating
+ * the most expensive join, replicating small tables), a compound sort key (range filters
+ * first, so zone maps skip blocks) and column encodings; for PostgreSQL, indexes on the
+ * join and filter columns that are not already covered by a primary key.
+ *
+ * The design is returned as ALTER TABLE / CREATE INDEX statements to run after the
+ * tables are created, together with the reason for every choice.
+ */
+public class PhysicalDesigner {
+    private static final Pattern TABLE_REF = Pattern.compile(
+            "\\b(?:FROM|JOIN)\\s+([\\w.\"]+)(?:\\s+(?:AS\\s+)?(?!(?:ON|WHERE|JOIN|GROUP|ORDER|LIMIT|LEFT|RIGHT"
+            + "|INNER|OUTER|FULL|CROSS|UNION|HAVING)\\b)(\\w+))?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern JOIN_PREDICATE = Pattern.compile(
+            "\\b(?:(\\w+)\\.)?(\\w+)\\s*=\\s*(?:(\\w+)\\.)?(\\w+)\\b(?!\\s*[.(])");
+    private static final Pattern FILTER_PREDICATE = Pattern.compile(
+            "\\b(?:(\\w+)\\.)?(\\w+)\\s*(<=|>=|<>|!=|=|<|>|\\bBETWEEN\\b|\\bIN\\b|\\bLIKE\\b)\\s*"
+            + "(?=DATE\\b|TIMESTAMP\\b|'|[-+]?\\d|\\(\\s*SELECT\\b)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CHAR_LENGTH = Pattern.compile("\\((\\d+)");
+    /**
+     * Longest CHAR column that is dictionary encoded without being filtered on; longer
+     * ones are mostly free text or unique codes.
+     */
+    private static final int DICTIONARY_CHAR_LENGTH = 10;
+
+    /**
+     * Queries that use a column, per kind of use.
+     */
+    private static class ColumnUse {
+        final Set<String> joins = new TreeSet<>();
+        final Set<String> equalityFilters = new TreeSet<>();
+        final Set<String> rangeFilters = new TreeSet<>();
+    }
+
+    /**
+     * An equi-join between two columns of different tables, stored in name order so both
+     * spellings of the predicate are the same edge.
+     */
+    private static class JoinEdge {
+        final String leftTable;
+        final String leftColumn;
+        final String rightTable;
+        final String rightColumn;
+        final Set<String> queries = new TreeSet<>();
+
+        JoinEdge(String leftTable, String leftColumn, String rightTable, String rightColumn) {
+            this.leftTable = leftTable;
+            this.leftColumn = leftColumn;
+            this.rightTable = rightTable;
+            this.rightColumn = rightColumn;
+        }
+
+        String key() {
+            return leftTable + "." + leftColumn + "=" + rightTable + "." + rightColumn;
+        }
+    }
+
+    /**
+     * The statements of a design and the reasons behind them.
+     */
+    public static class Design {
+        private final DesignTarget target;
+        private final List<String> statements = new ArrayList<>();
+        private final Map<String, List<String>> notes = new LinkedHashMap<>();
+
+        Design(DesignTarget target) {
+            this.target = target;
+        }
+
+        void note(String table, String note) {
+            notes.computeIfAbsent(table, t -> new ArrayList<>()).add(note);
+        }
+
+        public DesignTarget getTarget() {
+            return target;
+        }
+
+        /**
+         * Returns the statements that apply the design, in execution order.
+         *
+         * @return ALTER TABLE or CREATE INDEX statements
+         */
+        public List<String> getStatements() {
+            return Collections.unmodifiableList(statements);
+        }
+
+        /**
+         * Returns the reasons recorded for one table.
+         *
+         * @param table table name
+         * @return notes, empty if the table is left unchanged
+         */
+        public List<String> getNotes(String table) {
+            return notes.getOrDefault(table, Collections.emptyList());
+        }
+
+        /**
+         * Describes every choice of the design, table by table.
+         *
+         * @return multi-line description
+         */
+        public String describe() {
+            StringBuilder sb = new StringBuilder("Physical design for ").append(target).append(":\n");
+            for (Map.Entry<String, List<String>> table : notes.entrySet()) {
+                sb.append("  ").append(table.getKey()).append('\n');
+                for (String note : table.getValue()) {
+                    sb.append("    - ").append(note).append('\n');
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Query latencies before and after a design was applied.
+     */
+    public static class Report {
+        private final Map<String, long[]> timings = new LinkedHashMap<>();
+
+        /**
+         * Records the latency of one query.
+         *
+         * @param query query name
+         * @param beforeNanos latency without the design
+         * @param afterNanos latency with the design
+         */
+        public void add(String query, long beforeNanos, long afterNanos) {
+            timings.put(query, new long[]{beforeNanos, afterNanos});
+        }
+
+        /**
+         * Returns how many times faster a query ran with the design.
+         *
+         * @param query query name
+         * @return before / after, above 1 when the design helped
+         */
+        public double getSpeedup(String query) {
+            long[] t = timings.get(query);
+            return (double) t[0] / Math.max(1, t[1]);
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder("Physical design comparison:\n");
+            sb.append(String.format("  %-10s %12s %12s %8s%n", "query", "before ms", "after ms", "speedup"));
+            for (Map.Entry<String, long[]> t : timings.entrySet()) {
+                sb.append(String.format("  %-10s %12.1f %12.1f %7.2fx%n", t.getKey(),
+                        t.getValue()[0] / 1e6, t.getValue()[1] / 1e6, getSpeedup(t.getKey())));
+            }
+            return sb.toString();
+        }
+    }
+
+    private final Map<String, TableSchema> schema;
+    private final Map<String, Long> tableBytes;
+    private final long smallTableBytes;
+    private final Map<String, Map<String, ColumnUse>> uses = new HashMap<>();
+    private final Map<String, JoinEdge> edges = new LinkedHashMap<>();
+
+    /**
+     * Creates a designer for a schema.
+     *
+     * @param schema tables keyed by lower-case name, as parsed by {@link TableSchema#parse(String)}
+     * @param tableBytes estimated size of each table in bytes; missing tables count as empty
+     * @param smallTableBytes tables up to this size are replicated (Redshift) or left
+     *                        without secondary indexes (PostgreSQL)
+     */
+    public PhysicalDesigner(Map<String, TableSchema> schema, Map<String, Long> tableBytes, long smallTableBytes) {
+        this.schema = schema;
+        this.tableBytes = tableBytes;
+        this.smallTableBytes = smallTableBytes;
+    }
+
+    /**
+     * Adds a query of the workload.
+     *
+     * @param name query name, used in the design notes
+     * @param sql query text
+     */
+    public void addQuery(String name, String sql) {
+        Map<String, String> aliases = new HashMap<>();
+        Matcher ref = TABLE_REF.matcher(sql);
+        while (ref.find()) {
+            String table = TableSchema.normalize(ref.group(1));
+            if (schema.containsKey(table)) {
+                aliases.put(table, table);
+                if (ref.group(2) != null) {
+                    aliases.put(ref.group(2).toLowerCase(Locale.ROOT), table);
+                }
+            }
+        }
+
+        Matcher join = JOIN_PREDICATE.matcher(sql);
+        while (join.find()) {
+            String left = resolve(aliases, join.group(1), join.group(2));
+            String right = resolve(aliases, join.group(3), join.group(4));
+            if (left == null || right == null) {
+                continue;
+            }
+            String[] l = left.split("\\.");
+            String[] r = right.split("\\.");
+            if (l[0].equals(r[0])) {
+                continue;
+            }
+            JoinEdge edge = l[0].compareTo(r[0]) < 0 ? new JoinEdge(l[0], l[1], r[0], r[1])
+                    : new JoinEdge(r[0], r[1], l[0], l[1]);
+            edges.computeIfAbsent(edge.key(), k -> edge).queries.add(name);
+            use(l[0], l[1]).joins.add(name);
+            use(r[0], r[1]).joins.add(name);
+        }
+
+        Matcher filter = FILTER_PREDICATE.matcher(sql);
+        while (filter.find()) {
+            String column = resolve(aliases, filter.group(1), filter.group(2));
+            if (column == null) {
+                continue;
+            }
+            String[] c = column.split("\\.");
+            String op = filter.group(3).toUpperCase(Locale.ROOT);
+            switch (op) {
+                case "<":
+                case ">":
+                case "<=":
+                case ">=":
+                case "BETWEEN":
+                    use(c[0], c[1]).rangeFilters.add(name);
+                    break;
+                case "=":
+                case "IN":
+                    use(c[0], c[1]).equalityFilters.add(name);
+                    break;
+                default:
+                    // <>, != and LIKE cannot narrow a scan to a key range
+                    break;
+            }
+        }
+    }
+
+    private ColumnUse use(String table, String column) {
+        return uses.computeIfAbsent(table, t -> new HashMap<>()).computeIfAbsent(column, c -> new ColumnUse());
+    }
+
+    /**
+     * Resolves a possibly qualified column reference to table.column.
+     *
+     * @return qualified name, or null if it is not a column of a table the query reads
+     */
+    private String resolve(Map<String, String> aliases, String qualifier, String column) {
+        String name = column.toLowerCase(Locale.ROOT);
+        if (qualifier != null) {
+            String table = aliases.get(qualifier.toLowerCase(Locale.ROOT));
+            return table != null && schema.get(table).getColumn(name) != null ? table + "." + name : null;
+        }
+        String found = null;
+        for (String table : new TreeSet<>(aliases.values())) {
+            if (schema.get(table).getColumn(name) != null) {
+                if (found != null) {
+                    // Ambiguous without a qualifier
+                    return null;
+                }
+                found = table + "." + name;
+            }
+        }
+        return found;
+    }
+
+    private long bytes(String table) {
+        return tableBytes.getOrDefault(table, 0L);
+    }
+
+    private boolean isSmall(String table) {
+        return bytes(table) <= smallTableBytes;
+    }
+
+    /**
+     * Returns the columns of a table with a given kind of use, most used first.
+     */
+    private List<String> columns(String table, Function<ColumnUse, Set<String>> kind) {
+        List<String> columns = new ArrayList<>();
+        Map<String, ColumnUse> tableUses = uses.getOrDefault(table, Collections.emptyMap());
+        for (Map.Entry<String, ColumnUse> use : tableUses.entrySet()) {
+            if (!kind.apply(use.getValue()).isEmpty()) {
+                columns.add(use.getKey());
+            }
+        }
+        columns.sort(Comparator.comparingInt((String c) -> -kind.apply(tableUses.get(c)).size())
+                .thenComparing(Comparator.naturalOrder()));
+        return columns;
+    }
+
+    /**
+     * Produces the design for a target database.
+     *
+     * @param target database the statements are written for
+     * @return design; empty for {@link DesignTarget#NONE}
+     */
+    public Design design(DesignTarget target) {
+        switch (target) {
+            case REDSHIFT:
+                return redshift();
+            case POSTGRES:
+                return postgres();
+            default:
+                return new Design(DesignTarget.NONE);
+        }
+    }
+
+    private Design redshift() {
+        Design design = new Design(DesignTarget.REDSHIFT);
+        Map<String, String> distKeys = new HashMap<>();
+
+        // Co-locate the joins that would move the most data, biggest first
+        List<JoinEdge> byCost = new ArrayList<>(edges.values());
+        byCost.sort(Comparator.comparingLong((JoinEdge e) ->
+                -e.queries.size() * Math.min(bytes(e.leftTable), bytes(e.rightTable)))
+                .thenComparing(JoinEdge::key));
+        for (JoinEdge edge : byCost) {
+            if (isSmall(edge.leftTable) || isSmall(edge.rightTable)) {
+                continue;
+            }
+            String left = distKeys.get(edge.leftTable);
+            String right = distKeys.get(edge.rightTable);
+            if (left == null && (right == null || right.equals(edge.rightColumn))) {
+                distKeys.put(edge.leftTable, edge.leftColumn);
+                design.note(edge.leftTable, "DISTKEY " + edge.leftColumn + " co-locates the join with "
+                        + edge.rightTable + "." + edge.rightColumn + " in " + String.join(", ", edge.queries));
+            }
+            if (right == null && edge.leftColumn.equals(distKeys.get(edge.leftTable))) {
+                distKeys.put(edge.rightTable, edge.rightColumn);
+                design.note(edge.rightTable, "DISTKEY " + edge.rightColumn + " co-locates the join with "
+                        + edge.leftTable + "." + edge.leftColumn + " in " + String.join(", ", edge.queries));
+            }
+        }
+
+        for (TableSchema table : schema.values()) {
+            String name = table.getName();
+            String distKey = distKeys.get(name);
+            if (isSmall(name)) {
+                design.statements.add("ALTER TABLE " + name + " ALTER DISTSTYLE ALL");
+                design.note(name, "DISTSTYLE ALL: " + bytes(name) + " bytes is small enough to copy to every node");
+            } else if (distKey != null) {
+                design.statements.add("ALTER TABLE " + name + " ALTER DISTSTYLE KEY DISTKEY " + distKey);
+            } else {
+                design.statements.add("ALTER TABLE " + name + " ALTER DISTSTYLE EVEN");
+                design.note(name, "DISTSTYLE EVEN: no join of this table can be co-located");
+            }
+
+            List<String> sortKey = columns(name, u -> u.rangeFilters);
+            String reason = "range filters";
+            if (sortKey.isEmpty() && distKey != null) {
+                sortKey = Collections.singletonList(distKey);
+                reason = "the distribution key, so co-located joins can merge";
+            }
+            if (sortKey.isEmpty()) {
+                sortKey = columns(name, u -> u.equalityFilters);
+                reason = "equality filters";
+            }
+            if (sortKey.isEmpty()) {
+                sortKey = columns(name, u -> u.joins);
+                reason = "join columns";
+            }
+            if (!sortKey.isEmpty()) {
+                design.statements.add("ALTER TABLE " + name + " ALTER COMPOUND SORTKEY ("
+                        + String.join(", ", sortKey) + ")");
+                design.note(name, "SORTKEY (" + String.join(", ", sortKey) + ") from " + reason);
+            }
+
+            // Sort key columns stay RAW so their zone maps are exact
+            List<String> encodings = new ArrayList<>();
+            for (TableSchema.Column column : table.getColumns()) {
+                if (sortKey.contains(column.getName())) {
+                    continue;
+                }
+                String encoding = encoding(name, column);
+                design.statements.add("ALTER TABLE " + name + " ALTER COLUMN " + column.getName()
+                        + " ENCODE " + encoding);
+                encodings.add(column.getName() + " " + encoding);
+            }
+            if (!encodings.isEmpty()) {
+                design.note(name, "ENCODE " + String.join(", ", encodings));
+            }
+        }
+        return design;
+    }
+
+    /**
+     * Chooses a Redshift column encoding from the declared type and how the column is used.
+     */
+    private String encoding(String table, TableSchema.Column column) {
+        switch (column.getSqlType()) {
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.SMALLINT:
+            case Types.DECIMAL:
+            case Types.DATE:
+                return "AZ64";
+            case Types.CHAR:
+                ColumnUse use = uses.getOrDefault(table, Collections.emptyMap()).get(column.getName());
+                Matcher length = CHAR_LENGTH.matcher(column.getType());
+                if ((use != null && !use.equalityFilters.isEmpty())
+                        || (length.find() && Integer.parseInt(length.group(1)) <= DICTIONARY_CHAR_LENGTH)) {
+                    // Short or filtered fixed-width codes have few distinct values
+                    return "BYTEDICT";
+                }
+                return "ZSTD";
+            default:
+                return "ZSTD";
+        }
+    }
+
+    private Design postgres() {
+        Design design = new Design(DesignTarget.POSTGRES);
+        for (TableSchema table : schema.values()) {
+            String name = table.getName();
+            if (!uses.containsKey(name)) {
+                continue;
+            }
+            if (isSmall(name)) {
+                design.note(name, "no indexes: " + bytes(name) + " bytes is cheaper to scan");
+                continue;
+            }
+            List<String> pk = table.getPrimaryKey();
+            String[][] kinds = {
+                    columns(name, u -> u.joins).toArray(new String[0]),
+                    columns(name, u -> u.rangeFilters).toArray(new String[0]),
+                    columns(name, u -> u.equalityFilters).toArray(new String[0])};
+            String[] reasons = {"join column", "range filter", "equality filter"};
+            Set<String> indexed = new TreeSet<>();
+            for (int k = 0; k < kinds.length; k++) {
+                for (String column : kinds[k]) {
+                    if (!pk.isEmpty() && pk.get(0).equals(column)) {
+                        if (indexed.add(column)) {
+                            design.note(name, column + ": " + reasons[k] + " already led by the primary key index");
+                        }
+                        continue;
+                    }
+                    if (indexed.add(column)) {
+                        design.statements.add("CREATE INDEX IF NOT EXISTS idx_" + name + "_" + column
+                                + " ON " + name + " (" + column + ")");
+                        design.note(name, "INDEX (" + column + ") for the " + reasons[k] + " in "
+                                + String.join(", ", queriesUsing(name, column)));
+                    }
+                }
+            }
+        }
+        return design;
+    }
+
+    private Set<String> queriesUsing(String table, String column) {
+        ColumnUse use = uses.get(table).get(column);
+        Set<String> queries = new TreeSet<>(use.joins);
+        queries.addAll(use.equalityFilters);
+        queries.addAll(use.rangeFilters);
+        return queries;
+    }
+}
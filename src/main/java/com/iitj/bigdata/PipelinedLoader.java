@@ -0,0 +1,358 @@
+package com.iitj.bigdata;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loads a script as multi-row INSERTs in three stages that run on their own threads: a
+ * parser that reads tuples and cuts them into batches, a builder that turns each batch
+ * into its INSERT statement, and one or more executors that send the statements and
+ * commit, each on its own connection. The stages are connected by bounded queues, so
+ * while one batch is on the wire the next ones are parsed and built, and a slow database
+ * blocks the parser instead of letting batches pile up in memory.
+ *
+ * The first failure in any stage stops all of them and is rethrown by {@link #load}; the
+ * executor whose batch failed rolls it back. With several executors batches commit out
+ * of script order, and the commit listener only hears about the batches up to the first
+ * one that has not committed yet. A loader runs one load at a time.
+ */
+public class PipelinedLoader implements AutoCloseable {
+    /**
+     * Marks the end of the script in both queues.
+     */
+    private static final Batch END = new Batch(-1, null, null, null);
+
+    /**
+     * Rows of one batch as they move through the stages.
+     */
+    private static class Batch {
+        final long sequence;
+        final String table;
+        final AdaptiveBatchSizer.Table sizing;
+        final TableLoader.TableMetrics metrics;
+        List<String> tuples = new ArrayList<>();
+        int rows;
+        long bytes;
+        long markOffset;
+        long markTuples;
+        String sql;
+
+        Batch(long sequence, String table, AdaptiveBatchSizer.Table sizing, TableLoader.TableMetrics metrics) {
+            this.sequence = sequence;
+            this.table = table;
+            this.sizing = sizing;
+            this.metrics = metrics;
+        }
+    }
+
+    private final List<Connection> connections = new ArrayList<>();
+    private final AdaptiveBatchSizer sizer;
+    private final int queueBatches;
+    private final boolean verbose;
+    private final MetricsRegistry metrics;
+    private final Map<String, TableLoader.TableMetrics> tableMetrics = new HashMap<>();
+    private String tableSuffix = "";
+
+    // State of the running load
+    private volatile Throwable failure;
+    private ExecutorService pool;
+    private TableLoader.CommitListener listener;
+    private Map<Long, Batch> finished;
+    private long nextCommit;
+    private long committedRows;
+
+    /**
+     * Creates a loader. The first executor uses the given connection; the others open
+     * their own, which are closed by {@link #close()}.
+     *
+     * @param con connection with autoCommit disabled
+     * @param more supplies the connections of the other executors, or null for one executor
+     * @param executors number of executor stages, at least 1
+     * @param sizer decides when a batch is full
+     * @param queueBatches batches each queue holds before the stage feeding it blocks
+     * @param verbose whether to print progress after every batch
+     * @param metrics registry to record into, or null
+     * @throws SQLException if a connection cannot be opened
+     */
+    public PipelinedLoader(Connection con, ConnectionFactory more, int executors, AdaptiveBatchSizer sizer,
+                           int queueBatches, boolean verbose, MetricsRegistry metrics) throws SQLException {
+        if (executors < 1 || queueBatches < 1) {
+            throw new IllegalArgumentException("Need at least one executor and one queued batch");
+        }
+        this.sizer = sizer;
+        this.queueBatches = queueBatches;
+        this.verbose = verbose;
+        this.metrics = metrics;
+        connections.add(con);
+        try {
+            for (int i = 1; i < executors; i++) {
+                Connection c = more.open();
+                connections.add(c);
+                c.setAutoCommit(false);
+            }
+        } catch (SQLException e) {
+            close();
+            throw e;
+        }
+    }
+
+    /**
+     * Sends the rows of every table to the table named with the given suffix, like
+     * {@link TableLoader#withTableSuffix(String)}.
+     *
+     * @param suffix appended to the table names of the script, or "" for none
+     * @return this loader
+     */
+    public PipelinedLoader withTableSuffix(String suffix) {
+        this.tableSuffix = suffix;
+        return this;
+    }
+
+    /**
+     * Loads tuples until the end of the script or until the reader passes the given
+     * byte offset, which must be a statement boundary.
+     *
+     * @param reader positioned script reader
+     * @param endOffset byte offset at which to stop, or Long.MAX_VALUE for the whole script
+     * @param listener notified after each batch that committed in script order, or null
+     * @return number of rows inserted and committed
+     * @throws SQLException if an INSERT, commit or the listener fails
+     * @throws IOException if the script cannot be read
+     */
+    public long load(TupleReader reader, long endOffset, TableLoader.CommitListener listener)
+            throws SQLException, IOException {
+        BlockingQueue<Batch> parsed = new ArrayBlockingQueue<>(queueBatches);
+        BlockingQueue<Batch> built = new ArrayBlockingQueue<>(queueBatches);
+        AtomicInteger threadId = new AtomicInteger();
+        pool = Executors.newFixedThreadPool(connections.size() + 2, r -> {
+            Thread t = new Thread(r, "pipeline-" + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.listener = listener;
+        failure = null;
+        finished = new HashMap<>();
+        nextCommit = 0;
+        committedRows = 0;
+
+        CompletionService<Void> stages = new ExecutorCompletionService<>(pool);
+        stages.submit(stage(() -> parse(reader, endOffset, parsed)));
+        stages.submit(stage(() -> build(parsed, built)));
+        for (Connection con : connections) {
+            stages.submit(stage(() -> execute(con, built)));
+        }
+        try {
+            // Wait for every stage, so none is still using a connection after a failure
+            for (int i = 0; i < connections.size() + 2; i++) {
+                try {
+                    stages.take().get();
+                } catch (ExecutionException e) {
+                    fail(e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } finally {
+            pool.shutdownNow();
+        }
+
+        Throwable cause = failure;
+        if (cause instanceof SQLException) {
+            throw (SQLException) cause;
+        }
+        if (cause instanceof IOException) {
+            throw (IOException) cause;
+        }
+        if (cause != null) {
+            throw new SQLException("Failed to load data", cause);
+        }
+        return committedRows;
+    }
+
+    /**
+     * Wraps a stage so that its failure stops the other stages at once.
+     */
+    private Callable<Void> stage(Callable<Void> body) {
+        return () -> {
+            try {
+                return body.call();
+            } catch (Exception e) {
+                fail(e);
+                throw e;
+            }
+        };
+    }
+
+    /**
+     * Records the first failure and interrupts the stages waiting on a queue.
+     */
+    private void fail(Throwable cause) {
+        synchronized (this) {
+            if (failure != null) {
+                return;
+            }
+            failure = cause;
+        }
+        pool.shutdownNow();
+    }
+
+    /**
+     * Parser stage: reads tuples and cuts them into batches the way {@link TableLoader} does.
+     */
+    private Void parse(TupleReader reader, long endOffset, BlockingQueue<Batch> parsed)
+            throws IOException, InterruptedException {
+        long sequence = 0;
+        String tableName = null;
+        AdaptiveBatchSizer.Table sizing = null;
+        TableLoader.TableMetrics current = null;
+        Batch batch = null;
+
+        while (failure == null && reader.position() < endOffset && reader.next()) {
+            if (batch != null && (!reader.table().equals(tableName)
+                    || !sizing.fits(batch.bytes, reader.tupleLength()))) {
+                // Script switched tables or the statement would get too large
+                parsed.put(batch);
+                batch = null;
+            }
+            if (batch == null) {
+                if (!reader.table().equals(tableName)) {
+                    tableName = reader.table();
+                    String table = TableSchema.normalize(tableName);
+                    sizing = sizer.forTable(table);
+                    current = metrics == null ? null
+                            : tableMetrics.computeIfAbsent(table, t -> new TableLoader.TableMetrics(metrics, t));
+                }
+                batch = new Batch(sequence++, tableName, sizing, current);
+            }
+            batch.tuples.add(reader.tupleString());
+            batch.rows++;
+            batch.bytes += reader.tupleLength();
+            batch.markOffset = reader.checkpointOffset();
+            batch.markTuples = reader.checkpointTuples();
+            if (sizing.isFull(batch.rows, batch.bytes)) {
+                parsed.put(batch);
+                batch = null;
+            }
+        }
+        if (batch != null) {
+            parsed.put(batch);
+        }
+        parsed.put(END);
+        return null;
+    }
+
+    /**
+     * Builder stage: turns every batch into one INSERT INTO table VALUES (...), (...).
+     */
+    private Void build(BlockingQueue<Batch> parsed, BlockingQueue<Batch> built) throws InterruptedException {
+        // Reused across batches so only the final statement String is allocated
+        StringBuilder sql = new StringBuilder(1 << 20);
+        Batch batch;
+        while ((batch = parsed.take()) != END) {
+            sql.setLength(0);
+            sql.append("INSERT INTO ").append(batch.table).append(tableSuffix).append(" VALUES ");
+            for (int i = 0; i < batch.tuples.size(); i++) {
+                if (i > 0) {
+                    sql.append(", ");
+                }
+                sql.append(batch.tuples.get(i));
+            }
+            batch.sql = sql.toString();
+            batch.tuples = null;
+            built.put(batch);
+        }
+        for (int i = 0; i < connections.size(); i++) {
+            built.put(END);
+        }
+        return null;
+    }
+
+    /**
+     * Executor stage: sends and commits batches on one connection until the end marker.
+     */
+    private Void execute(Connection con, BlockingQueue<Batch> built) throws SQLException, InterruptedException {
+        try (Statement stmt = con.createStatement()) {
+            Batch batch;
+            while ((batch = built.take()) != END) {
+                if (failure != null) {
+                    return null;
+                }
+                long start = System.nanoTime();
+                try {
+                    stmt.execute(batch.sql);
+                    con.commit();
+                } catch (SQLException e) {
+                    try {
+                        con.rollback();
+                    } catch (SQLException rollbackError) {
+                        e.addSuppressed(rollbackError);
+                    }
+                    batch.sizing.recordFailure(batch.rows, batch.bytes);
+                    if (batch.metrics != null) {
+                        batch.metrics.failed();
+                    }
+                    throw e;
+                }
+                long elapsed = System.nanoTime() - start;
+                batch.sizing.recordSuccess(batch.rows, batch.bytes, elapsed);
+                if (batch.metrics != null) {
+                    batch.metrics.committed(elapsed, batch.rows, batch.bytes);
+                }
+                batch.sql = null;
+                committed(batch);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Reports committed batches to the listener in script order.
+     */
+    private synchronized void committed(Batch batch) throws SQLException {
+        finished.put(batch.sequence, batch);
+        Batch next;
+        while ((next = finished.remove(nextCommit)) != null) {
+            nextCommit++;
+            committedRows += next.rows;
+            if (listener != null) {
+                listener.committed(next.table, next.markOffset, next.markTuples, committedRows);
+            }
+            if (verbose) {
+                System.out.println("  Inserted " + committedRows + " records...");
+            }
+        }
+    }
+
+    /**
+     * Closes the connections opened for the additional executors. The connection passed
+     * to the constructor is left open.
+     */
+    @Override
+    public void close() {
+        for (int i = 1; i < connections.size(); i++) {
+            Connection c = connections.get(i);
+            try {
+                c.setAutoCommit(true);
+                c.close();
+            } catch (SQLException e) {
+                System.err.println("Error closing loader connection: " + e.getMessage());
+            }
+        }
+    }
+}
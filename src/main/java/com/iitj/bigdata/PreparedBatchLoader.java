@@ -0,0 +1,166 @@
+package com.iitj.bigdata;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parses each tuple into typed values and sends them through one reused
+ * PreparedStatement per table with addBatch/executeBatch. Column types come from
+ * tpch_create.sql, or from DatabaseMetaData for tables the script does not define.
+ * Connections opened with reWriteBatchedInserts=true let the driver turn each batch
+ * into multi-row INSERTs on the wire.
+ */
+public class PreparedBatchLoader extends TableLoader {
+    private final Map<String, TableSchema> schema;
+    private final Map<String, PreparedStatement> statements = new HashMap<>();
+    private final Map<String, int[]> columnTypes = new HashMap<>();
+
+    private PreparedStatement ps;
+    private int[] types;
+
+    /**
+     * Creates a loader.
+     *
+     * @param con connection with autoCommit disabled
+     * @param sizer decides when a batch is full
+     * @param verbose whether to print progress after every batch
+     * @param schema tables parsed from tpch_create.sql
+     */
+    public PreparedBatchLoader(Connection con, AdaptiveBatchSizer sizer, boolean verbose, Map<String, TableSchema> schema) {
+        super(con, sizer, verbose);
+        this.schema = schema;
+    }
+
+    @Override
+    protected void startBatch(String tableName) throws SQLException {
+        ps = statements.get(tableName);
+        types = columnTypes.get(tableName);
+        if (ps == null) {
+            types = lookupColumnTypes(tableName);
+            StringBuilder sql = new StringBuilder("INSERT INTO ").append(target(tableName)).append(" VALUES (");
+            for (int i = 0; i < types.length; i++) {
+                sql.append(i == 0 ? "?" : ", ?");
+            }
+            sql.append(')');
+            ps = con.prepareStatement(sql.toString());
+            statements.put(tableName, ps);
+            columnTypes.put(tableName, types);
+        }
+    }
+
+    @Override
+    protected void addRow(TupleReader reader, int batchRows) throws SQLException {
+        if (reader.fieldCount() != types.length) {
+            throw new SQLException("Expected " + types.length + " values for " + reader.table()
+                    + " but found " + reader.fieldCount() + ": " + reader.tupleString());
+        }
+        try {
+            for (int i = 0; i < types.length; i++) {
+                bind(reader, i);
+            }
+        } catch (IllegalArgumentException | ArithmeticException e) {
+            // NumberFormatException, a malformed date, or an integer out of range
+            throw new SQLException("Cannot convert tuple " + reader.tupleString() + ": " + e.getMessage(), e);
+        }
+        ps.addBatch();
+    }
+
+    /**
+     * Binds one field using the setter that matches the column type.
+     */
+    private void bind(TupleReader reader, int field) throws SQLException {
+        int param = field + 1;
+        int type = types[field];
+        if (reader.isNull(field)) {
+            ps.setNull(param, type);
+            return;
+        }
+        switch (type) {
+            case Types.INTEGER:
+            case Types.SMALLINT:
+            case Types.TINYINT:
+                ps.setInt(param, Math.toIntExact(reader.getLong(field)));
+                break;
+            case Types.BIGINT:
+                ps.setLong(param, reader.getLong(field));
+                break;
+            case Types.DECIMAL:
+            case Types.NUMERIC:
+                ps.setBigDecimal(param, new BigDecimal(reader.getString(field)));
+                break;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                ps.setDouble(param, Double.parseDouble(reader.getString(field)));
+                break;
+            case Types.DATE:
+                ps.setDate(param, Date.valueOf(reader.getString(field)));
+                break;
+            default:
+                ps.setString(param, reader.getString(field));
+                break;
+        }
+    }
+
+    @Override
+    protected void executeBatch() throws SQLException {
+        ps.executeBatch();
+    }
+
+    /**
+     * Returns the JDBC types of a table's columns in declaration order.
+     */
+    private int[] lookupColumnTypes(String tableName) throws SQLException {
+        TableSchema def = schema == null ? null : schema.get(TableSchema.normalize(tableName));
+        if (def != null && !def.getColumns().isEmpty()) {
+            int[] result = new int[def.getColumns().size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = def.getColumns().get(i).getSqlType();
+            }
+            return result;
+        }
+
+        // Not in the create script; ask the database, trying the usual identifier cases
+        DatabaseMetaData meta = con.getMetaData();
+        String bare = TableSchema.normalize(tableName);
+        for (String candidate : new String[]{bare, bare.toUpperCase(Locale.ROOT)}) {
+            List<Integer> found = new ArrayList<>();
+            try (ResultSet rs = meta.getColumns(null, con.getSchema(), candidate, null)) {
+                while (rs.next()) {
+                    found.add(rs.getInt("DATA_TYPE"));
+                }
+            }
+            if (!found.isEmpty()) {
+                return found.stream().mapToInt(Integer::intValue).toArray();
+            }
+        }
+        throw new SQLException("No column metadata found for table " + tableName);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        SQLException error = null;
+        for (PreparedStatement statement : statements.values()) {
+            try {
+                statement.close();
+            } catch (SQLException e) {
+                error = e;
+            }
+        }
+        statements.clear();
+        if (error != null) {
+            throw error;
+        }
+    }
+}
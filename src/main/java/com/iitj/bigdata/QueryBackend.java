@@ -0,0 +1,34 @@
+package com.iitj.bigdata;
+
+import java.util.Locale;
+
+/**
+ * Where query1-3 are executed, selected with the redshift.query.backend property.
+ */
+public enum QueryBackend {
+    /**
+     * The configured Redshift or PostgreSQL database.
+     */
+    DATABASE,
+    /**
+     * The in-JVM {@link ColumnarEngine}, loaded from the data scripts; no connection is used.
+     */
+    COLUMNAR;
+
+    /**
+     * Parses a configuration value, case-insensitively.
+     *
+     * @param value property value, or null for the default
+     * @return backend
+     */
+    public static QueryBackend fromConfig(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return DATABASE;
+        }
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown redshift.query.backend: " + value, e);
+        }
+    }
+}
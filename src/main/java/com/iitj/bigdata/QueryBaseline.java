@@ -0,0 +1,413 @@
+package com.iitj.bigdata;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Plan shape and latency of a set of queries, captured from a database and kept as a
+ * checked-in text file so that later runs can be compared against it.
+ *
+ * The plan is taken from EXPLAIN, or from EXPLAIN ANALYZE where the database supports
+ * it, and normalized to its tree of plan nodes: costs, row estimates, timings and the
+ * detail lines under each node are dropped, so the shape only changes when the planner
+ * picks a different join order, join method, scan or aggregation. The rows read by the
+ * scans are kept separately; together with the latency they tell a query that got
+ * slower because its plan changed from one that got slower because the data grew.
+ *
+ * The baseline file has one "query key value" entry per line, with one plan line per
+ * node indented by depth, so that changes show up as readable diffs.
+ */
+public class QueryBaseline {
+    /**
+     * Start of the statistics EXPLAIN appends to a plan node, e.g. "  (cost=" or "  (actual".
+     */
+    private static final Pattern NODE_STATISTICS = Pattern.compile("\\s+\\((?:cost|actual|never)[^)]*\\).*$");
+    private static final Pattern ESTIMATED_ROWS = Pattern.compile("\\(cost=[^)]*\\brows=(\\d+)");
+    private static final Pattern ACTUAL_ROWS = Pattern.compile("\\(actual[^)]*\\brows=(\\d+) loops=(\\d+)");
+    /**
+     * Lines that start a node or a sub-plan; everything else is detail of the node above.
+     */
+    private static final Pattern SUBPLAN = Pattern.compile("^(?:InitPlan|SubPlan|CTE)\\b.*");
+
+    /**
+     * Plan and timings of one query.
+     */
+    public static class Entry {
+        private final String plan;
+        private final long scanRows;
+        private final long medianNanos;
+        private final int runs;
+
+        /**
+         * Creates an entry.
+         *
+         * @param plan normalized plan, one node per line
+         * @param scanRows rows read by the scan nodes, actual if analyzed, otherwise estimated
+         * @param medianNanos median wall-clock time of the runs
+         * @param runs number of timed runs
+         */
+        public Entry(String plan, long scanRows, long medianNanos, int runs) {
+            this.plan = plan;
+            this.scanRows = scanRows;
+            this.medianNanos = medianNanos;
+            this.runs = runs;
+        }
+
+        public String getPlan() {
+            return plan;
+        }
+
+        public long getScanRows() {
+            return scanRows;
+        }
+
+        public long getMedianNanos() {
+            return medianNanos;
+        }
+
+        public int getRuns() {
+            return runs;
+        }
+    }
+
+    private final String target;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    /**
+     * Creates an empty baseline.
+     *
+     * @param target database the plans come from, e.g. "postgres"; plans of different
+     *               databases are never compared
+     */
+    public QueryBaseline(String target) {
+        this.target = target;
+    }
+
+    /**
+     * Captures the plan of every query and times it.
+     *
+     * @param con connection to the loaded database
+     * @param target database name recorded in the baseline
+     * @param queries SQL by query name
+     * @param runs timed runs per query, after one untimed warm-up run
+     * @param analyze whether to use EXPLAIN ANALYZE, which runs the query
+     * @return captured baseline
+     * @throws SQLException if a query or EXPLAIN fails
+     */
+    public static QueryBaseline capture(Connection con, String target, Map<String, String> queries, int runs,
+                                        boolean analyze) throws SQLException {
+        QueryBaseline baseline = new QueryBaseline(target);
+        try (Statement stmt = con.createStatement()) {
+            for (Map.Entry<String, String> query : queries.entrySet()) {
+                StringBuilder explain = new StringBuilder();
+                try (ResultSet rs = stmt.executeQuery((analyze ? "EXPLAIN ANALYZE " : "EXPLAIN ") + query.getValue())) {
+                    while (rs.next()) {
+                        explain.append(rs.getString(1)).append('\n');
+                    }
+                }
+                // Warm the cache so the first timed run is not the only cold one
+                medianNanos(stmt, query.getValue(), 1);
+                int timed = Math.max(1, runs);
+                baseline.put(query.getKey(), new Entry(normalize(explain.toString()), scanRows(explain.toString()),
+                        medianNanos(stmt, query.getValue(), timed), timed));
+            }
+        }
+        return baseline;
+    }
+
+    /**
+     * Runs a query several times, reading every row.
+     *
+     * @param stmt statement to run the query on
+     * @param sql query
+     * @param runs number of runs, at least 1
+     * @return median wall-clock time in nanoseconds
+     * @throws SQLException if the query fails
+     */
+    static long medianNanos(Statement stmt, String sql, int runs) throws SQLException {
+        long[] times = new long[Math.max(1, runs)];
+        for (int i = 0; i < times.length; i++) {
+            long start = System.nanoTime();
+            try (ResultSet rs = stmt.executeQuery(sql)) {
+                ResultExporter.count(rs);
+            }
+            times[i] = System.nanoTime() - start;
+        }
+        Arrays.sort(times);
+        return times[times.length / 2];
+    }
+
+    /**
+     * Reduces EXPLAIN output to its tree of plan nodes, two spaces of indentation per
+     * level.
+     *
+     * @param explain EXPLAIN or EXPLAIN ANALYZE text, one line per row of output
+     * @return normalized plan
+     */
+    public static String normalize(String explain) {
+        StringBuilder plan = new StringBuilder();
+        // Indentation of the nodes on the path from the root to the current node
+        Deque<Integer> path = new ArrayDeque<>();
+        boolean root = true;
+        for (String line : explain.split("\n")) {
+            String trimmed = line.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            int indent = line.indexOf(trimmed.charAt(0));
+            String node;
+            if (trimmed.startsWith("->")) {
+                node = trimmed.substring(2).trim();
+            } else if (root || SUBPLAN.matcher(trimmed).matches()) {
+                node = trimmed;
+            } else {
+                // Detail of the node above, or the timing summary of EXPLAIN ANALYZE
+                continue;
+            }
+            root = false;
+            while (!path.isEmpty() && path.peek() >= indent) {
+                path.pop();
+            }
+            for (int i = 0; i < path.size(); i++) {
+                plan.append("  ");
+            }
+            plan.append(NODE_STATISTICS.matcher(node).replaceFirst("")).append('\n');
+            path.push(indent);
+        }
+        return plan.toString();
+    }
+
+    /**
+     * Adds up the rows read by the scan nodes of a plan: actual rows times loops when the
+     * plan was analyzed, the estimate otherwise. Bitmap index scans are left out because
+     * the heap scan above them reports the same rows.
+     *
+     * @param explain EXPLAIN or EXPLAIN ANALYZE text
+     * @return rows read by all scans
+     */
+    static long scanRows(String explain) {
+        long rows = 0;
+        for (String line : explain.split("\n")) {
+            String node = line.trim();
+            if (node.startsWith("->")) {
+                node = node.substring(2).trim();
+            }
+            int statistics = node.indexOf("  (");
+            String name = statistics < 0 ? node : node.substring(0, statistics);
+            if (!name.contains("Scan") || name.contains("Bitmap Index Scan")) {
+                continue;
+            }
+            Matcher actual = ACTUAL_ROWS.matcher(node);
+            Matcher estimated = ESTIMATED_ROWS.matcher(node);
+            if (actual.find()) {
+                rows += Long.parseLong(actual.group(1)) * Long.parseLong(actual.group(2));
+            } else if (estimated.find()) {
+                rows += Long.parseLong(estimated.group(1));
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Adds or replaces the entry of a query.
+     *
+     * @param query query name
+     * @param entry plan and timings
+     */
+    public void put(String query, Entry entry) {
+        entries.put(query, entry);
+    }
+
+    /**
+     * Returns the entry of a query.
+     *
+     * @param query query name
+     * @return entry, or null if the query is not in the baseline
+     */
+    public Entry get(String query) {
+        return entries.get(query);
+    }
+
+    public String getTarget() {
+        return target;
+    }
+
+    /**
+     * Compares this run against a baseline. A query regresses when its plan shape
+     * differs, or when its median latency exceeds the baseline's by more than the given
+     * factor and by more than the given absolute margin, which keeps millisecond queries
+     * from failing on noise.
+     *
+     * @param baseline checked-in baseline
+     * @param maxSlowdown largest accepted ratio of current to baseline latency
+     * @param minRegressionNanos smallest slowdown that counts as a regression
+     * @return one message per regression; empty if every query matches
+     */
+    public List<String> regressions(QueryBaseline baseline, double maxSlowdown, long minRegressionNanos) {
+        List<String> problems = new ArrayList<>();
+        if (!target.equals(baseline.target)) {
+            problems.add("baseline was captured on " + baseline.target + ", not " + target);
+            return problems;
+        }
+        for (Map.Entry<String, Entry> current : entries.entrySet()) {
+            String query = current.getKey();
+            Entry now = current.getValue();
+            Entry before = baseline.get(query);
+            if (before == null) {
+                problems.add(query + ": not in the baseline");
+                continue;
+            }
+            if (!now.plan.equals(before.plan)) {
+                problems.add(query + ": plan changed\n  baseline:\n" + indent(before.plan)
+                        + "  current:\n" + indent(now.plan));
+            }
+            double ratio = now.medianNanos / (double) Math.max(1, before.medianNanos);
+            if (ratio > maxSlowdown && now.medianNanos - before.medianNanos > minRegressionNanos) {
+                problems.add(String.format(Locale.ROOT, "%s: latency regressed from %.1f ms to %.1f ms (%.2fx, limit %.2fx)%s",
+                        query, before.medianNanos / 1e6, now.medianNanos / 1e6, ratio, maxSlowdown,
+                        growth(before, now)));
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Describes how much more data the scans read, so a latency regression can be put
+     * down to data growth.
+     */
+    private static String growth(Entry before, Entry now) {
+        if (before.scanRows <= 0 || now.scanRows == before.scanRows) {
+            return "; scans read the same rows";
+        }
+        return String.format(Locale.ROOT, "; scans read %.2fx the rows (%d -> %d)",
+                now.scanRows / (double) before.scanRows, before.scanRows, now.scanRows);
+    }
+
+    private static String indent(String plan) {
+        StringBuilder sb = new StringBuilder();
+        for (String line : plan.split("\n")) {
+            sb.append("    ").append(line).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Reads a baseline file written by {@link #write(Path)}.
+     *
+     * @param path baseline file
+     * @return baseline
+     * @throws IOException if the file cannot be read or is malformed
+     */
+    public static QueryBaseline read(Path path) throws IOException {
+        QueryBaseline baseline = null;
+        Map<String, StringBuilder> plans = new LinkedHashMap<>();
+        Map<String, long[]> numbers = new LinkedHashMap<>();
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            int lineNo = 0;
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                if (line.startsWith("target ")) {
+                    baseline = new QueryBaseline(line.substring("target ".length()));
+                    continue;
+                }
+                String[] parts = line.split(" ", 3);
+                if (parts.length < 3) {
+                    throw new IOException(path + ":" + lineNo + ": expected \"query key value\"");
+                }
+                long[] values = numbers.computeIfAbsent(parts[0], q -> new long[3]);
+                try {
+                    switch (parts[1]) {
+                        case "plan":
+                            plans.computeIfAbsent(parts[0], q -> new StringBuilder()).append(parts[2]).append('\n');
+                            break;
+                        case "median_ms":
+                            values[0] = Math.round(Double.parseDouble(parts[2]) * 1e6);
+                            break;
+                        case "scan_rows":
+                            values[1] = Long.parseLong(parts[2]);
+                            break;
+                        case "runs":
+                            values[2] = Long.parseLong(parts[2]);
+                            break;
+                        default:
+                            throw new IOException(path + ":" + lineNo + ": unknown key " + parts[1]);
+                    }
+                } catch (NumberFormatException e) {
+                    throw new IOException(path + ":" + lineNo + ": " + e.getMessage(), e);
+                }
+            }
+        }
+        if (baseline == null) {
+            throw new IOException(path + ": missing target line");
+        }
+        for (Map.Entry<String, long[]> query : numbers.entrySet()) {
+            StringBuilder plan = plans.get(query.getKey());
+            long[] values = query.getValue();
+            baseline.put(query.getKey(), new Entry(plan == null ? "" : plan.toString(), values[1], values[0],
+                    (int) values[2]));
+        }
+        return baseline;
+    }
+
+    /**
+     * Writes the baseline in the format {@link #read(Path)} accepts.
+     *
+     * @param path file to write; parent directories are created
+     * @throws IOException if the file cannot be written
+     */
+    public void write(Path path) throws IOException {
+        if (path.getParent() != null) {
+            Files.createDirectories(path.getParent());
+        }
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("# Query plans and latencies; regenerate with: ./gradlew run --args=\"plans record\"\n");
+            out.write("target " + target + "\n");
+            for (Map.Entry<String, Entry> query : entries.entrySet()) {
+                Entry e = query.getValue();
+                String name = query.getKey();
+                out.write("\n");
+                out.write(String.format(Locale.ROOT, "%s median_ms %.3f\n", name, e.medianNanos / 1e6));
+                out.write(name + " runs " + e.runs + "\n");
+                out.write(name + " scan_rows " + e.scanRows + "\n");
+                for (String line : e.plan.split("\n")) {
+                    if (!line.isEmpty()) {
+                        out.write(name + " plan " + line + "\n");
+                    }
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "%-8s %12s %14s%n", "query", "median ms", "scan rows"));
+        for (Map.Entry<String, Entry> query : entries.entrySet()) {
+            Entry e = query.getValue();
+            sb.append(String.format(Locale.ROOT, "%-8s %12.1f %14d%n", query.getKey(), e.medianNanos / 1e6, e.scanRows));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,255 @@
+package com.iitj.bigdata;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs queries asynchronously on a bounded number of threads, each query on its own
+ * connection, so independent reports execute concurrently instead of one after another.
+ *
+ * Every query runs with a Statement query timeout. Its result is read completely into a
+ * {@link CachedResult} before the connection is returned, so the returned ResultSet stays
+ * valid afterwards; with a {@link ResultCache} the result is shared with other callers.
+ * Cancelling a returned future cancels the running statement or, if the query has not
+ * started yet, removes it from the queue.
+ */
+public class QueryExecutor implements AutoCloseable {
+    /**
+     * Produces the result of a query that does not need a connection of its own, such as
+     * one answered by the embedded columnar engine.
+     */
+    public interface Task {
+        ResultSet run() throws SQLException;
+    }
+
+    /**
+     * Future that cancels its statement and queued task when it is cancelled.
+     */
+    private static class QueryFuture extends CompletableFuture<ResultSet> {
+        volatile Statement statement;
+        volatile Future<?> task;
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                Future<?> queued = task;
+                if (queued != null) {
+                    queued.cancel(false);
+                }
+                cancelStatement();
+            }
+            return cancelled;
+        }
+
+        void cancelStatement() {
+            Statement running = statement;
+            if (running != null) {
+                try {
+                    running.cancel();
+                } catch (SQLException e) {
+                    System.err.println("Error cancelling query: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    private final ConnectionFactory connections;
+    private final ResultCache cache;
+    private final int timeoutSeconds;
+    private final ExecutorService executor;
+    private final Set<QueryFuture> pending = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates an executor.
+     *
+     * @param connections supplies a connection per query; it is closed after the query
+     * @param cache shared result cache, or null
+     * @param parallelism maximum number of queries running at once
+     * @param timeoutSeconds default query timeout in seconds, 0 for none
+     */
+    public QueryExecutor(ConnectionFactory connections, ResultCache cache, int parallelism, int timeoutSeconds) {
+        this.connections = connections;
+        this.cache = cache;
+        this.timeoutSeconds = timeoutSeconds;
+        AtomicInteger threadId = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(parallelism, r -> {
+            Thread t = new Thread(r, "query-" + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Submits a query with the default timeout.
+     *
+     * @param sql query
+     * @return future result
+     */
+    public CompletableFuture<ResultSet> submit(String sql) {
+        return submit(sql, timeoutSeconds);
+    }
+
+    /**
+     * Submits a query.
+     *
+     * @param sql query
+     * @param timeoutSeconds query timeout in seconds, 0 for none
+     * @return future result; fails with an SQLTimeoutException when the driver reports the timeout
+     */
+    public CompletableFuture<ResultSet> submit(String sql, int timeoutSeconds) {
+        QueryFuture future = track(new QueryFuture());
+        future.task = executor.submit(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try (Connection con = connections.open(); Statement stmt = con.createStatement()) {
+                future.statement = stmt;
+                stmt.setQueryTimeout(timeoutSeconds);
+                if (future.isCancelled()) {
+                    return;
+                }
+                ResultCache.Query query = () -> stmt.executeQuery(sql);
+                future.complete(cache == null ? CachedResult.materialize(query.execute()).open()
+                        : cache.get(sql, query));
+            } catch (SQLException | RuntimeException e) {
+                future.completeExceptionally(e);
+            } finally {
+                future.statement = null;
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Submits a task that produces its result without a connection.
+     *
+     * @param task computes the result
+     * @return future result
+     */
+    public CompletableFuture<ResultSet> submit(Task task) {
+        QueryFuture future = track(new QueryFuture());
+        future.task = executor.submit(() -> {
+            if (future.isDone()) {
+                return;
+            }
+            try {
+                future.complete(task.run());
+            } catch (SQLException | RuntimeException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+    private QueryFuture track(QueryFuture future) {
+        pending.add(future);
+        future.whenComplete((rs, e) -> pending.remove(future));
+        return future;
+    }
+
+    /**
+     * Submits a named set of queries at once.
+     *
+     * @param queries query text by name
+     * @return future results by name, in the order given
+     */
+    public Map<String, CompletableFuture<ResultSet>> submitAll(Map<String, String> queries) {
+        Map<String, CompletableFuture<ResultSet>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, String> query : queries.entrySet()) {
+            futures.put(query.getKey(), submit(query.getValue()));
+        }
+        return futures;
+    }
+
+    /**
+     * Waits for a named set of submitted queries. As soon as one fails, the others are
+     * cancelled.
+     *
+     * @param futures future results by name
+     * @return results by name, in the order given
+     * @throws SQLException if a query fails or is cancelled, or the wait is interrupted
+     */
+    public static Map<String, ResultSet> gather(Map<String, CompletableFuture<ResultSet>> futures)
+            throws SQLException {
+        for (CompletableFuture<ResultSet> future : futures.values()) {
+            future.whenComplete((rs, e) -> {
+                if (e != null) {
+                    futures.values().forEach(other -> other.cancel(true));
+                }
+            });
+        }
+        Map<String, ResultSet> results = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<ResultSet>> future : futures.entrySet()) {
+            try {
+                results.put(future.getKey(), future.getValue().get());
+            } catch (InterruptedException e) {
+                futures.values().forEach(other -> other.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for queries", e);
+            } catch (ExecutionException e) {
+                throw failure(future.getKey(), e.getCause());
+            } catch (CancellationException e) {
+                // Report the query whose failure cancelled this one, if any
+                for (Map.Entry<String, CompletableFuture<ResultSet>> other : futures.entrySet()) {
+                    if (other.getValue().isCompletedExceptionally() && !other.getValue().isCancelled()) {
+                        try {
+                            other.getValue().join();
+                        } catch (CompletionException failure) {
+                            throw failure(other.getKey(), failure.getCause());
+                        }
+                    }
+                }
+                throw new SQLException("Query " + future.getKey() + " was cancelled", e);
+            }
+        }
+        return results;
+    }
+
+    private static SQLException failure(String name, Throwable cause) {
+        String message = "Query " + name + " failed: " + cause.getMessage();
+        if (cause instanceof SQLTimeoutException) {
+            return new SQLTimeoutException(message, ((SQLException) cause).getSQLState(), cause);
+        } else if (cause instanceof SQLException) {
+            return new SQLException(message, ((SQLException) cause).getSQLState(), cause);
+        }
+        return new SQLException(message, cause);
+    }
+
+    /**
+     * Runs a named set of queries concurrently and waits for all of them.
+     *
+     * @param queries query text by name
+     * @return results by name, in the order given
+     * @throws SQLException if a query fails; the others are cancelled
+     */
+    public Map<String, ResultSet> runAll(Map<String, String> queries) throws SQLException {
+        return gather(submitAll(queries));
+    }
+
+    /**
+     * Stops accepting queries and cancels those that have not completed.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        for (QueryFuture future : pending) {
+            future.cancel(true);
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.iitj.bigdata;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Runs a query through a server-side cursor and hands each row to a {@link RowConsumer}.
+ *
+ * PostgreSQL-protocol drivers, including Redshift's, only fetch in chunks of the fetch
+ * size when the statement runs inside a transaction; otherwise they buffer the whole
+ * result on the client. The query is therefore run with autoCommit disabled, and the
+ * statement and result set are closed before the connection's autoCommit setting is
+ * restored, so client memory is bounded by the fetch size.
+ */
+public class QueryStreamer {
+    private final int fetchSize;
+
+    /**
+     * Creates a streamer.
+     *
+     * @param fetchSize rows fetched from the server per round trip
+     */
+    public QueryStreamer(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Handles the whole result of a streamed query.
+     */
+    public interface ResultHandler {
+        /**
+         * Reads the result; the result set is closed afterwards.
+         *
+         * @param rs result set positioned before its first row
+         * @return number of rows handled
+         * @throws SQLException if reading or handling fails
+         */
+        long handle(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Executes a query and passes every row to the consumer.
+     *
+     * @param con connection to run on; its autoCommit setting is restored afterwards
+     * @param sql query
+     * @param consumer receives each row
+     * @return number of rows streamed
+     * @throws SQLException if the query or the consumer fails; the transaction is rolled back
+     */
+    public long stream(Connection con, String sql, RowConsumer consumer) throws SQLException {
+        return execute(con, sql, rs -> {
+            long rows = 0;
+            while (rs.next()) {
+                consumer.accept(rs);
+                rows++;
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * Executes a query and hands its result set to the handler, e.g. a
+     * {@link ResultExporter}, which reads it through the cursor.
+     *
+     * @param con connection to run on; its autoCommit setting is restored afterwards
+     * @param sql query
+     * @param handler reads the result
+     * @return number of rows reported by the handler
+     * @throws SQLException if the query or the handler fails; the transaction is rolled back
+     */
+    public long execute(Connection con, String sql, ResultHandler handler) throws SQLException {
+        boolean autoCommit = con.getAutoCommit();
+        long rows = 0;
+        con.setAutoCommit(false);
+        try {
+            try (Statement stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+                stmt.setFetchSize(fetchSize);
+                try (ResultSet rs = stmt.executeQuery(sql)) {
+                    rows = handler.handle(rs);
+                }
+            }
+            con.commit();
+        } catch (SQLException | RuntimeException e) {
+            try {
+                con.rollback();
+            } catch (SQLException rollbackError) {
+                e.addSuppressed(rollbackError);
+            }
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+        return rows;
+    }
+
+    /**
+     * Passes every row of a result set to the consumer and closes it.
+     *
+     * @param rs result set positioned before its first row
+     * @param consumer receives each row
+     * @return number of rows
+     * @throws SQLException if reading or the consumer fails
+     */
+    static long forEach(ResultSet rs, RowConsumer consumer) throws SQLException {
+        long rows = 0;
+        try (ResultSet source = rs) {
+            while (source.next()) {
+                consumer.accept(source);
+                rows++;
+            }
+        }
+        return rows;
+    }
+}
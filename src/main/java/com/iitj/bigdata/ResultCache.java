@@ -0,0 +1,171 @@
+package com.iitj.bigdata;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * Keeps the results of read-only queries in memory between data loads.
+ *
+ * Entries are keyed by the SQL text and the data epoch, a counter that is bumped whenever
+ * tables are dropped, created or loaded, so a result is never served after the data it
+ * was computed from has changed. The least recently used entries are evicted when the
+ * total size exceeds the byte limit, and entries older than the optional time-to-live are
+ * dropped on access. Results are stored as {@link CachedResult} and handed out as a new
+ * ResultSet cursor on every hit.
+ */
+public class ResultCache {
+    /**
+     * Runs a query against the database on a cache miss.
+     */
+    public interface Query {
+        ResultSet execute() throws SQLException;
+    }
+
+    private static class Entry {
+        final CachedResult result;
+        final long createdNanos;
+
+        Entry(CachedResult result, long createdNanos) {
+            this.result = result;
+            this.createdNanos = createdNanos;
+        }
+    }
+
+    private final long maxBytes;
+    private final long ttlNanos;
+    private final LongSupplier clock;
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long epoch;
+    private long bytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Creates a cache.
+     *
+     * @param maxBytes upper bound on the estimated size of all cached results
+     * @param ttlMillis how long an entry may be served, or 0 to keep it until evicted
+     */
+    public ResultCache(long maxBytes, long ttlMillis) {
+        this(maxBytes, ttlMillis, System::nanoTime);
+    }
+
+    ResultCache(long maxBytes, long ttlMillis, LongSupplier clock) {
+        this.maxBytes = maxBytes;
+        this.ttlNanos = ttlMillis <= 0 ? Long.MAX_VALUE : ttlMillis * 1_000_000L;
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the cached result of a query, running and caching it on a miss.
+     *
+     * @param sql query text, used as the cache key together with the current epoch
+     * @param query runs the query on a miss; its ResultSet is read completely and closed
+     * @return a new cursor over the result
+     * @throws SQLException if the query fails
+     */
+    public ResultSet get(String sql, Query query) throws SQLException {
+        long startEpoch;
+        synchronized (this) {
+            startEpoch = epoch;
+            Entry entry = entries.get(key(startEpoch, sql));
+            if (entry != null) {
+                if (clock.getAsLong() - entry.createdNanos <= ttlNanos) {
+                    hits++;
+                    return entry.result.open();
+                }
+                remove(key(startEpoch, sql));
+                evictions++;
+            }
+            misses++;
+        }
+
+        // Run the query outside the lock so other queries are not held up
+        CachedResult result = CachedResult.materialize(query.execute());
+        synchronized (this) {
+            // Do not keep a result that may have been computed from data that changed since
+            if (epoch == startEpoch && result.getBytes() <= maxBytes) {
+                String key = key(startEpoch, sql);
+                remove(key);
+                entries.put(key, new Entry(result, clock.getAsLong()));
+                bytes += result.getBytes();
+                evictToLimit();
+            }
+        }
+        return result.open();
+    }
+
+    /**
+     * Marks the data as changed. Cached results of earlier epochs are discarded.
+     *
+     * @return the new epoch
+     */
+    public synchronized long bumpEpoch() {
+        entries.clear();
+        bytes = 0;
+        return ++epoch;
+    }
+
+    private static String key(long epoch, String sql) {
+        return epoch + "\n" + sql;
+    }
+
+    private void remove(String key) {
+        Entry old = entries.remove(key);
+        if (old != null) {
+            bytes -= old.result.getBytes();
+        }
+    }
+
+    private void evictToLimit() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (bytes > maxBytes && it.hasNext()) {
+            bytes -= it.next().getValue().result.getBytes();
+            it.remove();
+            evictions++;
+        }
+    }
+
+    public synchronized long getEpoch() {
+        return epoch;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getBytes() {
+        return bytes;
+    }
+
+    /**
+     * Returns a one-line summary of the cache counters.
+     *
+     * @return statistics
+     */
+    public synchronized String stats() {
+        long lookups = hits + misses;
+        return String.format("Result cache stats: hits=%d, misses=%d, hit rate=%.1f%%, evictions=%d, "
+                        + "entries=%d, bytes=%d, epoch=%d",
+                hits, misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups, evictions,
+                entries.size(), bytes, epoch);
+    }
+}
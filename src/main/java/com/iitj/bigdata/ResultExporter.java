@@ -0,0 +1,621 @@
+package com.iitj.bigdata;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Streams a ResultSet to CSV, JSON Lines or a compact binary columnar file, optionally
+ * gzip-compressed.
+ *
+ * Values are read with typed getters (getLong, getDouble, getString) chosen once per column
+ * from the metadata, and every row is encoded into buffers that are reused for the whole
+ * export, so memory does not grow with the number of rows. The columnar format buffers at
+ * most one row group per column.
+ *
+ * Columnar layout: the magic bytes "TPCR", a version byte, the column count, then per column
+ * its name, SQL type and value kind. Row groups follow, each a row count, and per column a
+ * null bitmap and the non-null values: zigzag varints for integers and dates (epoch days),
+ * IEEE doubles, a scale byte plus varint unscaled value for decimals, and length-prefixed
+ * UTF-8 for strings. A row count of 0 ends the file.
+ */
+public class ResultExporter {
+    private static final byte[] MAGIC = {'T', 'P', 'C', 'R'};
+    private static final int VERSION = 1;
+    private static final int DEFAULT_ROW_GROUP = 65536;
+
+    /**
+     * Output format of an export.
+     */
+    public enum Format {
+        CSV(".csv"),
+        JSONL(".jsonl"),
+        COLUMNAR(".tpcr");
+
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        public String getExtension() {
+            return extension;
+        }
+
+        /**
+         * Parses the value of redshift.export.format.
+         *
+         * @param value csv, jsonl or columnar; null selects CSV
+         * @return format
+         */
+        public static Format fromConfig(String value) {
+            if (value == null || value.trim().isEmpty()) {
+                return CSV;
+            }
+            try {
+                return valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown export format: " + value
+                        + " (expected csv, jsonl or columnar)", e);
+            }
+        }
+    }
+
+    /**
+     * How a column's values are read and encoded.
+     */
+    private enum Kind {
+        LONG, DOUBLE, DECIMAL, DATE, STRING;
+
+        static Kind of(int sqlType) {
+            switch (sqlType) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                    return LONG;
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    return DOUBLE;
+                case Types.DECIMAL:
+                case Types.NUMERIC:
+                    return DECIMAL;
+                case Types.DATE:
+                    return DATE;
+                default:
+                    return STRING;
+            }
+        }
+    }
+
+    private final Format format;
+    private final boolean gzip;
+    private final int rowGroupRows;
+
+    /**
+     * Creates an exporter.
+     *
+     * @param format output format
+     * @param gzip whether to gzip the output
+     */
+    public ResultExporter(Format format, boolean gzip) {
+        this(format, gzip, DEFAULT_ROW_GROUP);
+    }
+
+    ResultExporter(Format format, boolean gzip, int rowGroupRows) {
+        this.format = format;
+        this.gzip = gzip;
+        this.rowGroupRows = rowGroupRows;
+    }
+
+    /**
+     * Returns the file name suffix of this exporter's output, e.g. ".csv.gz".
+     *
+     * @return extension including the leading dot
+     */
+    public String getExtension() {
+        return format.getExtension() + (gzip ? ".gz" : "");
+    }
+
+    /**
+     * Exports a result set to a file, replacing it.
+     *
+     * @param rs result set positioned before its first row; it is not closed
+     * @param file target file
+     * @return number of rows written
+     * @throws SQLException if reading fails or the file cannot be written
+     */
+    public long export(ResultSet rs, Path file) throws SQLException {
+        try (OutputStream out = Files.newOutputStream(file)) {
+            return export(rs, out);
+        } catch (IOException e) {
+            throw new SQLException("Failed to write " + file, e);
+        }
+    }
+
+    /**
+     * Exports a result set to a stream. The stream is flushed but not closed; when gzip is
+     * enabled the compressed stream is finished.
+     *
+     * @param rs result set positioned before its first row; it is not closed
+     * @param out target stream
+     * @return number of rows written
+     * @throws SQLException if reading fails or the stream cannot be written
+     */
+    public long export(ResultSet rs, OutputStream out) throws SQLException {
+        try {
+            GZIPOutputStream compressed = gzip ? new GZIPOutputStream(out, 1 << 16) : null;
+            OutputStream target = new BufferedOutputStream(compressed != null ? compressed : out, 1 << 16);
+            long rows = format == Format.COLUMNAR ? writeColumnar(rs, target) : writeText(rs, target);
+            target.flush();
+            if (compressed != null) {
+                compressed.finish();
+            }
+            out.flush();
+            return rows;
+        } catch (IOException e) {
+            throw new SQLException("Failed to export result", e);
+        }
+    }
+
+    /**
+     * Counts the remaining rows of a result set without reading any column values.
+     *
+     * @param rs result set; it is not closed
+     * @return number of rows advanced over
+     * @throws SQLException if reading fails
+     */
+    public static long count(ResultSet rs) throws SQLException {
+        long rows = 0;
+        while (rs.next()) {
+            rows++;
+        }
+        return rows;
+    }
+
+    private static Kind[] kinds(ResultSetMetaData meta) throws SQLException {
+        Kind[] kinds = new Kind[meta.getColumnCount()];
+        for (int i = 0; i < kinds.length; i++) {
+            kinds[i] = Kind.of(meta.getColumnType(i + 1));
+        }
+        return kinds;
+    }
+
+    /**
+     * Writes CSV (RFC 4180, header line, NULL as an empty field) or JSON Lines. Each row is
+     * built in one reused StringBuilder and handed to a buffered writer.
+     */
+    private long writeText(ResultSet rs, OutputStream target) throws SQLException, IOException {
+        ResultSetMetaData meta = rs.getMetaData();
+        Kind[] kinds = kinds(meta);
+        boolean csv = format == Format.CSV;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), 1 << 16);
+        StringBuilder row = new StringBuilder(1024);
+
+        // JSON keys are escaped once; CSV gets a header line
+        String[] keys = new String[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            String label = meta.getColumnLabel(i + 1);
+            if (csv) {
+                row.append(i == 0 ? "" : ",");
+                appendCsv(row, label);
+            } else {
+                StringBuilder key = new StringBuilder(label.length() + 4).append(i == 0 ? "{" : ",");
+                appendJsonString(key, label);
+                keys[i] = key.append(':').toString();
+            }
+        }
+        if (csv) {
+            writer.append(row).append('\n');
+        }
+
+        long rows = 0;
+        while (rs.next()) {
+            row.setLength(0);
+            for (int i = 0; i < kinds.length; i++) {
+                int column = i + 1;
+                if (csv) {
+                    if (i > 0) {
+                        row.append(',');
+                    }
+                } else {
+                    row.append(keys[i]);
+                }
+                switch (kinds[i]) {
+                    case LONG: {
+                        long v = rs.getLong(column);
+                        if (rs.wasNull()) {
+                            appendNull(row, csv);
+                        } else {
+                            row.append(v);
+                        }
+                        break;
+                    }
+                    case DOUBLE: {
+                        double v = rs.getDouble(column);
+                        if (rs.wasNull()) {
+                            appendNull(row, csv);
+                        } else if (!csv && (Double.isNaN(v) || Double.isInfinite(v))) {
+                            row.append('"').append(v).append('"');
+                        } else {
+                            row.append(v);
+                        }
+                        break;
+                    }
+                    case DECIMAL: {
+                        BigDecimal v = rs.getBigDecimal(column);
+                        if (v == null) {
+                            appendNull(row, csv);
+                        } else {
+                            row.append(v.toPlainString());
+                        }
+                        break;
+                    }
+                    default: {
+                        String v = rs.getString(column);
+                        if (v == null) {
+                            appendNull(row, csv);
+                        } else if (csv) {
+                            appendCsv(row, v);
+                        } else {
+                            appendJsonString(row, v);
+                        }
+                    }
+                }
+            }
+            if (!csv) {
+                row.append(kinds.length == 0 ? "{}" : "}");
+            }
+            writer.append(row).append('\n');
+            rows++;
+        }
+        writer.flush();
+        return rows;
+    }
+
+    private static void appendNull(StringBuilder row, boolean csv) {
+        if (!csv) {
+            row.append("null");
+        }
+    }
+
+    private static void appendCsv(StringBuilder row, String value) {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            row.append(value);
+            return;
+        }
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        row.append('"');
+    }
+
+    private static void appendJsonString(StringBuilder row, String value) {
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    row.append("\\\"");
+                    break;
+                case '\\':
+                    row.append("\\\\");
+                    break;
+                case '\n':
+                    row.append("\\n");
+                    break;
+                case '\r':
+                    row.append("\\r");
+                    break;
+                case '\t':
+                    row.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        row.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        row.append(c);
+                    }
+            }
+        }
+        row.append('"');
+    }
+
+    /**
+     * Writes the columnar format, buffering one row group of typed values per column.
+     */
+    private long writeColumnar(ResultSet rs, OutputStream target) throws SQLException, IOException {
+        ResultSetMetaData meta = rs.getMetaData();
+        Kind[] kinds = kinds(meta);
+        DataOutputStream out = new DataOutputStream(target);
+        out.write(MAGIC);
+        out.writeByte(VERSION);
+        writeVarLong(out, kinds.length);
+        for (int i = 0; i < kinds.length; i++) {
+            out.writeUTF(meta.getColumnLabel(i + 1));
+            out.writeInt(meta.getColumnType(i + 1));
+            out.writeByte(kinds[i].ordinal());
+        }
+
+        ColumnBuffer[] columns = new ColumnBuffer[kinds.length];
+        for (int i = 0; i < kinds.length; i++) {
+            columns[i] = new ColumnBuffer(kinds[i], rowGroupRows);
+        }
+        long rows = 0;
+        int groupRows = 0;
+        while (rs.next()) {
+            for (int i = 0; i < columns.length; i++) {
+                columns[i].read(rs, i + 1, groupRows);
+            }
+            groupRows++;
+            rows++;
+            if (groupRows == rowGroupRows) {
+                writeGroup(out, columns, groupRows);
+                groupRows = 0;
+            }
+        }
+        if (groupRows > 0) {
+            writeGroup(out, columns, groupRows);
+        }
+        writeVarLong(out, 0);
+        out.flush();
+        return rows;
+    }
+
+    private static void writeGroup(DataOutputStream out, ColumnBuffer[] columns, int rows) throws IOException {
+        writeVarLong(out, rows);
+        for (ColumnBuffer column : columns) {
+            column.write(out, rows);
+        }
+    }
+
+    /**
+     * One row group of a column: a null bitmap and the values as primitives, with strings
+     * kept as UTF-8 in a growable byte array.
+     */
+    private static class ColumnBuffer {
+        final Kind kind;
+        final byte[] nulls;
+        final long[] longs;
+        final double[] doubles;
+        final byte[] scales;
+        final int[] lengths;
+        byte[] bytes;
+        int byteCount;
+
+        ColumnBuffer(Kind kind, int capacity) {
+            this.kind = kind;
+            nulls = new byte[(capacity + 7) / 8];
+            longs = kind == Kind.LONG || kind == Kind.DATE || kind == Kind.DECIMAL ? new long[capacity] : null;
+            doubles = kind == Kind.DOUBLE ? new double[capacity] : null;
+            scales = kind == Kind.DECIMAL ? new byte[capacity] : null;
+            lengths = kind == Kind.STRING ? new int[capacity] : null;
+            bytes = kind == Kind.STRING ? new byte[8192] : null;
+        }
+
+        void read(ResultSet rs, int column, int row) throws SQLException {
+            if (row == 0) {
+                Arrays.fill(nulls, (byte) 0);
+                byteCount = 0;
+            }
+            boolean isNull;
+            switch (kind) {
+                case LONG:
+                    longs[row] = rs.getLong(column);
+                    isNull = rs.wasNull();
+                    break;
+                case DOUBLE:
+                    doubles[row] = rs.getDouble(column);
+                    isNull = rs.wasNull();
+                    break;
+                case DECIMAL: {
+                    BigDecimal v = rs.getBigDecimal(column);
+                    isNull = v == null;
+                    if (!isNull) {
+                        if (v.scale() < 0) {
+                            v = v.setScale(0, RoundingMode.UNNECESSARY);
+                        }
+                        if (v.scale() > Byte.MAX_VALUE || v.unscaledValue().bitLength() > 63) {
+                            throw new SQLException("Decimal " + v + " does not fit the columnar format");
+                        }
+                        scales[row] = (byte) v.scale();
+                        longs[row] = v.unscaledValue().longValue();
+                    }
+                    break;
+                }
+                case DATE: {
+                    Date v = rs.getDate(column);
+                    isNull = v == null;
+                    if (!isNull) {
+                        longs[row] = v.toLocalDate().toEpochDay();
+                    }
+                    break;
+                }
+                default: {
+                    String v = rs.getString(column);
+                    isNull = v == null;
+                    if (!isNull) {
+                        byte[] utf8 = v.getBytes(StandardCharsets.UTF_8);
+                        if (byteCount + utf8.length > bytes.length) {
+                            bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, byteCount + utf8.length));
+                        }
+                        System.arraycopy(utf8, 0, bytes, byteCount, utf8.length);
+                        byteCount += utf8.length;
+                        lengths[row] = utf8.length;
+                    }
+                }
+            }
+            if (isNull) {
+                nulls[row >>> 3] |= (byte) (1 << (row & 7));
+            }
+        }
+
+        void write(DataOutputStream out, int rows) throws IOException {
+            out.write(nulls, 0, (rows + 7) / 8);
+            int offset = 0;
+            for (int row = 0; row < rows; row++) {
+                if ((nulls[row >>> 3] & (1 << (row & 7))) != 0) {
+                    continue;
+                }
+                switch (kind) {
+                    case LONG:
+                    case DATE:
+                        writeVarLong(out, zigzag(longs[row]));
+                        break;
+                    case DOUBLE:
+                        out.writeDouble(doubles[row]);
+                        break;
+                    case DECIMAL:
+                        out.writeByte(scales[row]);
+                        writeVarLong(out, zigzag(longs[row]));
+                        break;
+                    default:
+                        writeVarLong(out, lengths[row]);
+                        out.write(bytes, offset, lengths[row]);
+                        offset += lengths[row];
+                }
+            }
+        }
+    }
+
+    private static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    private static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Reads a columnar export back into memory, decompressing it if it starts with the gzip
+     * header. Intended for verification and small results; the rows are materialized.
+     *
+     * @param input stream positioned at the start of an export; it is not closed
+     * @return result with the exported columns and rows
+     * @throws SQLException if the stream is not a valid export or cannot be read
+     */
+    public static CachedResult readColumnar(InputStream input) throws SQLException {
+        try {
+            InputStream in = new BufferedInputStream(input, 1 << 16);
+            in.mark(2);
+            boolean gzipped = in.read() == 0x1f && in.read() == 0x8b;
+            in.reset();
+            DataInputStream data = new DataInputStream(gzipped ? new GZIPInputStream(in, 1 << 16) : in);
+            byte[] magic = new byte[MAGIC.length];
+            data.readFully(magic);
+            if (!Arrays.equals(magic, MAGIC) || data.readUnsignedByte() != VERSION) {
+                throw new SQLException("Not a columnar result export");
+            }
+            int columnCount = (int) readVarLong(data);
+            String[] names = new String[columnCount];
+            int[] sqlTypes = new int[columnCount];
+            Kind[] kinds = new Kind[columnCount];
+            for (int i = 0; i < columnCount; i++) {
+                names[i] = data.readUTF();
+                sqlTypes[i] = data.readInt();
+                kinds[i] = Kind.values()[data.readUnsignedByte()];
+            }
+
+            List<Object[]> rows = new ArrayList<>();
+            int groupRows;
+            while ((groupRows = (int) readVarLong(data)) > 0) {
+                int first = rows.size();
+                for (int row = 0; row < groupRows; row++) {
+                    rows.add(new Object[columnCount]);
+                }
+                byte[] nulls = new byte[(groupRows + 7) / 8];
+                for (int i = 0; i < columnCount; i++) {
+                    data.readFully(nulls);
+                    for (int row = 0; row < groupRows; row++) {
+                        if ((nulls[row >>> 3] & (1 << (row & 7))) == 0) {
+                            rows.get(first + row)[i] = readValue(data, kinds[i], sqlTypes[i]);
+                        }
+                    }
+                }
+            }
+            return CachedResult.of(names, sqlTypes, rows);
+        } catch (EOFException e) {
+            throw new SQLException("Columnar result export is truncated", e);
+        } catch (IOException e) {
+            throw new SQLException("Failed to read columnar result export", e);
+        }
+    }
+
+    private static Object readValue(DataInputStream in, Kind kind, int sqlType) throws IOException {
+        switch (kind) {
+            case LONG: {
+                long v = unzigzag(readVarLong(in));
+                return sqlType == Types.BIGINT ? (Object) v : (Object) (int) v;
+            }
+            case DOUBLE:
+                return in.readDouble();
+            case DECIMAL: {
+                int scale = in.readByte();
+                return BigDecimal.valueOf(unzigzag(readVarLong(in)), scale);
+            }
+            case DATE:
+                return Date.valueOf(LocalDate.ofEpochDay(unzigzag(readVarLong(in))));
+            default: {
+                byte[] utf8 = new byte[(int) readVarLong(in)];
+                in.readFully(utf8);
+                return new String(utf8, StandardCharsets.UTF_8);
+            }
+        }
+    }
+}
@@ -0,0 +1,369 @@
+package com.iitj.bigdata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Local cache of the data files as binary row files (see {@link RowFileReader}), so that a
+ * script is tokenized once and later loads map the typed rows instead.
+ *
+ * The first {@link #open} of a file converts it while hashing it with SHA-256; later opens
+ * map the row file as long as the hash still matches. The source is only hashed again when
+ * its length or modification time changed, or always in verify mode. Files the cache cannot
+ * represent (several tables in one file, tables missing from the schema, values that do not
+ * fit their column type, more than 2 GB of rows and strings) are read as scripts instead.
+ */
+public class RowCache {
+    /**
+     * Distinct strings per column remembered for sharing; columns with more distinct
+     * values, such as comments, store the remaining new values once per row.
+     */
+    static final int DICTIONARY_LIMIT = 1 << 16;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path directory;
+    private final Map<String, TableSchema> schema;
+    private final boolean verify;
+    private final Map<String, Object> locks = new ConcurrentHashMap<>();
+    /**
+     * Files found not to be cacheable, read as scripts for the rest of the run.
+     */
+    private final Set<String> uncacheable = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Creates a cache.
+     *
+     * @param directory directory for the row files; created if missing
+     * @param schema table definitions, keyed by lower-case table name
+     * @param verify whether to hash the source on every open instead of trusting an
+     *               unchanged length and modification time
+     */
+    public RowCache(Path directory, Map<String, TableSchema> schema, boolean verify) {
+        this.directory = directory;
+        this.schema = schema;
+        this.verify = verify;
+    }
+
+    /**
+     * Returns the row file of a data file.
+     *
+     * @param name resource path, e.g. "data/lineitem.sql"
+     * @return path in the cache directory
+     */
+    public Path file(String name) {
+        return directory.resolve(name.replace('/', '_') + ".rows");
+    }
+
+    /**
+     * Opens the tuples of a data file, converting it to a row file first if it is not
+     * cached or has changed. Opens of the same file wait for a conversion in progress.
+     * The hash covers the decompressed content, so recompressing or splitting a file
+     * differently keeps its row file.
+     *
+     * @param source data file
+     * @return a {@link RowFileReader}, or a {@link SqlScriptReader} if the file cannot be cached
+     * @throws IOException if the source cannot be read or the cache cannot be written
+     */
+    public TupleReader open(DataResource source) throws IOException {
+        String name = source.getPath();
+        Path file = file(name);
+        synchronized (locks.computeIfAbsent(name, k -> new Object())) {
+            if (uncacheable.contains(name)) {
+                return new SqlScriptReader(source.open());
+            }
+            long length = source.storedLength();
+            long modified = source.lastModified();
+            if (isCurrent(file, source, length, modified)) {
+                return new RowFileReader(file);
+            }
+            if (convert(source, file, length, modified)) {
+                return new RowFileReader(file);
+            }
+            uncacheable.add(name);
+            return new SqlScriptReader(source.open());
+        }
+    }
+
+    /**
+     * Checks an existing row file against the source, refreshing its recorded length and
+     * modification time when only those changed.
+     */
+    private boolean isCurrent(Path file, DataResource source, long length, long modified) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return false;
+        }
+        RowFileReader.Header header;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) Math.min(channel.size(), BUFFER_SIZE));
+            while (buf.hasRemaining() && channel.read(buf) >= 0) {
+                // Read the header
+            }
+            buf.flip();
+            header = RowFileReader.Header.read(buf);
+            if (header == null || header.stringsOffset + header.stringsLength != channel.size()) {
+                return false;
+            }
+            if (!verify && length >= 0 && modified > 0
+                    && header.sourceLength == length && header.sourceModified == modified) {
+                return true;
+            }
+            byte[] hash;
+            try (DigestInputStream in = new DigestInputStream(source.open(), sha256())) {
+                byte[] skip = new byte[BUFFER_SIZE];
+                while (in.read(skip) >= 0) {
+                    // Hash the whole source
+                }
+                hash = in.getMessageDigest().digest();
+            }
+            if (!Arrays.equals(hash, header.hash)) {
+                return false;
+            }
+            ByteBuffer memo = ByteBuffer.allocate(2 * Long.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            memo.putLong(length).putLong(modified).flip();
+            channel.write(memo, RowFileReader.SOURCE_LENGTH_AT);
+            return true;
+        }
+    }
+
+    /**
+     * Converts a script into a row file, written to a temporary file and moved into place.
+     *
+     * @return false if the script cannot be represented as a row file
+     */
+    private boolean convert(DataResource source, Path file, long length, long modified) throws IOException {
+        long start = System.nanoTime();
+        Files.createDirectories(directory);
+        Path tmp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+        Path strings = Files.createTempFile(directory, file.getFileName().toString(), ".strings");
+        try (DigestInputStream in = new DigestInputStream(source.open(), sha256());
+             SqlScriptReader reader = new SqlScriptReader(in);
+             FileChannel out = FileChannel.open(tmp, StandardOpenOption.WRITE);
+             FileChannel stringOut = FileChannel.open(strings, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (!reader.next()) {
+                throw new NotCacheable("it holds no rows");
+            }
+            RowFileReader.Header header = writeRows(reader, out, stringOut, length, modified);
+            byte[] rest = new byte[BUFFER_SIZE];
+            while (in.read(rest) >= 0) {
+                // Hash what follows the last tuple
+            }
+            byte[] hash = in.getMessageDigest().digest();
+            System.arraycopy(hash, 0, header.hash, 0, hash.length);
+            ByteBuffer buf = ByteBuffer.allocate(header.dataOffset);
+            header.write(buf);
+            buf.flip();
+            long at = 0;
+            while (buf.hasRemaining()) {
+                at += out.write(buf, at);
+            }
+        } catch (NotCacheable e) {
+            Files.deleteIfExists(tmp);
+            System.out.println("  Not caching " + source + " as binary rows: " + e.getMessage());
+            return false;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(tmp);
+            throw e;
+        } finally {
+            Files.deleteIfExists(strings);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        System.out.printf("  Cached %s as binary rows in %s (%d bytes, %.1f s)%n",
+                source, file, Files.size(file), (System.nanoTime() - start) / 1e9);
+        return true;
+    }
+
+    /**
+     * Writes the rows after the space reserved for the header, then the string section.
+     *
+     * @param reader reader positioned on the first tuple
+     * @return header of the file, with a hash to be filled in once the source is drained
+     * @throws NotCacheable if the script cannot be represented as a row file
+     */
+    private RowFileReader.Header writeRows(SqlScriptReader reader, FileChannel out, FileChannel stringOut,
+                                           long length, long modified) throws IOException, NotCacheable {
+        String table = reader.table();
+        TableSchema definition = schema.get(TableSchema.normalize(table));
+        if (definition == null) {
+            throw new NotCacheable("table " + table + " is not in the schema");
+        }
+        List<TableSchema.Column> columns = definition.getColumns();
+        int count = columns.size();
+        ColumnVector.Kind[] kinds = new ColumnVector.Kind[count];
+        int[] scales = new int[count];
+        List<Map<String, Long>> dictionaries = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // The column model of the columnar engine
+            ColumnVector column = new ColumnVector(columns.get(i).getName(), columns.get(i).getType());
+            kinds[i] = column.getKind();
+            scales[i] = column.getScale();
+            dictionaries.add(kinds[i] == ColumnVector.Kind.STRING ? new HashMap<>() : null);
+        }
+        int rowWidth = RowFileReader.Header.rowWidth(count);
+        int bitmapBytes = RowFileReader.Header.bitmapBytes(count);
+        int dataOffset = RowFileReader.Header.size(table.getBytes(StandardCharsets.UTF_8).length, count);
+
+        ByteBuffer rows = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        StringSection strings = new StringSection(stringOut);
+        out.position(dataOffset);
+        StringBuilder text = new StringBuilder();
+        long rowCount = 0;
+        do {
+            if (!table.equals(reader.table())) {
+                throw new NotCacheable("it holds rows of " + table + " and " + reader.table());
+            }
+            if (reader.fieldCount() != count) {
+                throw new NotCacheable("a tuple of " + table + " has " + reader.fieldCount()
+                        + " values, expected " + count);
+            }
+            if (rows.remaining() < rowWidth) {
+                flush(rows, out);
+            }
+            int base = rows.position();
+            rows.putInt(reader.tupleLength());
+            for (int b = 0; b < bitmapBytes; b++) {
+                rows.put((byte) 0);
+            }
+            for (int i = 0; i < count; i++) {
+                long value = 0;
+                if (reader.isNull(i)) {
+                    rows.put(base + Integer.BYTES + (i >> 3),
+                            (byte) (rows.get(base + Integer.BYTES + (i >> 3)) | (1 << (i & 7))));
+                } else {
+                    try {
+                        switch (kinds[i]) {
+                            case INTEGER:
+                                value = reader.getLong(i);
+                                break;
+                            case DECIMAL:
+                                value = reader.getDecimal(i, scales[i]);
+                                break;
+                            case DATE:
+                                text.setLength(0);
+                                reader.appendField(i, text);
+                                value = LocalDate.parse(text).toEpochDay();
+                                break;
+                            default:
+                                text.setLength(0);
+                                reader.appendField(i, text);
+                                value = strings.put(text.toString(), dictionaries.get(i));
+                        }
+                    } catch (NumberFormatException | DateTimeParseException e) {
+                        throw new NotCacheable("a value of " + columns.get(i).getName()
+                                + " does not fit its type: " + e.getMessage());
+                    }
+                }
+                rows.putLong(value);
+            }
+            rowCount++;
+        } while (reader.next());
+        flush(rows, out);
+        strings.flush();
+
+        long stringsOffset = dataOffset + rowCount * rowWidth;
+        if (stringsOffset + strings.size > Integer.MAX_VALUE) {
+            throw new NotCacheable("rows and strings exceed 2 GB");
+        }
+        long copied = 0;
+        stringOut.position(0);
+        while (copied < strings.size) {
+            copied += out.transferFrom(stringOut, stringsOffset + copied, strings.size - copied);
+        }
+        return new RowFileReader.Header(rowWidth, length, modified, new byte[RowFileReader.HASH_BYTES],
+                rowCount, stringsOffset, strings.size, table, kinds, scales);
+    }
+
+    private static void flush(ByteBuffer buf, FileChannel channel) throws IOException {
+        buf.flip();
+        while (buf.hasRemaining()) {
+            channel.write(buf);
+        }
+        buf.clear();
+    }
+
+    /**
+     * String section being written, with the strings of each column shared while the
+     * column's dictionary is below {@link #DICTIONARY_LIMIT}.
+     */
+    private static class StringSection {
+        private final FileChannel channel;
+        private final ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        private long size;
+
+        StringSection(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Returns the offset of a string, appending it unless the dictionary has it.
+         */
+        long put(String s, Map<String, Long> dictionary) throws IOException {
+            Long shared = dictionary.get(s);
+            if (shared != null) {
+                return shared;
+            }
+            long offset = size;
+            byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            if (buf.remaining() < Integer.BYTES + bytes.length) {
+                flush();
+            }
+            if (buf.remaining() < Integer.BYTES + bytes.length) {
+                // Longer than the buffer
+                ByteBuffer large = ByteBuffer.allocate(Integer.BYTES + bytes.length).order(ByteOrder.LITTLE_ENDIAN);
+                large.putInt(bytes.length).put(bytes).flip();
+                while (large.hasRemaining()) {
+                    channel.write(large);
+                }
+            } else {
+                buf.putInt(bytes.length).put(bytes);
+            }
+            size += Integer.BYTES + bytes.length;
+            if (dictionary.size() < DICTIONARY_LIMIT) {
+                dictionary.put(s, offset);
+            }
+            return offset;
+        }
+
+        void flush() throws IOException {
+            RowCache.flush(buf, channel);
+        }
+    }
+
+    /**
+     * Thrown when a script cannot be represented as a row file.
+     */
+    private static class NotCacheable extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        NotCacheable(String message) {
+            super(message);
+        }
+    }
+
+    private static MessageDigest sha256() throws IOException {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException("SHA-256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,12 @@
+package com.iitj.bigdata;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Receives the rows of a streamed query one at a time. The ResultSet is positioned on
+ * the current row and is only valid during the call; copy out any values to keep.
+ */
+public interface RowConsumer {
+    void accept(ResultSet row) throws SQLException;
+}
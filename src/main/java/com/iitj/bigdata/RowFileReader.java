@@ -0,0 +1,476 @@
+package com.iitj.bigdata;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads the tuples of a binary row file written by {@link RowCache}, memory-mapped with
+ * {@link FileChannel#map}.
+ *
+ * The file holds the tuples of one table with the column model of {@link ColumnVector}:
+ * every value is a long, integers as themselves, DECIMAL as the unscaled value, DATE as
+ * days since 1970-01-01 and strings as the offset of their bytes in a string section
+ * shared by equal values. Layout, little-endian:
+ * <pre>
+ *   header   magic, version, row width, source length and modification time, SHA-256 of
+ *            the source, row count, string section offset and length, table name and
+ *            the kind and scale of every column, padded to 8 bytes
+ *   rows     per row: original tuple length (int), null bitmap, one long per column
+ *   strings  per string: byte length (int), UTF-8 bytes
+ * </pre>
+ * Rows have a fixed width, so reading a row is index arithmetic on the mapping and
+ * {@link #next()} allocates nothing. Each row counts as a statement of its own: offsets
+ * are byte positions in the row section, and every row ends at a statement boundary.
+ */
+public class RowFileReader implements TupleReader {
+    static final long MAGIC = 0x53574f5248435054L; // "TPCHROWS"
+    static final int VERSION = 1;
+    /**
+     * Header positions of the fixed fields.
+     */
+    static final int SOURCE_LENGTH_AT = 16;
+    static final int SOURCE_MODIFIED_AT = 24;
+    static final int HASH_AT = 32;
+    static final int HASH_BYTES = 32;
+    static final int FIXED_HEADER_BYTES = 96;
+
+    private static final ColumnVector.Kind[] KINDS = ColumnVector.Kind.values();
+    private static final long[] POWERS_OF_TEN = new long[19];
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    /**
+     * Header of a row file.
+     */
+    static class Header {
+        final int rowWidth;
+        final long sourceLength;
+        final long sourceModified;
+        final byte[] hash;
+        final long rowCount;
+        final long stringsOffset;
+        final long stringsLength;
+        final String table;
+        final ColumnVector.Kind[] kinds;
+        final int[] scales;
+        final int dataOffset;
+
+        Header(int rowWidth, long sourceLength, long sourceModified, byte[] hash, long rowCount,
+               long stringsOffset, long stringsLength, String table, ColumnVector.Kind[] kinds, int[] scales) {
+            this.rowWidth = rowWidth;
+            this.sourceLength = sourceLength;
+            this.sourceModified = sourceModified;
+            this.hash = hash;
+            this.rowCount = rowCount;
+            this.stringsOffset = stringsOffset;
+            this.stringsLength = stringsLength;
+            this.table = table;
+            this.kinds = kinds;
+            this.scales = scales;
+            this.dataOffset = size(table.getBytes(StandardCharsets.UTF_8).length, kinds.length);
+        }
+
+        /**
+         * Returns the header size for a table name and column count.
+         */
+        static int size(int tableBytes, int columns) {
+            return (FIXED_HEADER_BYTES + tableBytes + 2 * columns + 7) & ~7;
+        }
+
+        /**
+         * Returns the row width for a column count.
+         */
+        static int rowWidth(int columns) {
+            return Integer.BYTES + bitmapBytes(columns) + Long.BYTES * columns;
+        }
+
+        static int bitmapBytes(int columns) {
+            return (columns + 7) / 8;
+        }
+
+        void write(ByteBuffer buf) {
+            byte[] name = table.getBytes(StandardCharsets.UTF_8);
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            buf.putLong(MAGIC).putInt(VERSION).putInt(rowWidth).putLong(sourceLength).putLong(sourceModified)
+                    .put(hash).putLong(rowCount).putLong(stringsOffset).putLong(stringsLength)
+                    .putInt(kinds.length).putInt(name.length).put(name);
+            for (int i = 0; i < kinds.length; i++) {
+                buf.put((byte) kinds[i].ordinal()).put((byte) scales[i]);
+            }
+            while (buf.position() < dataOffset) {
+                buf.put((byte) 0);
+            }
+        }
+
+        /**
+         * Parses a header.
+         *
+         * @param buf file content from offset 0
+         * @return header, or null if the buffer does not start with a header of this version
+         */
+        static Header read(ByteBuffer buf) {
+            buf.order(ByteOrder.LITTLE_ENDIAN);
+            if (buf.remaining() < FIXED_HEADER_BYTES || buf.getLong(0) != MAGIC || buf.getInt(8) != VERSION) {
+                return null;
+            }
+            byte[] hash = new byte[HASH_BYTES];
+            buf.position(HASH_AT);
+            buf.get(hash);
+            int columns = buf.getInt(88);
+            int nameBytes = buf.getInt(92);
+            if (columns < 0 || nameBytes < 0 || buf.limit() < Header.size(nameBytes, columns)) {
+                return null;
+            }
+            byte[] name = new byte[nameBytes];
+            buf.position(FIXED_HEADER_BYTES);
+            buf.get(name);
+            ColumnVector.Kind[] kinds = new ColumnVector.Kind[columns];
+            int[] scales = new int[columns];
+            for (int i = 0; i < columns; i++) {
+                int kind = buf.get();
+                if (kind < 0 || kind >= KINDS.length) {
+                    return null;
+                }
+                kinds[i] = KINDS[kind];
+                scales[i] = buf.get();
+            }
+            return new Header(buf.getInt(12), buf.getLong(SOURCE_LENGTH_AT), buf.getLong(SOURCE_MODIFIED_AT),
+                    hash, buf.getLong(64), buf.getLong(72), buf.getLong(80),
+                    new String(name, StandardCharsets.UTF_8), kinds, scales);
+        }
+    }
+
+    private final Path file;
+    private final ByteBuffer data;
+    private final Header header;
+    private final String table;
+    private final ColumnVector.Kind[] kinds;
+    private final int[] scales;
+    private final int valuesAt;
+
+    private long nextRow;
+    private int base = -1;
+    private long records;
+    private final StringBuilder scratch = new StringBuilder(32);
+
+    /**
+     * Maps a row file.
+     *
+     * @param file row file
+     * @throws IOException if the file cannot be mapped or is not a row file
+     */
+    public RowFileReader(Path file) throws IOException {
+        this.file = file;
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Row file " + file + " is larger than 2 GB");
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        header = Header.read(mapped.duplicate());
+        if (header == null || header.stringsOffset + header.stringsLength > mapped.capacity()) {
+            throw new IOException("Not a complete row file: " + file);
+        }
+        data = mapped.order(ByteOrder.LITTLE_ENDIAN);
+        table = header.table;
+        kinds = header.kinds;
+        scales = header.scales;
+        valuesAt = Integer.BYTES + Header.bitmapBytes(kinds.length);
+    }
+
+    /**
+     * Returns the number of rows in the file.
+     *
+     * @return row count
+     */
+    public long rowCount() {
+        return header.rowCount;
+    }
+
+    @Override
+    public boolean next() {
+        if (nextRow >= header.rowCount) {
+            base = -1;
+            return false;
+        }
+        base = (int) (header.dataOffset + nextRow * header.rowWidth);
+        nextRow++;
+        records++;
+        return true;
+    }
+
+    @Override
+    public String table() {
+        return table;
+    }
+
+    @Override
+    public int tupleLength() {
+        return data.getInt(base);
+    }
+
+    @Override
+    public void appendTuple(StringBuilder sb) {
+        sb.append('(');
+        for (int i = 0; i < kinds.length; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            if (isNull(i)) {
+                sb.append("NULL");
+            } else if (kinds[i] == ColumnVector.Kind.STRING) {
+                sb.append('\'');
+                appendString(value(i), sb, true);
+                sb.append('\'');
+            } else if (kinds[i] == ColumnVector.Kind.DATE) {
+                sb.append('\'');
+                appendDate(value(i), sb);
+                sb.append('\'');
+            } else {
+                appendField(i, sb);
+            }
+        }
+        sb.append(')');
+    }
+
+    @Override
+    public String tupleString() {
+        StringBuilder sb = new StringBuilder(tupleLength());
+        appendTuple(sb);
+        return sb.toString();
+    }
+
+    @Override
+    public int fieldCount() {
+        return kinds.length;
+    }
+
+    @Override
+    public boolean isNull(int field) {
+        return (data.get(base + Integer.BYTES + (field >> 3)) & (1 << (field & 7))) != 0;
+    }
+
+    @Override
+    public boolean isQuoted(int field) {
+        return !isNull(field) && (kinds[field] == ColumnVector.Kind.STRING || kinds[field] == ColumnVector.Kind.DATE);
+    }
+
+    @Override
+    public long getLong(int field) {
+        if (kinds[field] == ColumnVector.Kind.INTEGER && !isNull(field)) {
+            return value(field);
+        }
+        // Parsed from the text, which fails for NULL, fractions and dates as it does in a script
+        scratch.setLength(0);
+        appendField(field, scratch);
+        return Long.parseLong(scratch, 0, scratch.length(), 10);
+    }
+
+    @Override
+    public long getDecimal(int field, int scale) {
+        ColumnVector.Kind kind = kinds[field];
+        if (isNull(field) || kind == ColumnVector.Kind.DATE || kind == ColumnVector.Kind.STRING) {
+            scratch.setLength(0);
+            appendField(field, scratch);
+            try {
+                return new BigDecimal(scratch.toString()).setScale(scale, RoundingMode.HALF_UP)
+                        .unscaledValue().longValueExact();
+            } catch (ArithmeticException e) {
+                throw new NumberFormatException("Invalid decimal field " + field + " in " + tupleString());
+            }
+        }
+        return rescale(value(field), kind == ColumnVector.Kind.DECIMAL ? scales[field] : 0, scale);
+    }
+
+    @Override
+    public String getString(int field) {
+        StringBuilder sb = new StringBuilder();
+        appendField(field, sb);
+        return sb.toString();
+    }
+
+    @Override
+    public void appendField(int field, StringBuilder sb) {
+        if (isNull(field)) {
+            sb.append("NULL");
+            return;
+        }
+        long value = value(field);
+        switch (kinds[field]) {
+            case INTEGER:
+                sb.append(value);
+                break;
+            case DECIMAL:
+                appendDecimal(value, scales[field], sb);
+                break;
+            case DATE:
+                appendDate(value, sb);
+                break;
+            default:
+                appendString(value, sb, false);
+        }
+    }
+
+    @Override
+    public long statementEnd() {
+        return base < 0 ? -1 : position();
+    }
+
+    @Override
+    public long checkpointOffset() {
+        return position();
+    }
+
+    @Override
+    public long checkpointTuples() {
+        return 0;
+    }
+
+    @Override
+    public void resume(long offset, long tuples) throws IOException {
+        skipTo(offset);
+        for (long i = 0; i < tuples; i++) {
+            if (!next()) {
+                throw new IOException("Row file ends " + (tuples - i) + " tuples before the checkpoint");
+            }
+        }
+    }
+
+    @Override
+    public long position() {
+        return nextRow * header.rowWidth;
+    }
+
+    @Override
+    public long records() {
+        return records;
+    }
+
+    @Override
+    public void skipTo(long offset) throws IOException {
+        if (offset < 0 || offset % header.rowWidth != 0 || offset / header.rowWidth > header.rowCount) {
+            throw new IOException("Offset " + offset + " is not a row boundary of " + file);
+        }
+        nextRow = offset / header.rowWidth;
+        base = -1;
+    }
+
+    /**
+     * Every row is a boundary, so the boundary is found by rounding up to the next row.
+     */
+    @Override
+    public long nextBoundary(long offset) {
+        long row = Math.max(nextRow, (Math.max(offset, 0) + header.rowWidth - 1) / header.rowWidth);
+        base = -1;
+        if (row >= header.rowCount) {
+            nextRow = header.rowCount;
+            return -1;
+        }
+        nextRow = row;
+        return position();
+    }
+
+    /**
+     * Does nothing: the mapping is released when the reader is garbage collected.
+     */
+    @Override
+    public void close() {
+    }
+
+    private long value(int field) {
+        return data.getLong(base + valuesAt + Long.BYTES * field);
+    }
+
+    /**
+     * Changes the scale of an unscaled value, rounding dropped digits half up.
+     */
+    static long rescale(long value, int from, int to) {
+        if (to >= from) {
+            return Math.multiplyExact(value, POWERS_OF_TEN[to - from]);
+        }
+        long divisor = POWERS_OF_TEN[from - to];
+        long magnitude = Math.abs(value);
+        long result = magnitude / divisor + (magnitude % divisor * 2 >= divisor ? 1 : 0);
+        return value < 0 ? -result : result;
+    }
+
+    static void appendDecimal(long unscaled, int scale, StringBuilder sb) {
+        if (unscaled < 0) {
+            sb.append('-');
+        }
+        long magnitude = Math.abs(unscaled);
+        if (scale == 0) {
+            sb.append(magnitude);
+            return;
+        }
+        long divisor = POWERS_OF_TEN[scale];
+        sb.append(magnitude / divisor).append('.');
+        long fraction = magnitude % divisor;
+        for (long p = divisor / 10; p > fraction && p > 1; p /= 10) {
+            sb.append('0');
+        }
+        sb.append(fraction);
+    }
+
+    /**
+     * Appends a day number as yyyy-MM-dd without allocating, using the civil-from-days
+     * conversion of the proleptic Gregorian calendar.
+     */
+    static void appendDate(long epochDay, StringBuilder sb) {
+        long z = epochDay + 719468;
+        long era = Math.floorDiv(z, 146097);
+        long dayOfEra = z - era * 146097;
+        long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        long shiftedMonth = (5 * dayOfYear + 2) / 153;
+        long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        for (long p = 1000; p > 1 && year < p; p /= 10) {
+            sb.append('0');
+        }
+        sb.append(year).append(month < 10 ? "-0" : "-").append(month).append(day < 10 ? "-0" : "-").append(day);
+    }
+
+    /**
+     * Appends a string of the string section, optionally doubling single quotes for a SQL
+     * literal. ASCII strings are copied without allocating.
+     */
+    private void appendString(long offset, StringBuilder sb, boolean escape) {
+        int at = (int) (header.stringsOffset + offset);
+        int length = data.getInt(at);
+        int start = at + Integer.BYTES;
+        int mark = sb.length();
+        for (int i = start; i < start + length; i++) {
+            byte b = data.get(i);
+            if (b < 0) {
+                sb.setLength(mark);
+                byte[] bytes = new byte[length];
+                ByteBuffer slice = data.duplicate();
+                slice.position(start);
+                slice.get(bytes);
+                String s = new String(bytes, StandardCharsets.UTF_8);
+                sb.append(escape ? s.replace("'", "''") : s);
+                return;
+            }
+            sb.append((char) b);
+            if (b == '\'' && escape) {
+                sb.append('\'');
+            }
+        }
+    }
+}
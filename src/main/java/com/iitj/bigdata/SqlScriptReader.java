@@ -0,0 +1,821 @@
+package com.iitj.bigdata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Streaming, quote-aware tokenizer for the TPC-H INSERT scripts.
+ *
+ * The script is read incrementally through a fixed-size byte buffer and each call to
+ * {@link #next()} yields one VALUES tuple together with the table it belongs to.
+ * Tuples are copied into a reused buffer, so heap use does not grow with file size.
+ * Semicolons, parentheses and commas inside quoted strings are treated as data, and
+ * statements other than INSERT (SET, BEGIN, COMMIT, ...) as well as comments are skipped.
+ */
+public class SqlScriptReader implements TupleReader {
+    /**
+     * Default size of the read buffer in bytes.
+     */
+    static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private static final int EOF = -1;
+
+    private final InputStream in;
+    private final byte[] buf;
+    private int pos;
+    private int limit;
+    /**
+     * Number of bytes of the stream that precede buf[0].
+     */
+    private long bufferStart;
+    private boolean eof;
+
+    /**
+     * Current tuple, including the enclosing parentheses.
+     */
+    private byte[] tuple = new byte[512];
+    private int tupleLen;
+    private boolean tupleAscii;
+    /**
+     * Field boundaries within the tuple buffer: start inclusive, end exclusive, untrimmed.
+     */
+    private int[] fieldStart = new int[16];
+    private int[] fieldEnd = new int[16];
+    private int fieldCount;
+
+    /**
+     * Current table name; the String is only re-created when the name changes.
+     */
+    private byte[] tableBytes = new byte[64];
+    private byte[] currentTableBytes = new byte[0];
+    private String table;
+
+    /**
+     * True while positioned inside the VALUES list of an INSERT statement.
+     */
+    private boolean inValues;
+    private long statementEnd = -1;
+    private long records;
+    /**
+     * Statement boundary before the current statement, and the index of the current tuple
+     * within that statement.
+     */
+    private long statementStart;
+    private int tupleIndex;
+
+    /**
+     * Creates a reader over the given stream.
+     *
+     * @param in script content
+     */
+    public SqlScriptReader(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a reader with an explicit buffer size.
+     *
+     * @param in script content
+     * @param bufferSize read buffer size in bytes
+     */
+    SqlScriptReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buf = new byte[bufferSize];
+    }
+
+    /**
+     * Advances to the next VALUES tuple.
+     *
+     * @return true if a tuple is available, false at end of script
+     * @throws IOException if the stream cannot be read or the script is malformed
+     */
+    @Override
+    public boolean next() throws IOException {
+        if (inValues) {
+            tupleIndex++;
+        } else {
+            statementStart = position();
+            tupleIndex = 0;
+            if (!nextInsert()) {
+                return false;
+            }
+        }
+        skipWhitespace();
+        if (peek() != '(') {
+            throw malformed("expected '(' to start a VALUES tuple");
+        }
+        readTuple();
+        skipWhitespace();
+        int c = peek();
+        if (c == ',') {
+            pos++;
+            statementEnd = -1;
+        } else if (c == ';' || c == EOF) {
+            if (c == ';') {
+                pos++;
+            }
+            inValues = false;
+            statementEnd = position();
+        } else {
+            throw malformed("expected ',' or ';' after VALUES tuple");
+        }
+        records++;
+        return true;
+    }
+
+    /**
+     * Returns the table of the current tuple, exactly as written in the script.
+     *
+     * @return table name
+     */
+    @Override
+    public String table() {
+        return table;
+    }
+
+    /**
+     * Returns the length of the current tuple in bytes, including parentheses.
+     *
+     * @return tuple length
+     */
+    @Override
+    public int tupleLength() {
+        return tupleLen;
+    }
+
+    /**
+     * Appends the current tuple, including parentheses, to the given builder.
+     *
+     * @param sb destination
+     */
+    @Override
+    public void appendTuple(StringBuilder sb) {
+        if (tupleAscii) {
+            sb.ensureCapacity(sb.length() + tupleLen);
+            for (int i = 0; i < tupleLen; i++) {
+                sb.append((char) tuple[i]);
+            }
+        } else {
+            sb.append(new String(tuple, 0, tupleLen, StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Returns the current tuple as a new String. Intended for tests and diagnostics;
+     * the load path uses {@link #appendTuple(StringBuilder)}.
+     *
+     * @return tuple text
+     */
+    @Override
+    public String tupleString() {
+        return new String(tuple, 0, tupleLen, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the number of values in the current tuple.
+     *
+     * @return field count
+     */
+    @Override
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Returns whether a field is the unquoted literal NULL.
+     *
+     * @param field zero-based field index
+     * @return true for NULL
+     */
+    @Override
+    public boolean isNull(int field) {
+        int start = trimmedStart(field);
+        int end = trimmedEnd(field);
+        return end - start == 4
+                && (tuple[start] | 0x20) == 'n' && (tuple[start + 1] | 0x20) == 'u'
+                && (tuple[start + 2] | 0x20) == 'l' && (tuple[start + 3] | 0x20) == 'l';
+    }
+
+    /**
+     * Returns whether a field is a quoted string literal, possibly prefixed by a type
+     * keyword such as DATE.
+     *
+     * @param field zero-based field index
+     * @return true if the field contains a quoted literal
+     */
+    @Override
+    public boolean isQuoted(int field) {
+        return openingQuote(field) >= 0;
+    }
+
+    /**
+     * Parses an integer field without allocating. Quotes around the digits are allowed.
+     *
+     * @param field zero-based field index
+     * @return value
+     * @throws NumberFormatException if the field is not an integer
+     */
+    @Override
+    public long getLong(int field) {
+        int i = trimmedStart(field);
+        int end = trimmedEnd(field);
+        if (end - i >= 2 && tuple[i] == '\'' && tuple[end - 1] == '\'') {
+            i++;
+            end--;
+        }
+        boolean negative = i < end && tuple[i] == '-';
+        if (negative || (i < end && tuple[i] == '+')) {
+            i++;
+        }
+        if (i == end) {
+            throw new NumberFormatException("Empty integer field " + field + " in " + tupleString());
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = tuple[i] - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid integer field " + field + " in " + tupleString());
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Parses a decimal field such as 901.00 into an unscaled value without allocating.
+     * Extra fraction digits are rounded half up, as the database does for DECIMAL columns.
+     *
+     * @param field zero-based field index
+     * @param scale number of fraction digits of the result
+     * @return value multiplied by 10^scale
+     * @throws NumberFormatException if the field is not a plain decimal number
+     */
+    @Override
+    public long getDecimal(int field, int scale) {
+        int i = trimmedStart(field);
+        int end = trimmedEnd(field);
+        if (end - i >= 2 && tuple[i] == '\'' && tuple[end - 1] == '\'') {
+            i++;
+            end--;
+        }
+        boolean negative = i < end && tuple[i] == '-';
+        if (negative || (i < end && tuple[i] == '+')) {
+            i++;
+        }
+        long value = 0;
+        int fraction = -1;
+        boolean digits = false;
+        boolean roundUp = false;
+        for (; i < end; i++) {
+            byte b = tuple[i];
+            if (b == '.' && fraction < 0) {
+                fraction = 0;
+                continue;
+            }
+            int digit = b - '0';
+            if (digit < 0 || digit > 9) {
+                throw new NumberFormatException("Invalid decimal field " + field + " in " + tupleString());
+            }
+            digits = true;
+            if (fraction >= scale) {
+                // Only the first dropped digit decides the rounding
+                if (fraction++ == scale) {
+                    roundUp = digit >= 5;
+                }
+                continue;
+            }
+            value = value * 10 + digit;
+            if (fraction >= 0) {
+                fraction++;
+            }
+        }
+        if (!digits) {
+            throw new NumberFormatException("Empty decimal field " + field + " in " + tupleString());
+        }
+        for (int f = Math.max(fraction, 0); f < scale; f++) {
+            value *= 10;
+        }
+        if (roundUp) {
+            value++;
+        }
+        return negative ? -value : value;
+    }
+
+    /**
+     * Returns a field as text: the unescaped content of a quoted literal, or the bare
+     * token for numbers and keywords.
+     *
+     * @param field zero-based field index
+     * @return field text
+     */
+    @Override
+    public String getString(int field) {
+        StringBuilder sb = new StringBuilder(fieldEnd[field] - fieldStart[field]);
+        appendField(field, sb);
+        return sb.toString();
+    }
+
+    /**
+     * Appends a field as text, as returned by {@link #getString(int)}, without
+     * allocating for ASCII content.
+     *
+     * @param field zero-based field index
+     * @param sb destination
+     */
+    @Override
+    public void appendField(int field, StringBuilder sb) {
+        int quote = openingQuote(field);
+        int start;
+        int end;
+        if (quote >= 0) {
+            start = quote + 1;
+            end = trimmedEnd(field) - 1;
+        } else {
+            start = trimmedStart(field);
+            end = trimmedEnd(field);
+        }
+        if (!tupleAscii) {
+            sb.append(new String(tuple, start, end - start, StandardCharsets.UTF_8)
+                    .replace("''", "'"));
+            return;
+        }
+        for (int i = start; i < end; i++) {
+            byte b = tuple[i];
+            sb.append((char) b);
+            if (b == '\'' && quote >= 0 && i + 1 < end && tuple[i + 1] == '\'') {
+                // Collapse the doubled quote escape
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Returns the byte offset just past the statement that contained the current tuple,
+     * or -1 if more tuples of the same statement follow.
+     *
+     * @return statement end offset
+     */
+    @Override
+    public long statementEnd() {
+        return statementEnd;
+    }
+
+    /**
+     * Returns the statement boundary from which loading continues after the current tuple:
+     * the end of its statement if it was the last tuple, otherwise the start of its
+     * statement. Together with {@link #checkpointTuples()} it identifies the position just
+     * past the current tuple for {@link #resume(long, long)}.
+     *
+     * @return statement boundary offset
+     */
+    @Override
+    public long checkpointOffset() {
+        return statementEnd >= 0 ? statementEnd : statementStart;
+    }
+
+    /**
+     * Returns the number of tuples between {@link #checkpointOffset()} and the position
+     * just past the current tuple.
+     *
+     * @return tuples to skip after the checkpoint offset
+     */
+    @Override
+    public long checkpointTuples() {
+        return statementEnd >= 0 ? 0 : tupleIndex + 1;
+    }
+
+    /**
+     * Moves to a checkpointed position: skips forward to a statement boundary, then reads
+     * past the given number of tuples without returning them.
+     *
+     * @param offset statement boundary, as returned by {@link #checkpointOffset()}
+     * @param tuples number of tuples to skip after the boundary
+     * @throws IOException if the offset is invalid or the script ends before the tuples
+     */
+    @Override
+    public void resume(long offset, long tuples) throws IOException {
+        skipTo(offset);
+        for (long i = 0; i < tuples; i++) {
+            if (!next()) {
+                throw new IOException("Script ends " + (tuples - i) + " tuples before the checkpoint");
+            }
+        }
+    }
+
+    /**
+     * Returns the number of bytes consumed from the stream so far.
+     *
+     * @return byte position
+     */
+    @Override
+    public long position() {
+        return bufferStart + pos;
+    }
+
+    /**
+     * Returns the number of tuples read so far.
+     *
+     * @return tuple count
+     */
+    @Override
+    public long records() {
+        return records;
+    }
+
+    /**
+     * Skips forward to an absolute byte offset, which must be a statement boundary
+     * previously reported by {@link #statementEnd()}.
+     *
+     * @param offset byte offset from the start of the stream
+     * @throws IOException if the offset is behind the current position or past the end
+     */
+    @Override
+    public void skipTo(long offset) throws IOException {
+        long remaining = offset - position();
+        if (remaining < 0) {
+            throw new IOException("Cannot seek backwards from " + position() + " to " + offset);
+        }
+        inValues = false;
+        int buffered = limit - pos;
+        if (remaining <= buffered) {
+            pos += (int) remaining;
+            return;
+        }
+        remaining -= buffered;
+        bufferStart += limit;
+        pos = 0;
+        limit = 0;
+        while (remaining > 0) {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0) {
+                if (in.read() < 0) {
+                    throw new IOException("Offset " + offset + " is past the end of the script");
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+            bufferStart += skipped;
+        }
+    }
+
+    /**
+     * Scans forward to the first semicolon outside quotes and comments that ends at or
+     * after the offset. Tuples are neither copied nor split into fields, so this costs a
+     * single pass over the bytes.
+     *
+     * @param offset minimum boundary offset
+     * @return offset just past the semicolon, or -1 if only whitespace and comments follow
+     * @throws IOException if the stream cannot be read
+     */
+    @Override
+    public long nextBoundary(long offset) throws IOException {
+        inValues = false;
+        statementEnd = -1;
+        int quote = 0;
+        while (pos < limit || fill()) {
+            int c = buf[pos++] & 0xff;
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == '-' && peek() == '-') {
+                while ((c = read()) != EOF && c != '\n') {
+                    // skip line comment
+                }
+            } else if (c == '/' && peek() == '*') {
+                pos++;
+                int prev = 0;
+                while ((c = read()) != EOF && !(prev == '*' && c == '/')) {
+                    prev = c;
+                }
+            } else if (c == ';' && position() >= offset) {
+                long end = position();
+                skipWhitespace();
+                return peek() == EOF ? -1 : end;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Skips statements until the VALUES keyword of the next INSERT statement.
+     *
+     * @return false if the end of the script was reached
+     */
+    private boolean nextInsert() throws IOException {
+        while (true) {
+            skipWhitespace();
+            if (peek() == EOF) {
+                return false;
+            }
+            if (matchKeyword("INSERT") && skipWhitespace() && matchKeyword("INTO") && skipWhitespace()) {
+                readTableName();
+                skipWhitespace();
+                if (peek() == '(') {
+                    // Explicit column list
+                    skipParenthesized();
+                    skipWhitespace();
+                }
+                if (matchKeyword("VALUES")) {
+                    inValues = true;
+                    return true;
+                }
+                throw malformed("expected VALUES in INSERT INTO " + table);
+            }
+            skipStatement();
+        }
+    }
+
+    /**
+     * Reads a possibly schema-qualified or double-quoted table name.
+     */
+    private void readTableName() throws IOException {
+        int len = 0;
+        boolean quoted = false;
+        int c;
+        while ((c = peek()) != EOF) {
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted && (isWhitespace(c) || c == '(')) {
+                break;
+            }
+            if (len == tableBytes.length) {
+                tableBytes = grow(tableBytes, len + 1);
+            }
+            tableBytes[len++] = (byte) c;
+            pos++;
+        }
+        if (len == 0) {
+            throw malformed("missing table name");
+        }
+        if (table == null || !sameBytes(len)) {
+            table = new String(tableBytes, 0, len, StandardCharsets.UTF_8);
+            currentTableBytes = Arrays.copyOf(tableBytes, len);
+        }
+    }
+
+    /**
+     * Compares the freshly read table name with the bytes of the previous one.
+     */
+    private boolean sameBytes(int len) {
+        if (len != currentTableBytes.length) {
+            return false;
+        }
+        for (int i = 0; i < len; i++) {
+            if (currentTableBytes[i] != tableBytes[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copies a parenthesized tuple into the tuple buffer, honouring quotes and nesting.
+     */
+    private void readTuple() throws IOException {
+        tupleLen = 0;
+        tupleAscii = true;
+        fieldCount = 0;
+        int depth = 0;
+        boolean quoted = false;
+        while (true) {
+            if (pos == limit && !fill()) {
+                throw malformed("unterminated VALUES tuple");
+            }
+            byte b = buf[pos++];
+            if (tupleLen == tuple.length) {
+                tuple = grow(tuple, tupleLen + 1);
+            }
+            tuple[tupleLen++] = b;
+            if (b < 0) {
+                tupleAscii = false;
+            } else if (b == '\'') {
+                // A doubled quote toggles twice and so stays inside the literal
+                quoted = !quoted;
+            } else if (!quoted) {
+                if (b == '(') {
+                    if (++depth == 1) {
+                        fieldStart[0] = tupleLen;
+                    }
+                } else if (b == ',' && depth == 1) {
+                    endField(tupleLen - 1);
+                } else if (b == ')' && --depth == 0) {
+                    endField(tupleLen - 1);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void endField(int end) {
+        if (fieldCount + 1 == fieldStart.length) {
+            fieldStart = Arrays.copyOf(fieldStart, fieldStart.length * 2);
+            fieldEnd = Arrays.copyOf(fieldEnd, fieldEnd.length * 2);
+        }
+        fieldEnd[fieldCount++] = end;
+        fieldStart[fieldCount] = end + 1;
+    }
+
+    /**
+     * Returns the first byte of a field with surrounding whitespace removed.
+     */
+    private int trimmedStart(int field) {
+        int i = fieldStart[field];
+        int end = fieldEnd[field];
+        while (i < end && isWhitespace(tuple[i])) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Returns the end of a field with surrounding whitespace removed.
+     */
+    private int trimmedEnd(int field) {
+        int start = fieldStart[field];
+        int end = fieldEnd[field];
+        while (end > start && isWhitespace(tuple[end - 1])) {
+            end--;
+        }
+        return end;
+    }
+
+    /**
+     * Returns the index of the first quote of a field, or -1 if it is unquoted.
+     */
+    private int openingQuote(int field) {
+        for (int i = trimmedStart(field), end = trimmedEnd(field); i < end; i++) {
+            if (tuple[i] == '\'') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Skips a parenthesized group such as an INSERT column list.
+     */
+    private void skipParenthesized() throws IOException {
+        int depth = 0;
+        boolean quoted = false;
+        int c;
+        while ((c = read()) != EOF) {
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (!quoted) {
+                if (c == '(') {
+                    depth++;
+                } else if (c == ')' && --depth == 0) {
+                    return;
+                }
+            }
+        }
+        throw malformed("unterminated column list");
+    }
+
+    /**
+     * Skips to just past the next semicolon that is outside quotes.
+     */
+    private void skipStatement() throws IOException {
+        int quote = 0;
+        int c;
+        while ((c = read()) != EOF) {
+            if (quote != 0) {
+                if (c == quote) {
+                    quote = 0;
+                }
+            } else if (c == '\'' || c == '"') {
+                quote = c;
+            } else if (c == ';') {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Skips whitespace and comments.
+     *
+     * @return always true, so calls can be chained in conditions
+     */
+    private boolean skipWhitespace() throws IOException {
+        while (true) {
+            int c = peek();
+            if (isWhitespace(c)) {
+                pos++;
+            } else if (c == '-' && peekAhead(1) == '-') {
+                while ((c = read()) != EOF && c != '\n') {
+                    // skip line comment
+                }
+            } else if (c == '/' && peekAhead(1) == '*') {
+                pos += 2;
+                int prev = 0;
+                while ((c = read()) != EOF && !(prev == '*' && c == '/')) {
+                    prev = c;
+                }
+            } else {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Consumes the keyword if it appears next, compared case-insensitively and followed
+     * by a non-identifier character. On mismatch the matched prefix stays consumed, which
+     * is harmless because the caller then skips the rest of the statement.
+     */
+    private boolean matchKeyword(String keyword) throws IOException {
+        for (int i = 0; i < keyword.length(); i++) {
+            int c = peek();
+            if (c == EOF || Character.toUpperCase((char) c) != keyword.charAt(i)) {
+                return false;
+            }
+            pos++;
+        }
+        int c = peek();
+        return !(Character.isLetterOrDigit(c) || c == '_');
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t' || c == '\f';
+    }
+
+    private int read() throws IOException {
+        if (pos == limit && !fill()) {
+            return EOF;
+        }
+        return buf[pos++] & 0xff;
+    }
+
+    private int peek() throws IOException {
+        if (pos == limit && !fill()) {
+            return EOF;
+        }
+        return buf[pos] & 0xff;
+    }
+
+    /**
+     * Looks ahead without consuming; keeps at least the requested bytes in the buffer.
+     */
+    private int peekAhead(int offset) throws IOException {
+        if (pos + offset >= limit) {
+            compact();
+            while (!eof && pos + offset >= limit) {
+                readMore();
+            }
+            if (pos + offset >= limit) {
+                return EOF;
+            }
+        }
+        return buf[pos + offset] & 0xff;
+    }
+
+    /**
+     * Refills an exhausted buffer.
+     *
+     * @return false at end of stream
+     */
+    private boolean fill() throws IOException {
+        compact();
+        while (!eof && pos == limit) {
+            readMore();
+        }
+        return pos < limit;
+    }
+
+    private void compact() {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, limit - pos);
+            bufferStart += pos;
+            limit -= pos;
+            pos = 0;
+        }
+    }
+
+    private void readMore() throws IOException {
+        int n = in.read(buf, limit, buf.length - limit);
+        if (n < 0) {
+            eof = true;
+        } else {
+            limit += n;
+        }
+    }
+
+    private static byte[] grow(byte[] array, int minLength) {
+        byte[] larger = new byte[Math.max(minLength, array.length * 2)];
+        System.arraycopy(array, 0, larger, 0, array.length);
+        return larger;
+    }
+
+    private IOException malformed(String message) {
+        return new IOException("Malformed SQL script at byte " + position() + ": " + message);
+    }
+}
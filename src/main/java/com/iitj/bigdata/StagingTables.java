@@ -0,0 +1,217 @@
+package com.iitj.bigdata;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Staging copies of a set of tables, used to reload data while queries keep reading the
+ * live tables.
+ *
+ * Every table t gets a copy t_stage in the same schema, created by rewriting the table
+ * names in its DDL, so foreign keys and physical design point at the other copies. Once
+ * the copies are loaded, {@link #swap} renames t to t_old and t_stage to t for all tables
+ * in one transaction: queries see either all old or all new tables, never an empty or
+ * half-loaded one. Renames are used instead of moving tables between schemas since
+ * Redshift cannot move a table to another schema. The old copies are dropped afterwards
+ * by {@link #dropOld}, which waits for the queries still reading them.
+ */
+public class StagingTables {
+    static final String STAGE_SUFFIX = "_stage";
+    static final String OLD_SUFFIX = "_old";
+
+    private final List<String> tables;
+    /**
+     * Table names as whole words, and the table part of index names such as idx_orders_o_custkey.
+     */
+    private final Pattern names;
+    private final Pattern indexNames;
+
+    /**
+     * Creates the staging copies' descriptor.
+     *
+     * @param tables lower-case table names in load order, parents before children
+     */
+    public StagingTables(List<String> tables) {
+        this.tables = new ArrayList<>(tables);
+        String alternatives = String.join("|", tables);
+        names = Pattern.compile("\\b(?:" + alternatives + ")\\b", Pattern.CASE_INSENSITIVE);
+        indexNames = Pattern.compile("\\bidx_(?:" + alternatives + ")(?=_)", Pattern.CASE_INSENSITIVE);
+    }
+
+    public List<String> getTables() {
+        return tables;
+    }
+
+    /**
+     * Rewrites a statement to use the staging copies, e.g. "CREATE TABLE nation (...
+     * REFERENCES region (r_regionkey))" to "CREATE TABLE nation_stage (... REFERENCES
+     * region_stage (r_regionkey))". Column names such as n_regionkey are left alone.
+     *
+     * @param sql DDL or DML naming the live tables
+     * @return the statement naming the staging copies
+     */
+    public String stage(String sql) {
+        String renamed = names.matcher(sql).replaceAll("$0" + STAGE_SUFFIX);
+        return indexNames.matcher(renamed).replaceAll("$0" + STAGE_SUFFIX);
+    }
+
+    /**
+     * Returns the tables of the current schema.
+     *
+     * @param con connection
+     * @return lower-case table names
+     * @throws SQLException if the catalog cannot be read
+     */
+    public static Set<String> existing(Connection con) throws SQLException {
+        Set<String> existing = new HashSet<>();
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT table_name FROM information_schema.tables "
+                     + "WHERE table_schema = current_schema()")) {
+            while (rs.next()) {
+                existing.add(rs.getString(1).toLowerCase(Locale.ROOT));
+            }
+        }
+        return existing;
+    }
+
+    /**
+     * Drops the copies with the given suffix, children first.
+     *
+     * @param con connection in autoCommit mode
+     * @param suffix STAGE_SUFFIX or OLD_SUFFIX
+     * @throws SQLException if a table cannot be dropped
+     */
+    public void drop(Connection con, String suffix) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            for (int i = tables.size() - 1; i >= 0; i--) {
+                stmt.execute("DROP TABLE IF EXISTS " + tables.get(i) + suffix + " CASCADE");
+            }
+        }
+    }
+
+    /**
+     * Counts the rows of some tables, or of their copies.
+     *
+     * @param con connection
+     * @param tables tables to count
+     * @param suffix "" for the tables themselves, or the suffix of their copies
+     * @return row count per table, in the given order
+     * @throws SQLException if a table does not exist
+     */
+    public static Map<String, Long> countRows(Connection con, Collection<String> tables, String suffix)
+            throws SQLException {
+        Map<String, Long> counts = new LinkedHashMap<>();
+        try (Statement stmt = con.createStatement()) {
+            for (String table : tables) {
+                try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table + suffix)) {
+                    rs.next();
+                    counts.put(table, rs.getLong(1));
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * Checks the loaded staging copies before they replace the live tables.
+     *
+     * @param staged row count of each loaded staging copy
+     * @param live row count of the live tables that exist
+     * @param loadedRows rows the load reported
+     * @param minRowRatio smallest fraction of its live rows a copy may hold; 0 accepts any
+     * @return problems found, empty when the copies may go live
+     */
+    public static List<String> validate(Map<String, Long> staged, Map<String, Long> live, long loadedRows,
+                                        double minRowRatio) {
+        List<String> problems = new ArrayList<>();
+        long total = 0;
+        for (Map.Entry<String, Long> entry : staged.entrySet()) {
+            String table = entry.getKey();
+            long rows = entry.getValue();
+            total += rows;
+            Long liveRows = live.get(table);
+            if (rows == 0) {
+                problems.add(table + STAGE_SUFFIX + " is empty");
+            } else if (liveRows != null && rows < liveRows * minRowRatio) {
+                problems.add(String.format(Locale.ROOT, "%s%s has %d rows, fewer than %.0f%% of the %d live rows",
+                        table, STAGE_SUFFIX, rows, minRowRatio * 100, liveRows));
+            }
+        }
+        if (total != loadedRows) {
+            problems.add("staging tables hold " + total + " rows but the load reported " + loadedRows);
+        }
+        return problems;
+    }
+
+    /**
+     * Puts the staging copies live in one transaction: every existing table is renamed to
+     * its old copy and every staging copy to the table. On failure nothing is renamed.
+     *
+     * @param con connection
+     * @param existing tables of the schema, see {@link #existing}
+     * @throws SQLException if a rename or the commit fails
+     */
+    public void swap(Connection con, Set<String> existing) throws SQLException {
+        boolean autoCommit = con.getAutoCommit();
+        con.setAutoCommit(false);
+        try (Statement stmt = con.createStatement()) {
+            for (String table : tables) {
+                if (existing.contains(table)) {
+                    stmt.execute("ALTER TABLE " + table + " RENAME TO " + table + OLD_SUFFIX);
+                }
+                stmt.execute("ALTER TABLE " + table + STAGE_SUFFIX + " RENAME TO " + table);
+            }
+            con.commit();
+        } catch (SQLException e) {
+            con.rollback();
+            throw e;
+        } finally {
+            con.setAutoCommit(autoCommit);
+        }
+    }
+
+    /**
+     * Drops the old copies left by {@link #swap}, then gives the indexes created on the
+     * staging copies the names of the dropped ones, so the next reload can create its
+     * staging indexes again. Dropping waits for the queries still reading the old copies.
+     *
+     * @param con connection in autoCommit mode
+     * @throws SQLException if a table cannot be dropped
+     */
+    public void dropOld(Connection con) throws SQLException {
+        drop(con, OLD_SUFFIX);
+        List<String> renames = new ArrayList<>();
+        try (Statement stmt = con.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT tablename, indexname FROM pg_indexes "
+                    + "WHERE schemaname = current_schema()")) {
+                while (rs.next()) {
+                    String table = rs.getString(1).toLowerCase(Locale.ROOT);
+                    String index = rs.getString(2);
+                    int at = index.toLowerCase(Locale.ROOT).indexOf(table + STAGE_SUFFIX);
+                    if (tables.contains(table) && at >= 0) {
+                        int end = at + table.length();
+                        renames.add("ALTER INDEX " + index + " RENAME TO "
+                                + index.substring(0, end) + index.substring(end + STAGE_SUFFIX.length()));
+                    }
+                }
+            }
+            for (String sql : renames) {
+                stmt.execute(sql);
+            }
+        } catch (SQLException e) {
+            // Redshift has no indexes to rename
+            System.err.println("Warning: Could not rename staging indexes: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,268 @@
+package com.iitj.bigdata;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the PreparedStatements of one connection between calls, so a query that runs
+ * again with different parameters is neither parsed nor planned again by the server.
+ *
+ * A statement is taken out of the cache while its ResultSet is open, since executing it
+ * again would close that result; a second call with the same SQL meanwhile prepares
+ * another statement. Closing the ResultSet returns the statement. At most maxSize idle
+ * statements are kept; the least recently used ones are closed when more come back.
+ * Statements whose results are never closed are closed with the cache.
+ */
+public class StatementCache implements AutoCloseable {
+    private final Connection con;
+    private final int maxSize;
+
+    /**
+     * Idle statements by SQL, least recently used first.
+     */
+    private final LinkedHashMap<String, Deque<PreparedStatement>> idle = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * Statements taken out whose results are still open.
+     */
+    private final Set<PreparedStatement> inUse = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int size;
+    private long hits;
+    private long misses;
+    private long evictions;
+    /**
+     * Bumped by {@link #clear()}, so statements in use at that time are closed when they
+     * come back instead of being cached again.
+     */
+    private long generation;
+    private boolean closed;
+
+    /**
+     * Creates a cache.
+     *
+     * @param con connection the statements are prepared on
+     * @param maxSize idle statements kept; 0 closes every statement after use
+     */
+    public StatementCache(Connection con, int maxSize) {
+        this.con = con;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Runs a query with a cached statement, preparing it on first use.
+     *
+     * @param sql query with ? placeholders
+     * @param params values for the placeholders; LocalDate is bound as a DATE
+     * @return result; closing it returns the statement to the cache
+     * @throws SQLException if preparing, binding or executing fails
+     */
+    public ResultSet executeQuery(String sql, Object... params) throws SQLException {
+        long takenIn;
+        synchronized (this) {
+            takenIn = generation;
+        }
+        PreparedStatement ps = take(sql);
+        ResultSet rs;
+        try {
+            ps.clearParameters();
+            for (int i = 0; i < params.length; i++) {
+                Object value = params[i];
+                if (value instanceof LocalDate) {
+                    ps.setDate(i + 1, Date.valueOf((LocalDate) value));
+                } else {
+                    ps.setObject(i + 1, value);
+                }
+            }
+            rs = ps.executeQuery();
+        } catch (SQLException e) {
+            // The statement may be unusable, e.g. after the table it reads was recreated
+            synchronized (this) {
+                inUse.remove(ps);
+            }
+            closeQuietly(ps);
+            throw e;
+        }
+        return returnOnClose(sql, ps, rs, takenIn);
+    }
+
+    /**
+     * Removes an idle statement for the SQL from the cache, or prepares a new one.
+     */
+    private PreparedStatement take(String sql) throws SQLException {
+        synchronized (this) {
+            if (closed) {
+                throw new SQLException("Statement cache is closed");
+            }
+            Deque<PreparedStatement> statements = idle.get(sql);
+            if (statements != null && !statements.isEmpty()) {
+                hits++;
+                size--;
+                PreparedStatement ps = statements.pop();
+                if (statements.isEmpty()) {
+                    idle.remove(sql);
+                }
+                inUse.add(ps);
+                return ps;
+            }
+            misses++;
+        }
+        PreparedStatement ps = con.prepareStatement(sql);
+        synchronized (this) {
+            inUse.add(ps);
+        }
+        return ps;
+    }
+
+    /**
+     * Puts a statement back, closing the least recently used ones beyond maxSize.
+     */
+    private void release(String sql, PreparedStatement ps, long takenIn) {
+        Deque<PreparedStatement> evicted = new ArrayDeque<>();
+        synchronized (this) {
+            if (!inUse.remove(ps)) {
+                // Already closed by close()
+                return;
+            }
+            if (closed || maxSize <= 0 || takenIn != generation) {
+                evicted.add(ps);
+            } else {
+                idle.computeIfAbsent(sql, k -> new ArrayDeque<>()).push(ps);
+                size++;
+                Iterator<Map.Entry<String, Deque<PreparedStatement>>> it = idle.entrySet().iterator();
+                while (size > maxSize && it.hasNext()) {
+                    Deque<PreparedStatement> oldest = it.next().getValue();
+                    while (size > maxSize && !oldest.isEmpty()) {
+                        evicted.add(oldest.removeLast());
+                        size--;
+                        evictions++;
+                    }
+                    if (oldest.isEmpty()) {
+                        it.remove();
+                    }
+                }
+            }
+        }
+        for (PreparedStatement statement : evicted) {
+            closeQuietly(statement);
+        }
+    }
+
+    /**
+     * Wraps a result so that closing it returns its statement instead of closing it.
+     */
+    private ResultSet returnOnClose(String sql, PreparedStatement ps, ResultSet rs, long takenIn) {
+        boolean[] released = {false};
+        return (ResultSet) Proxy.newProxyInstance(StatementCache.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("close")) {
+                        if (!released[0]) {
+                            released[0] = true;
+                            try {
+                                rs.close();
+                            } finally {
+                                release(sql, ps, takenIn);
+                            }
+                        }
+                        return null;
+                    }
+                    if (method.getName().equals("isClosed") && released[0]) {
+                        return true;
+                    }
+                    try {
+                        return method.invoke(rs, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+    }
+
+    private static void closeQuietly(PreparedStatement ps) {
+        try {
+            ps.close();
+        } catch (SQLException e) {
+            System.err.println("Error closing prepared statement: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Closes all idle statements, e.g. after the tables they read were dropped and
+     * recreated. Statements in use are closed when their results are.
+     */
+    public void clear() {
+        Deque<PreparedStatement> statements = new ArrayDeque<>();
+        synchronized (this) {
+            for (Deque<PreparedStatement> idleStatements : idle.values()) {
+                statements.addAll(idleStatements);
+            }
+            idle.clear();
+            size = 0;
+            generation++;
+        }
+        for (PreparedStatement ps : statements) {
+            closeQuietly(ps);
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized int getSize() {
+        return size;
+    }
+
+    public synchronized int getInUseCount() {
+        return inUse.size();
+    }
+
+    /**
+     * Returns a one-line summary of the cache counters.
+     *
+     * @return statistics
+     */
+    public synchronized String stats() {
+        long lookups = hits + misses;
+        return String.format("Statement cache stats: hits=%d, misses=%d, reuse rate=%.1f%%, evictions=%d, "
+                        + "idle=%d, max=%d",
+                hits, misses, lookups == 0 ? 0.0 : 100.0 * hits / lookups, evictions, size, maxSize);
+    }
+
+    /**
+     * Closes all statements, including those whose results are still open. The
+     * connection stays open.
+     */
+    @Override
+    public void close() {
+        Deque<PreparedStatement> statements;
+        synchronized (this) {
+            closed = true;
+            statements = new ArrayDeque<>(inUse);
+            inUse.clear();
+        }
+        clear();
+        for (PreparedStatement ps : statements) {
+            closeQuietly(ps);
+        }
+    }
+}
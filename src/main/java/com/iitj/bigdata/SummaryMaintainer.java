@@ -0,0 +1,343 @@
+package com.iitj.bigdata;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps two summary tables up to date while the data is loaded, so query1 and query3
+ * can read a few pre-aggregated rows instead of joining and aggregating lineitem:
+ * <ul>
+ *   <li>order_revenue: net revenue of every order that has line items, with its date and
+ *       the region of its customer;</li>
+ *   <li>priority_counts: line items per order date and order priority.</li>
+ * </ul>
+ *
+ * As a {@link TableLoader.BatchHook} it collects the order keys of each orders batch and
+ * the per-order revenue and line item count of each lineitem batch, and folds them into
+ * the summaries in the batch's own transaction. A lineitem batch contributes the line
+ * items of orders that are already loaded; an orders batch contributes the line items
+ * already loaded for its new orders, so the summaries are right in either load order.
+ * Both summary tables are locked for the update, which serializes concurrent loaders.
+ * The region is looked up when an order first enters order_revenue, so customer, nation
+ * and region must be loaded before orders, as both loaders do. Like SQL's SUM, revenue
+ * skips line items whose price or discount is NULL, and is NULL if all of them are.
+ */
+public class SummaryMaintainer implements TableLoader.BatchHook {
+    static final String ORDER_REVENUE = "order_revenue";
+    static final String PRIORITY_COUNTS = "priority_counts";
+    /**
+     * Summary tables, in drop order.
+     */
+    static final List<String> TABLES = Arrays.asList(ORDER_REVENUE, PRIORITY_COUNTS);
+    /**
+     * Session-local table the deltas of one batch are written to.
+     */
+    private static final String DELTA = "summary_delta";
+    private static final Pattern DECIMAL_SCALE = Pattern.compile(",\\s*(\\d+)\\s*\\)");
+
+    private static final String REGION_JOIN =
+            "LEFT JOIN customer c ON c.c_custkey = o.o_custkey "
+            + "LEFT JOIN nation n ON n.n_nationkey = c.c_nationkey "
+            + "LEFT JOIN region r ON r.r_regionkey = n.n_regionkey ";
+    /**
+     * Summary contents recomputed from the base tables.
+     */
+    private static final String ORDER_REVENUE_BASE =
+            "SELECT o.o_orderkey, o.o_orderdate, r.r_name, SUM(l.l_extendedprice * (1 - l.l_discount)) AS revenue "
+            + "FROM orders o JOIN lineitem l ON l.l_orderkey = o.o_orderkey " + REGION_JOIN
+            + "GROUP BY o.o_orderkey, o.o_orderdate, r.r_name";
+    private static final String PRIORITY_COUNTS_BASE =
+            "SELECT o.o_orderdate, o.o_orderpriority, COUNT(*) AS lineitem_count "
+            + "FROM orders o JOIN lineitem l ON l.l_orderkey = o.o_orderkey "
+            + "GROUP BY o.o_orderdate, o.o_orderpriority";
+    /**
+     * Per-order deltas of a lineitem batch, taken as they are.
+     */
+    private static final String LINEITEM_DELTA =
+            "SELECT d.k AS o_orderkey, d.revenue, d.cnt FROM " + DELTA + " d";
+    /**
+     * Per-order deltas of an orders batch: the line items already loaded for its orders.
+     */
+    private static final String ORDERS_DELTA =
+            "SELECT d.k AS o_orderkey, SUM(l.l_extendedprice * (1 - l.l_discount)) AS revenue, COUNT(*) AS cnt "
+            + "FROM " + DELTA + " d JOIN lineitem l ON l.l_orderkey = d.k GROUP BY d.k";
+
+    /**
+     * Result of comparing the summaries with the base tables.
+     */
+    public static class Consistency {
+        private final long orderRevenueMismatches;
+        private final long priorityCountMismatches;
+
+        Consistency(long orderRevenueMismatches, long priorityCountMismatches) {
+            this.orderRevenueMismatches = orderRevenueMismatches;
+            this.priorityCountMismatches = priorityCountMismatches;
+        }
+
+        /**
+         * Returns the rows of order_revenue that are missing, extra or different.
+         *
+         * @return mismatching rows, counted on both sides
+         */
+        public long getOrderRevenueMismatches() {
+            return orderRevenueMismatches;
+        }
+
+        /**
+         * Returns the rows of priority_counts that are missing, extra or different.
+         *
+         * @return mismatching rows, counted on both sides
+         */
+        public long getPriorityCountMismatches() {
+            return priorityCountMismatches;
+        }
+
+        public boolean isConsistent() {
+            return orderRevenueMismatches == 0 && priorityCountMismatches == 0;
+        }
+
+        @Override
+        public String toString() {
+            return isConsistent() ? "Summary tables match the base tables"
+                    : "Summary tables differ from the base tables: " + ORDER_REVENUE + " "
+                    + orderRevenueMismatches + " rows, " + PRIORITY_COUNTS + " " + priorityCountMismatches + " rows";
+        }
+    }
+
+    private final int lineOrderKey;
+    private final int lineExtendedPrice;
+    private final int lineDiscount;
+    private final int priceScale;
+    private final int discountScale;
+    private final int orderKey;
+    /**
+     * Current batch: revenue at scale priceScale + discountScale, line item count and
+     * count of items with a revenue per order key for lineitem, or the new order keys
+     * for orders.
+     */
+    private final Map<Long, long[]> lineDeltas = new HashMap<>();
+    private final List<Long> orderKeys = new ArrayList<>();
+
+    /**
+     * Creates a maintainer for one loading connection.
+     *
+     * @param schema tables parsed from tpch_create.sql, used for the column positions
+     * @throws IllegalArgumentException if orders or lineitem lack a summarized column
+     */
+    public SummaryMaintainer(Map<String, TableSchema> schema) {
+        this.lineOrderKey = position(schema, "lineitem", "l_orderkey");
+        this.lineExtendedPrice = position(schema, "lineitem", "l_extendedprice");
+        this.lineDiscount = position(schema, "lineitem", "l_discount");
+        this.priceScale = scale(schema.get("lineitem").getColumns().get(lineExtendedPrice));
+        this.discountScale = scale(schema.get("lineitem").getColumns().get(lineDiscount));
+        this.orderKey = position(schema, "orders", "o_orderkey");
+    }
+
+    private static int position(Map<String, TableSchema> schema, String table, String column) {
+        TableSchema def = schema.get(table);
+        if (def != null) {
+            List<TableSchema.Column> columns = def.getColumns();
+            for (int i = 0; i < columns.size(); i++) {
+                if (columns.get(i).getName().equals(column)) {
+                    return i;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Summary tables need column " + table + "." + column);
+    }
+
+    private static int scale(TableSchema.Column column) {
+        Matcher m = DECIMAL_SCALE.matcher(column.getType());
+        return m.find() ? Integer.parseInt(m.group(1)) : 0;
+    }
+
+    /**
+     * Returns the statements that create the summary tables.
+     *
+     * @return CREATE TABLE statements
+     */
+    public static List<String> createStatements() {
+        return Arrays.asList(
+                "CREATE TABLE " + ORDER_REVENUE + " (o_orderkey BIGINT NOT NULL, o_orderdate DATE NOT NULL, "
+                        + "r_name CHAR(25), revenue DECIMAL(38,4))",
+                "CREATE TABLE " + PRIORITY_COUNTS + " (o_orderdate DATE NOT NULL, o_orderpriority CHAR(15) NOT NULL, "
+                        + "lineitem_count BIGINT NOT NULL)");
+    }
+
+    @Override
+    public void addRow(String table, TupleReader reader) throws SQLException {
+        try {
+            switch (TableSchema.normalize(table)) {
+                case "lineitem":
+                    long[] delta = lineDeltas.computeIfAbsent(reader.getLong(lineOrderKey), k -> new long[3]);
+                    // A NULL term is skipped, as SUM(l_extendedprice * (1 - l_discount)) does
+                    if (!reader.isNull(lineExtendedPrice) && !reader.isNull(lineDiscount)) {
+                        long price = reader.getDecimal(lineExtendedPrice, priceScale);
+                        long discount = reader.getDecimal(lineDiscount, discountScale);
+                        // price * (1 - discount), at scale priceScale + discountScale
+                        delta[0] += price * (pow10(discountScale) - discount);
+                        delta[2]++;
+                    }
+                    delta[1]++;
+                    break;
+                case "orders":
+                    orderKeys.add(reader.getLong(orderKey));
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            throw new SQLException("Cannot summarize tuple " + reader.tupleString() + ": " + e.getMessage(), e);
+        }
+    }
+
+    private static long pow10(int exponent) {
+        long value = 1;
+        for (int i = 0; i < exponent; i++) {
+            value *= 10;
+        }
+        return value;
+    }
+
+    @Override
+    public void beforeCommit(Connection con) throws SQLException {
+        if (lineDeltas.isEmpty() && orderKeys.isEmpty()) {
+            return;
+        }
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute("CREATE TEMP TABLE IF NOT EXISTS " + DELTA
+                    + " (k BIGINT NOT NULL, revenue DECIMAL(38,4), cnt BIGINT)");
+            stmt.execute("LOCK TABLE " + ORDER_REVENUE + ", " + PRIORITY_COUNTS);
+            try (PreparedStatement ps = con.prepareStatement("INSERT INTO " + DELTA + " VALUES (?, ?, ?)")) {
+                for (Map.Entry<Long, long[]> delta : lineDeltas.entrySet()) {
+                    ps.setLong(1, delta.getKey());
+                    if (delta.getValue()[2] == 0) {
+                        ps.setNull(2, Types.DECIMAL);
+                    } else {
+                        ps.setBigDecimal(2, BigDecimal.valueOf(delta.getValue()[0], priceScale + discountScale));
+                    }
+                    ps.setLong(3, delta.getValue()[1]);
+                    ps.addBatch();
+                }
+                for (long key : orderKeys) {
+                    ps.setLong(1, key);
+                    ps.setNull(2, Types.DECIMAL);
+                    ps.setNull(3, Types.BIGINT);
+                    ps.addBatch();
+                }
+                ps.executeBatch();
+            }
+            for (String sql : applyStatements(lineDeltas.isEmpty() ? ORDERS_DELTA : LINEITEM_DELTA)) {
+                stmt.execute(sql);
+            }
+            stmt.execute("DELETE FROM " + DELTA);
+        } finally {
+            discard();
+        }
+    }
+
+    @Override
+    public void discard() {
+        lineDeltas.clear();
+        orderKeys.clear();
+    }
+
+    /**
+     * Returns the statements that add per-order deltas (o_orderkey, revenue, cnt) to both
+     * summaries: existing rows are incremented, new ones inserted. A NULL revenue is
+     * combined the way SUM combines it: it leaves a revenue unchanged and is replaced by
+     * one.
+     *
+     * @param deltas query producing the per-order deltas
+     * @return UPDATE and INSERT statements
+     */
+    static List<String> applyStatements(String deltas) {
+        String priorityDeltas = "SELECT o.o_orderdate, o.o_orderpriority, SUM(x.cnt) AS cnt "
+                + "FROM (" + deltas + ") x JOIN orders o ON o.o_orderkey = x.o_orderkey "
+                + "GROUP BY o.o_orderdate, o.o_orderpriority";
+        return Arrays.asList(
+                "UPDATE " + ORDER_REVENUE + " SET revenue = COALESCE(" + ORDER_REVENUE + ".revenue + x.revenue, "
+                        + ORDER_REVENUE + ".revenue, x.revenue) "
+                        + "FROM (" + deltas + ") x WHERE " + ORDER_REVENUE + ".o_orderkey = x.o_orderkey",
+                "INSERT INTO " + ORDER_REVENUE + " (o_orderkey, o_orderdate, r_name, revenue) "
+                        + "SELECT x.o_orderkey, o.o_orderdate, r.r_name, x.revenue "
+                        + "FROM (" + deltas + ") x JOIN orders o ON o.o_orderkey = x.o_orderkey " + REGION_JOIN
+                        + "WHERE NOT EXISTS (SELECT 1 FROM " + ORDER_REVENUE + " s WHERE s.o_orderkey = x.o_orderkey)",
+                "UPDATE " + PRIORITY_COUNTS + " SET lineitem_count = " + PRIORITY_COUNTS + ".lineitem_count + p.cnt "
+                        + "FROM (" + priorityDeltas + ") p WHERE " + PRIORITY_COUNTS + ".o_orderdate = p.o_orderdate "
+                        + "AND " + PRIORITY_COUNTS + ".o_orderpriority = p.o_orderpriority",
+                "INSERT INTO " + PRIORITY_COUNTS + " (o_orderdate, o_orderpriority, lineitem_count) "
+                        + "SELECT p.o_orderdate, p.o_orderpriority, p.cnt FROM (" + priorityDeltas + ") p "
+                        + "WHERE NOT EXISTS (SELECT 1 FROM " + PRIORITY_COUNTS + " s "
+                        + "WHERE s.o_orderdate = p.o_orderdate AND s.o_orderpriority = p.o_orderpriority)");
+    }
+
+    /**
+     * Recomputes both summaries from the base tables, for loads that bypass the batch
+     * hook such as COPY, or to repair them after a failed consistency check. The caller
+     * commits.
+     *
+     * @param con connection
+     * @throws SQLException if a statement fails
+     */
+    public static void rebuild(Connection con) throws SQLException {
+        rebuild(con, UnaryOperator.identity());
+    }
+
+    /**
+     * Recomputes both summaries like {@link #rebuild(Connection)}, with every statement
+     * mapped onto other tables first, e.g. the staging copies of a reload.
+     *
+     * @param con connection
+     * @param tables rewrites the table names of a statement
+     * @throws SQLException if a statement fails
+     */
+    public static void rebuild(Connection con, UnaryOperator<String> tables) throws SQLException {
+        try (Statement stmt = con.createStatement()) {
+            stmt.execute(tables.apply("DELETE FROM " + ORDER_REVENUE));
+            stmt.execute(tables.apply("DELETE FROM " + PRIORITY_COUNTS));
+            stmt.execute(tables.apply("INSERT INTO " + ORDER_REVENUE + " (o_orderkey, o_orderdate, r_name, revenue) "
+                    + ORDER_REVENUE_BASE));
+            stmt.execute(tables.apply("INSERT INTO " + PRIORITY_COUNTS
+                    + " (o_orderdate, o_orderpriority, lineitem_count) " + PRIORITY_COUNTS_BASE));
+        }
+    }
+
+    /**
+     * Compares both summaries row by row with the same aggregates computed from the base
+     * tables.
+     *
+     * @param con connection
+     * @return number of differing rows per summary
+     * @throws SQLException if a query fails
+     */
+    public static Consistency check(Connection con) throws SQLException {
+        return new Consistency(
+                mismatches(con, ORDER_REVENUE_BASE,
+                        "SELECT o_orderkey, o_orderdate, r_name, revenue FROM " + ORDER_REVENUE),
+                mismatches(con, PRIORITY_COUNTS_BASE,
+                        "SELECT o_orderdate, o_orderpriority, lineitem_count FROM " + PRIORITY_COUNTS));
+    }
+
+    private static long mismatches(Connection con, String expected, String actual) throws SQLException {
+        String sql = "SELECT COUNT(*) FROM ((" + expected + " EXCEPT " + actual + ") UNION ALL ("
+                + actual + " EXCEPT " + expected + ")) m";
+        try (Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+}
@@ -0,0 +1,379 @@
+package com.iitj.bigdata;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+
+/**
+ * Loads the tuples read by a {@link TupleReader} over one connection, committing after
+ * every batch. Subclasses decide how a batch is sent to the database. The connection must
+ * have autoCommit disabled; rolling back on failure is left to the caller.
+ */
+public abstract class TableLoader implements AutoCloseable {
+    protected final Connection con;
+    private final AdaptiveBatchSizer sizer;
+    private final boolean verbose;
+    private MetricsRegistry metrics;
+    private TableMetrics tableMetrics;
+    private BatchHook hook;
+    private String tableSuffix = "";
+
+    /**
+     * Creates a loader.
+     *
+     * @param con connection with autoCommit disabled
+     * @param sizer decides when a batch is full
+     * @param verbose whether to print progress after every batch
+     */
+    protected TableLoader(Connection con, AdaptiveBatchSizer sizer, boolean verbose) {
+        this.con = con;
+        this.sizer = sizer;
+        this.verbose = verbose;
+    }
+
+    /**
+     * Creates the loader for a load mode.
+     *
+     * @param mode load mode
+     * @param con connection with autoCommit disabled
+     * @param sizer decides when a batch is full
+     * @param verbose whether to print progress after every batch
+     * @param schema tables parsed from tpch_create.sql, used for column types
+     * @return loader
+     */
+    public static TableLoader create(LoadMode mode, Connection con, AdaptiveBatchSizer sizer, boolean verbose,
+                                     Map<String, TableSchema> schema) {
+        return create(mode, con, sizer, verbose, schema, null);
+    }
+
+    /**
+     * Creates the loader for a load mode that records per-table batch latency, rows, bytes,
+     * commits and failed batches.
+     *
+     * @param mode load mode
+     * @param con connection with autoCommit disabled
+     * @param sizer decides when a batch is full
+     * @param verbose whether to print progress after every batch
+     * @param schema tables parsed from tpch_create.sql, used for column types
+     * @param metrics registry to record into, or null
+     * @return loader
+     */
+    public static TableLoader create(LoadMode mode, Connection con, AdaptiveBatchSizer sizer, boolean verbose,
+                                     Map<String, TableSchema> schema, MetricsRegistry metrics) {
+        TableLoader loader;
+        switch (mode) {
+            case BATCH:
+                loader = new PreparedBatchLoader(con, sizer, verbose, schema);
+                break;
+            case MULTIROW:
+            default:
+                loader = new MultiRowInsertLoader(con, sizer, verbose);
+        }
+        loader.metrics = metrics;
+        return loader;
+    }
+
+    /**
+     * Notified after every committed batch, e.g. to record a {@link LoadCheckpoint}.
+     */
+    public interface CommitListener {
+        /**
+         * Called after a batch was committed.
+         *
+         * @param table table as written in the script
+         * @param offset statement boundary to resume from, see {@link TupleReader#checkpointOffset()}
+         * @param tuples tuples after the boundary that are already committed
+         * @param rows rows committed by this load call so far
+         * @throws SQLException if the progress cannot be recorded
+         */
+        void committed(String table, long offset, long tuples, long rows) throws SQLException;
+    }
+
+    /**
+     * Takes part in every batch transaction, e.g. to maintain summary tables with the
+     * same commit as the rows they summarize.
+     */
+    public interface BatchHook {
+        /**
+         * Called for every tuple added to the current batch.
+         *
+         * @param table table as written in the script
+         * @param reader reader positioned on the tuple
+         * @throws SQLException if the tuple cannot be used
+         */
+        void addRow(String table, TupleReader reader) throws SQLException;
+
+        /**
+         * Called after the batch was executed and before it is committed, on the loading
+         * connection.
+         *
+         * @param con connection with the uncommitted batch
+         * @throws SQLException if the batch must not be committed
+         */
+        void beforeCommit(Connection con) throws SQLException;
+
+        /**
+         * Called when the batch failed and will be rolled back.
+         */
+        void discard();
+    }
+
+    /**
+     * Per-table batch latency, rows, bytes, commits and failed batches, looked up once so
+     * batches record without building label keys.
+     */
+    static final class TableMetrics {
+        private final LatencyHistogram batchLatency;
+        private final Counter rows;
+        private final Counter bytes;
+        private final Counter commits;
+        private final Counter batchErrors;
+
+        /**
+         * Looks up the metrics of a table.
+         *
+         * @param metrics registry to record into
+         * @param table normalized table name
+         */
+        TableMetrics(MetricsRegistry metrics, String table) {
+            LatencyHistogram latency = metrics.histogram("redshift_batch_seconds", "table", table);
+            Counter tableRows = metrics.counter("redshift_rows_total", "table", table);
+            batchLatency = latency;
+            rows = tableRows;
+            bytes = metrics.counter("redshift_bytes_total", "table", table);
+            commits = metrics.counter("redshift_commits_total", "table", table);
+            batchErrors = metrics.counter("redshift_batch_errors_total", "table", table);
+            metrics.gauge("redshift_rows_per_second", () -> latency.getSumNanos() == 0 ? 0
+                    : tableRows.get() * 1e9 / latency.getSumNanos(), "table", table);
+        }
+
+        /**
+         * Records a committed batch.
+         *
+         * @param nanos time to execute and commit the batch
+         * @param batchRows rows in the batch
+         * @param batchBytes script bytes of the batch
+         */
+        void committed(long nanos, int batchRows, long batchBytes) {
+            batchLatency.record(nanos);
+            rows.add(batchRows);
+            bytes.add(batchBytes);
+            commits.increment();
+        }
+
+        /**
+         * Records a batch that failed and was not committed.
+         */
+        void failed() {
+            batchErrors.increment();
+        }
+    }
+
+    /**
+     * Sets the hook that takes part in every batch transaction.
+     *
+     * @param hook hook, or null for none
+     * @return this loader
+     */
+    public TableLoader withBatchHook(BatchHook hook) {
+        this.hook = hook;
+        return this;
+    }
+
+    /**
+     * Sends the rows of every table to the table named with the given suffix, e.g. the
+     * staging copy of a reload.
+     *
+     * @param suffix appended to the table names of the script, or "" for none
+     * @return this loader
+     */
+    public TableLoader withTableSuffix(String suffix) {
+        this.tableSuffix = suffix;
+        return this;
+    }
+
+    /**
+     * Returns the table the rows of a script table are inserted into.
+     *
+     * @param tableName table as written in the script
+     * @return target table name
+     */
+    protected String target(String tableName) {
+        return tableName + tableSuffix;
+    }
+
+    /**
+     * Counts the rows already committed to the target table of a script table, e.g. to
+     * check a {@link LoadCheckpoint} against the database.
+     *
+     * @param tableName table as written in the script
+     * @return row count
+     * @throws SQLException if the query fails
+     */
+    public long countRows(String tableName) throws SQLException {
+        try (Statement stmt = con.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + target(tableName))) {
+            rs.next();
+            return rs.getLong(1);
+        }
+    }
+
+    /**
+     * Loads tuples until the end of the script or until the reader passes the given
+     * byte offset, which must be a statement boundary.
+     *
+     * @param reader positioned script reader
+     * @param endOffset byte offset at which to stop, or Long.MAX_VALUE for the whole script
+     * @return number of rows inserted and committed
+     * @throws SQLException if an INSERT or commit fails
+     * @throws IOException if the script cannot be read
+     */
+    public long load(TupleReader reader, long endOffset) throws SQLException, IOException {
+        return load(reader, endOffset, null);
+    }
+
+    /**
+     * Loads tuples like {@link #load(TupleReader, long)} and reports the script
+     * position of every committed batch.
+     *
+     * @param reader positioned script reader
+     * @param endOffset byte offset at which to stop, or Long.MAX_VALUE for the whole script
+     * @param listener notified after each commit, or null
+     * @return number of rows inserted and committed
+     * @throws SQLException if an INSERT, commit or the listener fails
+     * @throws IOException if the script cannot be read
+     */
+    public long load(TupleReader reader, long endOffset, CommitListener listener)
+            throws SQLException, IOException {
+        long totalCount = 0;
+        // Script position just past the last row added to the batch
+        long markOffset = 0;
+        long markTuples = 0;
+        String tableName = null;
+        AdaptiveBatchSizer.Table sizing = null;
+        int batchRows = 0;
+        long batchBytes = 0;
+
+        while (reader.position() < endOffset && reader.next()) {
+            if (batchRows > 0 && (!reader.table().equals(tableName)
+                    || !sizing.fits(batchBytes, reader.tupleLength()))) {
+                // Script switched tables or the statement would get too large
+                flush(sizing, batchRows, batchBytes);
+                totalCount += batchRows;
+                if (listener != null) {
+                    listener.committed(tableName, markOffset, markTuples, totalCount);
+                }
+                batchRows = 0;
+                batchBytes = 0;
+            }
+            if (batchRows == 0) {
+                if (!reader.table().equals(tableName)) {
+                    tableName = reader.table();
+                    sizing = sizer.forTable(TableSchema.normalize(tableName));
+                    if (metrics != null) {
+                        tableMetrics = new TableMetrics(metrics, TableSchema.normalize(tableName));
+                    }
+                }
+                startBatch(tableName);
+            }
+            addRow(reader, batchRows);
+            if (hook != null) {
+                hook.addRow(tableName, reader);
+            }
+            batchRows++;
+            batchBytes += reader.tupleLength();
+            if (listener != null) {
+                markOffset = reader.checkpointOffset();
+                markTuples = reader.checkpointTuples();
+            }
+
+            // Execute the batch when it reaches the table's current size
+            if (sizing.isFull(batchRows, batchBytes)) {
+                flush(sizing, batchRows, batchBytes);
+                totalCount += batchRows;
+                if (listener != null) {
+                    listener.committed(tableName, markOffset, markTuples, totalCount);
+                }
+                batchRows = 0;
+                batchBytes = 0;
+                if (verbose) {
+                    System.out.println("  Inserted " + totalCount + " records...");
+                }
+            }
+        }
+
+        // Insert any remaining rows
+        if (batchRows > 0) {
+            flush(sizing, batchRows, batchBytes);
+            totalCount += batchRows;
+            if (listener != null) {
+                listener.committed(tableName, markOffset, markTuples, totalCount);
+            }
+        }
+        return totalCount;
+    }
+
+    /**
+     * Executes and commits the current batch and feeds its latency back to the sizer.
+     */
+    private void flush(AdaptiveBatchSizer.Table sizing, int batchRows, long batchBytes) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            executeBatch();
+            if (hook != null) {
+                hook.beforeCommit(con);
+            }
+            con.commit();
+        } catch (SQLException e) {
+            if (hook != null) {
+                hook.discard();
+            }
+            sizing.recordFailure(batchRows, batchBytes);
+            if (metrics != null) {
+                tableMetrics.failed();
+            }
+            throw e;
+        }
+        long elapsed = System.nanoTime() - start;
+        sizing.recordSuccess(batchRows, batchBytes, elapsed);
+        if (metrics != null) {
+            tableMetrics.committed(elapsed, batchRows, batchBytes);
+        }
+    }
+
+    /**
+     * Starts a new batch for the given table.
+     *
+     * @param tableName table as written in the script
+     * @throws SQLException if statement preparation fails
+     */
+    protected abstract void startBatch(String tableName) throws SQLException;
+
+    /**
+     * Adds the reader's current tuple to the batch.
+     *
+     * @param reader reader positioned on a tuple
+     * @param batchRows number of rows already in the batch
+     * @throws SQLException if a value cannot be bound
+     */
+    protected abstract void addRow(TupleReader reader, int batchRows) throws SQLException;
+
+    /**
+     * Sends the batch to the database; the caller commits.
+     *
+     * @throws SQLException if execution fails
+     */
+    protected abstract void executeBatch() throws SQLException;
+
+    /**
+     * Releases statements held by the loader. The connection is not closed.
+     *
+     * @throws SQLException if a statement cannot be closed
+     */
+    @Override
+    public void close() throws SQLException {
+    }
+}
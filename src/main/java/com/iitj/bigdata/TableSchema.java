@@ -0,0 +1,247 @@
+package com.iitj.bigdata;
+
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Table definition parsed from a CREATE TABLE script such as tpch_create.sql.
+ * Keeps the column list, the primary key and the tables referenced by foreign key
+ * constraints.
+ */
+public class TableSchema {
+    private static final Pattern CREATE_TABLE = Pattern.compile(
+            "CREATE\\s+TABLE\\s+(?:IF\\s+NOT\\s+EXISTS\\s+)?([\\w.\"]+)\\s*\\((.*)\\)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern REFERENCES = Pattern.compile(
+            "\\bREFERENCES\\s+([\\w.\"]+)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern COLUMN_TYPE = Pattern.compile(
+            "^\\s*([A-Za-z]+(?:\\s+PRECISION|\\s+VARYING)?(?:\\s*\\([^)]*\\))?)", Pattern.CASE_INSENSITIVE);
+    private static final Pattern PRIMARY_KEY = Pattern.compile(
+            "\\bPRIMARY\\s+KEY\\s*(?:\\(([^)]*)\\))?", Pattern.CASE_INSENSITIVE);
+    private static final Pattern CONSTRAINT_START = Pattern.compile(
+            "^(CONSTRAINT|PRIMARY|FOREIGN|UNIQUE|CHECK)\\b.*", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+
+    /**
+     * A single column and its declared SQL type, e.g. DECIMAL(15,2).
+     */
+    public static class Column {
+        private final String name;
+        private final String type;
+
+        Column(String name, String type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * Maps the declared type to a {@link Types} constant.
+         *
+         * @return JDBC type, VARCHAR for anything not recognized
+         */
+        public int getSqlType() {
+            return sqlType(type);
+        }
+    }
+
+    private final String name;
+    private final List<Column> columns = new ArrayList<>();
+    private final Set<String> references = new LinkedHashSet<>();
+    private final List<String> primaryKey = new ArrayList<>();
+
+    TableSchema(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Parses every CREATE TABLE statement of a DDL script.
+     *
+     * @param script DDL script
+     * @return tables keyed by lower-case name, in script order
+     */
+    public static Map<String, TableSchema> parse(String script) {
+        Map<String, TableSchema> tables = new LinkedHashMap<>();
+        for (String statement : script.split(";")) {
+            Matcher m = CREATE_TABLE.matcher(statement.trim());
+            if (!m.find()) {
+                continue;
+            }
+            TableSchema table = new TableSchema(normalize(m.group(1)));
+            for (String element : splitTopLevel(m.group(2))) {
+                element = element.trim();
+                if (element.isEmpty()) {
+                    continue;
+                }
+                Matcher ref = REFERENCES.matcher(element);
+                while (ref.find()) {
+                    String target = normalize(ref.group(1));
+                    if (!target.equals(table.name)) {
+                        table.references.add(target);
+                    }
+                }
+                boolean constraint = CONSTRAINT_START.matcher(element).matches();
+                Matcher pk = PRIMARY_KEY.matcher(element);
+                if (pk.find()) {
+                    if (pk.group(1) != null) {
+                        // Table constraint: PRIMARY KEY (a, b)
+                        for (String column : pk.group(1).split(",")) {
+                            table.primaryKey.add(normalize(column.trim()));
+                        }
+                    } else if (!constraint) {
+                        // Column constraint: a INTEGER PRIMARY KEY
+                        table.primaryKey.add(normalize(element.split("\\s+", 2)[0]));
+                    }
+                }
+                if (!constraint) {
+                    String[] parts = element.split("\\s+", 2);
+                    String type = parts.length > 1 ? leadingType(parts[1]) : "";
+                    table.columns.add(new Column(normalize(parts[0]), type));
+                }
+            }
+            tables.put(table.name, table);
+        }
+        return tables;
+    }
+
+    /**
+     * Normalizes an identifier: strips quotes and any schema prefix and lower-cases it.
+     *
+     * @param identifier identifier as written in SQL
+     * @return normalized name
+     */
+    public static String normalize(String identifier) {
+        String id = identifier.replace("\"", "");
+        int dot = id.lastIndexOf('.');
+        if (dot >= 0) {
+            id = id.substring(dot + 1);
+        }
+        return id.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Splits a column list on commas that are not nested in parentheses.
+     */
+    private static List<String> splitTopLevel(String body) {
+        List<String> parts = new ArrayList<>();
+        int depth = 0;
+        int start = 0;
+        for (int i = 0; i < body.length(); i++) {
+            char c = body.charAt(i);
+            if (c == '(') {
+                depth++;
+            } else if (c == ')') {
+                depth--;
+            } else if (c == ',' && depth == 0) {
+                parts.add(body.substring(start, i));
+                start = i + 1;
+            }
+        }
+        parts.add(body.substring(start));
+        return parts;
+    }
+
+    /**
+     * Returns the type part of a column definition without trailing constraints.
+     */
+    private static String leadingType(String definition) {
+        Matcher m = COLUMN_TYPE.matcher(definition);
+        return m.find() ? m.group(1).replaceAll("\\s+", " ").toUpperCase(Locale.ROOT) : "";
+    }
+
+    /**
+     * Maps a declared SQL type such as DECIMAL(15,2) to a {@link Types} constant.
+     *
+     * @param declared declared type
+     * @return JDBC type, VARCHAR for anything not recognized
+     */
+    public static int sqlType(String declared) {
+        String base = declared.replaceAll("\\s*\\(.*", "").toUpperCase(Locale.ROOT);
+        switch (base) {
+            case "INT":
+            case "INTEGER":
+            case "INT4":
+                return Types.INTEGER;
+            case "BIGINT":
+            case "INT8":
+                return Types.BIGINT;
+            case "SMALLINT":
+            case "INT2":
+                return Types.SMALLINT;
+            case "DECIMAL":
+            case "NUMERIC":
+                return Types.DECIMAL;
+            case "REAL":
+            case "FLOAT4":
+                return Types.REAL;
+            case "FLOAT":
+            case "FLOAT8":
+            case "DOUBLE PRECISION":
+                return Types.DOUBLE;
+            case "DATE":
+                return Types.DATE;
+            case "CHAR":
+            case "CHARACTER":
+            case "BPCHAR":
+                return Types.CHAR;
+            default:
+                return Types.VARCHAR;
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public List<Column> getColumns() {
+        return Collections.unmodifiableList(columns);
+    }
+
+    /**
+     * Returns the declared primary key columns.
+     *
+     * @return column names in key order, empty if there is no primary key
+     */
+    public List<String> getPrimaryKey() {
+        return Collections.unmodifiableList(primaryKey);
+    }
+
+    /**
+     * Returns the declared column with the given name.
+     *
+     * @param column normalized column name
+     * @return column, or null if the table has no such column
+     */
+    public Column getColumn(String column) {
+        for (Column c : columns) {
+            if (c.name.equals(column)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the tables this table references through foreign keys.
+     *
+     * @return referenced table names
+     */
+    public Set<String> getReferences() {
+        return Collections.unmodifiableSet(references);
+    }
+}
@@ -0,0 +1,591 @@
+package com.iitj.bigdata;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Generates TPC-H data at any scale factor as INSERT scripts, streamed on demand so the
+ * loaders read generated rows exactly like the bundled data files and nothing is
+ * written to disk.
+ *
+ * Row counts, key relationships and value domains follow the TPC-H specification:
+ * 10,000 suppliers, 150,000 customers, 200,000 parts with four suppliers each and
+ * 1,500,000 orders of one to seven line items per unit of scale. Order keys are dense
+ * rather than sparse, customers whose key is a multiple of three place no orders, and
+ * the order total, status and line item flags are derived from the generated line
+ * items as dbgen does. Columns are written in the order tpch_create.sql declares them
+ * and strings are cut to the declared length; a declared column the generator does not
+ * know gets a random value of its type.
+ *
+ * Every row is generated from a random stream seeded by the seed, the table and the row
+ * key alone, so a key range produces the same rows no matter how the table is split,
+ * and tables can be split into parts that are generated and loaded in parallel.
+ */
+public class TpchGenerator {
+    private static final LocalDate START_DATE = LocalDate.of(1992, 1, 1);
+    private static final LocalDate CURRENT_DATE = LocalDate.of(1995, 6, 17);
+    /**
+     * Orders are placed up to 151 days before the end date, 1998-12-31.
+     */
+    private static final int ORDER_DATE_DAYS =
+            (int) (LocalDate.of(1998, 8, 2).toEpochDay() - START_DATE.toEpochDay()) + 1;
+
+    private static final String[] REGIONS = {"AFRICA", "AMERICA", "ASIA", "EUROPE", "MIDDLE EAST"};
+    private static final String[] NATIONS = {"ALGERIA", "ARGENTINA", "BRAZIL", "CANADA", "EGYPT", "ETHIOPIA",
+        "FRANCE", "GERMANY", "INDIA", "INDONESIA", "IRAN", "IRAQ", "JAPAN", "JORDAN", "KENYA", "MOROCCO",
+        "MOZAMBIQUE", "PERU", "CHINA", "ROMANIA", "SAUDI ARABIA", "VIETNAM", "RUSSIA", "UNITED KINGDOM",
+        "UNITED STATES"};
+    private static final int[] NATION_REGIONS = {0, 1, 1, 1, 4, 0, 3, 3, 2, 2, 4, 4, 2, 4, 0, 0, 0, 1, 2, 3, 4, 2,
+        3, 3, 1};
+    private static final String[] SEGMENTS = {"AUTOMOBILE", "BUILDING", "FURNITURE", "HOUSEHOLD", "MACHINERY"};
+    private static final String[] PRIORITIES = {"1-URGENT", "2-HIGH", "3-MEDIUM", "4-NOT SPECIFIED", "5-LOW"};
+    private static final String[] INSTRUCTIONS = {"DELIVER IN PERSON", "COLLECT COD", "NONE", "TAKE BACK RETURN"};
+    private static final String[] SHIP_MODES = {"REG AIR", "AIR", "RAIL", "SHIP", "TRUCK", "MAIL", "FOB"};
+    private static final String[] CONTAINER_SIZES = {"SM", "LG", "MED", "JUMBO", "WRAP"};
+    private static final String[] CONTAINER_TYPES = {"CASE", "BOX", "BAG", "JAR", "PKG", "PACK", "CAN", "DRUM"};
+    private static final String[] TYPE_SIZES = {"STANDARD", "SMALL", "MEDIUM", "LARGE", "ECONOMY", "PROMO"};
+    private static final String[] TYPE_FINISHES = {"ANODIZED", "BURNISHED", "PLATED", "POLISHED", "BRUSHED"};
+    private static final String[] TYPE_METALS = {"TIN", "NICKEL", "BRASS", "STEEL", "COPPER"};
+    private static final String[] COLORS = {"almond", "antique", "aquamarine", "azure", "beige", "bisque", "black",
+        "blanched", "blue", "blush", "brown", "burlywood", "burnished", "chartreuse", "chiffon", "chocolate",
+        "coral", "cornflower", "cornsilk", "cream", "cyan", "dark", "deep", "dim", "dodger", "drab", "firebrick",
+        "floral", "forest", "frosted", "gainsboro", "ghost", "goldenrod", "green", "grey", "honeydew", "hot",
+        "indian", "ivory", "khaki", "lace", "lavender", "lawn", "lemon", "light", "lime", "linen", "magenta",
+        "maroon", "medium", "metallic", "midnight", "mint", "misty", "moccasin", "navajo", "navy", "olive",
+        "orange", "orchid", "pale", "papaya", "peach", "peru", "pink", "plum", "powder", "puff", "purple", "red",
+        "rose", "rosy", "royal", "saddle", "salmon", "sandy", "seashell", "sienna", "sky", "slate", "smoke",
+        "snow", "spring", "steel", "tan", "thistle", "tomato", "turquoise", "violet", "wheat", "white", "yellow"};
+    private static final String[] WORDS = {"furiously", "sly", "careful", "blithely", "quickly", "fluffily",
+        "slyly", "carefully", "regular", "final", "express", "pending", "ironic", "even", "bold", "silent",
+        "special", "unusual", "packages", "requests", "accounts", "deposits", "foxes", "ideas", "theodolites",
+        "pinto", "beans", "instructions", "dependencies", "excuses", "platelets", "asymptotes", "courts",
+        "dolphins", "sleep", "wake", "are", "cajole", "haggle", "nag", "use", "boost", "affix", "detect",
+        "integrate", "about", "above", "according", "to", "across", "after", "against", "along", "among"};
+    private static final char[] ADDRESS_CHARS =
+            "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789 ,".toCharArray();
+    private static final Pattern LENGTH = Pattern.compile("\\(\\s*(\\d+)");
+    private static final Pattern DECIMAL_SCALE = Pattern.compile(",\\s*(\\d+)\\s*\\)");
+
+    /**
+     * Tables in load order.
+     */
+    private static final List<String> TABLES = Arrays.asList(
+            "region", "nation", "customer", "supplier", "part", "partsupp", "orders", "lineitem");
+
+    private final Map<String, TableSchema> schema;
+    private final long seed;
+    private final int rowsPerInsert;
+    private final long suppliers;
+    private final long customers;
+    private final long parts;
+    private final long orders;
+    private final long clerks;
+
+    /**
+     * Creates a generator.
+     *
+     * @param schema tables parsed from tpch_create.sql; tables it lacks are not generated
+     * @param scaleFactor TPC-H scale factor, e.g. 1 for about 1 GB; fractions are allowed
+     * @param seed seed of all random values
+     * @param rowsPerInsert tuples per INSERT statement
+     */
+    public TpchGenerator(Map<String, TableSchema> schema, double scaleFactor, long seed, int rowsPerInsert) {
+        if (scaleFactor <= 0) {
+            throw new IllegalArgumentException("Scale factor must be positive: " + scaleFactor);
+        }
+        this.schema = schema;
+        this.seed = seed;
+        this.rowsPerInsert = Math.max(1, rowsPerInsert);
+        this.suppliers = scaled(10_000, scaleFactor);
+        this.customers = scaled(150_000, scaleFactor);
+        this.parts = scaled(200_000, scaleFactor);
+        this.orders = scaled(1_500_000, scaleFactor);
+        this.clerks = scaled(1_000, scaleFactor);
+    }
+
+    private static long scaled(long rows, double scaleFactor) {
+        return Math.max(1, Math.round(rows * scaleFactor));
+    }
+
+    /**
+     * Returns the data file names to load, in load order. Every table except region and
+     * nation is split into the given number of parts by key range, named like
+     * orders.3.8.sql for part 3 of 8; a single part keeps the plain name, e.g. orders.sql.
+     *
+     * @param partsPerTable parts per table
+     * @return file names accepted by {@link #open(String)}
+     */
+    public List<String> files(int partsPerTable) {
+        List<String> files = new ArrayList<>();
+        for (String table : TABLES) {
+            if (!schema.containsKey(table)) {
+                continue;
+            }
+            boolean fixed = table.equals("region") || table.equals("nation");
+            int count = fixed ? 1 : (int) Math.min(Math.max(1, partsPerTable), keyCount(table));
+            for (int i = 1; i <= count; i++) {
+                files.add(count == 1 ? table + ".sql" : table + "." + i + "." + count + ".sql");
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Returns the number of keys a table is split by: its rows, or for partsupp and
+     * lineitem the parts and orders their rows are generated from.
+     *
+     * @param table table name
+     * @return key count
+     */
+    long keyCount(String table) {
+        switch (table) {
+            case "region":
+                return REGIONS.length;
+            case "nation":
+                return NATIONS.length;
+            case "customer":
+                return customers;
+            case "supplier":
+                return suppliers;
+            case "part":
+            case "partsupp":
+                return parts;
+            case "orders":
+            case "lineitem":
+                return orders;
+            default:
+                throw new IllegalArgumentException("Not a TPC-H table: " + table);
+        }
+    }
+
+    /**
+     * Estimates the size of a table's script from the length of its first row.
+     *
+     * @param table table name
+     * @return estimated bytes
+     */
+    public long estimatedBytes(String table) {
+        List<String> tuples = new ArrayList<>();
+        rows(table, 1, tuples);
+        long rowsPerKey = table.equals("partsupp") ? 4 : table.equals("lineitem") ? 4 : 1;
+        return tuples.isEmpty() ? 0 : (long) (tuples.get(0).length() + 2) * rowsPerKey * keyCount(table);
+    }
+
+    /**
+     * Opens a generated data file.
+     *
+     * @param file file name from {@link #files(int)}, optionally prefixed with "data/"
+     * @return stream of INSERT statements, generated as it is read
+     * @throws IOException if the name is not a generated file
+     */
+    public InputStream open(String file) throws IOException {
+        String name = file.startsWith("data/") ? file.substring("data/".length()) : file;
+        String[] parts = name.replaceFirst("\\.sql$", "").split("\\.");
+        String table = parts[0];
+        if (!TABLES.contains(table) || !schema.containsKey(table) || (parts.length != 1 && parts.length != 3)) {
+            throw new IOException("Not a generated data file: " + file);
+        }
+        long keys = keyCount(table);
+        long first = 1;
+        long last = keys;
+        if (parts.length == 3) {
+            int part;
+            int count;
+            try {
+                part = Integer.parseInt(parts[1]);
+                count = Integer.parseInt(parts[2]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Not a generated data file: " + file, e);
+            }
+            if (part < 1 || part > count) {
+                throw new IOException("Not a generated data file: " + file);
+            }
+            first = keys * (part - 1) / count + 1;
+            last = keys * part / count;
+        }
+        return new ScriptStream(table, first, last);
+    }
+
+    /**
+     * Reads one INSERT statement of rowsPerInsert tuples at a time from the generator.
+     */
+    private class ScriptStream extends InputStream {
+        private final String table;
+        private final List<String> tuples = new ArrayList<>();
+        private long nextKey;
+        private final long lastKey;
+        private byte[] buffer = new byte[0];
+        private int pos;
+
+        ScriptStream(String table, long firstKey, long lastKey) {
+            this.table = table;
+            this.nextKey = firstKey;
+            this.lastKey = lastKey;
+        }
+
+        private boolean fill() {
+            while (pos == buffer.length) {
+                if (nextKey > lastKey) {
+                    return false;
+                }
+                tuples.clear();
+                while (tuples.size() < rowsPerInsert && nextKey <= lastKey) {
+                    rows(table, nextKey++, tuples);
+                }
+                StringBuilder sb = new StringBuilder(tuples.size() * 160);
+                sb.append("INSERT INTO ").append(table).append(" VALUES ");
+                for (int i = 0; i < tuples.size(); i++) {
+                    if (i > 0) {
+                        sb.append(", ");
+                    }
+                    sb.append(tuples.get(i));
+                }
+                sb.append(";\n");
+                buffer = sb.toString().getBytes(StandardCharsets.UTF_8);
+                pos = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public int read() {
+            return fill() ? buffer[pos++] & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            int n = Math.min(len, buffer.length - pos);
+            System.arraycopy(buffer, pos, b, off, n);
+            pos += n;
+            return n;
+        }
+    }
+
+    /**
+     * Appends the tuples generated for one key of a table.
+     */
+    private void rows(String table, long key, List<String> out) {
+        switch (table) {
+            case "region":
+                out.add(tuple(table, key, region(key - 1)));
+                break;
+            case "nation":
+                out.add(tuple(table, key, nation(key - 1)));
+                break;
+            case "customer":
+                out.add(tuple(table, key, customer(key)));
+                break;
+            case "supplier":
+                out.add(tuple(table, key, supplier(key)));
+                break;
+            case "part":
+                out.add(tuple(table, key, part(key)));
+                break;
+            case "partsupp":
+                for (int i = 0; i < 4; i++) {
+                    out.add(tuple(table, key * 4 + i, partsupp(key, i)));
+                }
+                break;
+            case "orders":
+                out.add(tuple(table, key, order(key)));
+                break;
+            case "lineitem":
+                for (Map<String, Object> line : lineitems(key)) {
+                    out.add(tuple(table, key * 8 + (Long) line.get("l_linenumber"), line));
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Not a TPC-H table: " + table);
+        }
+    }
+
+    /**
+     * Formats a row in the declared column order.
+     *
+     * @param row unique number of the row within its table, seeding unknown columns
+     */
+    private String tuple(String table, long row, Map<String, Object> values) {
+        TableSchema def = schema.get(table);
+        SplittableRandom fallback = null;
+        StringBuilder sb = new StringBuilder(160).append('(');
+        List<TableSchema.Column> columns = def.getColumns();
+        for (int i = 0; i < columns.size(); i++) {
+            TableSchema.Column column = columns.get(i);
+            if (i > 0) {
+                sb.append(", ");
+            }
+            Object value = values.get(column.getName());
+            if (value == null && !values.containsKey(column.getName())) {
+                if (fallback == null) {
+                    fallback = random(table + "#extra", row);
+                }
+                value = randomValue(column, fallback);
+            }
+            appendLiteral(sb, column, value);
+        }
+        return sb.append(')').toString();
+    }
+
+    private static void appendLiteral(StringBuilder sb, TableSchema.Column column, Object value) {
+        if (value == null) {
+            sb.append("NULL");
+        } else if (value instanceof Long || value instanceof BigDecimal) {
+            sb.append(value);
+        } else {
+            String text = value.toString();
+            Matcher length = LENGTH.matcher(column.getType());
+            if (column.getSqlType() != Types.DATE && length.find()) {
+                text = text.substring(0, Math.min(text.length(), Integer.parseInt(length.group(1))));
+            }
+            sb.append('\'').append(text.replace("'", "''")).append('\'');
+        }
+    }
+
+    /**
+     * Value of the declared type for a column the generator does not know.
+     */
+    private static Object randomValue(TableSchema.Column column, SplittableRandom random) {
+        switch (column.getSqlType()) {
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.SMALLINT:
+                return (long) random.nextInt(10_000);
+            case Types.DECIMAL:
+            case Types.REAL:
+            case Types.DOUBLE:
+                Matcher scale = DECIMAL_SCALE.matcher(column.getType());
+                return BigDecimal.valueOf(random.nextInt(1_000_000), scale.find() ? Integer.parseInt(scale.group(1)) : 2);
+            case Types.DATE:
+                return START_DATE.plusDays(random.nextInt(ORDER_DATE_DAYS));
+            default:
+                return text(random, 10, 40);
+        }
+    }
+
+    /**
+     * Random stream of one row, independent of every other row.
+     */
+    private SplittableRandom random(String table, long key) {
+        long h = seed * 0x9E3779B97F4A7C15L + table.hashCode();
+        h = (h ^ (h >>> 32)) * 0xD6E8FEB86659FD93L + key;
+        h = (h ^ (h >>> 32)) * 0xD6E8FEB86659FD93L;
+        return new SplittableRandom(h ^ (h >>> 32));
+    }
+
+    private static String text(SplittableRandom random, int minLength, int maxLength) {
+        int length = minLength + random.nextInt(maxLength - minLength + 1);
+        StringBuilder sb = new StringBuilder(length + 16);
+        while (sb.length() < length) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        sb.setLength(length);
+        return sb.toString().trim();
+    }
+
+    private static String address(SplittableRandom random) {
+        int length = 10 + random.nextInt(31);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) {
+            chars[i] = ADDRESS_CHARS[random.nextInt(ADDRESS_CHARS.length)];
+        }
+        return new String(chars).trim();
+    }
+
+    private static String phone(long nationKey, SplittableRandom random) {
+        return String.format(Locale.ROOT, "%02d-%03d-%03d-%04d", nationKey + 10, 100 + random.nextInt(900),
+                100 + random.nextInt(900), 1000 + random.nextInt(9000));
+    }
+
+    private static BigDecimal money(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+
+    private static <T> T pick(SplittableRandom random, T[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private Map<String, Object> region(long index) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("r_regionkey", index);
+        row.put("r_name", REGIONS[(int) index]);
+        row.put("r_comment", text(random("region", index), 31, 115));
+        return row;
+    }
+
+    private Map<String, Object> nation(long index) {
+        Map<String, Object> row = new HashMap<>();
+        row.put("n_nationkey", index);
+        row.put("n_name", NATIONS[(int) index]);
+        row.put("n_regionkey", (long) NATION_REGIONS[(int) index]);
+        row.put("n_comment", text(random("nation", index), 31, 114));
+        return row;
+    }
+
+    private Map<String, Object> customer(long key) {
+        SplittableRandom random = random("customer", key);
+        long nation = random.nextInt(NATIONS.length);
+        Map<String, Object> row = new HashMap<>();
+        row.put("c_custkey", key);
+        row.put("c_name", String.format(Locale.ROOT, "Customer#%09d", key));
+        row.put("c_address", address(random));
+        row.put("c_nationkey", nation);
+        row.put("c_phone", phone(nation, random));
+        row.put("c_acctbal", money(-99_999 + random.nextInt(1_099_999)));
+        row.put("c_mktsegment", pick(random, SEGMENTS));
+        row.put("c_comment", text(random, 29, 116));
+        return row;
+    }
+
+    private Map<String, Object> supplier(long key) {
+        SplittableRandom random = random("supplier", key);
+        long nation = random.nextInt(NATIONS.length);
+        Map<String, Object> row = new HashMap<>();
+        row.put("s_suppkey", key);
+        row.put("s_name", String.format(Locale.ROOT, "Supplier#%09d", key));
+        row.put("s_address", address(random));
+        row.put("s_nationkey", nation);
+        row.put("s_phone", phone(nation, random));
+        row.put("s_acctbal", money(-99_999 + random.nextInt(1_099_999)));
+        row.put("s_comment", text(random, 25, 100));
+        return row;
+    }
+
+    /**
+     * p_retailprice in cents, as defined by the specification.
+     */
+    static long retailPriceCents(long partKey) {
+        return 90_000 + ((partKey / 10) % 20_001) + 100 * (partKey % 1_000);
+    }
+
+    /**
+     * The i-th of the four suppliers of a part, as defined by the specification.
+     */
+    long partSupplier(long partKey, int i) {
+        return (partKey + (i * ((suppliers / 4) + (partKey - 1) / suppliers))) % suppliers + 1;
+    }
+
+    private Map<String, Object> part(long key) {
+        SplittableRandom random = random("part", key);
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 5; i++) {
+            if (i > 0) {
+                name.append(' ');
+            }
+            name.append(pick(random, COLORS));
+        }
+        int manufacturer = 1 + random.nextInt(5);
+        Map<String, Object> row = new HashMap<>();
+        row.put("p_partkey", key);
+        row.put("p_name", name.toString());
+        row.put("p_mfgr", "Manufacturer#" + manufacturer);
+        row.put("p_brand", "Brand#" + manufacturer + (1 + random.nextInt(5)));
+        row.put("p_type", pick(random, TYPE_SIZES) + " " + pick(random, TYPE_FINISHES) + " "
+                + pick(random, TYPE_METALS));
+        row.put("p_size", (long) (1 + random.nextInt(50)));
+        row.put("p_container", pick(random, CONTAINER_SIZES) + " " + pick(random, CONTAINER_TYPES));
+        row.put("p_retailprice", money(retailPriceCents(key)));
+        row.put("p_comment", text(random, 5, 22));
+        return row;
+    }
+
+    private Map<String, Object> partsupp(long partKey, int i) {
+        SplittableRandom random = random("partsupp", partKey * 4 + i);
+        Map<String, Object> row = new HashMap<>();
+        row.put("ps_partkey", partKey);
+        row.put("ps_suppkey", partSupplier(partKey, i));
+        row.put("ps_availqty", (long) (1 + random.nextInt(9_999)));
+        row.put("ps_supplycost", money(100 + random.nextInt(99_901)));
+        row.put("ps_comment", text(random, 49, 198));
+        return row;
+    }
+
+    private LocalDate orderDate(long orderKey) {
+        return START_DATE.plusDays(random("orderdate", orderKey).nextInt(ORDER_DATE_DAYS));
+    }
+
+    private Map<String, Object> order(long key) {
+        SplittableRandom random = random("orders", key);
+        long customer = 1 + random.nextLong(customers);
+        if (customers >= 3 && customer % 3 == 0) {
+            // A third of the customers never place an order
+            customer--;
+        }
+        long total = 0;
+        int shipped = 0;
+        List<Map<String, Object>> lines = lineitems(key);
+        for (Map<String, Object> line : lines) {
+            // extendedprice * (1 + tax) * (1 - discount), summed at scale 6
+            total += ((BigDecimal) line.get("l_extendedprice")).unscaledValue().longValue()
+                    * (100 + ((BigDecimal) line.get("l_tax")).unscaledValue().longValue())
+                    * (100 - ((BigDecimal) line.get("l_discount")).unscaledValue().longValue());
+            if ("F".equals(line.get("l_linestatus"))) {
+                shipped++;
+            }
+        }
+        Map<String, Object> row = new HashMap<>();
+        row.put("o_orderkey", key);
+        row.put("o_custkey", customer);
+        row.put("o_orderstatus", shipped == lines.size() ? "F" : shipped == 0 ? "O" : "P");
+        row.put("o_totalprice", money((total + 5_000) / 10_000));
+        row.put("o_orderdate", orderDate(key));
+        row.put("o_orderpriority", pick(random, PRIORITIES));
+        row.put("o_clerk", String.format(Locale.ROOT, "Clerk#%09d", 1 + random.nextLong(clerks)));
+        row.put("o_shippriority", 0L);
+        row.put("o_comment", text(random, 19, 78));
+        return row;
+    }
+
+    private List<Map<String, Object>> lineitems(long orderKey) {
+        SplittableRandom random = random("lineitem", orderKey);
+        LocalDate orderDate = orderDate(orderKey);
+        int count = 1 + random.nextInt(7);
+        List<Map<String, Object>> lines = new ArrayList<>(count);
+        for (int line = 1; line <= count; line++) {
+            long part = 1 + random.nextLong(parts);
+            long quantity = 1 + random.nextInt(50);
+            LocalDate shipDate = orderDate.plusDays(1 + random.nextInt(121));
+            LocalDate receiptDate = shipDate.plusDays(1 + random.nextInt(30));
+            Map<String, Object> row = new HashMap<>();
+            row.put("l_orderkey", orderKey);
+            row.put("l_partkey", part);
+            row.put("l_suppkey", partSupplier(part, random.nextInt(4)));
+            row.put("l_linenumber", (long) line);
+            row.put("l_quantity", money(quantity * 100));
+            row.put("l_extendedprice", money(quantity * retailPriceCents(part)));
+            row.put("l_discount", money(random.nextInt(11)));
+            row.put("l_tax", money(random.nextInt(9)));
+            row.put("l_returnflag", receiptDate.isAfter(CURRENT_DATE) ? "N" : random.nextBoolean() ? "R" : "A");
+            row.put("l_linestatus", shipDate.isAfter(CURRENT_DATE) ? "O" : "F");
+            row.put("l_shipdate", shipDate);
+            row.put("l_commitdate", orderDate.plusDays(30 + random.nextInt(61)));
+            row.put("l_receiptdate", receiptDate);
+            row.put("l_shipinstruct", pick(random, INSTRUCTIONS));
+            row.put("l_shipmode", pick(random, SHIP_MODES));
+            row.put("l_comment", text(random, 10, 43));
+            lines.add(row);
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,176 @@
+package com.iitj.bigdata;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Source of the VALUES tuples of a data file, one tuple at a time.
+ *
+ * {@link SqlScriptReader} tokenizes the INSERT script itself; {@link RowFileReader} reads
+ * the same tuples from a binary row file written by {@link RowCache}. Offsets are byte
+ * positions in whatever the reader reads, so they are only meaningful to readers of the
+ * same kind over the same file.
+ */
+public interface TupleReader extends Closeable {
+
+    /**
+     * Advances to the next tuple.
+     *
+     * @return true if a tuple is available, false at end of data
+     * @throws IOException if the data cannot be read or is malformed
+     */
+    boolean next() throws IOException;
+
+    /**
+     * Returns the table of the current tuple, exactly as written in the script.
+     *
+     * @return table name
+     */
+    String table();
+
+    /**
+     * Returns the length in bytes of the current tuple as written in the script,
+     * including parentheses; used to size batches.
+     *
+     * @return tuple length
+     */
+    int tupleLength();
+
+    /**
+     * Appends the current tuple as a parenthesized SQL VALUES tuple.
+     *
+     * @param sb destination
+     */
+    void appendTuple(StringBuilder sb);
+
+    /**
+     * Returns the current tuple as a new String.
+     *
+     * @return tuple text
+     */
+    String tupleString();
+
+    /**
+     * Returns the number of values in the current tuple.
+     *
+     * @return field count
+     */
+    int fieldCount();
+
+    /**
+     * Returns whether a field is NULL.
+     *
+     * @param field zero-based field index
+     * @return true for NULL
+     */
+    boolean isNull(int field);
+
+    /**
+     * Returns whether a field is a quoted literal, such as a string or a date.
+     *
+     * @param field zero-based field index
+     * @return true if the field is quoted
+     */
+    boolean isQuoted(int field);
+
+    /**
+     * Returns an integer field.
+     *
+     * @param field zero-based field index
+     * @return value
+     * @throws NumberFormatException if the field is not an integer
+     */
+    long getLong(int field);
+
+    /**
+     * Returns a decimal field as an unscaled value, rounding extra fraction digits half up.
+     *
+     * @param field zero-based field index
+     * @param scale number of fraction digits of the result
+     * @return value multiplied by 10^scale
+     * @throws NumberFormatException if the field is not a decimal number
+     */
+    long getDecimal(int field, int scale);
+
+    /**
+     * Returns a field as text: the unescaped content of a quoted literal, or the bare token.
+     *
+     * @param field zero-based field index
+     * @return field text
+     */
+    String getString(int field);
+
+    /**
+     * Appends a field as text, as returned by {@link #getString(int)}.
+     *
+     * @param field zero-based field index
+     * @param sb destination
+     */
+    void appendField(int field, StringBuilder sb);
+
+    /**
+     * Returns the offset just past the statement that contained the current tuple, or -1
+     * if more tuples of the same statement follow.
+     *
+     * @return statement end offset
+     */
+    long statementEnd();
+
+    /**
+     * Returns the statement boundary from which loading continues after the current tuple.
+     *
+     * @return statement boundary offset
+     */
+    long checkpointOffset();
+
+    /**
+     * Returns the number of tuples between {@link #checkpointOffset()} and the position
+     * just past the current tuple.
+     *
+     * @return tuples to skip after the checkpoint offset
+     */
+    long checkpointTuples();
+
+    /**
+     * Moves to a checkpointed position, as reported by {@link #checkpointOffset()} and
+     * {@link #checkpointTuples()}.
+     *
+     * @param offset statement boundary
+     * @param tuples number of tuples to skip after the boundary
+     * @throws IOException if the position is invalid
+     */
+    void resume(long offset, long tuples) throws IOException;
+
+    /**
+     * Returns the offset of the data consumed so far.
+     *
+     * @return position
+     */
+    long position();
+
+    /**
+     * Returns the number of tuples read so far.
+     *
+     * @return tuple count
+     */
+    long records();
+
+    /**
+     * Skips forward to a statement boundary previously reported by {@link #statementEnd()}.
+     *
+     * @param offset boundary offset
+     * @throws IOException if the offset is invalid
+     */
+    void skipTo(long offset) throws IOException;
+
+    /**
+     * Skips forward to the first statement boundary at or after the given offset without
+     * decoding the tuples in between, e.g. to split a file into chunks. The current tuple
+     * is no longer valid afterwards.
+     *
+     * @param offset minimum boundary offset
+     * @return boundary offset, or -1 if no tuples follow such a boundary
+     * @throws IOException if the data cannot be read
+     */
+    long nextBoundary(long offset) throws IOException;
+}
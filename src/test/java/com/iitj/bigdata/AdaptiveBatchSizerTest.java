@@ -0,0 +1,69 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for AdaptiveBatchSizer.
+ */
+public class AdaptiveBatchSizerTest {
+
+    private static final long MS = 1_000_000L;
+
+    private static AdaptiveBatchSizer sizer() {
+        return new AdaptiveBatchSizer(1000, 10, 100_000, 1_000_000, 10_000_000, 100, false);
+    }
+
+    @Test
+    public void testGrowsWhileFast() {
+        AdaptiveBatchSizer.Table t = sizer().forTable("region");
+        t.recordSuccess(1000, 30_000, 10 * MS);
+        assertEquals(1500, t.getRowLimit());
+        t.recordSuccess(1500, 45_000, 10 * MS);
+        assertEquals(2250, t.getRowLimit());
+    }
+
+    @Test
+    public void testShrinksWhenSlowOrFailing() {
+        AdaptiveBatchSizer.Table t = sizer().forTable("lineitem");
+        t.recordSuccess(1000, 150_000, 500 * MS);
+        assertEquals(500, t.getRowLimit());
+        t.recordFailure(500, 75_000);
+        assertEquals(250, t.getRowLimit());
+    }
+
+    @Test
+    public void testHoldsWithinTargetBand() {
+        AdaptiveBatchSizer.Table t = sizer().forTable("orders");
+        t.recordSuccess(1000, 100_000, 70 * MS);
+        assertEquals(1000, t.getRowLimit());
+    }
+
+    @Test
+    public void testGrowthIsCappedByByteBudget() {
+        AdaptiveBatchSizer.Table t = sizer().forTable("lineitem");
+        // 500-byte rows: the 1 MB budget allows at most 2000 rows
+        for (int i = 0; i < 10; i++) {
+            t.recordSuccess(t.getRowLimit(), t.getRowLimit() * 500L, MS);
+        }
+        assertEquals(2000, t.getRowLimit());
+        assertTrue(t.isFull(10, 1_000_000));
+    }
+
+    @Test
+    public void testStatementLimit() {
+        AdaptiveBatchSizer.Table t = new AdaptiveBatchSizer(1000, 1, 1000, Long.MAX_VALUE, 1000, 100, false)
+                .forTable("t");
+        assertTrue(t.fits(800, 50));
+        assertFalse(t.fits(880, 50));
+    }
+
+    @Test
+    public void testFixedNeverChanges() {
+        AdaptiveBatchSizer.Table t = AdaptiveBatchSizer.fixed(5000).forTable("t");
+        t.recordSuccess(5000, 100_000, 1);
+        t.recordFailure(5000, 100_000);
+        assertEquals(5000, t.getRowLimit());
+    }
+}
@@ -0,0 +1,90 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for CachedResult.
+ */
+public class CachedResultTest {
+
+    private final List<String> log = new ArrayList<>();
+
+    private CachedResult query1Result() throws SQLException {
+        return CachedResult.materialize(FakeJdbc.resultSet(log,
+                new String[]{"o_orderkey", "o_orderdate", "total_sale"},
+                new Object[]{5L, Date.valueOf("1998-08-02"), new BigDecimal("1234.50")},
+                new Object[]{7L, Date.valueOf("1998-08-01"), null},
+                new Object[]{9L, Date.valueOf("1998-08-01"), new BigDecimal("10.00")}));
+    }
+
+    @Test
+    public void testMaterializeClosesSource() throws SQLException {
+        CachedResult result = query1Result();
+        assertEquals(3, result.getRowCount());
+        assertTrue(result.getBytes() > 0);
+        assertEquals(FakeJdbc.list("resultSet close"), log);
+    }
+
+    @Test
+    public void testCursorReturnsTypedValues() throws SQLException {
+        ResultSet rs = query1Result().open();
+        assertEquals(3, rs.getMetaData().getColumnCount());
+        assertEquals("o_orderdate", rs.getMetaData().getColumnName(2));
+        assertEquals(Types.BIGINT, rs.getMetaData().getColumnType(1));
+
+        assertTrue(rs.next());
+        assertEquals(5L, rs.getObject("o_orderkey"));
+        assertEquals(5, rs.getInt(1));
+        assertEquals(Date.valueOf("1998-08-02"), rs.getDate("O_ORDERDATE"));
+        assertEquals("1234.50", rs.getString(3));
+        assertEquals(1234.5, rs.getDouble(3), 1e-9);
+
+        assertTrue(rs.next());
+        assertNull(rs.getObject(3));
+        assertTrue(rs.wasNull());
+        assertEquals(0.0, rs.getDouble("total_sale"), 0.0);
+
+        assertTrue(rs.next());
+        assertFalse(rs.next());
+        rs.close();
+        assertTrue(rs.isClosed());
+    }
+
+    @Test
+    public void testCursorsAreIndependent() throws SQLException {
+        CachedResult result = query1Result();
+        ResultSet first = result.open();
+        ResultSet second = result.open();
+        first.next();
+        first.next();
+        second.next();
+        assertEquals(7L, first.getLong(1));
+        assertEquals(5L, second.getLong(1));
+    }
+
+    @Test
+    public void testWorksWithResultSetToString() throws SQLException {
+        String text = AmazonRedshift.resultSetToString(query1Result().open(), 2);
+        assertTrue(text.startsWith("Total columns: 3\no_orderkey, o_orderdate, total_sale\n"));
+        assertTrue(text.contains("5, 1998-08-02, 1234.50\n"));
+        assertTrue(text.contains("7, 1998-08-01, null\n"));
+        assertTrue(text.endsWith("Total results: 3"));
+    }
+
+    @Test(expected = SQLException.class)
+    public void testUnknownColumn() throws SQLException {
+        ResultSet rs = query1Result().open();
+        rs.next();
+        rs.getObject("missing");
+    }
+}
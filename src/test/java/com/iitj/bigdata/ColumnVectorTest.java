@@ -0,0 +1,80 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for ColumnVector.
+ */
+public class ColumnVectorTest {
+
+    private static ColumnVector load(String declaredType, long offHeapThreshold, String... values) throws IOException {
+        StringBuilder script = new StringBuilder();
+        for (String value : values) {
+            script.append("INSERT INTO t VALUES (").append(value).append(");\n");
+        }
+        ColumnVector column = new ColumnVector("c", declaredType);
+        StringBuilder text = new StringBuilder();
+        try (SqlScriptReader reader = new SqlScriptReader(
+                new ByteArrayInputStream(script.toString().getBytes(StandardCharsets.UTF_8)))) {
+            while (reader.next()) {
+                column.append(reader, 0, text);
+            }
+        }
+        column.seal(offHeapThreshold);
+        return column;
+    }
+
+    @Test
+    public void testIntegersAreNarrowed() throws IOException {
+        ColumnVector column = load("INTEGER", Long.MAX_VALUE, "1", "NULL", "-7");
+        assertEquals(ColumnVector.Kind.INTEGER, column.getKind());
+        assertEquals(3 * Integer.BYTES, column.getBytes());
+        assertEquals(1, column.get(0));
+        assertEquals(ColumnVector.NULL, column.get(1));
+        assertEquals(-7, column.get(2));
+        assertEquals(Integer.valueOf(-7), column.toObject(column.get(2)));
+        assertNull(column.toObject(column.get(1)));
+    }
+
+    @Test
+    public void testLargeValuesStayWideOffHeap() throws IOException {
+        ColumnVector column = load("BIGINT", 0, "1", "8000000000", "NULL");
+        assertTrue(column.isOffHeap());
+        assertEquals(3 * Long.BYTES, column.getBytes());
+        assertEquals(8_000_000_000L, column.get(1));
+        assertEquals(ColumnVector.NULL, column.get(2));
+        assertEquals(Long.valueOf(1), column.toObject(column.get(0)));
+    }
+
+    @Test
+    public void testDecimalsAndDates() throws IOException {
+        ColumnVector price = load("DECIMAL(15,2)", 0, "901.00", "0.5");
+        assertEquals(90100, price.get(0));
+        assertEquals(new BigDecimal("0.50"), price.toObject(price.get(1)));
+
+        ColumnVector date = load("DATE", Long.MAX_VALUE, "DATE '1997-04-01'", "'1970-01-02'");
+        assertEquals(Date.valueOf("1997-04-01"), date.toObject(date.get(0)));
+        assertEquals(1, date.get(1));
+    }
+
+    @Test
+    public void testCharColumnsArePaddedAndComparedWithoutBlanks() throws IOException {
+        ColumnVector priority = load("CHAR(15)", 0, "'1-URGENT'", "'2-HIGH   '", "'1-URGENT  '", "NULL");
+        assertEquals(2, priority.dictionarySize());
+        assertEquals(priority.get(0), priority.get(2));
+        assertEquals(priority.get(0), priority.code("1-URGENT"));
+        assertEquals(-1, priority.code("3-MEDIUM"));
+        assertEquals("1-URGENT       ", priority.toObject(priority.get(0)));
+
+        ColumnVector comment = load("VARCHAR(44)", Long.MAX_VALUE, "'it''s'");
+        assertEquals("it's", comment.toObject(comment.get(0)));
+    }
+}
@@ -0,0 +1,181 @@
+package com.iitj.bigdata;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for ColumnarEngine, on a small hand-checked TPC-H subset.
+ */
+public class ColumnarEngineTest {
+
+    private static final String DDL =
+            "CREATE TABLE region (r_regionkey INTEGER NOT NULL, r_name CHAR(25) NOT NULL, r_comment VARCHAR(152));\n"
+            + "CREATE TABLE nation (n_nationkey INTEGER NOT NULL, n_name CHAR(25) NOT NULL,\n"
+            + "  n_regionkey INTEGER NOT NULL REFERENCES region(r_regionkey), n_comment VARCHAR(152));\n"
+            + "CREATE TABLE customer (c_custkey INTEGER NOT NULL, c_nationkey INTEGER NOT NULL,\n"
+            + "  c_acctbal DECIMAL(15,2), c_mktsegment CHAR(10));\n"
+            + "CREATE TABLE orders (o_orderkey INTEGER NOT NULL, o_custkey INTEGER NOT NULL,\n"
+            + "  o_orderstatus CHAR(1), o_totalprice DECIMAL(15,2), o_orderdate DATE, o_orderpriority CHAR(15));\n"
+            + "CREATE TABLE lineitem (l_orderkey INTEGER NOT NULL, l_linenumber INTEGER,\n"
+            + "  l_extendedprice DECIMAL(15,2), l_discount DECIMAL(15,2));\n";
+
+    private static final List<String> FILES = Arrays.asList(
+            "region.sql", "nation.sql", "customer.sql", "orders.sql", "lineitem.sql");
+
+    private final Map<String, String> data = new HashMap<>();
+    private ColumnarEngine engine;
+
+    public ColumnarEngineTest() {
+        data.put("data/region.sql", "INSERT INTO region VALUES (0, 'AFRICA', 'a'), (1, 'AMERICA', 'b');\n"
+                + "INSERT INTO region VALUES (3, 'EUROPE', 'c');\n");
+        data.put("data/nation.sql", "INSERT INTO nation VALUES (0, 'BRAZIL', 1, 'x'), (1, 'FRANCE', 3, 'y'),"
+                + " (2, 'KENYA', 0, 'z');\n");
+        data.put("data/customer.sql", "INSERT INTO customer VALUES (1, 0, 1.00, 'BUILDING'),"
+                + " (2, 0, 2.00, 'AUTOMOBILE'), (3, 1, 3.00, 'BUILDING'), (4, 2, 4.00, 'BUILDING'),"
+                + " (5, 2, 5.00, 'MACHINERY');\n");
+        data.put("data/orders.sql", "INSERT INTO orders VALUES\n"
+                + " (10, 1, 'O', 100.00, DATE '1998-01-01', '1-URGENT'),\n"
+                + " (11, 1, 'F', 50.00, DATE '1997-05-01', '1-URGENT'),\n"
+                + " (12, 2, 'O', 70.00, DATE '1998-02-01', '2-HIGH'),\n"
+                + " (13, 3, 'O', 80.00, DATE '1996-01-01', '1-URGENT'),\n"
+                + " (14, 4, 'P', 30.25, DATE '1999-03-03', '1-URGENT'),\n"
+                + " (15, 4, 'O', 20.00, DATE '2003-04-01', '3-MEDIUM'),\n"
+                + " (16, 1, 'O', 1.00, DATE '1998-01-01', '5-LOW');\n");
+        data.put("data/lineitem.sql", "INSERT INTO lineitem VALUES (10, 1, 1000.00, 0.10), (10, 2, 200.00, 0.00),"
+                + " (11, 1, 300.00, 0.05), (12, 1, 99.99, 0.07), (13, 1, 10.00, 0.00), (14, 1, 5.00, 0.00),"
+                + " (14, 2, 6.00, 0.00), (15, 1, 7.00, 0.00);\n");
+    }
+
+    private ColumnarEngine load(int parallelism, long offHeapThreshold) throws IOException {
+        engine = new ColumnarEngine(parallelism, offHeapThreshold);
+        engine.load(path -> {
+            String script = data.get(path);
+            if (script == null) {
+                throw new FileNotFoundException(path);
+            }
+            return new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8));
+        }, FILES, TableSchema.parse(DDL));
+        return engine;
+    }
+
+    @After
+    public void tearDown() {
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    @Test
+    public void testQuery1() throws IOException, SQLException {
+        ResultSet rs = load(2, Long.MAX_VALUE).query1();
+        assertTrue(rs.next());
+        assertEquals(12, rs.getInt("o_orderkey"));
+        assertEquals(Date.valueOf("1998-02-01"), rs.getDate("o_orderdate"));
+        assertEquals(new BigDecimal("92.9907"), rs.getBigDecimal("total_sale"));
+        assertTrue(rs.next());
+        assertEquals(10, rs.getInt(1));
+        assertEquals(new BigDecimal("1100.0000"), rs.getObject(3));
+        assertTrue(rs.next());
+        assertEquals(11, rs.getInt(1));
+        assertEquals(new BigDecimal("285.0000"), rs.getObject(3));
+        assertFalse("Orders without line items are dropped by the join", rs.next());
+    }
+
+    @Test
+    public void testQuery2() throws IOException, SQLException {
+        ResultSet rs = load(2, Long.MAX_VALUE).query2();
+        assertEquals("c_custkey", rs.getMetaData().getColumnName(1));
+        assertTrue(rs.next());
+        assertEquals(1, rs.getInt("c_custkey"));
+        assertEquals(new BigDecimal("100.00"), rs.getBigDecimal("total_spent"));
+        assertTrue(rs.next());
+        assertEquals(4, rs.getInt(1));
+        assertEquals(new BigDecimal("30.25"), rs.getBigDecimal(2));
+        assertFalse(rs.next());
+    }
+
+    @Test
+    public void testQuery3() throws IOException, SQLException {
+        ResultSet rs = load(2, Long.MAX_VALUE).query3();
+        assertTrue(rs.next());
+        assertEquals("CHAR(15) values come back blank-padded", "1-URGENT       ", rs.getString("o_orderpriority"));
+        assertEquals(5L, rs.getObject("lineitem_count"));
+        assertTrue(rs.next());
+        assertEquals("2-HIGH", rs.getString(1).trim());
+        assertEquals(1, rs.getLong(2));
+        assertFalse(rs.next());
+    }
+
+    @Test
+    public void testParameterizedQueries() throws IOException, SQLException {
+        load(2, Long.MAX_VALUE);
+        ResultSet rs = engine.query3(LocalDate.of(1996, 1, 1), LocalDate.of(1997, 1, 1));
+        assertTrue(rs.next());
+        assertEquals("1-URGENT", rs.getString(1).trim());
+        assertEquals(1, rs.getLong(2));
+        assertFalse(rs.next());
+
+        rs = engine.query2("AMERICA", "3-MEDIUM");
+        assertTrue(rs.next());
+        assertEquals(4, rs.getInt("c_custkey"));
+        assertEquals(new BigDecimal("20.00"), rs.getBigDecimal("total_spent"));
+        assertFalse(rs.next());
+        // The defaults are the literals of the SQL queries
+        assertEquals(AmazonRedshift.resultSetToString(engine.query1(), 10),
+                AmazonRedshift.resultSetToString(engine.query1("AMERICA"), 10));
+    }
+
+    @Test
+    public void testOffHeapParallelMatchesOnHeap() throws IOException, SQLException {
+        // Enough line items to be split into several fork/join ranges
+        StringBuilder lineitems = new StringBuilder(data.get("data/lineitem.sql"));
+        for (int i = 0; i < 30_000; i++) {
+            lineitems.append("INSERT INTO lineitem VALUES (12, ").append(i + 2).append(", 1.00, 0.50);\n");
+        }
+        data.put("data/lineitem.sql", lineitems.toString());
+
+        String onHeap = AmazonRedshift.resultSetToString(load(1, Long.MAX_VALUE).query1(), 10)
+                + AmazonRedshift.resultSetToString(engine.query3(), 10);
+        engine.close();
+        String offHeap = AmazonRedshift.resultSetToString(load(4, 0).query1(), 10)
+                + AmazonRedshift.resultSetToString(engine.query3(), 10);
+        assertEquals(onHeap, offHeap);
+        assertTrue(offHeap.contains("12, 1998-02-01, 15092.9907"));
+        assertTrue(offHeap.contains("2-HIGH         , 30001"));
+    }
+
+    @Test
+    public void testDuplicateJoinKeyIsReported() throws IOException {
+        data.put("data/orders.sql", data.get("data/orders.sql")
+                + "INSERT INTO orders VALUES (12, 2, 'O', 70.00, DATE '1998-02-01', '2-HIGH');\n");
+        load(1, Long.MAX_VALUE);
+        try {
+            engine.query3();
+            fail("Expected duplicate key error");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().contains("o_orderkey 12"));
+        }
+    }
+
+    @Test(expected = SQLException.class)
+    public void testQueryBeforeLoad() throws SQLException {
+        engine = new ColumnarEngine(1, Long.MAX_VALUE);
+        engine.query1();
+    }
+}
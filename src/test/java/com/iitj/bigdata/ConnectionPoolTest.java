@@ -0,0 +1,113 @@
+package com.iitj.bigdata;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for ConnectionPool, using in-memory fake connections.
+ */
+public class ConnectionPoolTest {
+
+    private final List<String> log = new ArrayList<>();
+    private final AtomicInteger opened = new AtomicInteger();
+    private final List<Connection> physical = new ArrayList<>();
+    private ConnectionPool pool;
+
+    private ConnectionPool pool(int min, int max, long validateIdleMillis, long leakMillis) throws SQLException {
+        pool = new ConnectionPool(() -> {
+            opened.incrementAndGet();
+            Connection c = FakeJdbc.connection(log);
+            synchronized (physical) {
+                physical.add(c);
+            }
+            return c;
+        }, min, max, 50, validateIdleMillis, leakMillis);
+        pool.warmUp();
+        return pool;
+    }
+
+    @After
+    public void tearDown() {
+        if (pool != null) {
+            pool.close();
+        }
+    }
+
+    @Test
+    public void testWarmUpAndReuse() throws SQLException {
+        pool(2, 4, 60_000, 0);
+        assertEquals(2, opened.get());
+        assertEquals(2, pool.getIdleCount());
+
+        Connection c = pool.borrow();
+        assertEquals(1, pool.getActiveCount());
+        c.close();
+        assertTrue(c.isClosed());
+        assertEquals(0, pool.getActiveCount());
+
+        pool.borrow().close();
+        assertEquals("Returned connections are reused", 2, opened.get());
+        assertEquals(2, pool.getBorrowCount());
+    }
+
+    @Test
+    public void testHandleRejectsUseAfterClose() throws SQLException {
+        pool(1, 1, 60_000, 0);
+        Connection c = pool.borrow();
+        c.close();
+        assertThrows(SQLException.class, c::createStatement);
+    }
+
+    @Test
+    public void testExhaustedPoolTimesOut() throws SQLException {
+        pool(0, 1, 60_000, 0);
+        Connection c = pool.borrow();
+        assertThrows(SQLTimeoutException.class, pool::borrow);
+        c.close();
+        pool.borrow().close();
+    }
+
+    @Test
+    public void testInvalidIdleConnectionIsReplaced() throws SQLException {
+        pool(1, 2, 0, 0);
+        synchronized (physical) {
+            physical.get(0).close();
+        }
+        Connection c = pool.borrow();
+        assertFalse(c.isClosed());
+        assertEquals(1, pool.getValidationFailureCount());
+        assertEquals(2, opened.get());
+        c.close();
+    }
+
+    @Test
+    public void testReturnResetsTransaction() throws SQLException {
+        pool(1, 1, 60_000, 0);
+        Connection c = pool.borrow();
+        c.setAutoCommit(false);
+        c.close();
+        assertTrue(log.contains("rollback"));
+        assertTrue(pool.borrow().getAutoCommit());
+    }
+
+    @Test
+    public void testLeakIsReported() throws SQLException, InterruptedException {
+        pool(1, 1, 60_000, 20);
+        Connection c = pool.borrow();
+        long deadline = System.currentTimeMillis() + 2000;
+        while (pool.getLeakCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, pool.getLeakCount());
+        c.close();
+    }
+}
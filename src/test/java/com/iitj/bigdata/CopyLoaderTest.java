@@ -0,0 +1,91 @@
+package com.iitj.bigdata;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Comparator;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for CSV staging and COPY ingest. The COPY test runs against a local
+ * PostgreSQL stand-in and is skipped without one.
+ */
+public class CopyLoaderTest {
+
+    private static final String SCRIPT =
+            "INSERT INTO copy_test VALUES (1, 'say \"hi\", ok', 1.50);\n"
+            + "INSERT INTO copy_test VALUES (2, '', NULL);\n"
+            + "INSERT INTO copy_test VALUES (3, 'it''s', 2.25);\n";
+
+    private Path dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("staging-test");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        }
+    }
+
+    private static ByteArrayInputStream script() {
+        return new ByteArrayInputStream(SCRIPT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testStagesCsv() throws IOException {
+        CsvStager.StagedFile staged = new CsvStager(dir, false).stage(script());
+        assertEquals("copy_test", staged.getTable());
+        assertEquals(3, staged.getRows());
+        String csv = new String(Files.readAllBytes(staged.getPath()), StandardCharsets.UTF_8);
+        assertEquals("1,\"say \"\"hi\"\", ok\",1.50\n2,\"\",\n3,\"it's\",2.25\n", csv);
+    }
+
+    @Test
+    public void testStagesGzip() throws IOException {
+        CsvStager.StagedFile staged = new CsvStager(dir, true).stage(script());
+        assertTrue(staged.getPath().toString().endsWith(".csv.gz"));
+        try (GZIPInputStream in = new GZIPInputStream(Files.newInputStream(staged.getPath()))) {
+            assertTrue(new String(in.readAllBytes(), StandardCharsets.UTF_8).startsWith("1,"));
+        }
+    }
+
+    @Test
+    public void testCopyIntoPostgres() throws SQLException, IOException {
+        try (Connection con = LocalPostgres.connect(); Statement stmt = con.createStatement()) {
+            stmt.execute("DROP TABLE IF EXISTS copy_test");
+            stmt.execute("CREATE TABLE copy_test (k INTEGER, s VARCHAR(40), d DECIMAL(15,2))");
+            con.setAutoCommit(false);
+            CopyLoader loader = new CopyLoader(con, null, null);
+            assertTrue(loader.supportsCopyFromStdin());
+            assertEquals(3, loader.copy(new CsvStager(dir, true).stage(script())));
+            con.setAutoCommit(true);
+            try (ResultSet rs = stmt.executeQuery("SELECT s, d FROM copy_test ORDER BY k")) {
+                assertTrue(rs.next());
+                assertEquals("say \"hi\", ok", rs.getString(1));
+                assertTrue(rs.next());
+                assertEquals("", rs.getString(1));
+                assertNull(rs.getBigDecimal(2));
+                assertTrue(rs.next());
+                assertEquals("it's", rs.getString(1));
+            }
+            stmt.execute("DROP TABLE copy_test");
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package com.iitj.bigdata;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for DataResource, on files in a temporary classpath directory.
+ */
+public class DataResourceTest {
+
+    private Path dir;
+    private URLClassLoader loader;
+    private byte[] script;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("resource-test");
+        Files.createDirectories(dir.resolve("data"));
+        loader = new URLClassLoader(new URL[]{dir.toUri().toURL()}, null);
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 20_000; i++) {
+            sb.append("INSERT INTO region VALUES (").append(i).append(", 'name ").append(i).append("', 'x');\n");
+        }
+        script = sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        loader.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    private void write(String name, byte[] content, boolean gzip) throws IOException {
+        try (OutputStream out = gzip ? new GZIPOutputStream(Files.newOutputStream(dir.resolve(name)))
+                : Files.newOutputStream(dir.resolve(name))) {
+            out.write(content);
+        }
+    }
+
+    /**
+     * Writes the script split at the given offsets into gzipped parts.
+     */
+    private void writeParts(int... cuts) throws IOException {
+        int start = 0;
+        for (int i = 0; i <= cuts.length; i++) {
+            int end = i < cuts.length ? cuts[i] : script.length;
+            write(DataResource.partName("data/region.sql", i + 1) + ".gz",
+                    Arrays.copyOfRange(script, start, end), true);
+            start = end;
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buf = new byte[777];
+            int n;
+            while ((n = stream.read(buf)) >= 0) {
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    @Test
+    public void testGzipFile() throws IOException {
+        write("data/region.sql.gz", script, true);
+        DataResource resource = DataResource.find(loader, "data/region.sql", 2);
+        assertEquals(DataResource.Compression.GZIP, resource.getCompression());
+        assertArrayEquals(script, readAll(resource.open()));
+        assertEquals(script.length, resource.contentLength());
+        assertTrue(resource.storedLength() < script.length / 4);
+    }
+
+    @Test
+    public void testPartsAreConcatenatedInOrder() throws IOException {
+        // Cut inside statements and quoted strings, and one part smaller than a buffer
+        writeParts(1000, 1003, 250_000, 400_123);
+        DataResource resource = DataResource.find(loader, "data/region.sql", 3);
+        assertEquals(5, resource.getParts().size());
+        assertArrayEquals(script, readAll(resource.open()));
+
+        List<Long> keys = new ArrayList<>();
+        try (SqlScriptReader reader = new SqlScriptReader(resource.open())) {
+            while (reader.next()) {
+                keys.add(reader.getLong(0));
+            }
+        }
+        assertEquals(20_000, keys.size());
+        assertEquals(19_999L, (long) keys.get(keys.size() - 1));
+    }
+
+    @Test
+    public void testPlainFileIsPreferred() throws IOException {
+        write("data/region.sql", "plain".getBytes(StandardCharsets.UTF_8), false);
+        write("data/region.sql.gz", script, true);
+        DataResource resource = DataResource.find(loader, "data/region.sql", 1);
+        assertEquals(DataResource.Compression.NONE, resource.getCompression());
+        assertEquals("plain", new String(readAll(resource.open()), StandardCharsets.UTF_8));
+        assertNull(DataResource.find(loader, "data/nation.sql", 1));
+    }
+
+    @Test
+    public void testCorruptPartFailsTheRead() throws IOException {
+        writeParts(100_000);
+        byte[] broken = Files.readAllBytes(dir.resolve("data/region.sql.002.gz"));
+        Files.write(dir.resolve("data/region.sql.002.gz"), Arrays.copyOf(broken, broken.length / 2));
+        DataResource resource = DataResource.find(loader, "data/region.sql", 2);
+        try {
+            readAll(resource.open());
+            fail("Expected a truncated part to fail");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("region.sql.002.gz"));
+        }
+    }
+
+    @Test
+    public void testCloseBeforeEndStopsDecompression() throws IOException {
+        writeParts(50_000, 100_000, 150_000, 200_000, 250_000);
+        InputStream in = DataResource.find(loader, "data/region.sql", 6).open();
+        assertEquals(script[0], (byte) in.read());
+        in.close();
+        try {
+            in.read();
+            fail("Expected a closed stream to fail");
+        } catch (IOException e) {
+            assertEquals("Stream closed", e.getMessage());
+        }
+    }
+
+    @Test
+    public void testBadGzipHeaderClosesTheStream() {
+        boolean[] closed = {false};
+        InputStream in = new ByteArrayInputStream(script) {
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        try {
+            DataResource.Compression.GZIP.decompress(in, "region.sql.gz");
+            fail("Expected the plain script to be rejected");
+        } catch (IOException e) {
+            assertTrue(closed[0]);
+        }
+    }
+
+    @Test
+    public void testZstdNeedsLibrary() throws IOException {
+        write("data/region.sql.zst", script, false);
+        DataResource resource = DataResource.find(loader, "data/region.sql", 1);
+        assertEquals(DataResource.Compression.ZSTD, resource.getCompression());
+        boolean available;
+        try {
+            Class.forName("com.github.luben.zstd.ZstdInputStream");
+            available = true;
+        } catch (ClassNotFoundException e) {
+            available = false;
+        }
+        try (InputStream in = resource.open()) {
+            in.read();
+            fail("Expected the uncompressed content to be rejected");
+        } catch (IOException e) {
+            if (!available) {
+                assertTrue(e.getCause().getMessage().contains("needs zstd-jni"));
+            }
+        }
+    }
+}
@@ -0,0 +1,247 @@
+package com.iitj.bigdata;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Minimal in-memory JDBC objects for unit tests. Every call that reaches the database
+ * is appended to a log instead.
+ */
+final class FakeJdbc {
+    private FakeJdbc() {
+    }
+
+    /**
+     * Creates a connection that logs executed SQL, batch rows and commits.
+     *
+     * @param log receives one entry per database call
+     * @return fake connection
+     */
+    static Connection connection(List<String> log) {
+        return connection(log, null);
+    }
+
+    /**
+     * Creates a connection whose statements return the given result for every query.
+     *
+     * @param log receives one entry per database call
+     * @param result returned by executeQuery, or null
+     * @return fake connection
+     */
+    static Connection connection(List<String> log, ResultSet result) {
+        boolean[] closed = {false};
+        boolean[] autoCommit = {true};
+        return (Connection) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "createStatement":
+                            return statement(log, result);
+                        case "prepareStatement":
+                            return preparedStatement(log, (String) args[0], result);
+                        case "commit":
+                        case "rollback":
+                            log.add(method.getName());
+                            return null;
+                        case "setAutoCommit":
+                            autoCommit[0] = (Boolean) args[0];
+                            log.add("autoCommit: " + args[0]);
+                            return null;
+                        case "getAutoCommit":
+                            return autoCommit[0];
+                        case "close":
+                            closed[0] = true;
+                            return null;
+                        case "isClosed":
+                            return closed[0];
+                        case "isValid":
+                            return !closed[0];
+                        case "getSchema":
+                            return "public";
+                        case "isWrapperFor":
+                            return false;
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        case "equals":
+                            return proxy == args[0];
+                        case "toString":
+                            return "FakeConnection";
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+    }
+
+    private static Statement statement(List<String> log, ResultSet result) {
+        return (Statement) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(),
+                new Class<?>[]{Statement.class}, (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("execute") && args != null && args[0] instanceof String) {
+                        log.add("execute: " + args[0]);
+                        if (name.equals("executeQuery")) {
+                            return result;
+                        }
+                    } else if (name.equals("setFetchSize") || name.equals("setQueryTimeout")) {
+                        log.add(name + ": " + args[0]);
+                    } else if (name.equals("close") || name.equals("cancel")) {
+                        log.add("statement " + name);
+                    }
+                    return defaultValue(method.getReturnType());
+                });
+    }
+
+    /**
+     * Creates a forward-only result set over fixed rows.
+     *
+     * @param log receives "resultSet close" when the result set is closed
+     * @param columns column names
+     * @param rows row values
+     * @return fake result set
+     */
+    static ResultSet resultSet(List<String> log, String[] columns, Object[]... rows) {
+        int[] cursor = {-1};
+        boolean[] wasNull = {false};
+        ResultSetMetaData meta = (ResultSetMetaData) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getColumnCount":
+                            return columns.length;
+                        case "getColumnName":
+                        case "getColumnLabel":
+                            return columns[(Integer) args[0] - 1];
+                        case "getColumnType":
+                            Object sample = rows.length == 0 ? null : rows[0][(Integer) args[0] - 1];
+                            return sqlType(sample);
+                        case "getColumnClassName":
+                            return rows.length == 0 || rows[0][(Integer) args[0] - 1] == null
+                                    ? Object.class.getName() : rows[0][(Integer) args[0] - 1].getClass().getName();
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+        return (ResultSet) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(),
+                new Class<?>[]{ResultSet.class}, (proxy, method, args) -> {
+                    String name = method.getName();
+                    switch (name) {
+                        case "next":
+                            return ++cursor[0] < rows.length;
+                        case "getMetaData":
+                            return meta;
+                        case "close":
+                            log.add("resultSet close");
+                            return null;
+                        case "wasNull":
+                            return wasNull[0];
+                        case "getType":
+                            return ResultSet.TYPE_FORWARD_ONLY;
+                        default:
+                            break;
+                    }
+                    if (name.startsWith("get") && args != null && args.length == 1) {
+                        int index = args[0] instanceof Integer ? (Integer) args[0] - 1
+                                : Arrays.asList(columns).indexOf(args[0]);
+                        Object value = rows[cursor[0]][index];
+                        wasNull[0] = value == null;
+                        if (value == null) {
+                            return defaultValue(method.getReturnType());
+                        }
+                        Class<?> type = method.getReturnType();
+                        if (type == String.class) {
+                            return value.toString();
+                        } else if (type == int.class) {
+                            return ((Number) value).intValue();
+                        } else if (type == long.class) {
+                            return ((Number) value).longValue();
+                        } else if (type == double.class) {
+                            return ((Number) value).doubleValue();
+                        }
+                        return value;
+                    }
+                    return defaultValue(method.getReturnType());
+                });
+    }
+
+    private static int sqlType(Object sample) {
+        if (sample instanceof Integer) {
+            return Types.INTEGER;
+        } else if (sample instanceof Long) {
+            return Types.BIGINT;
+        } else if (sample instanceof java.math.BigDecimal) {
+            return Types.DECIMAL;
+        } else if (sample instanceof Double) {
+            return Types.DOUBLE;
+        } else if (sample instanceof java.sql.Date) {
+            return Types.DATE;
+        }
+        return Types.VARCHAR;
+    }
+
+    private static PreparedStatement preparedStatement(List<String> log, String sql, ResultSet result) {
+        log.add("prepare: " + sql);
+        List<Object> row = new ArrayList<>();
+        return (PreparedStatement) Proxy.newProxyInstance(FakeJdbc.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, (proxy, method, args) -> {
+                    String name = method.getName();
+                    if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                        int index = (Integer) args[0];
+                        while (row.size() < index) {
+                            row.add(null);
+                        }
+                        row.set(index - 1, name.equals("setNull") ? null : args[1]);
+                    } else if (name.equals("addBatch")) {
+                        log.add("row: " + row);
+                        row.clear();
+                    } else if (name.equals("executeBatch")) {
+                        log.add("executeBatch");
+                        return new int[0];
+                    } else if (name.equals("executeQuery") && args == null) {
+                        log.add("executeQuery: " + row);
+                        return result;
+                    } else if (name.equals("clearParameters")) {
+                        row.clear();
+                    } else if (name.equals("close")) {
+                        log.add("close: " + sql);
+                    }
+                    return defaultValue(method.getReturnType());
+                });
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0.0;
+        } else if (type == int[].class) {
+            return new int[0];
+        }
+        return null;
+    }
+
+    /**
+     * Returns the log entries that start with the given prefix.
+     */
+    static List<String> entries(List<String> log, String prefix) {
+        List<String> result = new ArrayList<>();
+        for (String entry : log) {
+            if (entry.startsWith(prefix)) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    static List<String> list(String... entries) {
+        return new ArrayList<>(Arrays.asList(entries));
+    }
+}
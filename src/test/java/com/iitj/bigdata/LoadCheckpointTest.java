@@ -0,0 +1,71 @@
+package com.iitj.bigdata;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for LoadCheckpoint.
+ */
+public class LoadCheckpointTest {
+
+    private Path dir;
+    private Path file;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("checkpoint-test");
+        file = dir.resolve("load.checkpoint");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+        Files.deleteIfExists(dir);
+    }
+
+    @Test
+    public void testProgressSurvivesReopen() throws SQLException {
+        LoadCheckpoint checkpoint = LoadCheckpoint.open(file, "db|user|whole files");
+        assertFalse(checkpoint.isResuming());
+        assertNull(checkpoint.get("lineitem.sql", 0));
+        checkpoint.done("region.sql", 0, "region", 5);
+        checkpoint.committed("lineitem.sql", 0, "lineitem", 1024, 3, 5000);
+        checkpoint.committed("lineitem.sql", 0, "lineitem", 2048, 0, 10000);
+
+        LoadCheckpoint reopened = LoadCheckpoint.open(file, "db|user|whole files");
+        assertTrue(reopened.isResuming());
+        assertTrue(reopened.get("region.sql", 0).isDone());
+        LoadCheckpoint.Entry entry = reopened.get("lineitem.sql", 0);
+        assertFalse(entry.isDone());
+        assertEquals("lineitem", entry.getTable());
+        assertEquals(2048, entry.getOffset());
+        assertEquals(0, entry.getTuples());
+        assertEquals(10000, entry.getRows());
+        assertNull(reopened.get("lineitem.sql", 2048));
+        assertFalse(Files.exists(dir.resolve("load.checkpoint.tmp")));
+    }
+
+    @Test(expected = SQLException.class)
+    public void testRejectsOtherTarget() throws SQLException {
+        LoadCheckpoint.open(file, "db|user|whole files").done("region.sql", 0, "region", 5);
+        LoadCheckpoint.open(file, "db|user|chunks of 1024 bytes");
+    }
+
+    @Test
+    public void testDelete() throws SQLException {
+        LoadCheckpoint checkpoint = LoadCheckpoint.open(file, "db|user|copy");
+        checkpoint.done("region.sql", 0, "region", 5);
+        assertTrue(Files.exists(file));
+        checkpoint.delete();
+        assertFalse(Files.exists(file));
+        assertFalse(LoadCheckpoint.open(file, "db|user|copy").isResuming());
+    }
+}
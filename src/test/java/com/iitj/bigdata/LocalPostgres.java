@@ -0,0 +1,30 @@
+package com.iitj.bigdata;
+
+import org.junit.Assume;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * Connects to a local PostgreSQL stand-in for tests that need a real database.
+ * Configure with -Dpg.url=jdbc:postgresql://localhost:5432/tpch, -Dpg.user and
+ * -Dpg.password; tests using it are skipped when pg.url is not set.
+ */
+final class LocalPostgres {
+    private LocalPostgres() {
+    }
+
+    /**
+     * Opens a connection, or skips the calling test if no stand-in is configured.
+     *
+     * @return new connection
+     * @throws SQLException if the connection fails
+     */
+    static Connection connect() throws SQLException {
+        String url = System.getProperty("pg.url");
+        Assume.assumeTrue("pg.url not set; skipping PostgreSQL test", url != null && !url.isEmpty());
+        return DriverManager.getConnection(url, System.getProperty("pg.user", "postgres"),
+                System.getProperty("pg.password", ""));
+    }
+}
@@ -0,0 +1,97 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for MetricsRegistry and LatencyHistogram.
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    public void testHistogramBuckets() {
+        assertEquals(0, LatencyHistogram.bucket(0));
+        assertEquals(0, LatencyHistogram.bucket(1000));
+        assertEquals(1, LatencyHistogram.bucket(1001));
+        assertEquals(1, LatencyHistogram.bucket(2000));
+        assertEquals(2, LatencyHistogram.bucket(2001));
+        assertEquals(LatencyHistogram.BUCKETS, LatencyHistogram.bucket(Long.MAX_VALUE));
+        for (int i = 0; i < LatencyHistogram.BUCKETS; i++) {
+            assertEquals(i, LatencyHistogram.bucket(LatencyHistogram.bound(i)));
+        }
+    }
+
+    @Test
+    public void testPercentiles() {
+        LatencyHistogram h = new LatencyHistogram();
+        assertEquals(0, h.percentile(50));
+        for (int i = 0; i < 99; i++) {
+            h.record(1500);
+        }
+        h.record(1_000_000);
+        assertEquals(100, h.getCount());
+        assertEquals(99 * 1500 + 1_000_000, h.getSumNanos());
+        assertEquals(1_000_000, h.getMaxNanos());
+        assertEquals(2000, h.percentile(50));
+        assertEquals(2000, h.percentile(99));
+        assertEquals(1_000_000, h.percentile(100));
+    }
+
+    @Test
+    public void testSameLabelsShareMetric() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("rows_total", "table", "orders").add(3);
+        metrics.counter("rows_total", "table", "orders").increment();
+        metrics.counter("rows_total", "table", "lineitem").increment();
+        assertEquals(4, metrics.counter("rows_total", "table", "orders").get());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsTypeChange() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("latency");
+        metrics.histogram("latency");
+    }
+
+    @Test
+    public void testTimingCountsErrors() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        try (MetricsRegistry.Timing timing = metrics.time("phase", "load")) {
+            timing.success();
+        }
+        // Closed without success()
+        metrics.time("phase", "load").close();
+        assertEquals(2, metrics.histogram("phase_seconds", "phase", "load").getCount());
+        assertEquals(1, metrics.counter("phase_errors_total", "phase", "load").get());
+    }
+
+    @Test
+    public void testPrometheusFormat() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("rows_total", "table", "orders").add(42);
+        metrics.gauge("pool_active", () -> 2);
+        metrics.histogram("batch_seconds", "table", "orders").record(1500);
+        String text = metrics.toPrometheus();
+        assertTrue(text.contains("# TYPE rows_total counter\nrows_total{table=\"orders\"} 42\n"));
+        assertTrue(text.contains("# TYPE pool_active gauge\npool_active 2\n"));
+        assertTrue(text.contains("batch_seconds_bucket{table=\"orders\",le=\"0.000001\"} 0\n"));
+        assertTrue(text.contains("batch_seconds_bucket{table=\"orders\",le=\"0.000002\"} 1\n"));
+        assertTrue(text.contains("batch_seconds_bucket{table=\"orders\",le=\"+Inf\"} 1\n"));
+        assertTrue(text.contains("batch_seconds_sum{table=\"orders\"} 0.0000015\n"));
+        assertTrue(text.contains("batch_seconds_count{table=\"orders\"} 1\n"));
+        assertEquals(1, text.split("# TYPE batch_seconds histogram", -1).length - 1);
+    }
+
+    @Test
+    public void testJsonFormat() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("rows_total", "table", "orders").add(42);
+        metrics.histogram("batch_seconds").record(2_000_000);
+        assertEquals("{\"counters\":[{\"name\":\"rows_total\",\"labels\":{\"table\":\"orders\"},\"value\":42}],"
+                + "\"gauges\":[],"
+                + "\"histograms\":[{\"name\":\"batch_seconds\",\"labels\":{},\"count\":1,\"sum_seconds\":0.002,"
+                + "\"mean_seconds\":0.002,\"max_seconds\":0.002,\"p50_seconds\":0.002,\"p90_seconds\":0.002,"
+                + "\"p99_seconds\":0.002}]}", metrics.toJson());
+    }
+}
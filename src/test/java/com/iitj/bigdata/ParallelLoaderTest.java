@@ -0,0 +1,268 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for the load ordering and chunking of ParallelLoader.
+ */
+public class ParallelLoaderTest {
+
+    private static final Map<String, TableSchema> REGION = TableSchema.parse(
+            "CREATE TABLE region (r_regionkey INTEGER, r_name VARCHAR(25));");
+
+    /**
+     * Returns a region script of 50 two-row statements whose strings hold semicolons.
+     */
+    private static byte[] regionScript() {
+        StringBuilder sb = new StringBuilder("-- region; it's generated\n");
+        for (int i = 0; i < 50; i++) {
+            sb.append("INSERT INTO region VALUES (").append(i).append(", 'a;").append(i).append("'), (")
+                    .append(i + 1000).append(", 'b'';").append(i).append("');\n");
+        }
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Returns the keys bound by the batch loaders in the log.
+     */
+    private static List<String> loadedKeys(List<String> log) {
+        List<String> keys = new ArrayList<>();
+        synchronized (log) {
+            for (String row : FakeJdbc.entries(log, "row: ")) {
+                keys.add(row.substring("row: [".length(), row.indexOf(',')));
+            }
+        }
+        return keys;
+    }
+
+    @Test
+    public void testChunksLoadEveryRowOnce() throws SQLException {
+        byte[] script = regionScript();
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        ParallelLoader loader = new ParallelLoader(() -> FakeJdbc.connection(log),
+                path -> new ByteArrayInputStream(script), 3, 200,
+                c -> TableLoader.create(LoadMode.BATCH, c, AdaptiveBatchSizer.fixed(7), false, REGION));
+        assertEquals(100, loader.load(Collections.singletonList("region.sql"), REGION));
+        List<String> keys = loadedKeys(log);
+        assertEquals(100, keys.size());
+        Set<String> distinct = new HashSet<>(keys);
+        assertEquals(100, distinct.size());
+        assertTrue(distinct.contains("49") && distinct.contains("1049"));
+    }
+
+    /**
+     * Returns the keys of the rows each connection committed: those bound before its last
+     * commit, since a batch is rolled back when it fails.
+     */
+    private static List<String> committedKeys(List<List<String>> logs) {
+        List<String> keys = new ArrayList<>();
+        synchronized (logs) {
+            for (List<String> log : logs) {
+                keys.addAll(loadedKeys(log.subList(0, log.lastIndexOf("commit") + 1)));
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Runs a checkpointed load whose third commit fails, either before or after the
+     * database committed it, the way a crash or a lost connection would.
+     *
+     * @return keys of the rows that were committed
+     */
+    private static List<String> interruptedLoad(byte[] script, Path file, boolean afterCommit) throws SQLException {
+        List<List<String>> logs = Collections.synchronizedList(new ArrayList<>());
+        AtomicInteger commits = new AtomicInteger();
+        ConnectionFactory connections = () -> {
+            List<String> log = new ArrayList<>();
+            logs.add(log);
+            Connection con = FakeJdbc.connection(log);
+            return (Connection) Proxy.newProxyInstance(ParallelLoaderTest.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        boolean fail = method.getName().equals("commit") && commits.incrementAndGet() == 3;
+                        if (fail && !afterCommit) {
+                            throw new SQLException("Connection lost before commit");
+                        }
+                        Object result;
+                        try {
+                            result = method.invoke(con, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        }
+                        if (fail) {
+                            throw new SQLException("Connection lost after commit");
+                        }
+                        return result;
+                    });
+        };
+        ParallelLoader loader = new ParallelLoader(connections, path -> new ByteArrayInputStream(script), 2, 200,
+                c -> TableLoader.create(LoadMode.BATCH, c, AdaptiveBatchSizer.fixed(3), false, REGION),
+                LoadCheckpoint.open(file, "test"));
+        try {
+            loader.load(Collections.singletonList("region.sql"), REGION);
+            fail("Expected the interrupted load to fail");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().startsWith("Connection lost"));
+        }
+        return committedKeys(logs);
+    }
+
+    /**
+     * Resumes a load against a database whose region table holds the given number of rows.
+     */
+    private static long resume(byte[] script, Path file, long tableRows, List<String> log) throws SQLException {
+        ParallelLoader loader = new ParallelLoader(
+                () -> FakeJdbc.connection(log, FakeJdbc.resultSet(log, new String[]{"count"}, new Object[]{tableRows})),
+                path -> new ByteArrayInputStream(script), 2, 200,
+                c -> TableLoader.create(LoadMode.BATCH, c, AdaptiveBatchSizer.fixed(3), false, REGION),
+                LoadCheckpoint.open(file, "test"));
+        return loader.load(Collections.singletonList("region.sql"), REGION);
+    }
+
+    @Test
+    public void testResumeAfterFailedCommitLoadsTheRest() throws IOException, SQLException {
+        byte[] script = regionScript();
+        Path file = Files.createTempFile("parallel", ".checkpoint");
+        Files.delete(file);
+        try {
+            List<String> first = interruptedLoad(script, file, false);
+            assertTrue(first.size() > 0 && first.size() < 100);
+
+            List<String> log = Collections.synchronizedList(new ArrayList<>());
+            assertEquals(100 - first.size(), resume(script, file, first.size(), log));
+            List<String> all = new ArrayList<>(first);
+            all.addAll(loadedKeys(log));
+            assertEquals(100, all.size());
+            assertEquals(100, new HashSet<>(all).size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Test
+    public void testUnrecordedCommitIsNotLoadedTwice() throws IOException, SQLException {
+        byte[] script = regionScript();
+        Path file = Files.createTempFile("parallel", ".checkpoint");
+        Files.delete(file);
+        try {
+            // The third batch is committed but the checkpoint never hears of it
+            List<String> first = interruptedLoad(script, file, true);
+            List<String> log = Collections.synchronizedList(new ArrayList<>());
+            try {
+                resume(script, file, first.size(), log);
+                fail("Expected the table to be rejected");
+            } catch (SQLException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("Table region has " + first.size() + " rows"));
+            }
+            assertEquals("Nothing is loaded again", 0, loadedKeys(log).size());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    /**
+     * Returns a loader that sends nothing, optionally failing on the tenth row with the
+     * runtime exception a malformed number raises, or when it is closed.
+     */
+    private static TableLoader stubLoader(Connection con, boolean failRow, boolean failClose) {
+        return new TableLoader(con, AdaptiveBatchSizer.fixed(3), false) {
+            @Override
+            protected void startBatch(String tableName) {
+            }
+
+            @Override
+            protected void addRow(TupleReader reader, int batchRows) throws SQLException {
+                if (failRow && reader.getLong(0) == 9) {
+                    throw new NumberFormatException("For input string: \"9x\"");
+                }
+            }
+
+            @Override
+            protected void executeBatch() {
+            }
+
+            @Override
+            public void close() throws SQLException {
+                if (failClose) {
+                    throw new SQLException("Statement close failed");
+                }
+            }
+        };
+    }
+
+    @Test
+    public void testMalformedTupleRollsBackTheBatch() {
+        byte[] script = regionScript();
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        ParallelLoader loader = new ParallelLoader(() -> FakeJdbc.connection(log),
+                path -> new ByteArrayInputStream(script), 1, Long.MAX_VALUE, c -> stubLoader(c, true, false));
+        try {
+            loader.load(Collections.singletonList("region.sql"), REGION);
+            fail("Expected the malformed tuple to fail the load");
+        } catch (SQLException e) {
+            assertTrue(e.getCause() instanceof NumberFormatException);
+        }
+        assertEquals(1, FakeJdbc.entries(log, "rollback").size());
+    }
+
+    @Test
+    public void testConnectionIsClosedWhenLoaderCloseFails() throws SQLException {
+        byte[] script = regionScript();
+        List<Connection> connections = Collections.synchronizedList(new ArrayList<>());
+        ParallelLoader loader = new ParallelLoader(() -> {
+            Connection con = FakeJdbc.connection(new ArrayList<>());
+            connections.add(con);
+            return con;
+        }, path -> new ByteArrayInputStream(script), 2, 200, c -> stubLoader(c, false, true));
+        assertEquals(100, loader.load(Collections.singletonList("region.sql"), REGION));
+        assertEquals(2, connections.size());
+        for (Connection con : connections) {
+            assertTrue(con.isClosed());
+        }
+    }
+
+    @Test
+    public void testOrdersOnlyByDeclaredReferences() throws SQLException {
+        Map<String, TableSchema> schema = TableSchema.parse(
+                "CREATE TABLE orders (o_orderkey INTEGER REFERENCES customer);"
+                + "CREATE TABLE lineitem (l_orderkey INTEGER REFERENCES orders);"
+                + "CREATE TABLE customer (c_custkey INTEGER);"
+                + "CREATE TABLE part (p_partkey INTEGER);");
+        List<String> order = ParallelLoader.loadOrder(
+                Arrays.asList("lineitem", "orders", "part", "customer"), schema);
+        assertEquals(Arrays.asList("part", "customer", "orders", "lineitem"), order);
+    }
+
+    @Test
+    public void testWithoutConstraintsKeepsFileOrder() throws SQLException {
+        Map<String, TableSchema> schema = TableSchema.parse("CREATE TABLE a (x INTEGER); CREATE TABLE b (y INTEGER);");
+        assertEquals(Arrays.asList("b", "a"), ParallelLoader.loadOrder(Arrays.asList("b", "a"), schema));
+    }
+
+    @Test(expected = SQLException.class)
+    public void testCycleIsRejected() throws SQLException {
+        Map<String, TableSchema> schema = TableSchema.parse(
+                "CREATE TABLE a (x INTEGER REFERENCES b); CREATE TABLE b (y INTEGER REFERENCES a);");
+        ParallelLoader.loadOrder(Arrays.asList("a", "b"), schema);
+    }
+}
@@ -0,0 +1,126 @@
+package com.iitj.bigdata;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for PhysicalDesigner, using the workload of query1-3.
+ */
+public class PhysicalDesignerTest {
+
+    private static final String DDL =
+            "CREATE TABLE region (r_regionkey INTEGER NOT NULL, r_name CHAR(25) NOT NULL, r_comment VARCHAR(152),"
+            + " PRIMARY KEY (r_regionkey));\n"
+            + "CREATE TABLE nation (n_nationkey INTEGER NOT NULL PRIMARY KEY, n_name CHAR(25) NOT NULL,"
+            + " n_regionkey INTEGER NOT NULL, n_comment VARCHAR(152));\n"
+            + "CREATE TABLE customer (c_custkey INTEGER NOT NULL, c_name VARCHAR(25) NOT NULL,"
+            + " c_nationkey INTEGER NOT NULL, c_acctbal DECIMAL(15,2) NOT NULL, c_mktsegment CHAR(10) NOT NULL,"
+            + " PRIMARY KEY (c_custkey));\n"
+            + "CREATE TABLE orders (o_orderkey INTEGER NOT NULL, o_custkey INTEGER NOT NULL,"
+            + " o_orderstatus CHAR(1) NOT NULL, o_totalprice DECIMAL(15,2) NOT NULL, o_orderdate DATE NOT NULL,"
+            + " o_orderpriority CHAR(15) NOT NULL, o_comment VARCHAR(79) NOT NULL, PRIMARY KEY (o_orderkey));\n"
+            + "CREATE TABLE lineitem (l_orderkey INTEGER NOT NULL, l_linenumber INTEGER NOT NULL,"
+            + " l_extendedprice DECIMAL(15,2) NOT NULL, l_discount DECIMAL(15,2) NOT NULL,"
+            + " l_comment VARCHAR(44) NOT NULL, PRIMARY KEY (l_orderkey, l_linenumber));\n";
+
+    private PhysicalDesigner designer;
+
+    @Before
+    public void setUp() {
+        Map<String, Long> bytes = new HashMap<>();
+        bytes.put("region", 500L);
+        bytes.put("nation", 3_000L);
+        bytes.put("customer", 3_000_000L);
+        bytes.put("orders", 20_000_000L);
+        bytes.put("lineitem", 90_000_000L);
+        designer = new PhysicalDesigner(TableSchema.parse(DDL), bytes, 1_000_000L);
+        designer.addQuery("query1", AmazonRedshift.QUERY1_SQL);
+        designer.addQuery("query2", AmazonRedshift.QUERY2_SQL);
+        designer.addQuery("query3", AmazonRedshift.QUERY3_SQL);
+    }
+
+    @Test
+    public void testRedshiftDistributionAndSortKeys() {
+        PhysicalDesigner.Design design = designer.design(DesignTarget.REDSHIFT);
+        List<String> statements = design.getStatements();
+        assertTrue(statements.contains("ALTER TABLE orders ALTER DISTSTYLE KEY DISTKEY o_orderkey"));
+        assertTrue(statements.contains("ALTER TABLE lineitem ALTER DISTSTYLE KEY DISTKEY l_orderkey"));
+        assertTrue(statements.contains("ALTER TABLE region ALTER DISTSTYLE ALL"));
+        assertTrue(statements.contains("ALTER TABLE nation ALTER DISTSTYLE ALL"));
+        // customer joins orders on o_custkey, but orders is distributed on o_orderkey
+        assertTrue(statements.contains("ALTER TABLE customer ALTER DISTSTYLE EVEN"));
+
+        assertTrue(statements.contains("ALTER TABLE orders ALTER COMPOUND SORTKEY (o_orderdate)"));
+        assertTrue(statements.contains("ALTER TABLE lineitem ALTER COMPOUND SORTKEY (l_orderkey)"));
+        assertTrue(statements.contains("ALTER TABLE region ALTER COMPOUND SORTKEY (r_name)"));
+        assertTrue(statements.contains("ALTER TABLE customer ALTER COMPOUND SORTKEY (c_mktsegment)"));
+        assertTrue(design.getNotes("orders").contains("DISTKEY o_orderkey co-locates the join with "
+                + "lineitem.l_orderkey in query1, query3"));
+    }
+
+    @Test
+    public void testRedshiftEncodings() {
+        List<String> statements = designer.design(DesignTarget.REDSHIFT).getStatements();
+        assertTrue(statements.contains("ALTER TABLE orders ALTER COLUMN o_totalprice ENCODE AZ64"));
+        assertTrue(statements.contains("ALTER TABLE orders ALTER COLUMN o_orderstatus ENCODE BYTEDICT"));
+        // Filtered on equality, so dictionary encoded despite its length
+        assertTrue(statements.contains("ALTER TABLE orders ALTER COLUMN o_orderpriority ENCODE BYTEDICT"));
+        assertTrue(statements.contains("ALTER TABLE orders ALTER COLUMN o_comment ENCODE ZSTD"));
+        assertTrue(statements.contains("ALTER TABLE nation ALTER COLUMN n_name ENCODE ZSTD"));
+        // Sort key columns keep the default RAW encoding
+        for (String sql : statements) {
+            assertFalse(sql, sql.contains("COLUMN o_orderdate "));
+        }
+    }
+
+    @Test
+    public void testPostgresIndexes() {
+        PhysicalDesigner.Design design = designer.design(DesignTarget.POSTGRES);
+        List<String> statements = design.getStatements();
+        assertTrue(statements.contains("CREATE INDEX IF NOT EXISTS idx_orders_o_custkey ON orders (o_custkey)"));
+        assertTrue(statements.contains("CREATE INDEX IF NOT EXISTS idx_orders_o_orderdate ON orders (o_orderdate)"));
+        assertTrue(statements.contains(
+                "CREATE INDEX IF NOT EXISTS idx_orders_o_orderpriority ON orders (o_orderpriority)"));
+        assertTrue(statements.contains(
+                "CREATE INDEX IF NOT EXISTS idx_customer_c_nationkey ON customer (c_nationkey)"));
+        // Covered by the primary keys
+        for (String sql : statements) {
+            assertFalse(sql, sql.contains("(o_orderkey)") || sql.contains("(l_orderkey)")
+                    || sql.contains("(c_custkey)"));
+        }
+        // Small tables are scanned
+        for (String sql : statements) {
+            assertFalse(sql, sql.contains(" ON region ") || sql.contains(" ON nation "));
+        }
+        assertTrue(design.describe().contains("no indexes: 500 bytes is cheaper to scan"));
+    }
+
+    @Test
+    public void testNoneAndConfig() {
+        assertTrue(designer.design(DesignTarget.NONE).getStatements().isEmpty());
+        assertEquals(DesignTarget.REDSHIFT,
+                DesignTarget.fromConfig(null, "jdbc:redshift://c.abc.us-east-1.redshift.amazonaws.com:5439/dev"));
+        assertEquals(DesignTarget.POSTGRES, DesignTarget.fromConfig("auto", "jdbc:postgresql://localhost/dev"));
+        assertEquals(DesignTarget.NONE, DesignTarget.fromConfig("", "jdbc:h2:mem:"));
+        assertEquals(DesignTarget.POSTGRES, DesignTarget.fromConfig("Postgres", "jdbc:redshift://x"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRejectsUnknownMode() {
+        DesignTarget.fromConfig("oracle", null);
+    }
+
+    @Test
+    public void testReport() {
+        PhysicalDesigner.Report report = new PhysicalDesigner.Report();
+        report.add("query1", 4_000_000L, 1_000_000L);
+        assertEquals(4.0, report.getSpeedup("query1"), 1e-9);
+        assertTrue(report.toString().contains("query1"));
+    }
+}
@@ -0,0 +1,145 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for PipelinedLoader, comparing its statements with the ones the
+ * single-threaded {@link MultiRowInsertLoader} sends.
+ */
+public class PipelinedLoaderTest {
+
+    private static final String SCRIPT = "INSERT INTO region VALUES (0, 'AFRICA'), (1, 'AMERICA'), (2, 'ASIA');\n"
+            + "INSERT INTO region VALUES (3, 'EUROPE'), (4, 'MIDDLE EAST');\n"
+            + "INSERT INTO nation VALUES (0, 'ALGERIA', 0), (1, 'ARGENTINA', 1);\n";
+
+    private static SqlScriptReader reader(String script) {
+        return new SqlScriptReader(new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * Wraps a fake connection so that executing SQL containing the given text fails.
+     */
+    private static Connection failingOn(List<String> log, String text) {
+        Connection con = FakeJdbc.connection(log);
+        return (Connection) Proxy.newProxyInstance(PipelinedLoaderTest.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(con, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (!method.getName().equals("createStatement")) {
+                        return result;
+                    }
+                    Statement stmt = (Statement) result;
+                    return Proxy.newProxyInstance(PipelinedLoaderTest.class.getClassLoader(),
+                            new Class<?>[]{Statement.class}, (p, m, a) -> {
+                                if (m.getName().equals("execute") && ((String) a[0]).contains(text)) {
+                                    throw new SQLException("duplicate key: " + a[0]);
+                                }
+                                return m.invoke(stmt, a);
+                            });
+                });
+    }
+
+    @Test
+    public void testSameStatementsAsSingleThreadedLoad() throws SQLException, IOException {
+        List<String> expected = new ArrayList<>();
+        try (TableLoader loader = new MultiRowInsertLoader(FakeJdbc.connection(expected),
+                AdaptiveBatchSizer.fixed(2), false)) {
+            loader.load(reader(SCRIPT), Long.MAX_VALUE);
+        }
+
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        List<String> marks = new ArrayList<>();
+        try (PipelinedLoader loader = new PipelinedLoader(FakeJdbc.connection(log), null, 1,
+                AdaptiveBatchSizer.fixed(2), 1, false, null)) {
+            assertEquals(7, loader.load(reader(SCRIPT), Long.MAX_VALUE,
+                    (table, offset, tuples, rows) -> marks.add(table + " " + offset + "+" + tuples + " " + rows)));
+        }
+        assertEquals(FakeJdbc.entries(expected, "execute: "), FakeJdbc.entries(log, "execute: "));
+        assertEquals(Arrays.asList(
+                "execute: INSERT INTO region VALUES (0, 'AFRICA'), (1, 'AMERICA')",
+                "execute: INSERT INTO region VALUES (2, 'ASIA'), (3, 'EUROPE')",
+                "execute: INSERT INTO region VALUES (4, 'MIDDLE EAST')",
+                "execute: INSERT INTO nation VALUES (0, 'ALGERIA', 0), (1, 'ARGENTINA', 1)"),
+                FakeJdbc.entries(log, "execute: "));
+        assertEquals(4, FakeJdbc.entries(log, "commit").size());
+        // Every batch reports where to resume, in script order
+        assertEquals(4, marks.size());
+        assertTrue(marks.get(0).startsWith("region 0+2 2"));
+        assertTrue(marks.get(3).endsWith(" 7"));
+    }
+
+    @Test
+    public void testSeveralExecutorsLoadEveryRow() throws SQLException, IOException {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            script.append("INSERT INTO orders VALUES (").append(i).append(", 'O');\n");
+        }
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        List<Long> committed = new ArrayList<>();
+        try (PipelinedLoader loader = new PipelinedLoader(FakeJdbc.connection(log),
+                () -> FakeJdbc.connection(log), 3, AdaptiveBatchSizer.fixed(7), 2, false, null)) {
+            assertEquals(500, loader.load(reader(script.toString()), Long.MAX_VALUE,
+                    (table, offset, tuples, rows) -> committed.add(rows)));
+        }
+        assertEquals(72, FakeJdbc.entries(log, "execute: ").size());
+        // Reported rows only grow, however the executors interleave
+        assertEquals(72, committed.size());
+        for (int i = 1; i < committed.size(); i++) {
+            assertTrue(committed.get(i) > committed.get(i - 1));
+        }
+        assertEquals(500L, (long) committed.get(committed.size() - 1));
+    }
+
+    @Test
+    public void testFailureStopsTheLoad() throws SQLException, IOException {
+        StringBuilder script = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            script.append("INSERT INTO orders VALUES (").append(i).append(", 'O');\n");
+        }
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        try (PipelinedLoader loader = new PipelinedLoader(failingOn(log, "(30, 'O')"), null, 1,
+                AdaptiveBatchSizer.fixed(10), 2, false, null)) {
+            loader.load(reader(script.toString()), Long.MAX_VALUE, null);
+            fail("Expected the failing batch to stop the load");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().startsWith("duplicate key"));
+        }
+        assertEquals(3, FakeJdbc.entries(log, "commit").size());
+        assertEquals(1, FakeJdbc.entries(log, "rollback").size());
+        // Nothing after the failed batch reaches the database
+        assertEquals(3, FakeJdbc.entries(log, "execute: ").size());
+    }
+
+    @Test
+    public void testStopsAtEndOffset() throws SQLException, IOException {
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        SqlScriptReader reader = reader(SCRIPT);
+        long end = SCRIPT.indexOf(";\nINSERT INTO nation") + 1;
+        try (PipelinedLoader loader = new PipelinedLoader(FakeJdbc.connection(log), null, 1,
+                AdaptiveBatchSizer.fixed(100), 4, false, null)) {
+            assertEquals(5, loader.load(reader, end, null));
+        }
+        assertEquals(Collections.singletonList(
+                "execute: INSERT INTO region VALUES (0, 'AFRICA'), (1, 'AMERICA'), (2, 'ASIA'), (3, 'EUROPE'), "
+                        + "(4, 'MIDDLE EAST')"), FakeJdbc.entries(log, "execute: "));
+    }
+}
@@ -0,0 +1,226 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for QueryBaseline. The last test captures the plans of query1-3 on a
+ * local PostgreSQL stand-in and compares them with the checked-in baseline; it is skipped
+ * without one. Run it with -Dplans.record=true to write the baseline instead.
+ */
+public class QueryBaselineTest {
+
+    private static final String ANALYZED =
+            "Limit  (cost=2745.57..2745.60 rows=10 width=44) (actual time=31.125..31.129 rows=10 loops=1)\n"
+            + "  ->  Sort  (cost=2745.57..2749.32 rows=1500 width=44) (actual time=31.123..31.126 rows=10 loops=1)\n"
+            + "        Sort Key: o.o_orderdate DESC\n"
+            + "        Sort Method: top-N heapsort  Memory: 26kB\n"
+            + "        ->  HashAggregate  (cost=2694.16..2712.91 rows=1500 width=44) "
+            + "(actual time=30.2..30.8 rows=2986 loops=1)\n"
+            + "              Group Key: o.o_orderkey\n"
+            + "              ->  Hash Join  (cost=566.26..2619.16 rows=6000 width=24) "
+            + "(actual time=5.1..25.3 rows=11867 loops=1)\n"
+            + "                    Hash Cond: (l.l_orderkey = o.o_orderkey)\n"
+            + "                    ->  Seq Scan on lineitem l  (cost=0.00..1851.75 rows=60175 width=20) "
+            + "(actual time=0.01..6.2 rows=60175 loops=1)\n"
+            + "                    ->  Hash  (cost=547.51..547.51 rows=1500 width=8) "
+            + "(actual time=5.0..5.0 rows=2986 loops=1)\n"
+            + "                          ->  Index Scan using orders_pkey on orders o  "
+            + "(cost=0.29..547.51 rows=1500 width=8) (actual time=0.02..4.1 rows=3 loops=995)\n"
+            + "                                Index Cond: (o_orderkey = c.c_custkey)\n"
+            + "Planning Time: 0.512 ms\n"
+            + "Execution Time: 31.402 ms\n";
+
+    private static final String ESTIMATED =
+            "Limit  (cost=2745.57..2745.60 rows=10 width=44)\n"
+            + "  ->  Sort  (cost=2745.57..2749.32 rows=1500 width=44)\n"
+            + "        Sort Key: o.o_orderdate DESC\n"
+            + "        ->  HashAggregate  (cost=2694.16..2712.91 rows=1400 width=44)\n"
+            + "              Group Key: o.o_orderkey\n"
+            + "              ->  Hash Join  (cost=566.26..2619.16 rows=6000 width=24)\n"
+            + "                    Hash Cond: (l.l_orderkey = o.o_orderkey)\n"
+            + "                    ->  Seq Scan on lineitem l  (cost=0.00..1851.75 rows=60000 width=20)\n"
+            + "                    ->  Hash  (cost=547.51..547.51 rows=1500 width=8)\n"
+            + "                          ->  Index Scan using orders_pkey on orders o  "
+            + "(cost=0.29..547.51 rows=1500 width=8)\n";
+
+    private static final String SHAPE = "Limit\n"
+            + "  Sort\n"
+            + "    HashAggregate\n"
+            + "      Hash Join\n"
+            + "        Seq Scan on lineitem l\n"
+            + "        Hash\n"
+            + "          Index Scan using orders_pkey on orders o\n";
+
+    private static QueryBaseline baseline(String target, String plan, long medianMillis, long scanRows) {
+        QueryBaseline baseline = new QueryBaseline(target);
+        baseline.put("query1", new QueryBaseline.Entry(plan, scanRows, medianMillis * 1_000_000L, 5));
+        return baseline;
+    }
+
+    @Test
+    public void testNormalizesToNodeTree() {
+        assertEquals(SHAPE, QueryBaseline.normalize(ANALYZED));
+        // Estimates and timings do not change the shape
+        assertEquals(SHAPE, QueryBaseline.normalize(ESTIMATED));
+        assertEquals("XN Limit\n  XN Merge\n    XN Network\n      XN Seq Scan on orders o\n",
+                QueryBaseline.normalize("XN Limit  (cost=1000.00..1000.03 rows=10 width=44)\n"
+                        + "  ->  XN Merge  (cost=1000.00..1000.05 rows=20 width=44)\n"
+                        + "        Merge Key: o_orderdate\n"
+                        + "        ->  XN Network  (cost=1000.00..1000.05 rows=20 width=44)\n"
+                        + "              Send to leader\n"
+                        + "              ->  XN Seq Scan on orders o  (cost=0.00..150.00 rows=15000 width=44)\n"
+                        + "----- Tables missing statistics: orders -----\n"));
+    }
+
+    @Test
+    public void testCountsScannedRows() {
+        // Actual rows times loops when analyzed
+        assertEquals(60175 + 3 * 995, QueryBaseline.scanRows(ANALYZED));
+        assertEquals(60000 + 1500, QueryBaseline.scanRows(ESTIMATED));
+    }
+
+    @Test
+    public void testReportsPlanAndLatencyRegressions() {
+        QueryBaseline before = baseline("postgres", SHAPE, 100, 1000);
+        assertTrue(baseline("postgres", SHAPE, 140, 1000).regressions(before, 1.5, 5_000_000L).isEmpty());
+
+        List<String> slower = baseline("postgres", SHAPE, 200, 1000).regressions(before, 1.5, 5_000_000L);
+        assertEquals(1, slower.size());
+        assertTrue(slower.get(0), slower.get(0).startsWith("query1: latency regressed from 100.0 ms to 200.0 ms"));
+        assertTrue(slower.get(0), slower.get(0).endsWith("scans read the same rows"));
+
+        List<String> grown = baseline("postgres", SHAPE, 200, 4000).regressions(before, 1.5, 5_000_000L);
+        assertTrue(grown.get(0), grown.get(0).endsWith("scans read 4.00x the rows (1000 -> 4000)"));
+
+        // Twice as slow, but by less than the absolute margin
+        QueryBaseline fast = baseline("postgres", SHAPE, 2, 1000);
+        assertTrue(baseline("postgres", SHAPE, 4, 1000).regressions(fast, 1.5, 5_000_000L).isEmpty());
+
+        List<String> replanned = baseline("postgres", SHAPE.replace("Hash Join", "Merge Join"), 100, 1000)
+                .regressions(before, 1.5, 5_000_000L);
+        assertEquals(1, replanned.size());
+        assertTrue(replanned.get(0).startsWith("query1: plan changed"));
+
+        assertEquals(1, baseline("redshift", SHAPE, 100, 1000).regressions(before, 1.5, 5_000_000L).size());
+        QueryBaseline unknown = new QueryBaseline("postgres");
+        unknown.put("query9", new QueryBaseline.Entry(SHAPE, 0, 1, 1));
+        assertEquals(Collections.singletonList("query9: not in the baseline"), unknown.regressions(before, 1.5, 0));
+    }
+
+    @Test
+    public void testWritesAndReadsBaseline() throws IOException {
+        Path file = Files.createTempFile("plans", ".baseline");
+        try {
+            QueryBaseline written = baseline("postgres", SHAPE, 12, 61675);
+            written.put("query2", new QueryBaseline.Entry("Sort\n  Seq Scan on customer c\n", 1500, 3_456_789L, 3));
+            written.write(file);
+            String text = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+            assertTrue(text.contains("\nquery1 plan         Seq Scan on lineitem l\n"));
+
+            QueryBaseline read = QueryBaseline.read(file);
+            assertEquals("postgres", read.getTarget());
+            assertEquals(SHAPE, read.get("query1").getPlan());
+            assertEquals(12_000_000L, read.get("query1").getMedianNanos());
+            assertEquals(61675, read.get("query1").getScanRows());
+            assertEquals(3_457_000L, read.get("query2").getMedianNanos());
+            assertEquals(3, read.get("query2").getRuns());
+            assertTrue(written.regressions(read, 1.0, 1_000_000L).isEmpty());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    @Test
+    public void testPlansMatchPostgresBaseline() throws SQLException, IOException {
+        Path baselineFile = Paths.get("src/test/resources/plans/postgres.baseline");
+        boolean record = Boolean.getBoolean("plans.record");
+        try (Connection con = LocalPostgres.connect()) {
+            // Only a missing database skips the check; a missing baseline is an error
+            if (!record && !Files.exists(baselineFile)) {
+                fail("No plan baseline at " + baselineFile + "; record one against this database with "
+                        + "-Dplans.record=true and commit it");
+            }
+            Map<String, TableSchema> schema = TableSchema.parse(PlanData.DDL);
+            try (Statement stmt = con.createStatement()) {
+                for (String table : PlanData.TABLES) {
+                    stmt.execute("DROP TABLE IF EXISTS " + table + " CASCADE");
+                }
+                for (String ddl : PlanData.DDL.split(";")) {
+                    if (!ddl.trim().isEmpty()) {
+                        stmt.execute(ddl);
+                    }
+                }
+            }
+            // Generated data is the same on every machine, so plans only differ by planner
+            TpchGenerator generator = new TpchGenerator(schema, 0.01, 42, 100);
+            con.setAutoCommit(false);
+            try (TableLoader loader = new MultiRowInsertLoader(con, AdaptiveBatchSizer.fixed(5000), false)) {
+                for (String file : generator.files(1)) {
+                    try (SqlScriptReader reader = new SqlScriptReader(generator.open(file))) {
+                        loader.load(reader, Long.MAX_VALUE);
+                    }
+                }
+            }
+            con.setAutoCommit(true);
+            try (Statement stmt = con.createStatement()) {
+                stmt.execute("ANALYZE");
+            }
+
+            Map<String, String> queries = new LinkedHashMap<>();
+            queries.put("query1", AmazonRedshift.QUERY1_SQL);
+            queries.put("query2", AmazonRedshift.QUERY2_SQL);
+            queries.put("query3", AmazonRedshift.QUERY3_SQL);
+            QueryBaseline current = QueryBaseline.capture(con, "postgres", queries, 5, true);
+            if (record) {
+                current.write(baselineFile);
+                return;
+            }
+            List<String> regressions = current.regressions(QueryBaseline.read(baselineFile),
+                    Double.parseDouble(System.getProperty("plans.max.slowdown", "2.0")),
+                    Long.getLong("plans.min.regression.ms", 10) * 1_000_000L);
+            assertTrue(String.join("\n", regressions), regressions.isEmpty());
+        }
+    }
+
+    /**
+     * The TPC-H tables query1-3 read, as the stand-in creates them.
+     */
+    private static final class PlanData {
+        static final String[] TABLES = {"lineitem", "orders", "customer", "nation", "region"};
+        static final String DDL =
+                "CREATE TABLE region (r_regionkey INTEGER NOT NULL PRIMARY KEY, r_name CHAR(25) NOT NULL,"
+                + " r_comment VARCHAR(152));\n"
+                + "CREATE TABLE nation (n_nationkey INTEGER NOT NULL PRIMARY KEY, n_name CHAR(25) NOT NULL,"
+                + " n_regionkey INTEGER NOT NULL REFERENCES region, n_comment VARCHAR(152));\n"
+                + "CREATE TABLE customer (c_custkey INTEGER NOT NULL PRIMARY KEY, c_name VARCHAR(25) NOT NULL,"
+                + " c_address VARCHAR(40) NOT NULL, c_nationkey INTEGER NOT NULL REFERENCES nation,"
+                + " c_phone CHAR(15) NOT NULL, c_acctbal DECIMAL(15,2) NOT NULL, c_mktsegment CHAR(10) NOT NULL,"
+                + " c_comment VARCHAR(117) NOT NULL);\n"
+                + "CREATE TABLE orders (o_orderkey INTEGER NOT NULL PRIMARY KEY,"
+                + " o_custkey INTEGER NOT NULL REFERENCES customer, o_orderstatus CHAR(1) NOT NULL,"
+                + " o_totalprice DECIMAL(15,2) NOT NULL, o_orderdate DATE NOT NULL, o_orderpriority CHAR(15) NOT NULL,"
+                + " o_clerk CHAR(15) NOT NULL, o_shippriority INTEGER NOT NULL, o_comment VARCHAR(79) NOT NULL);\n"
+                + "CREATE TABLE lineitem (l_orderkey INTEGER NOT NULL REFERENCES orders, l_partkey INTEGER NOT NULL,"
+                + " l_suppkey INTEGER NOT NULL, l_linenumber INTEGER NOT NULL, l_quantity DECIMAL(15,2) NOT NULL,"
+                + " l_extendedprice DECIMAL(15,2) NOT NULL, l_discount DECIMAL(15,2) NOT NULL,"
+                + " l_tax DECIMAL(15,2) NOT NULL, l_returnflag CHAR(1) NOT NULL, l_linestatus CHAR(1) NOT NULL,"
+                + " l_shipdate DATE NOT NULL, l_commitdate DATE NOT NULL, l_receiptdate DATE NOT NULL,"
+                + " l_shipinstruct CHAR(25) NOT NULL, l_shipmode CHAR(10) NOT NULL, l_comment VARCHAR(44) NOT NULL,"
+                + " PRIMARY KEY (l_orderkey, l_linenumber));\n";
+    }
+}
@@ -0,0 +1,145 @@
+package com.iitj.bigdata;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for QueryExecutor, using fake connections whose queries block until
+ * released or cancelled.
+ */
+public class QueryExecutorTest {
+
+    private final List<String> log = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch cancelled = new CountDownLatch(1);
+    private CyclicBarrier barrier;
+    private QueryExecutor executor;
+
+    /**
+     * Connection whose statements run "wait" until cancelled, "barrier" until all barrier
+     * parties arrive, fail on "fail" and return one row otherwise.
+     */
+    private Connection connection() {
+        Connection con = FakeJdbc.connection(log);
+        return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if (!method.getName().equals("createStatement")) {
+                        return method.invoke(con, args);
+                    }
+                    return Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[]{Statement.class},
+                            (p, m, a) -> {
+                                switch (m.getName()) {
+                                    case "setQueryTimeout":
+                                        log.add("timeout: " + a[0]);
+                                        return null;
+                                    case "cancel":
+                                        log.add("cancel");
+                                        cancelled.countDown();
+                                        return null;
+                                    case "executeQuery":
+                                        return execute((String) a[0]);
+                                    default:
+                                        return null;
+                                }
+                            });
+                });
+    }
+
+    private ResultSet execute(String sql) throws Exception {
+        switch (sql) {
+            case "wait":
+                cancelled.await(5, TimeUnit.SECONDS);
+                throw new SQLException("canceling statement due to user request");
+            case "barrier":
+                barrier.await(5, TimeUnit.SECONDS);
+                break;
+            case "fail":
+                throw new SQLException("relation does not exist");
+            default:
+                break;
+        }
+        return FakeJdbc.resultSet(log, new String[]{"q"}, new Object[]{sql});
+    }
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.close();
+        }
+    }
+
+    @Test
+    public void testRunsNamedQueriesConcurrently() throws SQLException {
+        barrier = new CyclicBarrier(3);
+        executor = new QueryExecutor(this::connection, null, 3, 7);
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("a", "barrier");
+        queries.put("b", "barrier");
+        queries.put("c", "barrier");
+        Map<String, ResultSet> results = executor.runAll(queries);
+        assertEquals(new ArrayList<>(queries.keySet()), new ArrayList<>(results.keySet()));
+        for (ResultSet rs : results.values()) {
+            assertTrue(rs.next());
+            assertEquals("barrier", rs.getString(1));
+        }
+        assertEquals(3, FakeJdbc.entries(log, "timeout: 7").size());
+    }
+
+    @Test
+    public void testCancelStopsRunningQuery() throws Exception {
+        executor = new QueryExecutor(this::connection, null, 1, 0);
+        CompletableFuture<ResultSet> running = executor.submit("wait");
+        CompletableFuture<ResultSet> queued = executor.submit("select");
+        while (!log.contains("timeout: 0")) {
+            Thread.sleep(1);
+        }
+        assertTrue(running.cancel(true));
+        assertTrue(cancelled.await(5, TimeUnit.SECONDS));
+        assertTrue(running.isCancelled());
+        assertTrue(queued.get(5, TimeUnit.SECONDS).next());
+    }
+
+    @Test
+    public void testFailureCancelsTheOthers() {
+        executor = new QueryExecutor(this::connection, null, 2, 0);
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("slow", "wait");
+        queries.put("broken", "fail");
+        Map<String, CompletableFuture<ResultSet>> futures = executor.submitAll(queries);
+        try {
+            QueryExecutor.gather(futures);
+            fail("Expected the failing query to be reported");
+        } catch (SQLException e) {
+            assertEquals("Query broken failed: relation does not exist", e.getMessage());
+        }
+        assertTrue(futures.get("slow").isCancelled());
+    }
+
+    @Test
+    public void testSharesResultCache() throws SQLException {
+        ResultCache cache = new ResultCache(1 << 20, 0);
+        executor = new QueryExecutor(this::connection, cache, 2, 0);
+        Map<String, String> queries = new LinkedHashMap<>();
+        queries.put("first", "select");
+        executor.runAll(queries);
+        executor.runAll(queries);
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+}
@@ -0,0 +1,74 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for QueryStreamer, using in-memory fake connections.
+ */
+public class QueryStreamerTest {
+
+    private final List<String> log = new ArrayList<>();
+
+    private Connection connection() {
+        return FakeJdbc.connection(log, FakeJdbc.resultSet(log, new String[]{"o_orderpriority", "lineitem_count"},
+                new Object[]{"1-URGENT", 10L}, new Object[]{"2-HIGH", 20L}, new Object[]{"3-MEDIUM", 30L}));
+    }
+
+    @Test
+    public void testStreamsRowsInsideTransaction() throws SQLException {
+        Connection con = connection();
+        List<String> rows = new ArrayList<>();
+
+        long count = new QueryStreamer(250).stream(con, AmazonRedshift.QUERY3_SQL,
+                rs -> rows.add(rs.getString(1) + "=" + rs.getLong("lineitem_count")));
+
+        assertEquals(3, count);
+        assertEquals(FakeJdbc.list("1-URGENT=10", "2-HIGH=20", "3-MEDIUM=30"), rows);
+        assertEquals(FakeJdbc.list(
+                "autoCommit: false",
+                "setFetchSize: 250",
+                "execute: " + AmazonRedshift.QUERY3_SQL,
+                "resultSet close",
+                "statement close",
+                "commit",
+                "autoCommit: true"), log);
+        assertTrue(con.getAutoCommit());
+    }
+
+    @Test
+    public void testConsumerFailureRollsBack() throws SQLException {
+        Connection con = connection();
+        try {
+            new QueryStreamer(100).stream(con, AmazonRedshift.QUERY3_SQL, rs -> {
+                throw new SQLException("consumer failed");
+            });
+            fail("Expected the consumer's exception");
+        } catch (SQLException e) {
+            assertEquals("consumer failed", e.getMessage());
+        }
+        assertTrue(log.contains("resultSet close"));
+        assertTrue(log.contains("statement close"));
+        assertTrue(log.contains("rollback"));
+        assertFalse(log.contains("commit"));
+        assertEquals("autoCommit: true", log.get(log.size() - 1));
+    }
+
+    @Test
+    public void testKeepsManualCommitMode() throws SQLException {
+        Connection con = connection();
+        con.setAutoCommit(false);
+        log.clear();
+
+        new QueryStreamer(100).stream(con, AmazonRedshift.QUERY3_SQL, rs -> { });
+
+        assertFalse(con.getAutoCommit());
+        assertEquals("autoCommit: false", log.get(log.size() - 1));
+    }
+}
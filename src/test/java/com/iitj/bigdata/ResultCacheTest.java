@@ -0,0 +1,110 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for ResultCache.
+ */
+public class ResultCacheTest {
+
+    private final List<String> log = new ArrayList<>();
+    private final AtomicInteger executions = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong();
+
+    private ResultCache.Query query(String value) {
+        return () -> {
+            executions.incrementAndGet();
+            return FakeJdbc.resultSet(log, new String[]{"o_orderpriority", "lineitem_count"},
+                    new Object[]{value, 1L}, new Object[]{value, 2L});
+        };
+    }
+
+    private static String first(ResultSet rs) throws SQLException {
+        assertTrue(rs.next());
+        return rs.getString(1);
+    }
+
+    @Test
+    public void testHitServesCachedRows() throws SQLException {
+        ResultCache cache = new ResultCache(1 << 20, 0, now::get);
+        assertEquals("1-URGENT", first(cache.get("q3", query("1-URGENT"))));
+        assertEquals("1-URGENT", first(cache.get("q3", query("changed"))));
+        assertEquals(1, executions.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getEntryCount());
+    }
+
+    @Test
+    public void testEpochInvalidates() throws SQLException {
+        ResultCache cache = new ResultCache(1 << 20, 0, now::get);
+        cache.get("q3", query("before"));
+        assertEquals(1, cache.bumpEpoch());
+        assertEquals(0, cache.getEntryCount());
+        assertEquals("after", first(cache.get("q3", query("after"))));
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testResultOfConcurrentLoadIsNotCached() throws SQLException {
+        ResultCache cache = new ResultCache(1 << 20, 0, now::get);
+        cache.get("q3", () -> {
+            cache.bumpEpoch();
+            return query("during").execute();
+        });
+        assertEquals(0, cache.getEntryCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() throws SQLException {
+        ResultCache probe = new ResultCache(1 << 20, 0, now::get);
+        probe.get("size", query("x"));
+        long entryBytes = probe.getBytes();
+
+        ResultCache cache = new ResultCache(entryBytes * 2, 0, now::get);
+        cache.get("q1", query("x"));
+        cache.get("q2", query("x"));
+        cache.get("q1", query("x"));
+        cache.get("q3", query("x"));
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.getEntryCount());
+        assertTrue(cache.getBytes() <= entryBytes * 2);
+
+        int before = executions.get();
+        cache.get("q1", query("x"));
+        assertEquals("q1 was used recently and stays cached", before, executions.get());
+        cache.get("q2", query("x"));
+        assertEquals("q2 was evicted", before + 1, executions.get());
+    }
+
+    @Test
+    public void testEntriesExpireAfterTtl() throws SQLException {
+        ResultCache cache = new ResultCache(1 << 20, 100, now::get);
+        cache.get("q3", query("x"));
+        now.set(50_000_000L);
+        cache.get("q3", query("x"));
+        assertEquals(1, executions.get());
+        now.set(200_000_000L);
+        cache.get("q3", query("x"));
+        assertEquals(2, executions.get());
+        assertEquals(1, cache.getEvictionCount());
+        assertTrue(cache.stats().contains("hits=1, misses=2"));
+    }
+
+    @Test
+    public void testOversizedResultIsNotCached() throws SQLException {
+        ResultCache cache = new ResultCache(10, 0, now::get);
+        assertEquals("x", first(cache.get("q3", query("x"))));
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getBytes());
+    }
+}
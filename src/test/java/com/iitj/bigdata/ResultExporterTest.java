@@ -0,0 +1,108 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for ResultExporter.
+ */
+public class ResultExporterTest {
+
+    private static final String[] COLUMNS = {"o_orderkey", "o_orderdate", "total_sale", "o_comment"};
+    private static final int[] TYPES = {Types.BIGINT, Types.DATE, Types.DECIMAL, Types.VARCHAR};
+
+    private static ResultSet result() throws SQLException {
+        return CachedResult.of(COLUMNS, TYPES, Arrays.asList(
+                new Object[]{5L, Date.valueOf("1998-08-02"), new BigDecimal("1234.50"), "plain"},
+                new Object[]{-7L, null, null, "say \"hi\", then\nleave"},
+                new Object[]{9L, Date.valueOf("1970-01-01"), new BigDecimal("-0.01"), null})).open();
+    }
+
+    private static String export(ResultExporter.Format format) throws SQLException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertEquals(3, new ResultExporter(format, false).export(result(), out));
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testCsv() throws SQLException {
+        assertEquals("o_orderkey,o_orderdate,total_sale,o_comment\n"
+                + "5,1998-08-02,1234.50,plain\n"
+                + "-7,,,\"say \"\"hi\"\", then\nleave\"\n"
+                + "9,1970-01-01,-0.01,\n", export(ResultExporter.Format.CSV));
+    }
+
+    @Test
+    public void testJsonLines() throws SQLException {
+        assertEquals("{\"o_orderkey\":5,\"o_orderdate\":\"1998-08-02\",\"total_sale\":1234.50,\"o_comment\":\"plain\"}\n"
+                + "{\"o_orderkey\":-7,\"o_orderdate\":null,\"total_sale\":null,"
+                + "\"o_comment\":\"say \\\"hi\\\", then\\nleave\"}\n"
+                + "{\"o_orderkey\":9,\"o_orderdate\":\"1970-01-01\",\"total_sale\":-0.01,\"o_comment\":null}\n",
+                export(ResultExporter.Format.JSONL));
+    }
+
+    @Test
+    public void testColumnarRoundTripAcrossRowGroups() throws SQLException {
+        List<Object[]> rows = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            rows.add(new Object[]{(long) i * 1_000_000_007L, Date.valueOf("1995-03-1" + i % 10),
+                    i % 3 == 0 ? null : BigDecimal.valueOf(-i * 101, 2), "row " + i});
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ResultExporter exporter = new ResultExporter(ResultExporter.Format.COLUMNAR, true, 4);
+        assertEquals(".tpcr.gz", exporter.getExtension());
+        assertEquals(10, exporter.export(CachedResult.of(COLUMNS, TYPES, rows).open(), out));
+
+        ResultSet rs = ResultExporter.readColumnar(new ByteArrayInputStream(out.toByteArray())).open();
+        assertEquals("total_sale", rs.getMetaData().getColumnName(3));
+        assertEquals(Types.DATE, rs.getMetaData().getColumnType(2));
+        for (Object[] expected : rows) {
+            assertTrue(rs.next());
+            assertEquals(expected[0], rs.getLong(1));
+            assertEquals(expected[1], rs.getDate(2));
+            assertEquals(expected[2], rs.getBigDecimal(3));
+            assertEquals(expected[3], rs.getString(4));
+        }
+        assertFalse(rs.next());
+    }
+
+    @Test
+    public void testGzipCsv() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        new ResultExporter(ResultExporter.Format.CSV, true).export(result(), out);
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            assertEquals(export(ResultExporter.Format.CSV), new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test(expected = SQLException.class)
+    public void testRejectsOtherInput() throws SQLException {
+        ResultExporter.readColumnar(new ByteArrayInputStream("a,b\n".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testCountAndResultSetToString() throws SQLException {
+        ResultSet rs = result();
+        assertTrue(rs.next());
+        assertEquals(2, ResultExporter.count(rs));
+
+        assertEquals("Total columns: 4\n"
+                + "o_orderkey, o_orderdate, total_sale, o_comment\n"
+                + "5, 1998-08-02, 1234.50, plain\n"
+                + "Total results: 3", AmazonRedshift.resultSetToString(result(), 1));
+    }
+}
@@ -0,0 +1,192 @@
+package com.iitj.bigdata;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for RowCache and RowFileReader.
+ */
+public class RowCacheTest {
+
+    private static final Map<String, TableSchema> SCHEMA = TableSchema.parse(
+            "CREATE TABLE orders (o_orderkey INTEGER NOT NULL, o_totalprice DECIMAL(15,2),"
+            + " o_orderdate DATE, o_orderpriority CHAR(15), o_comment VARCHAR(79));");
+
+    private static final String SCRIPT =
+            "-- orders\n"
+            + "INSERT INTO orders VALUES (1, 173665.47, '1996-01-02', '5-LOW', 'it''s; here'),"
+            + " (2, -46929.18, '1969-12-31', '1-URGENT', NULL);\n"
+            + "INSERT INTO orders VALUES (3, 193846.25, '1993-10-14', '5-LOW', 'caf\u00e9'),"
+            + " (4, 0.05, NULL, '5-LOW', '');\n"
+            + "INSERT INTO orders VALUES (5, 12.00, '2000-02-29', '2-HIGH', '(a, b)');\n";
+
+    private Path dir;
+    private Path data;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("rowcache-test");
+        data = dir.resolve("orders.sql");
+        Files.write(data, SCRIPT.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        try (Stream<Path> files = Files.walk(dir)) {
+            for (Path p : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+
+    private RowCache cache(boolean verify) {
+        return new RowCache(dir.resolve("cache"), SCHEMA, verify);
+    }
+
+    private TupleReader open(RowCache cache) throws IOException {
+        return cache.open(new DataResource("data/orders.sql", Collections.singletonList(data.toUri().toURL()),
+                DataResource.Compression.NONE, 1));
+    }
+
+    /**
+     * Returns every field of every tuple as the loaders see it.
+     */
+    private static List<String> describe(TupleReader reader) throws IOException {
+        List<String> rows = new ArrayList<>();
+        try (TupleReader r = reader) {
+            while (r.next()) {
+                StringBuilder sb = new StringBuilder(r.table()).append(' ').append(r.tupleLength())
+                        .append(' ').append(r.tupleString());
+                for (int i = 0; i < r.fieldCount(); i++) {
+                    sb.append(" | ").append(r.isNull(i)).append(' ').append(r.isQuoted(i)).append(' ');
+                    r.appendField(i, sb);
+                }
+                if (!r.isNull(1)) {
+                    sb.append(" | ").append(r.getLong(0)).append(' ').append(r.getDecimal(1, 2))
+                            .append(' ').append(r.getDecimal(1, 4)).append(' ').append(r.getDecimal(1, 1));
+                }
+                rows.add(sb.toString());
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    public void testRowFileMatchesScript() throws IOException {
+        List<String> expected = describe(new SqlScriptReader(
+                new ByteArrayInputStream(SCRIPT.getBytes(StandardCharsets.UTF_8))));
+        RowCache cache = cache(false);
+        TupleReader first = open(cache);
+        assertTrue(first instanceof RowFileReader);
+        assertEquals(expected, describe(first));
+
+        // A second open maps the same file without converting it again
+        Path file = cache.file("data/orders.sql");
+        FileTime written = Files.getLastModifiedTime(file);
+        TupleReader second = open(cache(false));
+        assertTrue(second instanceof RowFileReader);
+        assertEquals(5, ((RowFileReader) second).rowCount());
+        assertEquals(expected, describe(second));
+        assertEquals(written, Files.getLastModifiedTime(file));
+        assertEquals(expected.get(0).substring(expected.get(0).indexOf(" (")), " (1, 173665.47, '1996-01-02', "
+                + "'5-LOW', 'it''s; here') | false false 1 | false false 173665.47 | false true 1996-01-02"
+                + " | false true 5-LOW | false true it's; here | 1 17366547 1736654700 1736655");
+    }
+
+    @Test
+    public void testChangedSourceIsConverted() throws IOException {
+        FileTime modified = Files.getLastModifiedTime(data);
+        List<String> rows = describe(open(cache(false)));
+        Files.write(data, SCRIPT.replace("(5, 12.00", "(6, 12.00").getBytes(StandardCharsets.UTF_8));
+        Files.setLastModifiedTime(data, modified);
+        // Same length and modification time: trusted unless verify is set
+        assertEquals(rows, describe(open(cache(false))));
+        rows = describe(open(cache(true)));
+        assertTrue(rows.get(4).contains("(6, 12.00"));
+
+        Files.write(data, (SCRIPT + "INSERT INTO orders VALUES (7, 1.00, '1998-01-01', '5-LOW', 'x');\n")
+                .getBytes(StandardCharsets.UTF_8));
+        rows = describe(open(cache(false)));
+        assertEquals(6, rows.size());
+        assertTrue(rows.get(5).contains("(7, 1.00, '1998-01-01'"));
+
+        // Only the modification time changed: the hash still matches
+        Files.setLastModifiedTime(data, FileTime.fromMillis(1_500_000_000_000L));
+        TupleReader reader = open(cache(false));
+        assertTrue(reader instanceof RowFileReader);
+        assertEquals(rows, describe(reader));
+    }
+
+    @Test
+    public void testUncacheableScriptIsReadAsText() throws IOException {
+        Files.write(data, (SCRIPT + "INSERT INTO lineitem VALUES (1, 1);\n").getBytes(StandardCharsets.UTF_8));
+        RowCache cache = cache(false);
+        TupleReader reader = open(cache);
+        assertTrue(reader instanceof SqlScriptReader);
+        assertEquals(6, describe(reader).size());
+        assertFalse(Files.exists(cache.file("data/orders.sql")));
+        try (Stream<Path> files = Files.list(dir.resolve("cache"))) {
+            assertEquals("Temporary files are removed", 0, files.count());
+        }
+    }
+
+    @Test
+    public void testResumeFromCheckpoint() throws IOException, SQLException {
+        List<long[]> commits = new ArrayList<>();
+        try (TableLoader loader = TableLoader.create(LoadMode.MULTIROW, FakeJdbc.connection(new ArrayList<>()),
+                AdaptiveBatchSizer.fixed(2), false, SCHEMA)) {
+            assertEquals(5, loader.load(open(cache(false)), Long.MAX_VALUE,
+                    (table, offset, tuples, rows) -> commits.add(new long[]{offset, tuples, rows})));
+        }
+        assertEquals(3, commits.size());
+        assertEquals(0, commits.get(0)[1]);
+
+        TupleReader reader = open(cache(false));
+        reader.resume(commits.get(0)[0], commits.get(0)[1]);
+        assertTrue(reader.next());
+        assertEquals(3, reader.getLong(0));
+        assertEquals(reader.position(), reader.statementEnd());
+        try {
+            reader.skipTo(commits.get(0)[0] + 1);
+            fail("Expected an offset inside a row to be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage().contains("not a row boundary"));
+        }
+    }
+
+    @Test
+    public void testDatesAndDecimals() {
+        for (long day = -719_000; day <= 2_900_000; day += 997) {
+            StringBuilder sb = new StringBuilder();
+            RowFileReader.appendDate(day, sb);
+            assertEquals(LocalDate.ofEpochDay(day).toString(), sb.toString());
+        }
+        StringBuilder sb = new StringBuilder();
+        RowFileReader.appendDecimal(-5, 2, sb);
+        sb.append(' ');
+        RowFileReader.appendDecimal(100, 2, sb);
+        assertEquals("-0.05 1.00", sb.toString());
+        assertEquals(124, RowFileReader.rescale(1244, 2, 1));
+        assertEquals(125, RowFileReader.rescale(1245, 2, 1));
+        assertEquals(-126, RowFileReader.rescale(-1255, 2, 1));
+        assertEquals(124500, RowFileReader.rescale(1245, 2, 4));
+    }
+}
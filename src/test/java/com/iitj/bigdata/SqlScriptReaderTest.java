@@ -0,0 +1,178 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for SqlScriptReader.
+ */
+public class SqlScriptReaderTest {
+
+    private static SqlScriptReader reader(String script, int bufferSize) {
+        return new SqlScriptReader(new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)), bufferSize);
+    }
+
+    @Test
+    public void testReadsTuplesAndTable() throws IOException {
+        SqlScriptReader r = reader("INSERT INTO region VALUES (0,'AFRICA','x');\n"
+                + "insert into region values(1, 'AMERICA', 'y');\n", 64);
+        assertTrue(r.next());
+        assertEquals("region", r.table());
+        assertEquals("(0,'AFRICA','x')", r.tupleString());
+        String first = r.table();
+        assertTrue(r.next());
+        assertSame("Table name should be reused when unchanged", first, r.table());
+        assertEquals("(1, 'AMERICA', 'y')", r.tupleString());
+        assertFalse(r.next());
+        assertEquals(2, r.records());
+    }
+
+    @Test
+    public void testQuotedSemicolonsAndParentheses() throws IOException {
+        SqlScriptReader r = reader("INSERT INTO lineitem VALUES (1,'a; b) (c','it''s; fine');"
+                + "INSERT INTO lineitem VALUES (2,'z');", 8);
+        assertTrue(r.next());
+        assertEquals("(1,'a; b) (c','it''s; fine')", r.tupleString());
+        assertTrue(r.next());
+        assertEquals("(2,'z')", r.tupleString());
+        assertFalse(r.next());
+    }
+
+    @Test
+    public void testSkipsCommentsAndOtherStatements() throws IOException {
+        SqlScriptReader r = reader("-- header; with semicolon\nSET search_path = 'a;b';\n"
+                + "/* block ; comment */ BEGIN;\nINSERT INTO nation (n_nationkey, n_name) VALUES (5, 'X');\nCOMMIT;", 16);
+        assertTrue(r.next());
+        assertEquals("nation", r.table());
+        assertEquals("(5, 'X')", r.tupleString());
+        assertFalse(r.next());
+    }
+
+    @Test
+    public void testMultiRowStatementOffsets() throws IOException {
+        String script = "INSERT INTO t VALUES (1),\n (2);INSERT INTO u VALUES (3)";
+        SqlScriptReader r = reader(script, 4);
+        assertTrue(r.next());
+        assertEquals(-1, r.statementEnd());
+        assertTrue(r.next());
+        assertEquals("(2)", r.tupleString());
+        assertEquals(script.indexOf(';') + 1, r.statementEnd());
+        assertTrue(r.next());
+        assertEquals("u", r.table());
+        assertEquals(script.length(), r.statementEnd());
+        assertFalse(r.next());
+    }
+
+    @Test
+    public void testSkipToStatementBoundary() throws IOException {
+        String script = "INSERT INTO t VALUES (1);\nINSERT INTO t VALUES (2);\nINSERT INTO t VALUES (3);";
+        long boundary = script.indexOf(';', script.indexOf('2')) + 1;
+        SqlScriptReader r = reader(script, 4);
+        r.skipTo(boundary);
+        assertTrue(r.next());
+        assertEquals("(3)", r.tupleString());
+        assertEquals(script.length(), r.position());
+    }
+
+    @Test
+    public void testResumeFromCheckpointPosition() throws IOException {
+        String script = "INSERT INTO t VALUES (1), (2),\n(3);\nCREATE TABLE x (a INT);\nINSERT INTO t VALUES (4);\n"
+                + "INSERT INTO t VALUES (5), (6);";
+        SqlScriptReader r = reader(script, 8);
+        List<long[]> marks = new ArrayList<>();
+        while (r.next()) {
+            marks.add(new long[]{r.checkpointOffset(), r.checkpointTuples()});
+        }
+        assertEquals(6, marks.size());
+        assertEquals(2, marks.get(1)[1]);
+        assertEquals(script.indexOf(';') + 1, marks.get(2)[0]);
+        for (int k = 0; k < marks.size(); k++) {
+            SqlScriptReader resumed = reader(script, 8);
+            resumed.resume(marks.get(k)[0], marks.get(k)[1]);
+            if (k + 1 < marks.size()) {
+                assertTrue(resumed.next());
+                assertEquals("(" + (k + 2) + ")", resumed.tupleString());
+            } else {
+                assertFalse(resumed.next());
+            }
+        }
+    }
+
+    @Test
+    public void testNextBoundaryMatchesStatementEnds() throws IOException {
+        String script = "-- it's a header; quoted\nINSERT INTO t VALUES (1,'a;b'), (2,'c'';d');\n"
+                + "/* x; 'y */INSERT INTO t VALUES (3,'e');\nINSERT INTO t VALUES (4,'f');\n-- trailer;\n";
+        List<Long> ends = new ArrayList<>();
+        SqlScriptReader all = reader(script, 8);
+        while (all.next()) {
+            if (all.statementEnd() >= 0) {
+                ends.add(all.statementEnd());
+            }
+        }
+
+        SqlScriptReader r = reader(script, 8);
+        assertTrue(r.next());
+        assertEquals((long) ends.get(0), r.nextBoundary(0));
+        assertEquals((long) ends.get(1), r.nextBoundary(ends.get(0) + 1));
+        // Only whitespace and comments follow the last statement
+        assertEquals(-1, r.nextBoundary(ends.get(1) + 1));
+
+        // A boundary found without reading any tuple is where a chunk reader starts
+        long boundary = reader(script, 8).nextBoundary(ends.get(1));
+        assertEquals((long) ends.get(1), boundary);
+        r = reader(script, 8);
+        r.skipTo(boundary);
+        assertTrue(r.next());
+        assertEquals("(4,'f')", r.tupleString());
+    }
+
+    @Test
+    public void testDecimalFields() throws IOException {
+        SqlScriptReader r = reader("INSERT INTO t VALUES (901.00, '0.04', -12.5, 7, 0.125, 1.994);", 16);
+        assertTrue(r.next());
+        assertEquals(90100, r.getDecimal(0, 2));
+        assertEquals(4, r.getDecimal(1, 2));
+        assertEquals(-1250, r.getDecimal(2, 2));
+        assertEquals(700, r.getDecimal(3, 2));
+        assertEquals("Extra digits round half up", 13, r.getDecimal(4, 2));
+        assertEquals(199, r.getDecimal(5, 2));
+        assertEquals(2, r.getDecimal(5, 0));
+    }
+
+    @Test
+    public void testAppendTupleHandlesUtf8() throws IOException {
+        SqlScriptReader r = reader("INSERT INTO t VALUES (1,'caf\u00e9');", 5);
+        assertTrue(r.next());
+        StringBuilder sb = new StringBuilder("X");
+        r.appendTuple(sb);
+        assertEquals("X(1,'caf\u00e9')", sb.toString());
+    }
+
+    @Test
+    public void testFieldAccessors() throws IOException {
+        SqlScriptReader r = reader("INSERT INTO t VALUES ( -42 , 'a, ''b''' ,NULL, DATE '1997-04-01', 3.50);", 7);
+        assertTrue(r.next());
+        assertEquals(5, r.fieldCount());
+        assertEquals(-42, r.getLong(0));
+        assertFalse(r.isQuoted(0));
+        assertTrue(r.isQuoted(1));
+        assertEquals("a, 'b'", r.getString(1));
+        assertTrue(r.isNull(2));
+        assertFalse(r.isNull(1));
+        assertEquals("1997-04-01", r.getString(3));
+        assertEquals("3.50", r.getString(4));
+    }
+
+    @Test(expected = IOException.class)
+    public void testUnterminatedTupleFails() throws IOException {
+        SqlScriptReader r = reader("INSERT INTO t VALUES (1,'open);", 16);
+        r.next();
+    }
+}
@@ -0,0 +1,177 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for StagingTables, with a LocalPostgres test of a swap seen from
+ * another connection.
+ */
+public class StagingTablesTest {
+
+    private static final StagingTables STAGING = new StagingTables(Arrays.asList(
+            "region", "nation", "part", "partsupp", "orders", "lineitem", "order_revenue"));
+
+    /**
+     * Wraps a fake connection so that executing SQL containing the given text fails.
+     */
+    private static Connection failingOn(List<String> log, String text) {
+        Connection con = FakeJdbc.connection(log);
+        return (Connection) Proxy.newProxyInstance(StagingTablesTest.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(con, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (!method.getName().equals("createStatement")) {
+                        return result;
+                    }
+                    Statement stmt = (Statement) result;
+                    return Proxy.newProxyInstance(StagingTablesTest.class.getClassLoader(),
+                            new Class<?>[]{Statement.class}, (p, m, a) -> {
+                                if (m.getName().equals("execute") && ((String) a[0]).contains(text)) {
+                                    throw new SQLException("lock timeout: " + a[0]);
+                                }
+                                return m.invoke(stmt, a);
+                            });
+                });
+    }
+
+    @Test
+    public void testStageRewritesTableNamesOnly() {
+        assertEquals("CREATE TABLE nation_stage (n_nationkey INTEGER NOT NULL, "
+                        + "n_regionkey INTEGER REFERENCES region_stage(r_regionkey))",
+                STAGING.stage("CREATE TABLE nation (n_nationkey INTEGER NOT NULL, "
+                        + "n_regionkey INTEGER REFERENCES region(r_regionkey))"));
+        assertEquals("CREATE TABLE PARTSUPP_stage (PS_PARTKEY INTEGER REFERENCES PART_stage)",
+                STAGING.stage("CREATE TABLE PARTSUPP (PS_PARTKEY INTEGER REFERENCES PART)"));
+        assertEquals("CREATE INDEX IF NOT EXISTS idx_orders_stage_o_custkey ON public.orders_stage (o_custkey)",
+                STAGING.stage("CREATE INDEX IF NOT EXISTS idx_orders_o_custkey ON public.orders (o_custkey)"));
+        // Tables outside the set and aliases are left alone
+        assertEquals("INSERT INTO order_revenue_stage SELECT o.o_orderkey FROM orders_stage o "
+                        + "JOIN customer c ON c.c_custkey = o.o_custkey",
+                STAGING.stage("INSERT INTO order_revenue SELECT o.o_orderkey FROM orders o "
+                        + "JOIN customer c ON c.c_custkey = o.o_custkey"));
+    }
+
+    @Test
+    public void testValidate() {
+        Map<String, Long> staged = new LinkedHashMap<>();
+        staged.put("region", 5L);
+        staged.put("orders", 1500L);
+        Map<String, Long> live = new LinkedHashMap<>();
+        live.put("region", 5L);
+        live.put("orders", 15000L);
+
+        assertEquals(Collections.emptyList(), StagingTables.validate(staged, Collections.emptyMap(), 1505, 0.5));
+        assertEquals(Collections.singletonList("orders_stage has 1500 rows, fewer than 50% of the 15000 live rows"),
+                StagingTables.validate(staged, live, 1505, 0.5));
+        assertEquals(Collections.emptyList(), StagingTables.validate(staged, live, 1505, 0));
+
+        staged.put("region", 0L);
+        assertEquals(Arrays.asList("region_stage is empty", "staging tables hold 1500 rows but the load reported 1505"),
+                StagingTables.validate(staged, Collections.emptyMap(), 1505, 0.5));
+    }
+
+    @Test
+    public void testSwapRenamesInOneTransaction() throws SQLException {
+        List<String> log = new ArrayList<>();
+        Connection con = FakeJdbc.connection(log);
+        StagingTables staging = new StagingTables(Arrays.asList("region", "nation"));
+        // nation did not exist before, so there is nothing to move aside
+        staging.swap(con, new HashSet<>(Collections.singletonList("region")));
+        assertEquals(Arrays.asList(
+                "autoCommit: false",
+                "execute: ALTER TABLE region RENAME TO region_old",
+                "execute: ALTER TABLE region_stage RENAME TO region",
+                "execute: ALTER TABLE nation_stage RENAME TO nation",
+                "commit"), log.subList(0, 5));
+        assertEquals("autoCommit: true", log.get(log.size() - 1));
+    }
+
+    @Test
+    public void testFailedSwapRollsBack() {
+        List<String> log = new ArrayList<>();
+        StagingTables staging = new StagingTables(Arrays.asList("region", "nation"));
+        try {
+            staging.swap(failingOn(log, "nation_stage"), new HashSet<>(Arrays.asList("region", "nation")));
+            fail("Expected the swap to fail");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().startsWith("lock timeout"));
+        }
+        assertEquals(Collections.singletonList("rollback"), FakeJdbc.entries(log, "rollback"));
+        assertEquals(0, FakeJdbc.entries(log, "commit").size());
+        assertEquals("autoCommit: true", log.get(log.size() - 1));
+    }
+
+    @Test
+    public void testDropChildrenFirst() throws SQLException {
+        List<String> log = new ArrayList<>();
+        new StagingTables(Arrays.asList("region", "nation")).drop(FakeJdbc.connection(log), StagingTables.OLD_SUFFIX);
+        assertEquals(Arrays.asList("execute: DROP TABLE IF EXISTS nation_old CASCADE",
+                "execute: DROP TABLE IF EXISTS region_old CASCADE"), FakeJdbc.entries(log, "execute: "));
+    }
+
+    @Test
+    public void testSwapOnPostgres() throws SQLException {
+        try (Connection con = LocalPostgres.connect();
+             Connection reader = LocalPostgres.connect();
+             Statement stmt = con.createStatement()) {
+            StagingTables staging = new StagingTables(Arrays.asList("swap_parent", "swap_child"));
+            staging.drop(con, "");
+            staging.drop(con, StagingTables.STAGE_SUFFIX);
+            staging.drop(con, StagingTables.OLD_SUFFIX);
+            String[] ddl = {
+                    "CREATE TABLE swap_parent (p_key INTEGER PRIMARY KEY)",
+                    "CREATE TABLE swap_child (c_key INTEGER PRIMARY KEY, "
+                            + "c_parent INTEGER REFERENCES swap_parent (p_key))",
+                    "CREATE INDEX idx_swap_child_c_parent ON swap_child (c_parent)"};
+            for (String sql : ddl) {
+                stmt.execute(sql);
+                stmt.execute(staging.stage(sql));
+            }
+            stmt.execute("INSERT INTO swap_parent VALUES (1)");
+            stmt.execute("INSERT INTO swap_child VALUES (1, 1)");
+            stmt.execute("INSERT INTO swap_parent_stage VALUES (1), (2)");
+            stmt.execute("INSERT INTO swap_child_stage VALUES (1, 1), (2, 2), (3, 2)");
+
+            try (Statement query = reader.createStatement()) {
+                try (ResultSet rs = query.executeQuery("SELECT COUNT(*) FROM swap_child")) {
+                    rs.next();
+                    assertEquals(1, rs.getLong(1));
+                }
+                staging.swap(con, StagingTables.existing(con));
+                try (ResultSet rs = query.executeQuery("SELECT COUNT(*) FROM swap_child")) {
+                    rs.next();
+                    assertEquals(3, rs.getLong(1));
+                }
+            }
+            staging.dropOld(con);
+            assertFalse(StagingTables.existing(con).contains("swap_child_old"));
+
+            // The indexes got their names back, so the next reload can stage again
+            for (String sql : ddl) {
+                stmt.execute(staging.stage(sql));
+            }
+            staging.drop(con, StagingTables.STAGE_SUFFIX);
+            staging.drop(con, "");
+        }
+    }
+}
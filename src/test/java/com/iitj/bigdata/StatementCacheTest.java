@@ -0,0 +1,182 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for StatementCache.
+ */
+public class StatementCacheTest {
+
+    private static final String SQL_A = "SELECT * FROM region WHERE r_name = ?";
+    private static final String SQL_B = "SELECT * FROM nation WHERE n_name = ?";
+    private static final String SQL_C = "SELECT * FROM orders WHERE o_orderdate >= ? AND o_orderdate < ?";
+
+    private static Connection connection(List<String> log) {
+        return FakeJdbc.connection(log, FakeJdbc.resultSet(log, new String[]{"n"}));
+    }
+
+    @Test
+    public void testStatementIsReusedWithNewParameters() throws SQLException {
+        List<String> log = new ArrayList<>();
+        try (StatementCache cache = new StatementCache(connection(log), 4)) {
+            try (ResultSet rs = cache.executeQuery(SQL_A, "ASIA")) {
+                assertFalse(rs.next());
+            }
+            try (ResultSet rs = cache.executeQuery(SQL_A, "EUROPE")) {
+                assertFalse(rs.next());
+            }
+            assertEquals(1, FakeJdbc.entries(log, "prepare: ").size());
+            assertEquals(Arrays.asList("executeQuery: [ASIA]", "executeQuery: [EUROPE]"),
+                    FakeJdbc.entries(log, "executeQuery: "));
+            assertEquals(1, cache.getHitCount());
+            assertEquals(1, cache.getMissCount());
+            assertEquals(1, cache.getSize());
+            assertTrue(cache.stats().contains("reuse rate=50.0%"));
+        }
+        // Closing the cache closes the idle statement
+        assertEquals(1, FakeJdbc.entries(log, "close: ").size());
+    }
+
+    @Test
+    public void testOpenResultKeepsItsStatement() throws SQLException {
+        List<String> log = new ArrayList<>();
+        try (StatementCache cache = new StatementCache(connection(log), 4)) {
+            try (ResultSet first = cache.executeQuery(SQL_A, "ASIA");
+                 ResultSet second = cache.executeQuery(SQL_A, "EUROPE")) {
+                assertFalse(first.isClosed());
+                assertFalse(second.isClosed());
+            }
+            assertEquals(2, FakeJdbc.entries(log, "prepare: ").size());
+            assertEquals(0, cache.getHitCount());
+            // Both come back and serve later calls
+            assertEquals(2, cache.getSize());
+            cache.executeQuery(SQL_A, "AFRICA").close();
+            assertEquals(1, cache.getHitCount());
+        }
+    }
+
+    @Test
+    public void testLeastRecentlyUsedStatementIsClosed() throws SQLException {
+        List<String> log = new ArrayList<>();
+        try (StatementCache cache = new StatementCache(connection(log), 2)) {
+            cache.executeQuery(SQL_A, "ASIA").close();
+            cache.executeQuery(SQL_B, "CHINA").close();
+            cache.executeQuery(SQL_A, "EUROPE").close();
+            cache.executeQuery(SQL_C, LocalDate.of(1997, 4, 1), LocalDate.of(2003, 4, 1)).close();
+            assertEquals(Arrays.asList("close: " + SQL_B), FakeJdbc.entries(log, "close: "));
+            assertEquals(1, cache.getEvictionCount());
+            assertEquals(2, cache.getSize());
+        }
+    }
+
+    @Test
+    public void testDatesAreBoundAsSqlDates() throws SQLException {
+        List<String> log = new ArrayList<>();
+        try (StatementCache cache = new StatementCache(connection(log), 2)) {
+            cache.executeQuery(SQL_C, LocalDate.of(1997, 4, 1), LocalDate.of(2003, 4, 1)).close();
+        }
+        assertEquals(Arrays.asList("executeQuery: " + Arrays.asList(Date.valueOf("1997-04-01"),
+                Date.valueOf("2003-04-01"))), FakeJdbc.entries(log, "executeQuery: "));
+    }
+
+    @Test
+    public void testClearClosesIdleAndReturningStatements() throws SQLException {
+        List<String> log = new ArrayList<>();
+        try (StatementCache cache = new StatementCache(connection(log), 4)) {
+            cache.executeQuery(SQL_A, "ASIA").close();
+            ResultSet open = cache.executeQuery(SQL_B, "CHINA");
+            cache.clear();
+            assertEquals(Arrays.asList("close: " + SQL_A), FakeJdbc.entries(log, "close: "));
+            // A statement taken before clear() may read a dropped table, so it is not kept
+            open.close();
+            assertEquals(2, FakeJdbc.entries(log, "close: ").size());
+            assertEquals(0, cache.getSize());
+            cache.executeQuery(SQL_A, "EUROPE").close();
+            assertEquals(3, FakeJdbc.entries(log, "prepare: ").size());
+        }
+    }
+
+    @Test
+    public void testCloseClosesStatementsStillInUse() throws SQLException {
+        List<String> log = new ArrayList<>();
+        StatementCache cache = new StatementCache(connection(log), 4);
+        ResultSet open = cache.executeQuery(SQL_A, "ASIA");
+        assertEquals(1, cache.getInUseCount());
+        cache.close();
+        assertEquals(Arrays.asList("close: " + SQL_A), FakeJdbc.entries(log, "close: "));
+        assertEquals(0, cache.getInUseCount());
+        // Closing the result later does not close the statement again
+        open.close();
+        assertEquals(1, FakeJdbc.entries(log, "close: ").size());
+    }
+
+    @Test
+    public void testUnclosedQueryResultsDoNotHoldStatements() throws SQLException {
+        List<String> log = new ArrayList<>();
+        Properties props = new Properties();
+        props.setProperty("redshift.url", "jdbc:postgresql://localhost/tpch");
+        props.setProperty("redshift.cache.enabled", "false");
+        AmazonRedshift redshift = new AmazonRedshift(props, connection(log));
+        for (int i = 0; i < 5; i++) {
+            // Like main() and AmazonRedshiftTest, never close the result
+            assertFalse(redshift.query1("ASIA").next());
+        }
+        StatementCache cache = redshift.statementCache();
+        assertEquals(1, cache.getMissCount());
+        assertEquals(4, cache.getHitCount());
+        assertEquals(0, cache.getInUseCount());
+        assertEquals(1, FakeJdbc.entries(log, "prepare: ").size());
+        assertEquals(0, FakeJdbc.entries(log, "close: ").size());
+        redshift.close();
+        assertEquals("No statement is left open", 1, FakeJdbc.entries(log, "close: ").size());
+    }
+
+    @Test
+    public void testGaugesFollowTheCurrentCache() throws SQLException {
+        List<String> log = new ArrayList<>();
+        Properties props = new Properties();
+        props.setProperty("redshift.url", "jdbc:postgresql://localhost/tpch");
+        props.setProperty("redshift.cache.enabled", "false");
+        AmazonRedshift redshift = new AmazonRedshift(props, connection(log));
+        redshift.query1("ASIA");
+        redshift.query1("ASIA");
+        assertTrue(redshift.metrics().toPrometheus().contains("redshift_statement_cache_hits 1\n"));
+        redshift.close();
+        assertTrue(redshift.metrics().toPrometheus().contains("redshift_statement_cache_hits 0\n"));
+
+        // A cache created after close() is the one reported
+        redshift.query1("ASIA");
+        redshift.query1("ASIA");
+        redshift.query1("ASIA");
+        String exported = redshift.metrics().toPrometheus();
+        assertTrue(exported, exported.contains("redshift_statement_cache_hits 2\n"));
+        assertTrue(exported, exported.contains("redshift_statement_cache_misses 1\n"));
+    }
+
+    @Test
+    public void testPreparedQueriesMatchLiteralOnes() {
+        assertEquals(1, count(AmazonRedshift.QUERY1_PREPARED_SQL));
+        assertEquals(2, count(AmazonRedshift.QUERY2_PREPARED_SQL));
+        assertEquals(2, count(AmazonRedshift.QUERY3_PREPARED_SQL));
+        assertEquals(1, count(AmazonRedshift.SUMMARY_QUERY1_PREPARED_SQL));
+        assertEquals(2, count(AmazonRedshift.SUMMARY_QUERY3_PREPARED_SQL));
+        // query2 binds the priority before the excluded region
+        assertTrue(AmazonRedshift.QUERY2_SQL.indexOf("'1-URGENT'") < AmazonRedshift.QUERY2_SQL.indexOf("'EUROPE'"));
+    }
+
+    private static int count(String sql) {
+        return sql.length() - sql.replace("?", "").length();
+    }
+}
@@ -0,0 +1,239 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for SummaryMaintainer, checking the deltas it writes in each batch
+ * transaction of a {@link TableLoader}, with LocalPostgres tests that load both tables
+ * in either order and compare the summaries with the base tables.
+ */
+public class SummaryMaintainerTest {
+
+    private static final Map<String, TableSchema> SCHEMA = TableSchema.parse(
+            "CREATE TABLE orders (o_orderkey INTEGER NOT NULL, o_orderdate DATE, o_orderpriority CHAR(15));\n"
+            + "CREATE TABLE lineitem (l_orderkey INTEGER NOT NULL, l_linenumber INTEGER,"
+            + " l_extendedprice DECIMAL(15,2), l_discount DECIMAL(15,2));");
+
+    /**
+     * Base tables the summary statements join, reduced to the columns they use.
+     */
+    private static final String PG_DDL =
+            "CREATE TABLE region (r_regionkey INTEGER NOT NULL, r_name CHAR(25));\n"
+            + "CREATE TABLE nation (n_nationkey INTEGER NOT NULL, n_regionkey INTEGER);\n"
+            + "CREATE TABLE customer (c_custkey INTEGER NOT NULL, c_nationkey INTEGER);\n"
+            + "CREATE TABLE orders (o_orderkey INTEGER NOT NULL, o_custkey INTEGER, o_orderdate DATE,"
+            + " o_orderpriority CHAR(15));\n"
+            + "CREATE TABLE lineitem (l_orderkey INTEGER NOT NULL, l_linenumber INTEGER,"
+            + " l_extendedprice DECIMAL(15,2), l_discount DECIMAL(15,2));\n";
+    private static final Map<String, TableSchema> PG_SCHEMA = TableSchema.parse(PG_DDL);
+    private static final String[] PRIORITIES = {"1-URGENT", "2-HIGH", "3-MEDIUM"};
+
+    /**
+     * Returns 12 orders of customers in AMERICA and EUROPE with distinct dates from 1996 to
+     * 1999, three per statement.
+     */
+    private static String ordersScript() {
+        StringBuilder sb = new StringBuilder();
+        for (int k = 1; k <= 12; k++) {
+            sb.append(k % 3 == 1 ? "INSERT INTO orders VALUES " : ", ")
+                    .append('(').append(k).append(", ").append(k % 2 + 1).append(", '")
+                    .append(LocalDate.of(1996, 1, 15).plusDays(97L * k)).append("', '")
+                    .append(PRIORITIES[k % 3]).append("')")
+                    .append(k % 3 == 0 ? ";\n" : "");
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Returns one to three line items for each order but the last, five per statement, so
+     * the line items of an order span batches. Order 4 has no price and the first line
+     * item of order 7 no discount.
+     */
+    private static String lineitemScript() {
+        List<String> tuples = new ArrayList<>();
+        for (int k = 1; k <= 11; k++) {
+            for (int line = 1; line <= k % 3 + 1; line++) {
+                String price = k == 4 ? "NULL" : (100 + 37 * k * line) + "." + (10 + k);
+                String discount = k == 7 && line == 1 ? "NULL" : "0.0" + line;
+                tuples.add("(" + k + ", " + line + ", " + price + ", " + discount + ")");
+            }
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < tuples.size(); i += 5) {
+            sb.append("INSERT INTO lineitem VALUES ")
+                    .append(String.join(", ", tuples.subList(i, Math.min(i + 5, tuples.size())))).append(";\n");
+        }
+        return sb.toString();
+    }
+
+    private static SqlScriptReader reader(String script) {
+        return new SqlScriptReader(new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static List<String> load(String script, int batchRows) throws SQLException, IOException {
+        List<String> log = new ArrayList<>();
+        Connection con = FakeJdbc.connection(log);
+        try (TableLoader loader = TableLoader.create(LoadMode.MULTIROW, con, AdaptiveBatchSizer.fixed(batchRows),
+                false, SCHEMA).withBatchHook(new SummaryMaintainer(SCHEMA))) {
+            loader.load(reader(script), Long.MAX_VALUE);
+        }
+        return log;
+    }
+
+    @Test
+    public void testLineitemBatchesAddRevenuePerOrder() throws SQLException, IOException {
+        List<String> log = load("INSERT INTO lineitem VALUES (1, 1, 100.00, 0.10), (1, 2, 50.00, 0.00);\n"
+                + "INSERT INTO lineitem VALUES (2, 1, 10.50, 0.04);\n", 2);
+        assertEquals(Arrays.asList(
+                "row: " + Arrays.asList(1L, new BigDecimal("140.0000"), 2L),
+                "row: " + Arrays.asList(2L, new BigDecimal("10.0800"), 1L)), FakeJdbc.entries(log, "row: "));
+
+        // The summaries are updated between the batch and its commit, then the delta is emptied
+        int insert = log.indexOf("execute: INSERT INTO lineitem VALUES (1, 1, 100.00, 0.10), (1, 2, 50.00, 0.00)");
+        int lock = log.indexOf("execute: LOCK TABLE order_revenue, priority_counts");
+        int delete = log.indexOf("execute: DELETE FROM summary_delta");
+        int commit = log.indexOf("commit");
+        assertTrue(insert < lock && lock < delete && delete < commit);
+        List<String> updates = FakeJdbc.entries(log, "execute: UPDATE order_revenue");
+        assertEquals(2, updates.size());
+        assertTrue(updates.get(0).contains("FROM (SELECT d.k AS o_orderkey, d.revenue, d.cnt FROM summary_delta d) x"));
+        assertEquals(2, FakeJdbc.entries(log, "execute: INSERT INTO priority_counts").size());
+    }
+
+    @Test
+    public void testNullTermsAreSkippedLikeSum() throws SQLException, IOException {
+        List<String> log = load("INSERT INTO lineitem VALUES (1, 1, 100.00, NULL), (1, 2, 50.00, 0.10), "
+                + "(2, 1, NULL, 0.04);\n", 10);
+        assertEquals(Arrays.asList(
+                "row: " + Arrays.asList(1L, new BigDecimal("45.0000"), 2L),
+                "row: " + Arrays.asList(2L, null, 1L)), FakeJdbc.entries(log, "row: "));
+        // A NULL delta leaves the revenue unchanged, and a NULL revenue takes the delta
+        assertTrue(FakeJdbc.entries(log, "execute: UPDATE order_revenue").get(0)
+                .contains("SET revenue = COALESCE(order_revenue.revenue + x.revenue, order_revenue.revenue, x.revenue)"));
+    }
+
+    @Test
+    public void testOrdersBatchesPickUpLoadedLineitems() throws SQLException, IOException {
+        List<String> log = load("INSERT INTO orders VALUES (7, '1997-05-01', '1-URGENT'), "
+                + "(8, '1997-05-02', '2-HIGH');\n", 10);
+        assertEquals(Arrays.asList("row: " + Arrays.asList(7L, null, null), "row: " + Arrays.asList(8L, null, null)),
+                FakeJdbc.entries(log, "row: "));
+        String insert = FakeJdbc.entries(log, "execute: INSERT INTO order_revenue").get(0);
+        assertTrue(insert.contains("JOIN lineitem l ON l.l_orderkey = d.k GROUP BY d.k"));
+    }
+
+    @Test
+    public void testOtherTablesAndDiscardedBatchesWriteNothing() throws SQLException, IOException {
+        List<String> log = load("INSERT INTO region VALUES (0, 'AFRICA');\n", 10);
+        assertTrue(FakeJdbc.entries(log, "execute: LOCK").isEmpty());
+
+        log.clear();
+        SummaryMaintainer maintainer = new SummaryMaintainer(SCHEMA);
+        SqlScriptReader r = reader("INSERT INTO orders VALUES (1, '1997-05-01', '1-URGENT');");
+        assertTrue(r.next());
+        maintainer.addRow(r.table(), r);
+        maintainer.discard();
+        maintainer.beforeCommit(FakeJdbc.connection(log));
+        assertTrue(log.isEmpty());
+    }
+
+    /**
+     * Creates the base and summary tables in a scratch schema, loads the scripts in the
+     * given order in batches of four rows with the summaries maintained, and checks them
+     * against the base tables and the queries they replace.
+     */
+    private static void loadOnPostgres(String... scripts) throws SQLException, IOException {
+        try (Connection con = LocalPostgres.connect(); Statement stmt = con.createStatement()) {
+            stmt.execute("DROP SCHEMA IF EXISTS summary_test CASCADE");
+            stmt.execute("CREATE SCHEMA summary_test");
+            stmt.execute("SET search_path TO summary_test");
+            try {
+                for (String sql : PG_DDL.split(";\n")) {
+                    stmt.execute(sql);
+                }
+                for (String sql : SummaryMaintainer.createStatements()) {
+                    stmt.execute(sql);
+                }
+                stmt.execute("INSERT INTO region VALUES (0, 'AMERICA'), (1, 'EUROPE')");
+                stmt.execute("INSERT INTO nation VALUES (0, 0), (1, 1)");
+                stmt.execute("INSERT INTO customer VALUES (1, 0), (2, 1)");
+
+                con.setAutoCommit(false);
+                for (String script : scripts) {
+                    try (TableLoader loader = TableLoader.create(LoadMode.MULTIROW, con, AdaptiveBatchSizer.fixed(4),
+                            false, PG_SCHEMA).withBatchHook(new SummaryMaintainer(PG_SCHEMA))) {
+                        loader.load(reader(script), Long.MAX_VALUE);
+                    }
+                }
+
+                SummaryMaintainer.Consistency consistency = SummaryMaintainer.check(con);
+                assertTrue(consistency.toString(), consistency.isConsistent());
+                List<List<String>> query1 = rows(con, AmazonRedshift.QUERY1_SQL);
+                List<List<String>> query3 = rows(con, AmazonRedshift.QUERY3_SQL);
+                assertFalse(query1.isEmpty());
+                assertFalse(query3.isEmpty());
+                assertEquals(query1, rows(con, AmazonRedshift.SUMMARY_QUERY1_SQL));
+                assertEquals(query3, rows(con, AmazonRedshift.SUMMARY_QUERY3_SQL));
+            } finally {
+                if (!con.getAutoCommit()) {
+                    con.rollback();
+                    con.setAutoCommit(true);
+                }
+                stmt.execute("DROP SCHEMA summary_test CASCADE");
+            }
+        }
+    }
+
+    /**
+     * Returns the rows of a query as text, with numbers compared by value so that the
+     * scale of a SUM does not matter.
+     */
+    private static List<List<String>> rows(Connection con, String sql) throws SQLException {
+        List<List<String>> rows = new ArrayList<>();
+        try (Statement stmt = con.createStatement(); ResultSet rs = stmt.executeQuery(sql)) {
+            int columns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                List<String> row = new ArrayList<>();
+                for (int i = 1; i <= columns; i++) {
+                    Object value = rs.getObject(i);
+                    row.add(value instanceof Number
+                            ? new BigDecimal(value.toString()).stripTrailingZeros().toPlainString()
+                            : String.valueOf(value));
+                }
+                rows.add(row);
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    public void testOrdersBeforeLineitemsOnPostgres() throws SQLException, IOException {
+        loadOnPostgres(ordersScript(), lineitemScript());
+    }
+
+    @Test
+    public void testLineitemsBeforeOrdersOnPostgres() throws SQLException, IOException {
+        loadOnPostgres(lineitemScript(), ordersScript());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testRequiresSummarizedColumns() {
+        new SummaryMaintainer(TableSchema.parse("CREATE TABLE orders (o_orderkey INTEGER);"));
+    }
+}
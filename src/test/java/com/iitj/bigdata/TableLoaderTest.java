@@ -0,0 +1,190 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for the multi-row and PreparedStatement batch loaders.
+ */
+public class TableLoaderTest {
+
+    private static final Map<String, TableSchema> SCHEMA = TableSchema.parse(
+            "CREATE TABLE orders (o_orderkey INTEGER NOT NULL, o_totalprice DECIMAL(15,2),"
+            + " o_orderdate DATE, o_comment VARCHAR(79));");
+
+    private static final String SCRIPT =
+            "INSERT INTO orders VALUES (1, 173665.47, '1996-01-02', 'it''s; here');\n"
+            + "INSERT INTO orders VALUES (2, 46929.18, '1996-12-01', NULL);\n"
+            + "INSERT INTO orders VALUES (3, 193846.25, '1993-10-14', 'x');\n";
+
+    private static SqlScriptReader reader() {
+        return new SqlScriptReader(new ByteArrayInputStream(SCRIPT.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void testMultiRowBatches() throws SQLException, IOException {
+        List<String> log = new ArrayList<>();
+        Connection con = FakeJdbc.connection(log);
+        try (TableLoader loader = TableLoader.create(LoadMode.MULTIROW, con, AdaptiveBatchSizer.fixed(2), false, SCHEMA)) {
+            assertEquals(3, loader.load(reader(), Long.MAX_VALUE));
+        }
+        List<String> executed = FakeJdbc.entries(log, "execute: ");
+        assertEquals(2, executed.size());
+        assertEquals("execute: INSERT INTO orders VALUES (1, 173665.47, '1996-01-02', 'it''s; here'), "
+                + "(2, 46929.18, '1996-12-01', NULL)", executed.get(0));
+        assertEquals(2, FakeJdbc.entries(log, "commit").size());
+    }
+
+    @Test
+    public void testPreparedBatchBindsTypedValues() throws SQLException, IOException {
+        List<String> log = new ArrayList<>();
+        Connection con = FakeJdbc.connection(log);
+        try (TableLoader loader = TableLoader.create(LoadMode.BATCH, con, AdaptiveBatchSizer.fixed(2), false, SCHEMA)) {
+            assertEquals(3, loader.load(reader(), Long.MAX_VALUE));
+        }
+        assertEquals(Arrays.asList("prepare: INSERT INTO orders VALUES (?, ?, ?, ?)"),
+                FakeJdbc.entries(log, "prepare: "));
+        List<String> rows = FakeJdbc.entries(log, "row: ");
+        assertEquals("row: " + Arrays.asList(1, new BigDecimal("173665.47"), Date.valueOf("1996-01-02"), "it's; here"),
+                rows.get(0));
+        assertEquals("row: " + Arrays.asList(2, new BigDecimal("46929.18"), Date.valueOf("1996-12-01"), null),
+                rows.get(1));
+        assertEquals(2, FakeJdbc.entries(log, "executeBatch").size());
+        assertEquals(1, FakeJdbc.entries(log, "close: ").size());
+    }
+
+    @Test
+    public void testTableSuffixRedirectsRows() throws SQLException, IOException {
+        List<String> log = new ArrayList<>();
+        Connection con = FakeJdbc.connection(log);
+        try (TableLoader loader = TableLoader.create(LoadMode.BATCH, con, AdaptiveBatchSizer.fixed(5), false, SCHEMA)
+                .withTableSuffix("_stage")) {
+            assertEquals(3, loader.load(reader(), Long.MAX_VALUE));
+        }
+        // Column types still come from the script's table
+        assertEquals(Arrays.asList("prepare: INSERT INTO orders_stage VALUES (?, ?, ?, ?)"),
+                FakeJdbc.entries(log, "prepare: "));
+
+        log.clear();
+        try (TableLoader loader = TableLoader.create(LoadMode.MULTIROW, con, AdaptiveBatchSizer.fixed(5), false, SCHEMA)
+                .withTableSuffix("_stage")) {
+            loader.load(reader(), Long.MAX_VALUE);
+        }
+        assertTrue(FakeJdbc.entries(log, "execute: ").get(0).startsWith("execute: INSERT INTO orders_stage VALUES (1,"));
+    }
+
+    @Test(expected = SQLException.class)
+    public void testPreparedBatchRejectsWrongArity() throws SQLException, IOException {
+        Connection con = FakeJdbc.connection(new ArrayList<>());
+        SqlScriptReader r = new SqlScriptReader(new ByteArrayInputStream(
+                "INSERT INTO orders VALUES (1, 2.0);".getBytes(StandardCharsets.UTF_8)));
+        try (TableLoader loader = TableLoader.create(LoadMode.BATCH, con, AdaptiveBatchSizer.fixed(10), false, SCHEMA)) {
+            loader.load(r, Long.MAX_VALUE);
+        }
+    }
+
+    @Test
+    public void testPreparedBatchRejectsIntegerOutOfRange() throws IOException {
+        Connection con = FakeJdbc.connection(new ArrayList<>());
+        SqlScriptReader r = new SqlScriptReader(new ByteArrayInputStream(
+                "INSERT INTO orders VALUES (4294967297, 1.00, '1996-01-02', 'a');".getBytes(StandardCharsets.UTF_8)));
+        try (TableLoader loader = TableLoader.create(LoadMode.BATCH, con, AdaptiveBatchSizer.fixed(10), false, SCHEMA)) {
+            loader.load(r, Long.MAX_VALUE);
+            fail("Expected a key outside the INTEGER range to be rejected");
+        } catch (SQLException e) {
+            assertTrue(e.getMessage().contains("(4294967297, 1.00"));
+        }
+    }
+
+    @Test
+    public void testFailedBatchShrinksTheNextLoad() throws SQLException, IOException {
+        AdaptiveBatchSizer sizer = new AdaptiveBatchSizer(2, 1, 2, Long.MAX_VALUE, Long.MAX_VALUE,
+                Long.MAX_VALUE / 1_000_000L, false);
+        Connection fake = FakeJdbc.connection(new ArrayList<>());
+        Connection failing = (Connection) Proxy.newProxyInstance(TableLoaderTest.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if (method.getName().equals("commit")) {
+                        throw new SQLException("Statement too large");
+                    }
+                    try {
+                        return method.invoke(fake, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                });
+        try (TableLoader loader = TableLoader.create(LoadMode.MULTIROW, failing, sizer, false, SCHEMA)) {
+            loader.load(reader(), Long.MAX_VALUE);
+            fail("Expected the commit to fail");
+        } catch (SQLException e) {
+            assertEquals("Statement too large", e.getMessage());
+        }
+        assertEquals(1, sizer.forTable("orders").getRowLimit());
+
+        // A later load with the same sizer starts at the halved size
+        List<String> log = new ArrayList<>();
+        try (TableLoader loader = TableLoader.create(LoadMode.MULTIROW, FakeJdbc.connection(log), sizer, false,
+                SCHEMA)) {
+            assertEquals(3, loader.load(reader(), Long.MAX_VALUE));
+        }
+        assertEquals(3, FakeJdbc.entries(log, "execute: ").size());
+    }
+
+    @Test
+    public void testRecordsPerTableMetrics() throws SQLException, IOException {
+        List<String> log = new ArrayList<>();
+        Connection con = FakeJdbc.connection(log);
+        MetricsRegistry metrics = new MetricsRegistry();
+        try (TableLoader loader = TableLoader.create(LoadMode.MULTIROW, con, AdaptiveBatchSizer.fixed(2), false,
+                SCHEMA, metrics)) {
+            assertEquals(3, loader.load(reader(), Long.MAX_VALUE));
+        }
+        assertEquals(3, metrics.counter("redshift_rows_total", "table", "orders").get());
+        assertEquals(2, metrics.counter("redshift_commits_total", "table", "orders").get());
+        assertEquals(2, metrics.histogram("redshift_batch_seconds", "table", "orders").getCount());
+        assertTrue(metrics.counter("redshift_bytes_total", "table", "orders").get() > 0);
+        assertEquals(0, metrics.counter("redshift_batch_errors_total", "table", "orders").get());
+        assertTrue(metrics.toPrometheus().contains("redshift_rows_per_second{table=\"orders\"}"));
+    }
+
+    @Test
+    public void testResumesFromCommittedPosition() throws SQLException, IOException {
+        String script = "INSERT INTO orders VALUES (1, 1.00, '1996-01-02', 'a'), (2, 2.00, '1996-01-03', 'b'),"
+                + " (3, 3.00, '1996-01-04', 'c');\nINSERT INTO orders VALUES (4, 4.00, '1996-01-05', 'd');";
+        List<long[]> commits = new ArrayList<>();
+        try (TableLoader loader = TableLoader.create(LoadMode.MULTIROW, FakeJdbc.connection(new ArrayList<>()),
+                AdaptiveBatchSizer.fixed(2), false, SCHEMA)) {
+            assertEquals(4, loader.load(new SqlScriptReader(new ByteArrayInputStream(
+                    script.getBytes(StandardCharsets.UTF_8))), Long.MAX_VALUE,
+                    (table, offset, tuples, rows) -> commits.add(new long[]{offset, tuples, rows})));
+        }
+        assertEquals(2, commits.size());
+        assertArrayEquals(new long[]{0, 2, 2}, commits.get(0));
+        assertArrayEquals(new long[]{script.length(), 0, 4}, commits.get(1));
+
+        // Continue after the first commit, as a restarted load would
+        List<String> log = new ArrayList<>();
+        SqlScriptReader reader = new SqlScriptReader(new ByteArrayInputStream(script.getBytes(StandardCharsets.UTF_8)));
+        reader.resume(commits.get(0)[0], commits.get(0)[1]);
+        try (TableLoader loader = TableLoader.create(LoadMode.MULTIROW, FakeJdbc.connection(log),
+                AdaptiveBatchSizer.fixed(2), false, SCHEMA)) {
+            assertEquals(2, loader.load(reader, Long.MAX_VALUE));
+        }
+        assertEquals(Arrays.asList("execute: INSERT INTO orders VALUES (3, 3.00, '1996-01-04', 'c'), "
+                + "(4, 4.00, '1996-01-05', 'd')"), FakeJdbc.entries(log, "execute: "));
+    }
+}
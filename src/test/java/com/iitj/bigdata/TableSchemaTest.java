@@ -0,0 +1,52 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for TableSchema.
+ */
+public class TableSchemaTest {
+
+    private static final String DDL =
+            "CREATE TABLE REGION ( R_REGIONKEY INTEGER NOT NULL, R_NAME CHAR(25) NOT NULL,\n"
+            + "  R_COMMENT VARCHAR(152), PRIMARY KEY (R_REGIONKEY));\n"
+            + "CREATE TABLE nation (n_nationkey INTEGER NOT NULL PRIMARY KEY, n_name CHAR(25),\n"
+            + "  n_regionkey INTEGER NOT NULL REFERENCES region(r_regionkey), n_comment VARCHAR(152));\n"
+            + "CREATE TABLE public.lineitem (l_orderkey INTEGER, l_extendedprice DECIMAL(15, 2),\n"
+            + "  CONSTRAINT fk_order FOREIGN KEY (l_orderkey) REFERENCES \"orders\" (o_orderkey));\n";
+
+    @Test
+    public void testParsesColumnsAndTypes() {
+        Map<String, TableSchema> tables = TableSchema.parse(DDL);
+        assertEquals(3, tables.size());
+        TableSchema region = tables.get("region");
+        assertEquals(3, region.getColumns().size());
+        assertEquals("r_name", region.getColumns().get(1).getName());
+        assertEquals("CHAR(25)", region.getColumns().get(1).getType());
+        assertEquals("DECIMAL(15, 2)", tables.get("lineitem").getColumns().get(1).getType());
+        assertEquals(2, tables.get("lineitem").getColumns().size());
+    }
+
+    @Test
+    public void testParsesReferences() {
+        Map<String, TableSchema> tables = TableSchema.parse(DDL);
+        assertTrue(tables.get("region").getReferences().isEmpty());
+        assertTrue(tables.get("nation").getReferences().contains("region"));
+        assertTrue(tables.get("lineitem").getReferences().contains("orders"));
+    }
+
+    @Test
+    public void testParsesPrimaryKeys() {
+        Map<String, TableSchema> tables = TableSchema.parse(DDL);
+        assertEquals(Collections.singletonList("r_regionkey"), tables.get("region").getPrimaryKey());
+        assertEquals(Collections.singletonList("n_nationkey"), tables.get("nation").getPrimaryKey());
+        assertTrue(tables.get("lineitem").getPrimaryKey().isEmpty());
+        assertEquals("INTEGER", tables.get("nation").getColumn("n_nationkey").getType());
+        assertNull(tables.get("nation").getColumn("missing"));
+    }
+}
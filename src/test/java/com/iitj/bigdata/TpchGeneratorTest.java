@@ -0,0 +1,158 @@
+package com.iitj.bigdata;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * JUnit test cases for TpchGenerator at a small scale factor.
+ */
+public class TpchGeneratorTest {
+
+    private static final Map<String, TableSchema> SCHEMA = TableSchema.parse(
+            "CREATE TABLE region (r_regionkey INTEGER NOT NULL, r_name CHAR(25) NOT NULL, r_comment VARCHAR(152));\n"
+            + "CREATE TABLE nation (n_nationkey INTEGER NOT NULL, n_name CHAR(25) NOT NULL,"
+            + " n_regionkey INTEGER NOT NULL REFERENCES region, n_comment VARCHAR(152));\n"
+            + "CREATE TABLE customer (c_custkey INTEGER NOT NULL, c_name VARCHAR(12) NOT NULL,"
+            + " c_nationkey INTEGER NOT NULL, c_mktsegment CHAR(10) NOT NULL, c_loyalty INTEGER);\n"
+            + "CREATE TABLE orders (o_orderkey INTEGER NOT NULL, o_custkey INTEGER NOT NULL,"
+            + " o_orderstatus CHAR(1) NOT NULL, o_totalprice DECIMAL(15,2) NOT NULL, o_orderdate DATE NOT NULL,"
+            + " o_orderpriority CHAR(15) NOT NULL);\n"
+            + "CREATE TABLE lineitem (l_orderkey INTEGER NOT NULL, l_linenumber INTEGER NOT NULL,"
+            + " l_extendedprice DECIMAL(15,2) NOT NULL, l_discount DECIMAL(15,2) NOT NULL,"
+            + " l_shipdate DATE NOT NULL, l_linestatus CHAR(1) NOT NULL);\n");
+
+    private static TpchGenerator generator(long seed) {
+        return new TpchGenerator(SCHEMA, 0.001, seed, 7);
+    }
+
+    /**
+     * Reads every tuple of the given generated files.
+     */
+    private static List<String> tuples(TpchGenerator generator, List<String> files) throws IOException {
+        List<String> tuples = new ArrayList<>();
+        for (String file : files) {
+            try (SqlScriptReader reader = new SqlScriptReader(generator.open("data/" + file))) {
+                while (reader.next()) {
+                    tuples.add(reader.tupleString());
+                }
+            }
+        }
+        return tuples;
+    }
+
+    private static List<String> filesOf(List<String> files, String table) {
+        List<String> result = new ArrayList<>();
+        for (String file : files) {
+            if (file.startsWith(table + ".")) {
+                result.add(file);
+            }
+        }
+        return result;
+    }
+
+    @Test
+    public void testScalesRowCounts() throws IOException {
+        TpchGenerator generator = generator(1);
+        List<String> files = generator.files(1);
+        assertEquals(Arrays.asList("region.sql", "nation.sql", "customer.sql", "orders.sql", "lineitem.sql"), files);
+        assertEquals(5, tuples(generator, filesOf(files, "region")).size());
+        assertEquals(25, tuples(generator, filesOf(files, "nation")).size());
+        assertEquals(150, tuples(generator, filesOf(files, "customer")).size());
+        assertEquals(1500, tuples(generator, filesOf(files, "orders")).size());
+        int lines = tuples(generator, filesOf(files, "lineitem")).size();
+        assertTrue(lines >= 1500 && lines <= 7 * 1500);
+    }
+
+    @Test
+    public void testDeterministicAndIndependentOfParts() throws IOException {
+        TpchGenerator generator = generator(7);
+        List<String> whole = generator.files(1);
+        List<String> split = generator.files(4);
+        assertEquals(Arrays.asList("orders.1.4.sql", "orders.2.4.sql", "orders.3.4.sql", "orders.4.4.sql"),
+                filesOf(split, "orders"));
+        assertEquals(Collections.singletonList("region.sql"), filesOf(split, "region"));
+        for (String table : Arrays.asList("customer", "orders", "lineitem")) {
+            List<String> expected = tuples(generator, filesOf(whole, table));
+            assertEquals(expected, tuples(generator, filesOf(split, table)));
+            assertEquals(expected, tuples(generator(7), filesOf(whole, table)));
+            assertNotEquals(expected, tuples(generator(8), filesOf(whole, table)));
+        }
+    }
+
+    @Test
+    public void testFollowsDeclaredColumns() throws IOException {
+        TpchGenerator generator = generator(3);
+        List<String> files = generator.files(1);
+        Set<String> segments = new HashSet<>(Arrays.asList(
+                "AUTOMOBILE", "BUILDING", "FURNITURE", "HOUSEHOLD", "MACHINERY"));
+        try (SqlScriptReader reader = new SqlScriptReader(generator.open("customer.sql"))) {
+            while (reader.next()) {
+                assertEquals(5, reader.fieldCount());
+                // Customer#000000001 is cut to the declared VARCHAR(12)
+                assertEquals(12, reader.getString(1).length());
+                assertTrue(reader.getLong(2) >= 0 && reader.getLong(2) < 25);
+                assertTrue(segments.contains(reader.getString(3)));
+                // Not generated by name, so filled with a value of the declared type
+                reader.getLong(4);
+            }
+        }
+        try (SqlScriptReader reader = new SqlScriptReader(generator.open(filesOf(files, "orders").get(0)))) {
+            while (reader.next()) {
+                assertNotEquals(0, reader.getLong(1) % 3);
+                assertTrue("FOP".contains(reader.getString(2)));
+                assertTrue(reader.getDecimal(3, 2) > 0);
+                assertTrue(reader.getString(4).compareTo("1992-01-01") >= 0);
+                assertTrue(reader.getString(4).compareTo("1998-08-02") <= 0);
+            }
+        }
+        try (SqlScriptReader reader = new SqlScriptReader(generator.open("lineitem.sql"))) {
+            while (reader.next()) {
+                assertTrue(reader.getDecimal(3, 2) <= 10);
+                assertEquals(reader.getString(4).compareTo("1995-06-17") > 0 ? "O" : "F", reader.getString(5));
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void testRejectsUnknownFiles() throws IOException {
+        generator(1).open("data/orders.5.4.sql");
+    }
+
+    @Test
+    public void testParallelLoadOfParts() throws SQLException, IOException {
+        TpchGenerator generator = generator(5);
+        List<String> files = generator.files(3);
+        long expected = tuples(generator, files).size();
+        List<String> log = Collections.synchronizedList(new ArrayList<>());
+        ParallelLoader loader = new ParallelLoader(() -> FakeJdbc.connection(log), generator::open, 3,
+                Long.MAX_VALUE, con -> TableLoader.create(LoadMode.MULTIROW, con,
+                AdaptiveBatchSizer.fixed(1000), false, SCHEMA));
+        assertEquals(expected, loader.load(files, SCHEMA));
+    }
+
+    @Test
+    public void testStreamsInSmallReads() throws IOException {
+        TpchGenerator generator = generator(2);
+        StringBuilder sb = new StringBuilder();
+        try (InputStream in = generator.open("region.sql")) {
+            int c;
+            while ((c = in.read()) >= 0) {
+                sb.append((char) c);
+            }
+        }
+        assertTrue(sb.toString().startsWith("INSERT INTO region VALUES (0, 'AFRICA', '"));
+        assertTrue(sb.toString().endsWith(");\n"));
+    }
+}